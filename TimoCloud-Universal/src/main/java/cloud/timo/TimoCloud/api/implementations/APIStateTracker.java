@@ -0,0 +1,73 @@
+package cloud.timo.TimoCloud.api.implementations;
+
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+
+import java.util.function.Consumer;
+
+/**
+ * Remembers which version of the Core's API state has been applied. Events have to arrive with consecutive versions,
+ * if one is missing the API data is requested again with the last applied version, so that the Core can send the missed events (or a new snapshot).
+ * Events of a Core which does not send versions are always applied.
+ */
+public class APIStateTracker {
+
+    public static final String VERSION_KEY = "v";
+    public static final String EPOCH_KEY = "e";
+
+    private String epoch;
+    private long version = -1;
+    private boolean resyncRequested;
+    private long gaps;
+
+    /**
+     * @return A GET_API_DATA message which contains the last applied version, if there is one
+     */
+    public synchronized Message createDataRequest() {
+        return Message.create()
+                .setType(MessageType.GET_API_DATA)
+                .setIfNotNull(EPOCH_KEY, epoch)
+                .setIfCondition(VERSION_KEY, version, epoch != null);
+    }
+
+    /**
+     * Called when a snapshot (API_DATA) has been applied
+     */
+    public synchronized void onData(Message message) {
+        Object version = message.get(VERSION_KEY);
+        this.epoch = (String) message.get(EPOCH_KEY);
+        this.version = version instanceof Number ? ((Number) version).longValue() : -1;
+        this.resyncRequested = false;
+    }
+
+    /**
+     * @param resync Used to send a new data request if a gap has been detected
+     * @return Whether the event has to be applied. Events which have already been applied or which follow a gap are dropped.
+     */
+    public synchronized boolean onEvent(Message message, Consumer<Message> resync) {
+        Object version = message.get(VERSION_KEY);
+        if (epoch == null || ! (version instanceof Number)) return true;
+        long eventVersion = ((Number) version).longValue();
+        if (eventVersion <= this.version) return false;
+        if (eventVersion == this.version + 1) {
+            this.version = eventVersion;
+            resyncRequested = false;
+            return true;
+        }
+        gaps++;
+        if (! resyncRequested) {
+            resyncRequested = true;
+            resync.accept(createDataRequest());
+        }
+        return false;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized long getGaps() {
+        return gaps;
+    }
+
+}
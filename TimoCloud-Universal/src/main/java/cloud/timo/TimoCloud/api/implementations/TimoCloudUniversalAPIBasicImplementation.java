@@ -12,6 +12,7 @@ import cloud.timo.TimoCloud.api.objects.properties.ProxyGroupProperties;
 import cloud.timo.TimoCloud.api.objects.properties.ServerGroupProperties;
 import cloud.timo.TimoCloud.api.utils.EventUtil;
 import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
+import cloud.timo.TimoCloud.common.protocol.Message;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -41,6 +42,8 @@ public class TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniver
     private final Class<? extends BaseObject> baseObjectImplementation;
     private final Class<? extends CordObject> cordObjectImplementation;
 
+    private final APIStateTracker stateTracker = new APIStateTracker();
+
     private boolean gotAnyData = false;
 
     private ObjectMapper objectMapper;
@@ -81,28 +84,45 @@ public class TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniver
         return objectMapper;
     }
 
-    public void setData(Map<String, Object> json) {
+    /**
+     * Applies a snapshot (API_DATA). Objects which are not part of a later snapshot anymore are removed.
+     */
+    public void onData(Message message) {
+        if (gotAnyData()) {
+            serverGroups.clear();
+            proxyGroups.clear();
+            servers.clear();
+            proxies.clear();
+            bases.clear();
+            players.clear();
+            cords.clear();
+        }
+        setData((Map<?, ?>) message.getData());
+        stateTracker.onData(message);
+    }
+
+    public void setData(Map<?, ?> json) {
         try {
             ((Collection) json.get("serverGroups")).stream()
-                    .map(object -> readValue((String) object, serverGroupObjectImplementation))
+                    .map(object -> readValue(object, serverGroupObjectImplementation))
                     .forEach(serverGroup -> this.serverGroups.add((ServerGroupObject) serverGroup));
             ((Collection) json.get("proxyGroups")).stream()
-                    .map(object -> readValue((String) object, proxyGroupObjectImplementation))
+                    .map(object -> readValue(object, proxyGroupObjectImplementation))
                     .forEach(proxyGroup -> this.proxyGroups.add((ProxyGroupObject) proxyGroup));
             ((Collection) json.get("servers")).stream()
-                    .map(object -> readValue((String) object, serverObjectImplementation))
+                    .map(object -> readValue(object, serverObjectImplementation))
                     .forEach(server -> this.servers.add((ServerObject) server));
             ((Collection) json.get("proxies")).stream()
-                    .map(object -> readValue((String) object, proxyObjectImplementation))
+                    .map(object -> readValue(object, proxyObjectImplementation))
                     .forEach(proxy -> this.proxies.add((ProxyObject) proxy));
             ((Collection) json.get("bases")).stream()
-                    .map(object -> readValue((String) object, baseObjectImplementation))
+                    .map(object -> readValue(object, baseObjectImplementation))
                     .forEach(base -> this.bases.add((BaseObject) base));
             ((Collection) json.get("players")).stream()
-                    .map(object -> readValue((String) object, playerObjectImplementation))
+                    .map(object -> readValue(object, playerObjectImplementation))
                     .forEach(player -> this.players.add((PlayerObject) player));
             ((Collection) json.get("cords")).stream()
-                    .map(object -> readValue((String) object, cordObjectImplementation))
+                    .map(object -> readValue(object, cordObjectImplementation))
                     .forEach(cord -> this.cords.add((CordObject) cord));
         } catch (Exception e) {
             e.printStackTrace();
@@ -226,15 +246,30 @@ public class TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniver
         return cords;
     }
 
-    private <T> T readValue(String input, Class<? extends T> clazz) {
+    /**
+     * Reads an object which has been transmitted either as JSON string (legacy) or as nested map, see {@link #writeValueAsMap(Object)}
+     */
+    public <T> T readValue(Object input, Class<? extends T> clazz) {
         try {
-            return getObjectMapper().readValue(input, clazz);
+            if (input instanceof String) return getObjectMapper().readValue((String) input, clazz);
+            return getObjectMapper().convertValue(input, clazz);
         } catch (Exception e) {
             TimoCloudLogger.getLogger().severe(e);
             return null;
         }
     }
 
+    /**
+     * Converts an API object to a map of plain values which can be embedded into a message as it is, instead of a JSON string
+     */
+    public Map<String, Object> writeValueAsMap(Object object) {
+        return getObjectMapper().convertValue(object, getObjectMapper().getTypeFactory().constructMapType(Map.class, String.class, Object.class));
+    }
+
+    public APIStateTracker getStateTracker() {
+        return stateTracker;
+    }
+
     public ObjectMapper getObjectMapper() {
         return objectMapper;
     }
@@ -63,6 +63,11 @@ public class IdentifiableObjectStorage<T extends IdentifiableObject> {
         return getById(identifiable.getId()) != null || getByName(identifiable.getName()) != null;
     }
 
+    public void clear() {
+        byId.clear();
+        byName.clear();
+    }
+
     public Collection<T> values() {
         return byId.values();
     }
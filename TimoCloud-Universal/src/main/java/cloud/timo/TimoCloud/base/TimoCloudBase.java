@@ -10,21 +10,27 @@ import cloud.timo.TimoCloud.base.sockets.BaseSocketClient;
 import cloud.timo.TimoCloud.base.sockets.BaseSocketClientHandler;
 import cloud.timo.TimoCloud.base.sockets.BaseSocketMessageManager;
 import cloud.timo.TimoCloud.base.sockets.BaseStringHandler;
+import cloud.timo.TimoCloud.common.encryption.AESCipherMode;
+import cloud.timo.TimoCloud.common.encryption.RSAKeyPairPool;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyPairRetriever;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyUtil;
 import cloud.timo.TimoCloud.common.modules.ModuleType;
 import cloud.timo.TimoCloud.common.modules.TimoCloudModule;
+import cloud.timo.TimoCloud.common.protocol.CompressionType;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.sockets.AESDecrypter;
 import cloud.timo.TimoCloud.common.sockets.AESEncrypter;
+import cloud.timo.TimoCloud.common.sockets.FrameCompressor;
+import cloud.timo.TimoCloud.common.sockets.FrameDecompressor;
+import cloud.timo.TimoCloud.common.sockets.HandshakeParameters;
+import cloud.timo.TimoCloud.common.sockets.MessageDecoder;
+import cloud.timo.TimoCloud.common.sockets.MessageEncoder;
 import cloud.timo.TimoCloud.common.sockets.RSAHandshakeHandler;
+import cloud.timo.TimoCloud.common.utils.files.DirectoryMaterializer;
 import cloud.timo.TimoCloud.common.utils.network.InetAddressUtil;
 import cloud.timo.TimoCloud.common.utils.options.OptionSet;
 import io.netty.channel.Channel;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
-import io.netty.util.CharsetUtil;
 import org.apache.commons.io.FileDeleteStrategy;
 
 import java.io.BufferedReader;
@@ -33,8 +39,12 @@ import java.io.InputStreamReader;
 import java.net.URL;
 import java.security.KeyPair;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -60,6 +70,7 @@ public class TimoCloudBase implements TimoCloudModule {
     private String prefix = ANSI_YELLOW + "[" + ANSI_CYAN + "Timo" + ANSI_RESET + "Cloud" + ANSI_YELLOW + "]" + ANSI_RESET;
     private BaseFileManager fileManager;
     private RSAKeyPairRetriever rsaKeyPairRetriever;
+    private RSAKeyPairPool keyPairPool;
     private BaseInstanceManager instanceManager;
     private BaseTemplateManager templateManager;
     private BaseSocketClient socketClient;
@@ -112,7 +123,9 @@ public class TimoCloudBase implements TimoCloudModule {
         instance = this;
         fileManager = new BaseFileManager();
         rsaKeyPairRetriever = new RSAKeyPairRetriever(new File(getFileManager().getBaseDirectory(), "keys/"));
-        instanceManager = new BaseInstanceManager(getServerManagerDelayMillis());
+        keyPairPool = new RSAKeyPairPool(((Number) getFileManager().getConfig().getOrDefault("key-pool-size", RSAKeyPairPool.DEFAULT_TARGET_SIZE)).intValue());
+        keyPairPool.start();
+        instanceManager = new BaseInstanceManager(getServerManagerDelayMillis(), ((Number) getFileManager().getConfig().getOrDefault("preparation-threads", BaseInstanceManager.DEFAULT_PREPARATION_THREADS)).intValue(), createDirectoryMaterializer());
         templateManager = new BaseTemplateManager();
         socketClient = new BaseSocketClient();
         socketClientHandler = new BaseSocketClientHandler();
@@ -128,6 +141,16 @@ public class TimoCloudBase implements TimoCloudModule {
         alertConnecting();
     }
 
+    private DirectoryMaterializer createDirectoryMaterializer() {
+        Map<String, Object> config = getFileManager().getConfig();
+        DirectoryMaterializer.Mode mode = DirectoryMaterializer.parseMode((String) config.getOrDefault("materialization-mode", DirectoryMaterializer.DEFAULT_MODE.name()));
+        Object patterns = config.get("link-patterns");
+        List<String> linked = new ArrayList<>();
+        if (patterns instanceof Collection) for (Object pattern : (Collection<?>) patterns) linked.add(String.valueOf(pattern));
+        else linked.addAll(DirectoryMaterializer.DEFAULT_LINKED);
+        return new DirectoryMaterializer(mode, linked);
+    }
+
     private long getServerManagerDelayMillis() {
         long delay = 300;
         String prop = System.getProperty("serverStartDelay");
@@ -171,12 +194,14 @@ public class TimoCloudBase implements TimoCloudModule {
                 disconnect(channel);
             }
             KeyPair keyPair = getRsaKeyPairRetriever().getKeyPair();
-            new RSAHandshakeHandler(channel, keyPair, (aesKey -> {
-                channel.pipeline().addBefore("prepender", "decrypter", new AESDecrypter(aesKey));
-                channel.pipeline().addBefore("prepender", "decoder", new StringDecoder(CharsetUtil.UTF_8));
+            new RSAHandshakeHandler(channel, keyPair, ((aesKey, codecType, cipherMode, compressionType, parameters) -> {
+                channel.pipeline().addBefore("prepender", "decrypter", new AESDecrypter(aesKey, cipherMode));
+                if (compressionType == CompressionType.DEFLATE) channel.pipeline().addBefore("prepender", "decompressor", new FrameDecompressor(parameters.getMaxUncompressedLength(cipherMode)));
+                channel.pipeline().addBefore("prepender", "decoder", new MessageDecoder(codecType));
                 channel.pipeline().addBefore("prepender", "handler", TimoCloudBase.getInstance().getStringHandler());
-                channel.pipeline().addLast( "encrypter", new AESEncrypter(aesKey));
-                channel.pipeline().addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
+                channel.pipeline().addLast( "encrypter", new AESEncrypter(aesKey, cipherMode));
+                if (compressionType == CompressionType.DEFLATE) channel.pipeline().addLast("compressor", createCompressor(parameters, cipherMode));
+                channel.pipeline().addLast("encoder", new MessageEncoder(codecType));
 
                 getSocketMessageManager().sendMessage(Message.create().setType(MessageType.BASE_HANDSHAKE).set("publicAddress", getPublicIpAddress()));
                 info("Successfully connected to Core socket!");
@@ -192,6 +217,17 @@ public class TimoCloudBase implements TimoCloudModule {
         setConnected(false);
     }
 
+    /**
+     * Uses the compression settings of the base config if they are set, the ones of the Core otherwise
+     */
+    private FrameCompressor createCompressor(HandshakeParameters parameters, AESCipherMode cipherMode) {
+        Map<String, Object> config = getFileManager().getConfig();
+        return new FrameCompressor(
+                ((Number) config.getOrDefault("compression-level", parameters.getCompressionLevel())).intValue(),
+                ((Number) config.getOrDefault("compression-threshold", parameters.getCompressionThreshold())).intValue(),
+                parameters.getMaxUncompressedLength(cipherMode));
+    }
+
     public void onSocketDisconnect() {
         if (isConnected()) {
             if (handshakePerformed) info("Disconnected from Core. Reconnecting...");
@@ -207,6 +243,7 @@ public class TimoCloudBase implements TimoCloudModule {
             }
             handshakePerformed = false;
         }
+        getTemplateManager().onDisconnect();
         setConnected(false);
     }
 
@@ -265,6 +302,10 @@ public class TimoCloudBase implements TimoCloudModule {
         return rsaKeyPairRetriever;
     }
 
+    public RSAKeyPairPool getKeyPairPool() {
+        return keyPairPool;
+    }
+
     public BaseInstanceManager getInstanceManager() {
         return instanceManager;
     }
@@ -26,6 +26,7 @@ public class BaseFileManager {
         private File serverStaticDirectory;
         private File proxyStaticDirectory;
     private File cacheDirectory;
+    private File hashIndexDirectory;
     private File logsDirectory;
         private File serverLogsDirectory;
         private File proxyLogsDirectory;
@@ -67,6 +68,8 @@ public class BaseFileManager {
 
             cacheDirectory = new File(temporaryDirectory, "cache/");
             cacheDirectory.mkdirs();
+            hashIndexDirectory = new File(baseDirectory, "hashes/");
+            hashIndexDirectory.mkdirs();
 
             new File(serverGlobalDirectory, "plugins/").mkdirs();
             logsDirectory = new File(baseDirectory, "logs/");
@@ -164,6 +167,10 @@ public class BaseFileManager {
         return cacheDirectory;
     }
 
+    public File getHashIndexDirectory() {
+        return hashIndexDirectory;
+    }
+
     public File getLogsDirectory() {
         return logsDirectory;
     }
@@ -180,7 +187,7 @@ public class BaseFileManager {
         return configFile;
     }
 
-    public Map getConfig() {
+    public Map<String, Object> getConfig() {
         return config;
     }
 
@@ -6,6 +6,7 @@ import cloud.timo.TimoCloud.base.exceptions.ServerStartException;
 import cloud.timo.TimoCloud.base.objects.BaseProxyObject;
 import cloud.timo.TimoCloud.base.objects.BaseServerObject;
 import cloud.timo.TimoCloud.base.utils.LogTailerListener;
+import cloud.timo.TimoCloud.base.utils.PortAllocator;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyPairRetriever;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyUtil;
 import cloud.timo.TimoCloud.common.log.LogEntry;
@@ -13,53 +14,78 @@ import cloud.timo.TimoCloud.common.log.LogEntryReader;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.utils.HashUtil;
-import cloud.timo.TimoCloud.common.utils.files.tailer.FileTailer;
+import cloud.timo.TimoCloud.common.utils.files.DirectoryHashCache;
+import cloud.timo.TimoCloud.common.utils.files.DirectoryMaterializer;
+import cloud.timo.TimoCloud.common.utils.files.tailer.FileTailerService;
+import cloud.timo.TimoCloud.common.utils.statistics.LatencyStatistics;
 import cloud.timo.TimoCloud.cord.utils.MathUtil;
 import org.apache.commons.io.FileUtils;
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.*;
-import java.net.ServerSocket;
 import java.nio.file.Files;
+import java.security.KeyPair;
 import java.security.PublicKey;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class BaseInstanceManager {
 
     private static final long STATIC_CREATE_TIME = 1482773874000L; // This is the exact time the project TimoCloud has come to life at
+    private static final long LOG_SWEEP_MILLIS = 500;
+    public static final int DEFAULT_PREPARATION_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
 
-    private LinkedList<BaseServerObject> serverQueue;
-    private LinkedList<BaseProxyObject> proxyQueue;
+    private final Deque<BaseServerObject> serverQueue;
+    private final Deque<BaseProxyObject> proxyQueue;
 
-    private Map<Integer, Integer> recentlyUsedPorts;
+    private final PortAllocator portAllocator;
 
+    private final DirectoryMaterializer materializer;
     private final ScheduledExecutorService scheduler;
+    private final ExecutorService preparationPool;
+    private final int preparationThreads;
+    private final AtomicInteger preparing;
+    private final Map<String, LatencyStatistics> stageStatistics;
+    private int preparedInBatch;
 
-    private Map<String, FileTailer> logTailers;
-
-    private boolean startingServer = false;
-    private boolean startingProxy = false;
+    private final FileTailerService logTailer;
+    private Map<String, FileTailerService.TailedFile> logTailers;
 
     private boolean downloadingTemplate = false;
 
-    public BaseInstanceManager(long millis) {
-        serverQueue = new LinkedList<>();
-        proxyQueue = new LinkedList<>();
-        recentlyUsedPorts = new HashMap<>();
+    private Map<String, BaseServerObject> pendingServers;
+    private Map<String, BaseProxyObject> pendingProxies;
+
+    /**
+     * @param preparationThreads How many instances may be prepared at the same time
+     * @param materializer       Builds the directories of dynamic instances out of their templates
+     */
+    public BaseInstanceManager(long millis, int preparationThreads, DirectoryMaterializer materializer) {
+        this.materializer = materializer;
+        serverQueue = new ConcurrentLinkedDeque<>();
+        proxyQueue = new ConcurrentLinkedDeque<>();
+        portAllocator = new PortAllocator(PortAllocator.DEFAULT_LEASE_MILLIS);
         scheduler = Executors.newScheduledThreadPool(1);
-        logTailers = new HashMap<>();
+        this.preparationThreads = Math.max(1, preparationThreads);
+        preparationPool = Executors.newFixedThreadPool(this.preparationThreads);
+        preparing = new AtomicInteger();
+        stageStatistics = Collections.synchronizedMap(new LinkedHashMap<>());
+        logTailer = new FileTailerService(true, LOG_SWEEP_MILLIS);
+        logTailer.start();
+        logTailers = new ConcurrentHashMap<>();
+        pendingServers = new ConcurrentHashMap<>();
+        pendingProxies = new ConcurrentHashMap<>();
         scheduler.scheduleAtFixedRate(this::everySecond, millis, millis, TimeUnit.MILLISECONDS);
     }
 
     public void updateResources() {
         double cpu = TimoCloudBase.getInstance().getResourceManager().getCpuUsage();
         cpu = MathUtil.round(cpu, 2); // Do not send all decimal places
-        boolean ready = serverQueue.isEmpty() && proxyQueue.isEmpty() && !startingServer && !startingProxy;
+        boolean ready = serverQueue.isEmpty() && proxyQueue.isEmpty() && preparing.get() == 0;
         long freeRam = TimoCloudBase.getInstance().getResourceManager().getFreeMemory();
         TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(
                 Message.create().setType(MessageType.BASE_RESOURCES)
@@ -79,46 +105,84 @@ public class BaseInstanceManager {
 
     private void everySecond() {
         try {
-            countDownPorts();
             startNext();
         } catch (Exception e) {
             TimoCloudBase.getInstance().severe(e);
         }
     }
 
+    /**
+     * Checks the templates of queued instances and hands them to the preparation pool as long as it has free threads.
+     * Template checks which may delete outdated template files wait until no other instance is being prepared, so that no preparation copies a template while it is changed.
+     */
     public void startNext() {
-        if (isDownloadingTemplate()) return;
-        startNextServer();
-        startNextProxy();
+        while (preparing.get() < preparationThreads && !isDownloadingTemplate()) {
+            boolean startedServer = startNextServer();
+            boolean startedProxy = preparing.get() < preparationThreads && !isDownloadingTemplate() && startNextProxy();
+            if (!startedServer && !startedProxy) break;
+        }
+        if (preparedInBatch > 0 && preparing.get() == 0 && serverQueue.isEmpty() && proxyQueue.isEmpty()) {
+            if (preparedInBatch > 1) TimoCloudBase.getInstance().info("Prepared " + preparedInBatch + " instances. Preparation stages: " + getPreparationStatistics() + ". Materialization: " + materializer + ". Template hashes: " + TimoCloudBase.getInstance().getTemplateManager().getHashCache() + ". Key pairs: " + TimoCloudBase.getInstance().getKeyPairPool() + ". Ports: " + portAllocator + ". Logs: " + logTailer);
+            preparedInBatch = 0;
+        }
         updateResources();
     }
 
-    public void startNextServer() {
-        if (serverQueue.isEmpty()) return;
-        BaseServerObject server = serverQueue.pop();
-        if (server == null) {
-            startNextServer();
-            return;
-        }
-        startingServer = true;
-        startServer(server);
-        startingServer = false;
+    /**
+     * @return Whether a server has been taken from the queue
+     */
+    public boolean startNextServer() {
+        BaseServerObject server = serverQueue.peek();
+        if (server == null || (server.hasHashes() && preparing.get() > 0)) return false;
+        serverQueue.remove(server);
+        Preparation preparation = new Preparation(server.getId(), server.getName());
+        if (checkServer(server, preparation)) submit(preparation, () -> prepareServer(server, preparation), () -> launchServer(server, preparation), () -> onServerNotStarted(server));
+        return true;
     }
 
-    public void startNextProxy() {
-        if (proxyQueue.isEmpty()) return;
-        BaseProxyObject proxy = proxyQueue.pop();
-        if (proxy == null) {
-            startNextProxy();
-            return;
-        }
-        startingProxy = true;
-        startProxy(proxy);
-        startingProxy = false;
+    /**
+     * @return Whether a proxy has been taken from the queue
+     */
+    public boolean startNextProxy() {
+        BaseProxyObject proxy = proxyQueue.peek();
+        if (proxy == null || (proxy.hasHashes() && preparing.get() > 0)) return false;
+        proxyQueue.remove(proxy);
+        Preparation preparation = new Preparation(proxy.getId(), proxy.getName());
+        if (checkProxy(proxy, preparation)) submit(preparation, () -> prepareProxy(proxy, preparation), () -> launchProxy(proxy, preparation), () -> onProxyNotStarted(proxy));
+        return true;
+    }
+
+    /**
+     * Runs the disk-heavy stages in the preparation pool, the process is launched on the scheduler thread afterwards, one at a time
+     */
+    private void submit(Preparation preparation, ThrowingRunnable prepare, ThrowingRunnable launch, Runnable onError) {
+        preparing.incrementAndGet();
+        preparationPool.execute(() -> {
+            try {
+                prepare.run();
+            } catch (Exception e) {
+                TimoCloudBase.getInstance().severe("Error while preparing " + preparation.name + ": " + e.getMessage());
+                onError.run();
+                preparing.decrementAndGet();
+                return;
+            }
+            scheduler.execute(() -> {
+                try {
+                    launch.run();
+                    preparedInBatch++;
+                } catch (Exception e) {
+                    TimoCloudBase.getInstance().severe("Error while starting " + preparation.name + ": " + e.getMessage());
+                    onError.run();
+                } finally {
+                    preparing.decrementAndGet();
+                }
+                startNext();
+            });
+        });
     }
 
-    private void copyDirectory(File from, File to) throws IOException {
-        FileUtils.copyDirectory(from, to);
+    private void copyDirectory(File from, File to, Preparation preparation) throws IOException {
+        preparation.materialization.add(materializer.materialize(from, to));
     }
 
     private void copyDirectoryCarefully(File from, File to, long value, int layer) throws IOException {
@@ -138,32 +202,106 @@ public class BaseInstanceManager {
         }
     }
 
-    private void startServer(BaseServerObject server) {
-        TimoCloudBase.getInstance().info("Starting server " + server.getName() + "...");
-        double millisBefore = System.currentTimeMillis();
-        try {
-            File templateDirectory = new File((server.isStatic() ? TimoCloudBase.getInstance().getFileManager().getServerStaticDirectory() : TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory()), server.getGroup());
-            if (!templateDirectory.exists()) templateDirectory.mkdirs();
+    /**
+     * Adds the roots of all directories of a local template to the request if its root differs from the Core's one
+     */
+    private static void addRootsIfOutdated(Map<String, Object> roots, String key, Map<String, Object> localHashes, String coreRoot) {
+        if (localHashes == null || coreRoot == null) return;
+        Map<String, String> localRoots = HashUtil.getDirectoryRoots(localHashes);
+        if (!coreRoot.equals(localRoots.get(""))) roots.put(key, localRoots);
+    }
+
+    private void requestTemplateHashes(String target, Map<String, Object> roots) {
+        TimoCloudBase.getInstance().info("Template roots differ from the Core's ones, requesting hashes of " + String.join(", ", roots.keySet()) + "...");
+        TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
+                .setType(MessageType.BASE_TEMPLATE_HASHES_REQUEST)
+                .setTarget(target)
+                .set("roots", roots));
+        setDownloadingTemplate(true);
+    }
 
-            File mapDirectory = new File(TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory(), server.getGroup() + "_" + server.getMap());
+    /**
+     * Called when the Core has answered BASE_TEMPLATE_HASHES_REQUEST. The hash trees are completed with the local subtrees which are up to date and the instance is started again.
+     */
+    public void onTemplateHashes(Message message) {
+        String id = message.getTarget();
+        BaseServerObject server = pendingServers.remove(id);
+        BaseProxyObject proxy = pendingProxies.remove(id);
+        try {
+            if (server != null) {
+                File templateDirectory = new File(TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory(), server.getGroup());
+                File mapDirectory = new File(TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory(), server.getGroup() + "_" + server.getMap());
+                server.setHashes(
+                        inflateHashes(message, "templateHash", templateDirectory),
+                        inflateHashes(message, "mapHash", mapDirectory),
+                        inflateHashes(message, "globalHash", TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory()));
+                serverQueue.addFirst(server);
+            } else if (proxy != null) {
+                File templateDirectory = new File(TimoCloudBase.getInstance().getFileManager().getProxyTemplatesDirectory(), proxy.getGroup());
+                proxy.setHashes(
+                        inflateHashes(message, "templateHash", templateDirectory),
+                        inflateHashes(message, "globalHash", TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory()));
+                proxyQueue.addFirst(proxy);
+            }
+        } catch (Exception e) {
+            TimoCloudBase.getInstance().severe("Error while reading template hashes: ");
+            TimoCloudBase.getInstance().severe(e);
+        }
+        if (pendingServers.isEmpty() && pendingProxies.isEmpty()) setDownloadingTemplate(false);
+    }
 
-            Map<String, Object> templateHashes = server.isStatic() ? null : HashUtil.getHashes(templateDirectory);
-            Map<String, Object> mapHashes = (!server.isStatic() && server.getMapHash() != null) ? HashUtil.getHashes(mapDirectory) : null;
-            Map<String, Object> globalHashes = HashUtil.getHashes(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory());
+    private static Map<String, Object> inflateHashes(Message message, String key, File directory) throws IOException {
+        if (!message.containsKey(key)) return null;
+        return HashUtil.inflateHashes((Map<?, ?>) message.get(key), TimoCloudBase.getInstance().getTemplateManager().getHashes(directory, null));
+    }
 
-            if (server.getTemplateHash() != null)
-                HashUtil.deleteIfNotExisting(templateDirectory, "", templateHashes, server.getTemplateHash());
-            if (server.getMapHash() != null)
-                HashUtil.deleteIfNotExisting(mapDirectory, "", mapHashes, server.getMapHash());
-            HashUtil.deleteIfNotExisting(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory(), "", globalHashes, server.getGlobalHash());
+    /**
+     * Deletes files which do not exist in the Core's template anymore
+     *
+     * @param coreHashes The Core's hash tree, null if the template's root matches the Core's one
+     * @return The files which are missing or outdated
+     */
+    private static List<String> getDifferences(File directory, Map<String, Object> localHashes, Map<String, Object> coreHashes, Preparation preparation) throws IOException {
+        if (localHashes == null || coreHashes == null) return new ArrayList<>();
+        HashUtil.deleteIfNotExisting(directory, "", localHashes, coreHashes);
+        BaseTemplateManager templateManager = TimoCloudBase.getInstance().getTemplateManager();
+        templateManager.getHashCache().invalidate(directory);
+        return HashUtil.getDifferentFiles("", coreHashes, templateManager.getHashes(directory, preparation.hashing));
+    }
 
-            templateHashes = server.isStatic() ? null : HashUtil.getHashes(templateDirectory);
-            mapHashes = (!server.isStatic() && server.getMapHash() != null) ? HashUtil.getHashes(mapDirectory) : null;
-            globalHashes = HashUtil.getHashes(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory());
+    /**
+     * Compares the local templates of a server with the Core's ones and requests hashes or updates if they differ
+     *
+     * @return Whether the templates are up to date and the server can be prepared
+     */
+    private boolean checkServer(BaseServerObject server, Preparation preparation) {
+        TimoCloudBase.getInstance().info("Starting server " + server.getName() + "...");
+        try {
+            File templateDirectory = getTemplateDirectory(server);
+            if (!templateDirectory.exists()) templateDirectory.mkdirs();
+            File mapDirectory = getMapDirectory(server);
+            File globalDirectory = TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory();
+
+            BaseTemplateManager templateManager = TimoCloudBase.getInstance().getTemplateManager();
+            Map<String, Object> templateHashes = server.isStatic() ? null : templateManager.getHashes(templateDirectory, preparation.hashing);
+            Map<String, Object> mapHashes = (!server.isStatic() && server.getMapRoot() != null) ? templateManager.getHashes(mapDirectory, preparation.hashing) : null;
+            Map<String, Object> globalHashes = templateManager.getHashes(globalDirectory, preparation.hashing);
+
+            if (!server.hasHashes()) {
+                Map<String, Object> roots = new HashMap<>();
+                addRootsIfOutdated(roots, "template", templateHashes, server.getTemplateRoot());
+                addRootsIfOutdated(roots, "map", mapHashes, server.getMapRoot());
+                addRootsIfOutdated(roots, "global", globalHashes, server.getGlobalRoot());
+                if (!roots.isEmpty()) {
+                    pendingServers.put(server.getId(), server);
+                    requestTemplateHashes(server.getId(), roots);
+                    return false;
+                }
+            }
 
-            List<String> templateDifferences = server.isStatic() ? new ArrayList<>() : HashUtil.getDifferentFiles("", server.getTemplateHash(), templateHashes);
-            List<String> mapDifferences = (!server.isStatic() && server.getMapHash() != null) ? HashUtil.getDifferentFiles("", server.getMapHash(), mapHashes) : new ArrayList<>();
-            List<String> globalDifferences = HashUtil.getDifferentFiles("", server.getGlobalHash(), globalHashes);
+            List<String> templateDifferences = getDifferences(templateDirectory, templateHashes, server.getTemplateHash(), preparation);
+            List<String> mapDifferences = getDifferences(mapDirectory, mapHashes, server.getMapHash(), preparation);
+            List<String> globalDifferences = getDifferences(globalDirectory, globalHashes, server.getGlobalHash(), preparation);
 
             if (templateDifferences.size() > 0 || mapDifferences.size() > 0 || globalDifferences.size() > 0) {
                 TimoCloudBase.getInstance().info("New server template updates found! Stopping and downloading updates...");
@@ -178,140 +316,182 @@ public class BaseInstanceManager {
                                         .setIfCondition("mapDifferences", mapDifferences, mapDifferences.size() > 0)
                                         .setIfCondition("globalDifferences", globalDifferences, globalDifferences.size() > 0)));
                 setDownloadingTemplate(true);
-                return;
-            }
-
-            File temporaryDirectory = server.isStatic() ? templateDirectory : new File(TimoCloudBase.getInstance().getFileManager().getServerTemporaryDirectory(), server.getId());
-            if (!server.isStatic()) {
-                if (temporaryDirectory.exists()) BaseFileManager.deleteDirectory(temporaryDirectory);
-                copyDirectory(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory(), temporaryDirectory);
-            }
-
-            if (server.isStatic()) {
-                copyDirectoryCarefully(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory(), temporaryDirectory, STATIC_CREATE_TIME, 1);
-            } else {
-                copyDirectory(templateDirectory, temporaryDirectory);
+                return false;
             }
+            preparation.finishStage("hash");
+            return true;
+        } catch (Exception e) {
+            TimoCloudBase.getInstance().severe("Error while starting server " + server.getName() + ": " + e.getMessage());
+            onServerNotStarted(server);
+            return false;
+        }
+    }
 
-            boolean randomMap = server.getMap() != null;
-            String mapName = server.getMap() == null ? "Default" : server.getMap();
-            if (!server.isStatic() && server.getMap() != null) {
-                randomMap = true;
-                if (mapDirectory.exists()) copyDirectory(mapDirectory, temporaryDirectory);
-            }
+    /**
+     * Copies the templates into the server's directory and generates its keys, runs in the preparation pool
+     */
+    private void prepareServer(BaseServerObject server, Preparation preparation) throws Exception {
+        File templateDirectory = getTemplateDirectory(server);
+        File mapDirectory = getMapDirectory(server);
+        File temporaryDirectory = server.isStatic() ? templateDirectory : new File(TimoCloudBase.getInstance().getFileManager().getServerTemporaryDirectory(), server.getId());
+        preparation.temporaryDirectory = temporaryDirectory;
+        if (!server.isStatic()) {
+            if (temporaryDirectory.exists()) BaseFileManager.deleteDirectory(temporaryDirectory);
+            copyDirectory(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory(), temporaryDirectory, preparation);
+        }
 
-            File spigotJar = new File(temporaryDirectory, "spigot.jar");
-            if (! spigotJar.exists()) {
-                TimoCloudBase.getInstance().severe("Could not start server " + server.getName() + " because spigot.jar does not exist. " + (
-                        server.isStatic() ? "Please make sure the file " + spigotJar.getAbsolutePath() + " exists (case sensitive!)."
-                                : "Please make sure to have a file called 'spigot.jar' in your template."));
-                throw new ProxyStartException("spigot.jar does not exist");
-            }
+        if (server.isStatic()) {
+            copyDirectoryCarefully(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory(), temporaryDirectory, STATIC_CREATE_TIME, 1);
+        } else {
+            copyDirectory(templateDirectory, temporaryDirectory, preparation);
+        }
 
-            File plugins = new File(temporaryDirectory, "/plugins/");
-            plugins.mkdirs();
-            File plugin = new File(plugins, "TimoCloud.jar");
-            if (plugin.exists()) plugin.delete();
-            try {
-                Files.copy(new File(TimoCloudBase.class.getProtectionDomain().getCodeSource().getLocation().getPath()).toPath(), plugin.toPath());
-            } catch (Exception e) {
-                TimoCloudBase.getInstance().severe("Error while copying plugin into template:");
-                TimoCloudBase.getInstance().severe(e);
-                throw new ServerStartException("Could not copy TimoCloud.jar into template");
-            }
+        if (!server.isStatic() && server.getMap() != null) {
+            if (mapDirectory.exists()) copyDirectory(mapDirectory, temporaryDirectory, preparation);
+        }
 
-            Integer port = getFreePort(41000);
-            if (port == null) {
-                TimoCloudBase.getInstance().severe("Error while starting server " + server.getName() + ": No free port found. Please report this!");
-                throw new ServerStartException("No free port found");
-            }
-            blockPort(port);
+        File spigotJar = new File(temporaryDirectory, "spigot.jar");
+        if (! spigotJar.exists()) {
+            TimoCloudBase.getInstance().severe("Could not start server " + server.getName() + " because spigot.jar does not exist. " + (
+                    server.isStatic() ? "Please make sure the file " + spigotJar.getAbsolutePath() + " exists (case sensitive!)."
+                            : "Please make sure to have a file called 'spigot.jar' in your template."));
+            throw new ProxyStartException("spigot.jar does not exist");
+        }
 
-            PublicKey publicKey = new RSAKeyPairRetriever(new File(temporaryDirectory, "plugins/TimoCloud/keys/")).generateKeyPair().getPublic();
+        File plugins = new File(temporaryDirectory, "/plugins/");
+        plugins.mkdirs();
+        File plugin = new File(plugins, "TimoCloud.jar");
+        if (plugin.exists()) plugin.delete();
+        try {
+            preparation.materialization.add(materializer.materializeFile(new File(TimoCloudBase.class.getProtectionDomain().getCodeSource().getLocation().getPath()), plugin));
+        } catch (Exception e) {
+            TimoCloudBase.getInstance().severe("Error while copying plugin into template:");
+            TimoCloudBase.getInstance().severe(e);
+            throw new ServerStartException("Could not copy TimoCloud.jar into template");
+        }
+        preparation.finishStage("copy");
 
-            File serverProperties = new File(temporaryDirectory, "server.properties");
-            setProperty(serverProperties, "online-mode", "false");
-            setProperty(serverProperties, "server-name", server.getName());
+        KeyPair keyPair = TimoCloudBase.getInstance().getKeyPairPool().take();
+        new RSAKeyPairRetriever(new File(temporaryDirectory, "plugins/TimoCloud/keys/")).saveKeyPair(keyPair);
+        preparation.publicKey = keyPair.getPublic();
+        preparation.finishStage("keys");
 
-            double millisNow = System.currentTimeMillis();
-            TimoCloudBase.getInstance().info("Successfully prepared starting server " + server.getName() + " in " + (millisNow - millisBefore) / 1000 + " seconds.");
+        File serverProperties = new File(temporaryDirectory, "server.properties");
+        setProperty(serverProperties, "online-mode", "false");
+        setProperty(serverProperties, "server-name", server.getName());
+        preparation.finishStage("config");
+    }
 
-            File logFile = getServerLogFile(server.getId());
-            logFile.createNewFile();
+    /**
+     * Starts the process of a prepared server, runs on the scheduler thread
+     */
+    private void launchServer(BaseServerObject server, Preparation preparation) throws Exception {
+        File templateDirectory = getTemplateDirectory(server);
+        File temporaryDirectory = preparation.temporaryDirectory;
+        boolean randomMap = server.getMap() != null;
+        String mapName = server.getMap() == null ? "Default" : server.getMap();
+
+        Integer port = allocatePort(server.getId(), 41000);
+        if (port == null) {
+            TimoCloudBase.getInstance().severe("Error while starting server " + server.getName() + ": No free port found. Please report this!");
+            throw new ServerStartException("No free port found");
+        }
 
-            FileTailer logTailer = generateLogTailer(logFile, (logEntry) -> {
-                TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
-                        .setType(MessageType.SERVER_LOG_ENTRY)
-                        .setData(logEntry)
-                        .setTarget(server.getId()));
-            });
-            new Thread(logTailer).start();
-            this.logTailers.put(server.getId(), logTailer);
+        TimoCloudBase.getInstance().info("Successfully prepared starting server " + server.getName() + " in " + preparation.getSeconds() + " seconds (" + preparation + "; hashing: " + preparation.hashing + "; materialization: " + preparation.materialization + ").");
 
-            try {
-                Process p = new ProcessBuilder(
-                        "/bin/sh", "-c",
-                        "screen -mdS " + server.getId() +
-                                //" -L -Logfile " + logFile.getAbsolutePath() +
-                                " /bin/sh -c '" +
-                                "cd " + temporaryDirectory.getAbsolutePath() + " &&" +
-                                " java -server" +
-                                //" -agentlib:jdwp=transport=dt_socket,server=y,suspend=n,address=" + (port + 100) + // TODO Remove
-                                " -Xmx" + server.getRam() + "M" +
-                                " -Dfile.encoding=UTF8 -XX:+UseG1GC -XX:+UnlockExperimentalVMOptions -XX:+DoEscapeAnalysis -XX:+UseCompressedOops -XX:MaxGCPauseMillis=10 -XX:GCPauseIntervalMillis=100 -XX:+UseAdaptiveSizePolicy -XX:ParallelGCThreads=2 -XX:UseSSE=3 " +
-                                " -Dcom.mojang.eula.agree=true" +
-                                " -Dtimocloud-servername=" + server.getName() +
-                                " -Dtimocloud-serverid=" + server.getId() +
-                                " -Dtimocloud-corehost=" + TimoCloudBase.getInstance().getCoreSocketIP() + ":" + TimoCloudBase.getInstance().getCoreSocketPort() +
-                                " -Dtimocloud-randommap=" + randomMap +
-                                " -Dtimocloud-mapname=" + mapName +
-                                " -Dtimocloud-static=" + server.isStatic() +
-                                " -Dtimocloud-templatedirectory=" + templateDirectory.getAbsolutePath() +
-                                " -Dtimocloud-temporarydirectory=" + temporaryDirectory.getAbsolutePath() +
-                                " -jar spigot.jar -o false -h 0.0.0.0 -p " + port +
-                                "'"
-                ).start();
-
-                TimoCloudBase.getInstance().info("Successfully started server screen session " + server.getName() + ".");
-            } catch (Exception e) {
-                TimoCloudBase.getInstance().severe("Error while starting server " + server.getName() + ":");
-                TimoCloudBase.getInstance().severe(e);
-                throw new ServerStartException("Could not start process");
-            }
+        File logFile = getServerLogFile(server.getId());
+        logFile.createNewFile();
 
+        FileTailerService.TailedFile tailedLog = generateLogTailer(logFile, (logEntry) -> {
             TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
-                    .setType(MessageType.BASE_SERVER_STARTED)
-                    .setTarget(server.getId())
-                    .set("port", port)
-                    .set("publicKey", RSAKeyUtil.publicKeyToBase64(publicKey))
-            );
+                    .setType(MessageType.SERVER_LOG_ENTRY)
+                    .setData(logEntry)
+                    .setTarget(server.getId()));
+        });
+        this.logTailers.put(server.getId(), tailedLog);
 
+        try {
+            Process p = new ProcessBuilder(
+                    "/bin/sh", "-c",
+                    "screen -mdS " + server.getId() +
+                            //" -L -Logfile " + logFile.getAbsolutePath() +
+                            " /bin/sh -c '" +
+                            "cd " + temporaryDirectory.getAbsolutePath() + " &&" +
+                            " java -server" +
+                            //" -agentlib:jdwp=transport=dt_socket,server=y,suspend=n,address=" + (port + 100) + // TODO Remove
+                            " -Xmx" + server.getRam() + "M" +
+                            " -Dfile.encoding=UTF8 -XX:+UseG1GC -XX:+UnlockExperimentalVMOptions -XX:+DoEscapeAnalysis -XX:+UseCompressedOops -XX:MaxGCPauseMillis=10 -XX:GCPauseIntervalMillis=100 -XX:+UseAdaptiveSizePolicy -XX:ParallelGCThreads=2 -XX:UseSSE=3 " +
+                            " -Dcom.mojang.eula.agree=true" +
+                            " -Dtimocloud-servername=" + server.getName() +
+                            " -Dtimocloud-serverid=" + server.getId() +
+                            " -Dtimocloud-corehost=" + TimoCloudBase.getInstance().getCoreSocketIP() + ":" + TimoCloudBase.getInstance().getCoreSocketPort() +
+                            " -Dtimocloud-randommap=" + randomMap +
+                            " -Dtimocloud-mapname=" + mapName +
+                            " -Dtimocloud-static=" + server.isStatic() +
+                            " -Dtimocloud-templatedirectory=" + templateDirectory.getAbsolutePath() +
+                            " -Dtimocloud-temporarydirectory=" + temporaryDirectory.getAbsolutePath() +
+                            " -jar spigot.jar -o false -h 0.0.0.0 -p " + port +
+                            "'"
+            ).start();
+
+            TimoCloudBase.getInstance().info("Successfully started server screen session " + server.getName() + ".");
         } catch (Exception e) {
-            TimoCloudBase.getInstance().severe("Error while starting server " + server.getName() + ": " + e.getMessage());
-            TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType(MessageType.BASE_SERVER_NOT_STARTED).setTarget(server.getId()));
+            TimoCloudBase.getInstance().severe("Error while starting server " + server.getName() + ":");
+            TimoCloudBase.getInstance().severe(e);
+            throw new ServerStartException("Could not start process");
         }
+        preparation.finishStage("launch");
+
+        TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
+                .setType(MessageType.BASE_SERVER_STARTED)
+                .setTarget(server.getId())
+                .set("port", port)
+                .set("publicKey", RSAKeyUtil.publicKeyToBase64(preparation.publicKey))
+        );
+    }
+
+    private void onServerNotStarted(BaseServerObject server) {
+        portAllocator.release(server.getId());
+        TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType(MessageType.BASE_SERVER_NOT_STARTED).setTarget(server.getId()));
+    }
+
+    private static File getTemplateDirectory(BaseServerObject server) {
+        return new File((server.isStatic() ? TimoCloudBase.getInstance().getFileManager().getServerStaticDirectory() : TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory()), server.getGroup());
     }
 
+    private static File getMapDirectory(BaseServerObject server) {
+        return new File(TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory(), server.getGroup() + "_" + server.getMap());
+    }
 
-    private void startProxy(BaseProxyObject proxy) {
+    /**
+     * Compares the local templates of a proxy with the Core's ones and requests hashes or updates if they differ
+     *
+     * @return Whether the templates are up to date and the proxy can be prepared
+     */
+    private boolean checkProxy(BaseProxyObject proxy, Preparation preparation) {
         TimoCloudBase.getInstance().info("Starting proxy " + proxy.getName() + "...");
-        double millisBefore = System.currentTimeMillis();
         try {
-            File templateDirectory = new File((proxy.isStatic() ? TimoCloudBase.getInstance().getFileManager().getProxyStaticDirectory() : TimoCloudBase.getInstance().getFileManager().getProxyTemplatesDirectory()), proxy.getGroup());
+            File templateDirectory = getTemplateDirectory(proxy);
             if (!templateDirectory.exists()) templateDirectory.mkdirs();
 
-            Map<String, Object> templateHashes = proxy.isStatic() ? null : HashUtil.getHashes(templateDirectory);
-            Map<String, Object> globalHashes = HashUtil.getHashes(TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory());
-
-            if (proxy.getTemplateHash() != null)
-                HashUtil.deleteIfNotExisting(templateDirectory, "", templateHashes, proxy.getTemplateHash());
-            HashUtil.deleteIfNotExisting(TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory(), "", globalHashes, proxy.getGlobalHash());
-
-            templateHashes = HashUtil.getHashes(templateDirectory);
-            globalHashes = HashUtil.getHashes(TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory());
+            File globalDirectory = TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory();
+            BaseTemplateManager templateManager = TimoCloudBase.getInstance().getTemplateManager();
+            Map<String, Object> templateHashes = proxy.isStatic() ? null : templateManager.getHashes(templateDirectory, preparation.hashing);
+            Map<String, Object> globalHashes = templateManager.getHashes(globalDirectory, preparation.hashing);
+
+            if (!proxy.hasHashes()) {
+                Map<String, Object> roots = new HashMap<>();
+                addRootsIfOutdated(roots, "template", templateHashes, proxy.getTemplateRoot());
+                addRootsIfOutdated(roots, "global", globalHashes, proxy.getGlobalRoot());
+                if (!roots.isEmpty()) {
+                    pendingProxies.put(proxy.getId(), proxy);
+                    requestTemplateHashes(proxy.getId(), roots);
+                    return false;
+                }
+            }
 
-            List<String> templateDifferences = proxy.isStatic() ? new ArrayList<>() : HashUtil.getDifferentFiles("", proxy.getTemplateHash(), templateHashes);
-            List<String> gloalDifferences = HashUtil.getDifferentFiles("", proxy.getGlobalHash(), globalHashes);
+            List<String> templateDifferences = getDifferences(templateDirectory, templateHashes, proxy.getTemplateHash(), preparation);
+            List<String> gloalDifferences = getDifferences(globalDirectory, globalHashes, proxy.getGlobalHash(), preparation);
 
             if (templateDifferences.size() > 0 || gloalDifferences.size() > 0) {
                 TimoCloudBase.getInstance().info("New proxy template updates found! Stopping and downloading updates...");
@@ -324,165 +504,168 @@ public class BaseInstanceManager {
                                         .setIfCondition("templateDifferences", templateDifferences, templateDifferences.size() > 0)
                                         .setIfCondition("globalDifferences", gloalDifferences, gloalDifferences.size() > 0)));
                 setDownloadingTemplate(true);
-                return;
+                return false;
             }
+            preparation.finishStage("hash");
+            return true;
+        } catch (Exception e) {
+            TimoCloudBase.getInstance().severe("Error while starting proxy " + proxy.getName() + ": " + e.getMessage());
+            onProxyNotStarted(proxy);
+            return false;
+        }
+    }
 
-            File temporaryDirectory = proxy.isStatic() ? templateDirectory : new File(TimoCloudBase.getInstance().getFileManager().getProxyTemporaryDirectory(), proxy.getId());
-            if (!proxy.isStatic()) {
-                if (temporaryDirectory.exists()) BaseFileManager.deleteDirectory(temporaryDirectory);
-                copyDirectory(TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory(), temporaryDirectory);
-            }
+    /**
+     * Copies the templates into the proxy's directory, generates its keys and writes its config, runs in the preparation pool
+     */
+    private void prepareProxy(BaseProxyObject proxy, Preparation preparation) throws Exception {
+        File templateDirectory = getTemplateDirectory(proxy);
+        File temporaryDirectory = proxy.isStatic() ? templateDirectory : new File(TimoCloudBase.getInstance().getFileManager().getProxyTemporaryDirectory(), proxy.getId());
+        preparation.temporaryDirectory = temporaryDirectory;
+        if (!proxy.isStatic()) {
+            if (temporaryDirectory.exists()) BaseFileManager.deleteDirectory(temporaryDirectory);
+            copyDirectory(TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory(), temporaryDirectory, preparation);
+        }
 
-            if (proxy.isStatic()) {
-                copyDirectoryCarefully(TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory(), temporaryDirectory, STATIC_CREATE_TIME, 1);
-            } else {
-                copyDirectory(templateDirectory, temporaryDirectory);
-            }
+        if (proxy.isStatic()) {
+            copyDirectoryCarefully(TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory(), temporaryDirectory, STATIC_CREATE_TIME, 1);
+        } else {
+            copyDirectory(templateDirectory, temporaryDirectory, preparation);
+        }
 
-            File bungeeJar = new File(temporaryDirectory, "BungeeCord.jar");
-            if (!bungeeJar.exists()) {
-                TimoCloudBase.getInstance().severe("Could not start proxy " + proxy.getName() + " because BungeeCord.jar does not exist. " + (
-                        proxy.isStatic() ? "Please make sure the file " + bungeeJar.getAbsolutePath() + " exists (case sensitive!)."
-                                : "Please make sure to have a file called 'BungeeCord.jar' in your template."));
-                throw new ProxyStartException("BungeeCord.jar does not exist");
-            }
+        File bungeeJar = new File(temporaryDirectory, "BungeeCord.jar");
+        if (!bungeeJar.exists()) {
+            TimoCloudBase.getInstance().severe("Could not start proxy " + proxy.getName() + " because BungeeCord.jar does not exist. " + (
+                    proxy.isStatic() ? "Please make sure the file " + bungeeJar.getAbsolutePath() + " exists (case sensitive!)."
+                            : "Please make sure to have a file called 'BungeeCord.jar' in your template."));
+            throw new ProxyStartException("BungeeCord.jar does not exist");
+        }
 
-            File plugins = new File(temporaryDirectory, "/plugins/");
-            plugins.mkdirs();
-            File plugin = new File(plugins, "TimoCloud.jar");
-            if (plugin.exists()) plugin.delete();
-            try {
-                Files.copy(new File(TimoCloudBase.class.getProtectionDomain().getCodeSource().getLocation().getPath()).toPath(), plugin.toPath());
-            } catch (Exception e) {
-                TimoCloudBase.getInstance().severe("Error while copying plugin into template:");
-                TimoCloudBase.getInstance().severe(e);
-                throw new ProxyStartException("Could not copy TimoCloud.jar into template");
-            }
+        File plugins = new File(temporaryDirectory, "/plugins/");
+        plugins.mkdirs();
+        File plugin = new File(plugins, "TimoCloud.jar");
+        if (plugin.exists()) plugin.delete();
+        try {
+            preparation.materialization.add(materializer.materializeFile(new File(TimoCloudBase.class.getProtectionDomain().getCodeSource().getLocation().getPath()), plugin));
+        } catch (Exception e) {
+            TimoCloudBase.getInstance().severe("Error while copying plugin into template:");
+            TimoCloudBase.getInstance().severe(e);
+            throw new ProxyStartException("Could not copy TimoCloud.jar into template");
+        }
+        preparation.finishStage("copy");
 
-            Integer port = getFreePort(40000);
-            if (port == null) {
-                TimoCloudBase.getInstance().severe("Error while starting proxy " + proxy.getName() + ": No free port found. Please report this!");
-                throw new ProxyStartException("No free port found");
-            }
-            blockPort(port);
-
-            PublicKey publicKey = new RSAKeyPairRetriever(new File(temporaryDirectory, "plugins/TimoCloud/keys/")).generateKeyPair().getPublic();
-
-            File configFile = new File(temporaryDirectory, "config.yml");
-            configFile.createNewFile();
-            Yaml yaml = new Yaml();
-            Map<String, Object> config = (Map<String, Object>) yaml.load(new FileReader(configFile));
-            if (config == null) config = new LinkedHashMap<>();
-            config.put("player_limit", proxy.getMaxPlayersPerProxy());
-            List<Map<String, Object>> listeners = (List) config.get("listeners");
-            if (listeners == null) listeners = new ArrayList<>();
-            Map<String, Object> map = listeners.size() == 0 ? new LinkedHashMap<>() : listeners.get(0);
-            map.put("motd", proxy.getMotd());
-            if (proxy.isStatic() && map.containsKey("host")) {
-                port = Integer.parseInt(((String) map.get("host")).split(":")[1]);
-            }
-            map.put("force_default_server", false);
-            map.put("host", "0.0.0.0:" + port);
-            map.put("max_players", proxy.getMaxPlayers());
-            map.put("force_default_server", false);
-            if (!proxy.isStatic()) map.put("query_enabled", false);
-            if (listeners.size() == 0) listeners.add(map);
-            FileWriter writer = new FileWriter(configFile);
-            config.put("listeners", listeners);
-            DumperOptions dumperOptions = new DumperOptions();
-            dumperOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        KeyPair keyPair = TimoCloudBase.getInstance().getKeyPairPool().take();
+        new RSAKeyPairRetriever(new File(temporaryDirectory, "plugins/TimoCloud/keys/")).saveKeyPair(keyPair);
+        preparation.publicKey = keyPair.getPublic();
+        preparation.finishStage("keys");
+
+        Integer port = allocatePort(proxy.getId(), 40000); // The port is written into the config, hence it is allocated before the launch
+        if (port == null) {
+            TimoCloudBase.getInstance().severe("Error while starting proxy " + proxy.getName() + ": No free port found. Please report this!");
+            throw new ProxyStartException("No free port found");
+        }
+
+        File configFile = new File(temporaryDirectory, "config.yml");
+        configFile.createNewFile();
+        Yaml yaml = new Yaml();
+        Map<String, Object> config;
+        try (Reader reader = new FileReader(configFile)) {
+            config = (Map<String, Object>) yaml.load(reader);
+        }
+        if (config == null) config = new LinkedHashMap<>();
+        config.put("player_limit", proxy.getMaxPlayersPerProxy());
+        List<Map<String, Object>> listeners = (List) config.get("listeners");
+        if (listeners == null) listeners = new ArrayList<>();
+        Map<String, Object> map = listeners.size() == 0 ? new LinkedHashMap<>() : listeners.get(0);
+        map.put("motd", proxy.getMotd());
+        if (proxy.isStatic() && map.containsKey("host")) {
+            port = Integer.parseInt(((String) map.get("host")).split(":")[1]);
+            portAllocator.release(proxy.getId()); // Static proxies keep their port
+        }
+        map.put("force_default_server", false);
+        map.put("host", "0.0.0.0:" + port);
+        map.put("max_players", proxy.getMaxPlayers());
+        map.put("force_default_server", false);
+        if (!proxy.isStatic()) map.put("query_enabled", false);
+        if (listeners.size() == 0) listeners.add(map);
+        config.put("listeners", listeners);
+        DumperOptions dumperOptions = new DumperOptions();
+        dumperOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        try (Writer writer = new FileWriter(configFile)) {
             new Yaml(dumperOptions).dump(config, writer);
+        }
+        preparation.port = port;
+        preparation.finishStage("config");
+    }
 
-            double millisNow = System.currentTimeMillis();
-            TimoCloudBase.getInstance().info("Successfully prepared starting proxy " + proxy.getName() + " in " + (millisNow - millisBefore) / 1000 + " seconds.");
+    /**
+     * Starts the process of a prepared proxy, runs on the scheduler thread
+     */
+    private void launchProxy(BaseProxyObject proxy, Preparation preparation) throws Exception {
+        File templateDirectory = getTemplateDirectory(proxy);
+        File temporaryDirectory = preparation.temporaryDirectory;
+        int port = preparation.port;
 
-            File logFile = getProxyLogFile(proxy.getId());
-            logFile.createNewFile();
+        TimoCloudBase.getInstance().info("Successfully prepared starting proxy " + proxy.getName() + " in " + preparation.getSeconds() + " seconds (" + preparation + "; hashing: " + preparation.hashing + "; materialization: " + preparation.materialization + ").");
 
-            FileTailer logTailer = generateLogTailer(logFile, (logEntry) -> {
-                TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
-                        .setType(MessageType.PROXY_LOG_ENTRY)
-                        .setData(logEntry)
-                        .setTarget(proxy.getId()));
-            });
-            new Thread(logTailer).start();
-            this.logTailers.put(proxy.getId(), logTailer);
+        File logFile = getProxyLogFile(proxy.getId());
+        logFile.createNewFile();
 
-            try {
-                Process p = new ProcessBuilder(
-                        "/bin/sh", "-c",
-                        "screen -mdS " + proxy.getId() +
-                                //" -L -Logfile " + logFile.getAbsolutePath() +
-                                " /bin/sh -c '" +
-                                "cd " + temporaryDirectory.getAbsolutePath() + " &&" +
-                                " java -server" +
-                                //" -agentlib:jdwp=transport=dt_socket,server=y,suspend=n,address=" + (port + 100) + // TODO Remove
-                                " -Xmx" + proxy.getRam() + "M" +
-                                " -Dfile.encoding=UTF8 -XX:+UseG1GC -XX:+UnlockExperimentalVMOptions -XX:+DoEscapeAnalysis -XX:+UseCompressedOops -XX:MaxGCPauseMillis=10 -XX:GCPauseIntervalMillis=100 -XX:+UseAdaptiveSizePolicy -XX:ParallelGCThreads=2 -XX:UseSSE=3 " +
-                                " -Dcom.mojang.eula.agree=true" +
-                                " -Dtimocloud-proxyname=" + proxy.getName() +
-                                " -Dtimocloud-proxyid=" + proxy.getId() +
-                                " -Dtimocloud-corehost=" + TimoCloudBase.getInstance().getCoreSocketIP() + ":" + TimoCloudBase.getInstance().getCoreSocketPort() +
-                                " -Dtimocloud-static=" + proxy.isStatic() +
-                                " -Dtimocloud-templatedirectory=" + templateDirectory.getAbsolutePath() +
-                                " -Dtimocloud-temporarydirectory=" + temporaryDirectory.getAbsolutePath() +
-                                " -jar BungeeCord.jar" +
-                                "'"
-                ).start();
-
-                TimoCloudBase.getInstance().info("Successfully started proxy screen session " + proxy.getName() + ".");
-            } catch (Exception e) {
-                TimoCloudBase.getInstance().severe("Error while starting proxy " + proxy.getName() + ":");
-                throw new ProxyStartException("Error while starting process");
-            }
+        FileTailerService.TailedFile tailedLog = generateLogTailer(logFile, (logEntry) -> {
             TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
-                    .setType(MessageType.BASE_PROXY_STARTED)
-                    .setTarget(proxy.getId())
-                    .set("port", port)
-                    .set("publicKey", RSAKeyUtil.publicKeyToBase64(publicKey))
-            );
+                    .setType(MessageType.PROXY_LOG_ENTRY)
+                    .setData(logEntry)
+                    .setTarget(proxy.getId()));
+        });
+        this.logTailers.put(proxy.getId(), tailedLog);
 
+        try {
+            Process p = new ProcessBuilder(
+                    "/bin/sh", "-c",
+                    "screen -mdS " + proxy.getId() +
+                            //" -L -Logfile " + logFile.getAbsolutePath() +
+                            " /bin/sh -c '" +
+                            "cd " + temporaryDirectory.getAbsolutePath() + " &&" +
+                            " java -server" +
+                            //" -agentlib:jdwp=transport=dt_socket,server=y,suspend=n,address=" + (port + 100) + // TODO Remove
+                            " -Xmx" + proxy.getRam() + "M" +
+                            " -Dfile.encoding=UTF8 -XX:+UseG1GC -XX:+UnlockExperimentalVMOptions -XX:+DoEscapeAnalysis -XX:+UseCompressedOops -XX:MaxGCPauseMillis=10 -XX:GCPauseIntervalMillis=100 -XX:+UseAdaptiveSizePolicy -XX:ParallelGCThreads=2 -XX:UseSSE=3 " +
+                            " -Dcom.mojang.eula.agree=true" +
+                            " -Dtimocloud-proxyname=" + proxy.getName() +
+                            " -Dtimocloud-proxyid=" + proxy.getId() +
+                            " -Dtimocloud-corehost=" + TimoCloudBase.getInstance().getCoreSocketIP() + ":" + TimoCloudBase.getInstance().getCoreSocketPort() +
+                            " -Dtimocloud-static=" + proxy.isStatic() +
+                            " -Dtimocloud-templatedirectory=" + templateDirectory.getAbsolutePath() +
+                            " -Dtimocloud-temporarydirectory=" + temporaryDirectory.getAbsolutePath() +
+                            " -jar BungeeCord.jar" +
+                            "'"
+            ).start();
+
+            TimoCloudBase.getInstance().info("Successfully started proxy screen session " + proxy.getName() + ".");
         } catch (Exception e) {
-            TimoCloudBase.getInstance().severe("Error while starting proxy " + proxy.getName() + ": " + e.getMessage());
-            TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType(MessageType.BASE_PROXY_NOT_STARTED).setTarget(proxy.getId()));
+            TimoCloudBase.getInstance().severe("Error while starting proxy " + proxy.getName() + ":");
+            throw new ProxyStartException("Error while starting process");
         }
+        preparation.finishStage("launch");
+        TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
+                .setType(MessageType.BASE_PROXY_STARTED)
+                .setTarget(proxy.getId())
+                .set("port", port)
+                .set("publicKey", RSAKeyUtil.publicKeyToBase64(preparation.publicKey))
+        );
     }
 
-    private Integer getFreePort(int offset) {
-        for (int p = offset; p <= offset + 1000; p++) {
-            if (portIsFree(p)) return p;
-        }
-        return null;
-    }
-
-    private void blockPort(int port) {
-        recentlyUsedPorts.put(port, 60);
+    private void onProxyNotStarted(BaseProxyObject proxy) {
+        portAllocator.release(proxy.getId());
+        TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType(MessageType.BASE_PROXY_NOT_STARTED).setTarget(proxy.getId()));
     }
 
-    private boolean portIsFree(int port) {
-        if (recentlyUsedPorts.containsKey(port)) return false;
-        ServerSocket serverSocket = null;
-        try {
-            serverSocket = new ServerSocket(port);
-            return true;
-        } catch (Exception e) {
-            return false;
-        } finally {
-            try {
-                if (serverSocket != null) serverSocket.close();
-            } catch (Exception e) {
-                TimoCloudBase.getInstance().severe(e);
-            }
-        }
+    private static File getTemplateDirectory(BaseProxyObject proxy) {
+        return new File((proxy.isStatic() ? TimoCloudBase.getInstance().getFileManager().getProxyStaticDirectory() : TimoCloudBase.getInstance().getFileManager().getProxyTemplatesDirectory()), proxy.getGroup());
     }
 
-    private void countDownPorts() {
-        List<Integer> remove = new ArrayList<>();
-        for (Integer port : recentlyUsedPorts.keySet()) {
-            recentlyUsedPorts.put(port, recentlyUsedPorts.get(port) - 1);
-            if (recentlyUsedPorts.get(port) <= 0) remove.add(port);
-        }
-        for (Integer port : remove) recentlyUsedPorts.remove(port);
+    private Integer allocatePort(String id, int offset) {
+        return portAllocator.allocate(id, offset, offset + 1000, System.currentTimeMillis());
     }
 
     private void setProperty(File file, String property, String value) {
@@ -504,17 +687,15 @@ public class BaseInstanceManager {
         }
     }
 
-    private FileTailer generateLogTailer(File logFile, Consumer<LogEntry> onMessage) {
+    private FileTailerService.TailedFile generateLogTailer(File logFile, Consumer<LogEntry> onMessage) {
         LogEntryReader logEntryReader = new LogEntryReader(onMessage);
-        return new FileTailer(logFile, new LogTailerListener(logEntryReader), 500);
+        return logTailer.tail(logFile, new LogTailerListener(logEntryReader));
     }
 
     public void onServerStopped(String id) {
-        FileTailer tailer = logTailers.get(id);
-        if (tailer != null) {
-            tailer.stop();
-            logTailers.remove(id);
-        }
+        portAllocator.release(id);
+        FileTailerService.TailedFile tailedLog = logTailers.remove(id);
+        if (tailedLog != null) tailedLog.stop();
 
         new Timer().schedule(new TimerTask() {
             @Override
@@ -527,11 +708,9 @@ public class BaseInstanceManager {
     }
 
     public void onProxyStopped(String id) {
-        FileTailer tailer = logTailers.get(id);
-        if (tailer != null) {
-            tailer.stop();
-            logTailers.remove(id);
-        }
+        portAllocator.release(id);
+        FileTailerService.TailedFile tailedLog = logTailers.remove(id);
+        if (tailedLog != null) tailedLog.stop();
 
         new Timer().schedule(new TimerTask() {
             @Override
@@ -558,4 +737,66 @@ public class BaseInstanceManager {
     public void setDownloadingTemplate(boolean downloadingTemplate) {
         this.downloadingTemplate = downloadingTemplate;
     }
-}
+
+    public DirectoryMaterializer getMaterializer() {
+        return materializer;
+    }
+
+    /**
+     * @return Average and maximum duration of every preparation stage
+     */
+    public String getPreparationStatistics() {
+        synchronized (stageStatistics) {
+            return stageStatistics.entrySet().stream().map(entry -> entry.getKey() + ": " + entry.getValue()).collect(Collectors.joining(", "));
+        }
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    /**
+     * State of an instance which is being prepared, passed from one stage to the next
+     */
+    private class Preparation {
+
+        private final String id;
+        private final String name;
+        private final long startNanos;
+        private final Map<String, Long> stages;
+        private long stageStart;
+        private File temporaryDirectory;
+        private PublicKey publicKey;
+        private int port;
+        private final DirectoryMaterializer.Result materialization = new DirectoryMaterializer.Result();
+        private final DirectoryHashCache.Statistics hashing = new DirectoryHashCache.Statistics();
+
+        private Preparation(String id, String name) {
+            this.id = id;
+            this.name = name;
+            this.startNanos = System.nanoTime();
+            this.stages = new LinkedHashMap<>();
+            this.stageStart = startNanos;
+        }
+
+        /**
+         * Records the time since the previous stage has finished
+         */
+        private void finishStage(String stage) {
+            long now = System.nanoTime();
+            long nanos = now - stageStart;
+            stageStart = now;
+            stages.merge(stage, nanos, Long::sum);
+            stageStatistics.computeIfAbsent(stage, key -> new LatencyStatistics()).record(nanos);
+        }
+
+        private double getSeconds() {
+            return (System.nanoTime() - startNanos) / 1000000 / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return stages.entrySet().stream().map(entry -> String.format("%s %.3fs", entry.getKey(), entry.getValue() / 1e9)).collect(Collectors.joining(", "));
+        }
+    }
+}
\ No newline at end of file
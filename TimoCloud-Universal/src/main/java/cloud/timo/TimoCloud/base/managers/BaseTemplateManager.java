@@ -1,11 +1,22 @@
 package cloud.timo.TimoCloud.base.managers;
 
+import cloud.timo.TimoCloud.base.TimoCloudBase;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import cloud.timo.TimoCloud.common.utils.HashUtil;
+import cloud.timo.TimoCloud.common.utils.files.DirectoryHashCache;
 import org.apache.commons.io.FileDeleteStrategy;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -13,12 +24,36 @@ public class BaseTemplateManager {
 
     private static final int BUFFER = 1024;
 
+    private final Map<String, IncomingTransfer> transfers = new ConcurrentHashMap<>();
+    private final DirectoryHashCache hashCache;
+
+    public BaseTemplateManager() {
+        Map<String, Object> config = TimoCloudBase.getInstance().getFileManager().getConfig();
+        hashCache = new DirectoryHashCache(
+                (Boolean) config.getOrDefault("template-hash-watch", true),
+                (Boolean) config.getOrDefault("template-hash-index", true) ? TimoCloudBase.getInstance().getFileManager().getHashIndexDirectory() : null,
+                ((Number) config.getOrDefault("template-hash-threads", DirectoryHashCache.DEFAULT_HASH_THREADS)).intValue());
+        FileDeleteStrategy.FORCE.deleteQuietly(getTransfersDirectory()); // Left over from transfers which were running when the base has been stopped
+    }
+
+    /**
+     * @return The hash tree of a local template directory, only files which have changed since they have been hashed the last time are read
+     */
+    public Map<String, Object> getHashes(File directory, DirectoryHashCache.Statistics statistics) throws IOException {
+        return hashCache.getHashes(directory, statistics);
+    }
+
+    public DirectoryHashCache getHashCache() {
+        return hashCache;
+    }
+
     public void extractFiles(InputStream inputStream, File destination) throws IOException {
         destination.mkdirs();
         ZipInputStream zipInputStream = new ZipInputStream(inputStream);
         ZipEntry zipEntry;
         while ((zipEntry = zipInputStream.getNextEntry()) != null) {
             File file = new File(destination, zipEntry.getName());
+            if (! isInside(file, destination)) throw new IOException("Refusing to extract outside of the template directory: " + zipEntry.getName());
             if (zipEntry.getName().endsWith("/")) {
                 file.mkdirs();
                 continue;
@@ -33,6 +68,250 @@ public class BaseTemplateManager {
             zipInputStream.closeEntry();
         }
         zipInputStream.close();
+        hashCache.invalidate(destination);
+    }
+
+    /**
+     * Prepares the receiving of a template transfer. Files are written to part files in the cache directory first,
+     * which survive a disconnect (but not a restart of the base), so that the Core only has to send the bytes we do not have yet.
+     */
+    public void onTransferStart(Message message) {
+        String id = (String) message.get("id");
+        String transferType = (String) message.get("transferType");
+        String template = (String) message.get("template");
+        try {
+            File destination = getDestination(transferType, template);
+            File stagingDirectory = new File(getTransfersDirectory(), id);
+            stagingDirectory.mkdirs();
+            IncomingTransfer transfer = new IncomingTransfer(id, transferType, message.getTarget(), template == null ? transferType : template);
+            List<Long> offsets = new ArrayList<>();
+            for (Object object : (List<?>) message.get("files")) {
+                Map<?, ?> entry = (Map<?, ?>) object;
+                File file = new File(destination, (String) entry.get("path"));
+                if (! isInside(file, destination)) {
+                    throw new IOException("Refusing to write outside of the template directory: " + entry.get("path"));
+                }
+                boolean directory = Boolean.TRUE.equals(entry.get("directory"));
+                long size = directory ? 0 : ((Number) entry.get("size")).longValue();
+                IncomingFile incomingFile = new IncomingFile(file, new File(stagingDirectory, transfer.files.size() + ".part"), directory, size,
+                        (String) entry.get("hash"), entry.containsKey("modified") ? ((Number) entry.get("modified")).longValue() : 0);
+                long offset = incomingFile.part.exists() && incomingFile.part.length() <= size ? incomingFile.part.length() : 0;
+                transfer.files.add(incomingFile);
+                transfer.totalBytes += size;
+                transfer.receivedBytes += offset;
+                offsets.add(offset);
+            }
+            IncomingTransfer previous = transfers.put(id, transfer);
+            if (previous != null) previous.closeFiles();
+            for (IncomingFile incomingFile : transfer.files) {
+                if (incomingFile.directory) {
+                    prepareDestination(incomingFile.destination, true);
+                    incomingFile.destination.mkdirs();
+                    incomingFile.complete = true;
+                } else if (incomingFile.size == 0 || (incomingFile.part.exists() && incomingFile.part.length() == incomingFile.size)) {
+                    completeFile(transfer, incomingFile);
+                }
+            }
+            if (transfer.receivedBytes > 0) {
+                TimoCloudBase.getInstance().info("Resuming download of template " + transfer.name + " at " + getProgress(transfer) + "%.");
+            }
+            TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
+                    .setType(MessageType.TEMPLATE_TRANSFER_READY)
+                    .set("id", id)
+                    .set("offsets", offsets));
+            checkFinished(transfer);
+        } catch (Exception e) {
+            TimoCloudBase.getInstance().severe("Error while preparing template transfer " + id + ": ");
+            TimoCloudBase.getInstance().severe(e);
+            abort(id, message.getTarget(), transferType);
+        }
+    }
+
+    public void onTransferChunk(Message message) {
+        String id = (String) message.get("id");
+        IncomingTransfer transfer = transfers.get(id);
+        if (transfer == null) return;
+        try {
+            IncomingFile incomingFile = transfer.files.get(((Number) message.get("f")).intValue());
+            long offset = ((Number) message.get("o")).longValue();
+            byte[] data = getBytes(message.getData());
+            if (incomingFile.channel == null) {
+                incomingFile.channel = FileChannel.open(incomingFile.part.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) incomingFile.channel.write(buffer, offset + buffer.position());
+            TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create() // Only written chunks open the window for the next one
+                    .setType(MessageType.TEMPLATE_TRANSFER_ACK)
+                    .set("id", id));
+            int progress = getProgress(transfer);
+            transfer.receivedBytes += data.length;
+            if (getProgress(transfer) / 10 > progress / 10) {
+                TimoCloudBase.getInstance().info("Downloading template " + transfer.name + ": " + getProgress(transfer) + "%");
+            }
+            if (offset + data.length >= incomingFile.size) {
+                completeFile(transfer, incomingFile);
+                checkFinished(transfer);
+            }
+        } catch (Exception e) {
+            TimoCloudBase.getInstance().severe("Error while receiving template " + transfer.name + ": ");
+            TimoCloudBase.getInstance().severe(e);
+            abort(id, transfer.target, transfer.transferType);
+        }
+    }
+
+    /**
+     * Running transfers cannot be continued on a new connection, but their part files are kept, so they can be resumed when the template is requested again
+     */
+    public void onDisconnect() {
+        if (transfers.isEmpty()) return;
+        for (IncomingTransfer transfer : transfers.values()) transfer.closeFiles();
+        transfers.clear();
+        TimoCloudBase.getInstance().getInstanceManager().setDownloadingTemplate(false);
+    }
+
+    private void completeFile(IncomingTransfer transfer, IncomingFile incomingFile) throws IOException {
+        incomingFile.closeChannel();
+        if (! incomingFile.part.exists()) incomingFile.part.createNewFile();
+        String hash = HashUtil.getFileHash(incomingFile.part);
+        if (incomingFile.hash != null && ! incomingFile.hash.equals(hash)) {
+            Files.delete(incomingFile.part.toPath());
+            throw new IOException("Checksum mismatch for file " + incomingFile.destination.getName() + " of template " + transfer.name);
+        }
+        prepareDestination(incomingFile.destination, false);
+        incomingFile.destination.getParentFile().mkdirs();
+        Files.move(incomingFile.part.toPath(), incomingFile.destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        if (incomingFile.modified > 0) incomingFile.destination.setLastModified(incomingFile.modified);
+        incomingFile.complete = true;
+    }
+
+    private void checkFinished(IncomingTransfer transfer) {
+        for (IncomingFile incomingFile : transfer.files) {
+            if (! incomingFile.complete) return;
+        }
+        TimoCloudBase.getInstance().info("Successfully downloaded template " + transfer.name + ".");
+        finish(transfer.id, transfer.target, transfer.transferType);
+    }
+
+    /**
+     * Aborted transfers are reported as finished as well - the instance is started again and its template hashes are checked anew, which requests the missing files again.
+     * Their part files are deleted, since they may be the cause of the abort.
+     */
+    private void abort(String id, String target, String transferType) {
+        TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
+                .setType(MessageType.TEMPLATE_TRANSFER_ACK)
+                .set("id", id)
+                .set("cancel", true));
+        finish(id, target, transferType);
+    }
+
+    private void finish(String id, String target, String transferType) {
+        IncomingTransfer transfer = transfers.remove(id);
+        if (transfer != null) transfer.closeFiles();
+        BaseFileManager fileManager = TimoCloudBase.getInstance().getFileManager();
+        hashCache.invalidate(transferType != null && transferType.startsWith("PROXY") ? fileManager.getProxyTemplatesDirectory() : fileManager.getServerTemplatesDirectory());
+        FileDeleteStrategy.FORCE.deleteQuietly(new File(getTransfersDirectory(), id));
+        TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
+                .setType(transferType != null && transferType.startsWith("PROXY") ? MessageType.PROXY_TRANSFER_FINISHED : MessageType.SERVER_TRANSFER_FINISHED)
+                .setTarget(target));
+        if (transfers.isEmpty()) TimoCloudBase.getInstance().getInstanceManager().setDownloadingTemplate(false);
+    }
+
+    private static void prepareDestination(File file, boolean directory) throws IOException {
+        if (! file.exists() || file.isDirectory() == directory) return;
+        if (file.isDirectory()) FileDeleteStrategy.FORCE.delete(file);
+        else Files.delete(file.toPath());
+    }
+
+    /**
+     * Compares whole path elements, so that e.g. "lobby2/x" is not regarded as inside of "lobby"
+     */
+    private static boolean isInside(File file, File directory) throws IOException {
+        return file.getCanonicalFile().toPath().startsWith(directory.getCanonicalFile().toPath());
+    }
+
+    private File getDestination(String transferType, String template) throws IOException {
+        BaseFileManager fileManager = TimoCloudBase.getInstance().getFileManager();
+        switch (transferType) {
+            case "SERVER_TEMPLATE":
+                return new File(fileManager.getServerTemplatesDirectory(), template);
+            case "SERVER_GLOBAL_TEMPLATE":
+                return fileManager.getServerGlobalDirectory();
+            case "PROXY_TEMPLATE":
+                return new File(fileManager.getProxyTemplatesDirectory(), template);
+            case "PROXY_GLOBAL_TEMPLATE":
+                return fileManager.getProxyGlobalDirectory();
+            default:
+                throw new IOException("Unknown transfer type " + transferType);
+        }
+    }
+
+    private File getTransfersDirectory() {
+        return new File(TimoCloudBase.getInstance().getFileManager().getCacheDirectory(), "transfers");
+    }
+
+    private static byte[] getBytes(Object data) {
+        if (data instanceof byte[]) return (byte[]) data;
+        if (data instanceof String) return Base64.getDecoder().decode((String) data);
+        List<?> list = (List<?>) data;
+        byte[] bytes = new byte[list.size()];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = ((Number) list.get(i)).byteValue();
+        return bytes;
+    }
+
+    private static int getProgress(IncomingTransfer transfer) {
+        return transfer.totalBytes == 0 ? 100 : (int) (transfer.receivedBytes * 100 / transfer.totalBytes);
+    }
+
+    private static class IncomingTransfer {
+
+        private final String id;
+        private final String transferType;
+        private final String target;
+        private final String name;
+        private final List<IncomingFile> files = new ArrayList<>();
+        private long totalBytes;
+        private long receivedBytes;
+
+        private IncomingTransfer(String id, String transferType, String target, String name) {
+            this.id = id;
+            this.transferType = transferType;
+            this.target = target;
+            this.name = name;
+        }
+
+        private void closeFiles() {
+            for (IncomingFile file : files) file.closeChannel();
+        }
+    }
+
+    private static class IncomingFile {
+
+        private final File destination;
+        private final File part;
+        private final boolean directory;
+        private final long size;
+        private final String hash;
+        private final long modified;
+        private boolean complete;
+        private FileChannel channel;
+
+        private IncomingFile(File destination, File part, boolean directory, long size, String hash, long modified) {
+            this.destination = destination;
+            this.part = part;
+            this.directory = directory;
+            this.size = size;
+            this.hash = hash;
+            this.modified = modified;
+        }
+
+        private void closeChannel() {
+            if (channel == null) return;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
     }
 
 }
@@ -12,10 +12,13 @@ public class BaseProxyObject {
     private String motd;
     private int maxPlayers;
     private int maxPlayersPerProxy;
+    private String templateRoot;
+    private String globalRoot;
     private Map<String, Object> templateHash;
     private Map<String, Object> globalHash;
+    private boolean hashesReceived;
 
-    public BaseProxyObject(String name, String id, int ram, boolean isStatic, String group, String motd, int maxPlayers, int maxPlayersPerProxy, Map<String, Object> templateHash, Map<String, Object> globalHash) {
+    public BaseProxyObject(String name, String id, int ram, boolean isStatic, String group, String motd, int maxPlayers, int maxPlayersPerProxy, String templateRoot, String globalRoot) {
         this.name = name;
         this.id = id;
         this.group = group;
@@ -24,8 +27,8 @@ public class BaseProxyObject {
         this.motd = motd;
         this.maxPlayers = maxPlayers;
         this.maxPlayersPerProxy = maxPlayersPerProxy;
-        this.templateHash = templateHash;
-        this.globalHash = globalHash;
+        this.templateRoot = templateRoot;
+        this.globalRoot = globalRoot;
     }
 
     public String getName() {
@@ -60,6 +63,30 @@ public class BaseProxyObject {
         return maxPlayersPerProxy;
     }
 
+    public String getTemplateRoot() {
+        return templateRoot;
+    }
+
+    public String getGlobalRoot() {
+        return globalRoot;
+    }
+
+    /**
+     * @return Whether the hash trees of outdated templates have been received from the Core
+     */
+    public boolean hasHashes() {
+        return hashesReceived;
+    }
+
+    /**
+     * Sets the hash trees the Core has sent for outdated templates, templates which are up to date keep a null hash tree
+     */
+    public void setHashes(Map<String, Object> templateHash, Map<String, Object> globalHash) {
+        this.templateHash = templateHash;
+        this.globalHash = globalHash;
+        this.hashesReceived = true;
+    }
+
     public Map<String, Object> getTemplateHash() {
         return templateHash;
     }
@@ -9,20 +9,24 @@ public class BaseServerObject {
     private int ram;
     private boolean isStatic;
     private String map;
+    private String templateRoot;
+    private String mapRoot;
+    private String globalRoot;
     private Map<String, Object> templateHash;
     private Map<String, Object> mapHash;
     private Map<String, Object> globalHash;
+    private boolean hashesReceived;
 
-    public BaseServerObject(String name, String id, int ram, boolean isStatic, String map, String group, Map<String, Object> templateHash, Map<String, Object> mapHash, Map<String, Object> globalHash) {
+    public BaseServerObject(String name, String id, int ram, boolean isStatic, String map, String group, String templateRoot, String mapRoot, String globalRoot) {
         this.name = name;
         this.id = id;
         this.group = group;
         this.ram = ram;
         this.isStatic = isStatic;
         this.map = map;
-        this.templateHash = templateHash;
-        this.mapHash = mapHash;
-        this.globalHash = globalHash;
+        this.templateRoot = templateRoot;
+        this.mapRoot = mapRoot;
+        this.globalRoot = globalRoot;
     }
 
     public String getName() {
@@ -49,6 +53,35 @@ public class BaseServerObject {
         return map;
     }
 
+    public String getTemplateRoot() {
+        return templateRoot;
+    }
+
+    public String getMapRoot() {
+        return mapRoot;
+    }
+
+    public String getGlobalRoot() {
+        return globalRoot;
+    }
+
+    /**
+     * @return Whether the hash trees of outdated templates have been received from the Core
+     */
+    public boolean hasHashes() {
+        return hashesReceived;
+    }
+
+    /**
+     * Sets the hash trees the Core has sent for outdated templates, templates which are up to date keep a null hash tree
+     */
+    public void setHashes(Map<String, Object> templateHash, Map<String, Object> mapHash, Map<String, Object> globalHash) {
+        this.templateHash = templateHash;
+        this.mapHash = mapHash;
+        this.globalHash = globalHash;
+        this.hashesReceived = true;
+    }
+
     public Map<String, Object> getTemplateHash() {
         return templateHash;
     }
@@ -3,6 +3,7 @@ package cloud.timo.TimoCloud.base.sockets;
 import cloud.timo.TimoCloud.base.TimoCloudBase;
 import cloud.timo.TimoCloud.common.sockets.PacketLengthPrepender;
 import cloud.timo.TimoCloud.common.sockets.PacketLengthSplitter;
+import cloud.timo.TimoCloud.common.utils.statistics.FrameStatistics;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 
@@ -10,9 +11,11 @@ public class BasePipeline extends ChannelInitializer<Channel> {
 
     @Override
     protected void initChannel(Channel ch) {
-        ch.pipeline().addLast("splitter", new PacketLengthSplitter());
+        int maxFrameLength = ((Number) TimoCloudBase.getInstance().getFileManager().getConfig().getOrDefault("max-frame-size", PacketLengthSplitter.DEFAULT_MAX_FRAME_LENGTH)).intValue();
+        FrameStatistics statistics = new FrameStatistics();
+        ch.pipeline().addLast("splitter", new PacketLengthSplitter(maxFrameLength, statistics));
         ch.pipeline().addLast(TimoCloudBase.getInstance().getSocketClientHandler());
-        ch.pipeline().addLast("prepender", new PacketLengthPrepender());
+        ch.pipeline().addLast("prepender", new PacketLengthPrepender(maxFrameLength, statistics));
     }
 
 }
\ No newline at end of file
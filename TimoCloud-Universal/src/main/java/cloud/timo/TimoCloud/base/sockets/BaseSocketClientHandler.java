@@ -1,6 +1,7 @@
 package cloud.timo.TimoCloud.base.sockets;
 
 import cloud.timo.TimoCloud.base.TimoCloudBase;
+import cloud.timo.TimoCloud.common.protocol.Message;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -23,6 +24,10 @@ public class BaseSocketClientHandler extends ChannelInboundHandlerAdapter {
         TimoCloudBase.getInstance().onSocketDisconnect();
     }
 
+    public void sendMessage(Message message) {
+        if (channel != null && channel.isActive()) channel.writeAndFlush(message);
+    }
+
     public void sendMessage(String message) {
         if (channel != null && channel.isActive()) channel.writeAndFlush(message);
     }
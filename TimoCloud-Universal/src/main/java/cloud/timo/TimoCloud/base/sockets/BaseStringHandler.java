@@ -14,7 +14,6 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.util.Base64;
-import java.util.Map;
 
 @ChannelHandler.Sharable
 public class BaseStringHandler extends BasicStringHandler {
@@ -34,10 +33,10 @@ public class BaseStringHandler extends BasicStringHandler {
                 boolean isStatic = (Boolean) message.get("static");
                 String group = (String) message.get("group");
                 String map = (String) message.get("map");
-                Map<String, Object> templateHash = (Map<String, Object>) message.get("templateHash");
-                Map<String, Object> mapHash = message.containsKey("mapHash") ? (Map<String, Object>) message.get("mapHash") : null;
-                Map<String, Object> globalHash = (Map<String, Object>) message.get("globalHash");
-                TimoCloudBase.getInstance().getInstanceManager().addToServerQueue(new BaseServerObject(serverName, id, ram, isStatic, map, group, templateHash, mapHash, globalHash));
+                String templateRoot = (String) message.get("templateRoot");
+                String mapRoot = (String) message.get("mapRoot");
+                String globalRoot = (String) message.get("globalRoot");
+                TimoCloudBase.getInstance().getInstanceManager().addToServerQueue(new BaseServerObject(serverName, id, ram, isStatic, map, group, templateRoot, mapRoot, globalRoot));
                 TimoCloudBase.getInstance().info("Added server " + serverName + " to queue.");
                 break;
             }
@@ -50,9 +49,9 @@ public class BaseStringHandler extends BasicStringHandler {
                 String motd = (String) message.get("motd");
                 int maxPlayers = ((Number) message.get("maxplayers")).intValue();
                 int maxPlayersPerProxy = ((Number) message.get("maxplayersperproxy")).intValue();
-                Map<String, Object> templateHash = (Map<String, Object>) message.get("templateHash");
-                Map<String, Object> globalHash = (Map<String, Object>) message.get("globalHash");
-                TimoCloudBase.getInstance().getInstanceManager().addToProxyQueue(new BaseProxyObject(proxyName, id, ram, isStatic, group, motd, maxPlayers, maxPlayersPerProxy, templateHash, globalHash));
+                String templateRoot = (String) message.get("templateRoot");
+                String globalRoot = (String) message.get("globalRoot");
+                TimoCloudBase.getInstance().getInstanceManager().addToProxyQueue(new BaseProxyObject(proxyName, id, ram, isStatic, group, motd, maxPlayers, maxPlayersPerProxy, templateRoot, globalRoot));
                 TimoCloudBase.getInstance().info("Added proxy " + proxyName + " to queue.");
                 break;
             }
@@ -66,6 +65,15 @@ public class BaseStringHandler extends BasicStringHandler {
                 File dir = new File((String) data);
                 if (dir.exists() && dir.isDirectory()) FileDeleteStrategy.FORCE.deleteQuietly(dir);
                 break;
+            case TEMPLATE_HASHES:
+                TimoCloudBase.getInstance().getInstanceManager().onTemplateHashes(message);
+                break;
+            case TEMPLATE_TRANSFER_START:
+                TimoCloudBase.getInstance().getTemplateManager().onTransferStart(message);
+                break;
+            case TEMPLATE_TRANSFER_CHUNK:
+                TimoCloudBase.getInstance().getTemplateManager().onTransferChunk(message);
+                break;
             case TRANSFER_TEMPLATE:
                 try {
                     InputStream inputStream = new ByteArrayInputStream(stringToByteArray((String) message.get("file")));
@@ -94,7 +102,7 @@ public class BaseStringHandler extends BasicStringHandler {
                     TimoCloudBase.getInstance().severe(e);
                 }
             default:
-                TimoCloudBase.getInstance().severe("Could not categorize json message: " + originalMessage);
+                TimoCloudBase.getInstance().severe("Could not categorize message: " + message);
         }
     }
 
@@ -0,0 +1,176 @@
+package cloud.timo.TimoCloud.base.utils;
+
+import cloud.timo.TimoCloud.common.utils.statistics.LatencyStatistics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Hands out ports to instances. Ports in use by the operating system are read from /proc/net/tcp and /proc/net/tcp6 in one pass per allocation,
+ * ports handed out to instances are leased until the instance has stopped. A lease whose port has not been bound yet is kept, however long the instance takes to start.
+ * Once its port has been seen in use, the lease is renewed as long as it stays in use, so a lease of an instance whose stop has never been reported
+ * expires {@link #leaseMillis} after its process has released the port.
+ * If /proc/net is not available, candidates are checked by binding them, like it has been done before.
+ */
+public class PortAllocator {
+
+    public static final long DEFAULT_LEASE_MILLIS = 60 * 1000;
+    private static final String[] TCP_TABLES = {"/proc/net/tcp", "/proc/net/tcp6"};
+    private static final String TIME_WAIT = "06";
+
+    private final long leaseMillis;
+    private final Supplier<BitSet> usedPorts;
+    private final BitSet leased;
+    private final Map<Integer, Lease> leases;
+    private final LatencyStatistics scans;
+    private long allocated;
+    private long released;
+    private long expired;
+    private long probed;
+
+    public PortAllocator(long leaseMillis) {
+        this(leaseMillis, PortAllocator::readUsedPorts);
+    }
+
+    /**
+     * @param usedPorts Returns the ports in use by the operating system, null if they are unknown
+     */
+    public PortAllocator(long leaseMillis, Supplier<BitSet> usedPorts) {
+        this.leaseMillis = leaseMillis;
+        this.usedPorts = usedPorts;
+        this.leased = new BitSet(65536);
+        this.leases = new HashMap<>();
+        this.scans = new LatencyStatistics();
+    }
+
+    /**
+     * @return The lowest free port between firstPort and lastPort (inclusive), which is leased to the instance now, or null if all of them are in use
+     */
+    public synchronized Integer allocate(String instanceId, int firstPort, int lastPort, long now) {
+        long start = System.nanoTime();
+        BitSet used = usedPorts.get();
+        scans.recordSince(start);
+        renewOrExpire(used, now);
+        BitSet taken = (BitSet) leased.clone();
+        if (used != null) taken.or(used);
+        for (int port = taken.nextClearBit(firstPort); port <= lastPort; port = taken.nextClearBit(port + 1)) {
+            if (used == null) {
+                probed++;
+                if (!canBind(port)) continue;
+            }
+            leased.set(port);
+            leases.put(port, new Lease(instanceId));
+            allocated++;
+            return port;
+        }
+        return null;
+    }
+
+    /**
+     * Releases all ports leased to an instance
+     */
+    public synchronized void release(String instanceId) {
+        for (Iterator<Map.Entry<Integer, Lease>> iterator = leases.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Integer, Lease> entry = iterator.next();
+            if (!entry.getValue().instanceId.equals(instanceId)) continue;
+            leased.clear(entry.getKey());
+            iterator.remove();
+            released++;
+        }
+    }
+
+    private void renewOrExpire(BitSet used, long now) {
+        for (Iterator<Map.Entry<Integer, Lease>> iterator = leases.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Integer, Lease> entry = iterator.next();
+            Lease lease = entry.getValue();
+            if (used != null && used.get(entry.getKey())) {
+                lease.seenInUse = true;
+                lease.expiry = now + leaseMillis;
+            } else if (lease.seenInUse && lease.expiry <= now) {
+                leased.clear(entry.getKey());
+                iterator.remove();
+                expired++;
+            }
+        }
+    }
+
+    /**
+     * @return The local ports of all TCP sockets except the ones in TIME_WAIT, which do not prevent binding, or null if no table could be read
+     */
+    public static BitSet readUsedPorts() {
+        BitSet ports = new BitSet(65536);
+        boolean read = false;
+        for (String table : TCP_TABLES) {
+            File file = new File(table);
+            if (!file.canRead()) continue;
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                parseTcpTable(reader, ports);
+                read = true;
+            } catch (IOException | RuntimeException e) {
+                // Use the other table or fall back to binding
+            }
+        }
+        return read ? ports : null;
+    }
+
+    /**
+     * Parses a table in the format of /proc/net/tcp, e.g. "0: 00000000:9C40 00000000:0000 0A ..." is a socket listening on port 40000
+     */
+    public static void parseTcpTable(BufferedReader reader, BitSet ports) throws IOException {
+        reader.readLine(); // Header
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] columns = line.trim().split("\\s+");
+            if (columns.length < 4 || TIME_WAIT.equals(columns[3])) continue;
+            String localAddress = columns[1];
+            ports.set(Integer.parseInt(localAddress.substring(localAddress.lastIndexOf(':') + 1), 16));
+        }
+    }
+
+    private static boolean canBind(int port) {
+        ServerSocket socket = null;
+        try {
+            socket = new ServerSocket(port);
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    public synchronized int getLeased() {
+        return leases.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("leased=%d, allocated=%d, released=%d, expired=%d, bind probes=%d, scan avg=%.3fms",
+                leases.size(), allocated, released, expired, probed, scans.getAverageMillis());
+    }
+
+    private static class Lease {
+
+        private final String instanceId;
+        private boolean seenInUse;
+        private long expiry;
+
+        private Lease(String instanceId) {
+            this.instanceId = instanceId;
+        }
+    }
+
+}
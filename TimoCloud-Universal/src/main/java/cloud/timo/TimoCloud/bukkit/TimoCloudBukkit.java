@@ -23,18 +23,19 @@ import cloud.timo.TimoCloud.bukkit.sockets.BukkitStringHandler;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyPairRetriever;
 import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
 import cloud.timo.TimoCloud.common.log.utils.LogInjectionUtil;
+import cloud.timo.TimoCloud.common.protocol.CompressionType;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.sockets.AESDecrypter;
 import cloud.timo.TimoCloud.common.sockets.AESEncrypter;
+import cloud.timo.TimoCloud.common.sockets.FrameDecompressor;
+import cloud.timo.TimoCloud.common.sockets.MessageDecoder;
+import cloud.timo.TimoCloud.common.sockets.MessageEncoder;
 import cloud.timo.TimoCloud.common.sockets.RSAHandshakeHandler;
 import cloud.timo.TimoCloud.common.utils.network.InetAddressUtil;
 import com.google.common.io.ByteArrayDataOutput;
 import com.google.common.io.ByteStreams;
 import io.netty.channel.Channel;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
-import io.netty.util.CharsetUtil;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
@@ -133,12 +134,14 @@ public class TimoCloudBukkit extends JavaPlugin implements TimoCloudLogger {
     public void onSocketConnect(Channel channel) {
         try {
             KeyPair keyPair = new RSAKeyPairRetriever(new File(getFileManager().getBaseDirectory(), "/keys/")).getKeyPair();
-            new RSAHandshakeHandler(channel, keyPair, (aesKey -> {
-                channel.pipeline().addBefore("prepender", "decrypter", new AESDecrypter(aesKey));
-                channel.pipeline().addBefore("prepender", "decoder", new StringDecoder(CharsetUtil.UTF_8));
+            new RSAHandshakeHandler(channel, keyPair, ((aesKey, codecType, cipherMode, compressionType, parameters) -> {
+                channel.pipeline().addBefore("prepender", "decrypter", new AESDecrypter(aesKey, cipherMode));
+                if (compressionType == CompressionType.DEFLATE) channel.pipeline().addBefore("prepender", "decompressor", new FrameDecompressor(parameters.getMaxUncompressedLength(cipherMode)));
+                channel.pipeline().addBefore("prepender", "decoder", new MessageDecoder(codecType));
                 channel.pipeline().addBefore("prepender", "handler", getStringHandler());
-                channel.pipeline().addLast("encrypter", new AESEncrypter(aesKey));
-                channel.pipeline().addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
+                channel.pipeline().addLast("encrypter", new AESEncrypter(aesKey, cipherMode));
+                if (compressionType == CompressionType.DEFLATE) channel.pipeline().addLast("compressor", parameters.createCompressor(cipherMode));
+                channel.pipeline().addLast("encoder", new MessageEncoder(codecType));
 
                 getSocketMessageManager().sendMessage(Message.create().setType(MessageType.SERVER_HANDSHAKE).setTarget(getServerId()));
             })).startHandshake();
@@ -274,7 +277,7 @@ public class TimoCloudBukkit extends JavaPlugin implements TimoCloudLogger {
     }
 
     private void requestApiData() {
-        getSocketMessageManager().sendMessage(Message.create().setType(MessageType.GET_API_DATA));
+        getSocketMessageManager().sendMessage(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getStateTracker().createDataRequest());
     }
 
     private void sendMotds() {
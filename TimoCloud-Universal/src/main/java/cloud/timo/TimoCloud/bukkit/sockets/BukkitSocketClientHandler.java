@@ -1,6 +1,7 @@
 package cloud.timo.TimoCloud.bukkit.sockets;
 
 import cloud.timo.TimoCloud.bukkit.TimoCloudBukkit;
+import cloud.timo.TimoCloud.common.protocol.Message;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -34,6 +35,14 @@ public class BukkitSocketClientHandler extends ChannelInboundHandlerAdapter {
         resetQueue();
     }
 
+    public void sendMessage(Message message) {
+        if (channel == null) {
+            queue += message.toJson();
+        } else {
+            channel.writeAndFlush(message);
+        }
+    }
+
     public void sendMessage(String message) {
         if (channel == null) {
             queue += message;
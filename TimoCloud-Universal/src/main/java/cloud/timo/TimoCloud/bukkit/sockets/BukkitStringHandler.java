@@ -34,12 +34,13 @@ public class BukkitStringHandler extends BasicStringHandler {
                 TimoCloudBukkit.getInstance().onHandshakeSuccess();
                 break;
             case API_DATA:
-                ((TimoCloudUniversalAPIBukkitImplementation) TimoCloudAPI.getUniversalAPI()).setData((Map<String, Object>) data);
+                ((TimoCloudUniversalAPIBukkitImplementation) TimoCloudAPI.getUniversalAPI()).onData(message);
                 break;
             case EVENT_FIRED:
                 try {
+                    if (! ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getStateTracker().onEvent(message, TimoCloudBukkit.getInstance().getSocketMessageManager()::sendMessage)) break;
                     EventType eventType = EnumUtil.valueOf(EventType.class, (String) message.get("eT"));
-                    ((EventManager) TimoCloudAPI.getEventAPI()).callEvent(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper().readValue((String) data, EventUtil.getClassByEventType(eventType)));
+                    ((EventManager) TimoCloudAPI.getEventAPI()).callEvent(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).readValue(data, EventUtil.getClassByEventType(eventType)));
                 } catch (Exception e) {
                     System.err.println("Error while parsing event from json: ");
                     TimoCloudBukkit.getInstance().severe(e);
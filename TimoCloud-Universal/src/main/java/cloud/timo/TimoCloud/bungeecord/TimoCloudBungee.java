@@ -26,15 +26,16 @@ import cloud.timo.TimoCloud.bungeecord.sockets.BungeeStringHandler;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyPairRetriever;
 import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
 import cloud.timo.TimoCloud.common.log.utils.LogInjectionUtil;
+import cloud.timo.TimoCloud.common.protocol.CompressionType;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.sockets.AESDecrypter;
 import cloud.timo.TimoCloud.common.sockets.AESEncrypter;
+import cloud.timo.TimoCloud.common.sockets.FrameDecompressor;
+import cloud.timo.TimoCloud.common.sockets.MessageDecoder;
+import cloud.timo.TimoCloud.common.sockets.MessageEncoder;
 import cloud.timo.TimoCloud.common.sockets.RSAHandshakeHandler;
 import io.netty.channel.Channel;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
-import io.netty.util.CharsetUtil;
 import net.md_5.bungee.api.ChatColor;
 import net.md_5.bungee.api.plugin.Plugin;
 
@@ -160,12 +161,14 @@ public class TimoCloudBungee extends Plugin implements TimoCloudLogger {
     public void onSocketConnect(Channel channel) {
         try {
             KeyPair keyPair = new RSAKeyPairRetriever(new File(getFileManager().getBaseDirectory(), "/keys/")).getKeyPair();
-            new RSAHandshakeHandler(channel, keyPair, (aesKey -> {
-                channel.pipeline().addBefore("prepender", "decrypter", new AESDecrypter(aesKey));
-                channel.pipeline().addBefore("prepender", "decoder", new StringDecoder(CharsetUtil.UTF_8));
+            new RSAHandshakeHandler(channel, keyPair, ((aesKey, codecType, cipherMode, compressionType, parameters) -> {
+                channel.pipeline().addBefore("prepender", "decrypter", new AESDecrypter(aesKey, cipherMode));
+                if (compressionType == CompressionType.DEFLATE) channel.pipeline().addBefore("prepender", "decompressor", new FrameDecompressor(parameters.getMaxUncompressedLength(cipherMode)));
+                channel.pipeline().addBefore("prepender", "decoder", new MessageDecoder(codecType));
                 channel.pipeline().addBefore("prepender", "handler", getBungeeStringHandler());
-                channel.pipeline().addLast("encrypter", new AESEncrypter(aesKey));
-                channel.pipeline().addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
+                channel.pipeline().addLast("encrypter", new AESEncrypter(aesKey, cipherMode));
+                if (compressionType == CompressionType.DEFLATE) channel.pipeline().addLast("compressor", parameters.createCompressor(cipherMode));
+                channel.pipeline().addLast("encoder", new MessageEncoder(codecType));
 
                 getSocketMessageManager().sendMessage(Message.create().setType(MessageType.PROXY_HANDSHAE).setTarget(getProxyId()));
             })).startHandshake();
@@ -200,7 +203,7 @@ public class TimoCloudBungee extends Plugin implements TimoCloudLogger {
     }
 
     private void requestApiData() {
-        getSocketMessageManager().sendMessage(Message.create().setType(MessageType.GET_API_DATA));
+        getSocketMessageManager().sendMessage(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getStateTracker().createDataRequest());
     }
 
     private void sendEverything() {
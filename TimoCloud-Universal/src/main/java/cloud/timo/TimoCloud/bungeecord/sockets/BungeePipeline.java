@@ -3,6 +3,7 @@ package cloud.timo.TimoCloud.bungeecord.sockets;
 import cloud.timo.TimoCloud.bungeecord.TimoCloudBungee;
 import cloud.timo.TimoCloud.common.sockets.PacketLengthPrepender;
 import cloud.timo.TimoCloud.common.sockets.PacketLengthSplitter;
+import cloud.timo.TimoCloud.common.utils.statistics.FrameStatistics;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 
@@ -10,9 +11,10 @@ public class BungeePipeline extends ChannelInitializer<Channel> {
 
     @Override
     protected void initChannel(Channel ch) throws Exception {
-        ch.pipeline().addLast("splitter", new PacketLengthSplitter());
+        FrameStatistics statistics = new FrameStatistics(); // The default limit is replaced by the Core's one during the handshake
+        ch.pipeline().addLast("splitter", new PacketLengthSplitter(PacketLengthSplitter.DEFAULT_MAX_FRAME_LENGTH, statistics));
         ch.pipeline().addLast(TimoCloudBungee.getInstance().getSocketClientHandler());
-        ch.pipeline().addLast("prepender", new PacketLengthPrepender());
+        ch.pipeline().addLast("prepender", new PacketLengthPrepender(PacketLengthSplitter.DEFAULT_MAX_FRAME_LENGTH, statistics));
     }
 
 }
\ No newline at end of file
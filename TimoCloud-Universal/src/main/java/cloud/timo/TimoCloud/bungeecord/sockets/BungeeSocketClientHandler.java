@@ -1,6 +1,7 @@
 package cloud.timo.TimoCloud.bungeecord.sockets;
 
 import cloud.timo.TimoCloud.bungeecord.TimoCloudBungee;
+import cloud.timo.TimoCloud.common.protocol.Message;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -34,6 +35,14 @@ public class BungeeSocketClientHandler extends ChannelInboundHandlerAdapter {
         resetQueue();
     }
 
+    public void sendMessage(Message message) {
+        if (channel == null) {
+            queue += message.toJson();
+        } else {
+            channel.writeAndFlush(message);
+        }
+    }
+
     public void sendMessage(String message) {
         if (channel == null) {
             queue += message;
@@ -36,12 +36,13 @@ public class BungeeStringHandler extends BasicStringHandler {
                 TimoCloudBungee.getInstance().onHandshakeSuccess();
                 break;
             case API_DATA:
-                ((TimoCloudUniversalAPIBungeeImplementation) TimoCloudAPI.getUniversalAPI()).setData((Map<String, Object>) data);
+                ((TimoCloudUniversalAPIBungeeImplementation) TimoCloudAPI.getUniversalAPI()).onData(message);
                 break;
             case EVENT_FIRED:
                 try {
+                    if (! ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getStateTracker().onEvent(message, TimoCloudBungee.getInstance().getSocketMessageManager()::sendMessage)) break;
                     EventType eventType = EnumUtil.valueOf(EventType.class, (String) message.get("eT"));
-                    ((EventManager) TimoCloudAPI.getEventAPI()).callEvent(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper().readValue((String) data, EventUtil.getClassByEventType(eventType)));
+                    ((EventManager) TimoCloudAPI.getEventAPI()).callEvent(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).readValue(data, EventUtil.getClassByEventType(eventType)));
                 } catch (Exception e) {
                     System.err.println("Error while parsing event from json: ");
                     TimoCloudBungee.getInstance().severe(e);
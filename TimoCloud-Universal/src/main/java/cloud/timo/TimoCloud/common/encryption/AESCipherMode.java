@@ -0,0 +1,72 @@
+package cloud.timo.TimoCloud.common.encryption;
+
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.HashMap;
+import java.util.Map;
+
+public enum AESCipherMode {
+    CBC (0, "AES/CBC/PKCS5PADDING", 16),
+    GCM (1, "AES/GCM/NoPadding", 12);
+
+    private static final int GCM_TAG_LENGTH = 128;
+
+    /**
+     * Neither PKCS5 padding nor the GCM tag add more than one block to the plaintext
+     */
+    private static final int MAX_OVERHEAD = 16;
+
+    private static final Map<Integer, AESCipherMode> BY_ID;
+
+    static {
+        BY_ID = new HashMap<>();
+        for (AESCipherMode mode : values()) {
+            BY_ID.put(mode.getId(), mode);
+        }
+    }
+
+    private final int id;
+    private final String transformation;
+    private final int ivLength;
+
+    AESCipherMode(int id, String transformation, int ivLength) {
+        this.id = id;
+        this.transformation = transformation;
+        this.ivLength = ivLength;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getTransformation() {
+        return transformation;
+    }
+
+    public int getIvLength() {
+        return ivLength;
+    }
+
+    public AlgorithmParameterSpec getParameterSpec(byte[] iv) {
+        return this == GCM ? new GCMParameterSpec(GCM_TAG_LENGTH, iv) : new IvParameterSpec(iv);
+    }
+
+    /**
+     * @return The maximum size of an encrypted frame (including its IV) for a plaintext of the given length
+     */
+    public int getMaxFrameLength(int plaintextLength) {
+        return ivLength + plaintextLength + MAX_OVERHEAD;
+    }
+
+    /**
+     * @return The maximum length of a plaintext whose encrypted frame is at most the given length
+     */
+    public int getMaxPlaintextLength(int frameLength) {
+        return frameLength - ivLength - MAX_OVERHEAD;
+    }
+
+    public static AESCipherMode fromId(int id) {
+        return BY_ID.get(id);
+    }
+}
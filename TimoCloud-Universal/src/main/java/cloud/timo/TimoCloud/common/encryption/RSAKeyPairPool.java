@@ -0,0 +1,123 @@
+package cloud.timo.TimoCloud.common.encryption;
+
+import cloud.timo.TimoCloud.common.utils.statistics.LatencyStatistics;
+
+import java.io.Closeable;
+import java.security.KeyPair;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Generates RSA key pairs in the background, so that starting an instance does not have to wait for the generation of its key pair.
+ * A refill thread keeps up to {@link #targetSize} key pairs ready. If the pool is empty, the key pair is generated by the caller,
+ * so that parallel starts do not wait for each other. Every key pair is handed out only once.
+ */
+public class RSAKeyPairPool implements Closeable {
+
+    public static final int DEFAULT_TARGET_SIZE = 4;
+    private static final long RETRY_MILLIS = 1000;
+
+    private final int targetSize;
+    private final Supplier<KeyPair> generator;
+    private final BlockingQueue<KeyPair> pool;
+    private final LatencyStatistics waits;
+    private Thread refillThread;
+    private long taken;
+    private long generated;
+
+    public RSAKeyPairPool(int targetSize) {
+        this(targetSize, RSAKeyUtil::generateKeyPair);
+    }
+
+    /**
+     * @param generator Generates a key pair, returns null if that failed
+     */
+    public RSAKeyPairPool(int targetSize, Supplier<KeyPair> generator) {
+        this.targetSize = Math.max(0, targetSize);
+        this.generator = generator;
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, this.targetSize));
+        this.waits = new LatencyStatistics();
+    }
+
+    /**
+     * Starts the refill thread, does nothing if the target size is 0
+     */
+    public synchronized void start() {
+        if (targetSize == 0 || refillThread != null) return;
+        refillThread = new Thread(this::refill, "TimoCloud-KeyPairPool");
+        refillThread.setDaemon(true);
+        refillThread.setPriority(Thread.MIN_PRIORITY);
+        refillThread.start();
+    }
+
+    private void refill() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                KeyPair keyPair = generator.get();
+                if (keyPair == null) {
+                    Thread.sleep(RETRY_MILLIS);
+                    continue;
+                }
+                synchronized (this) {
+                    generated++;
+                }
+                pool.put(keyPair); // Blocks while the pool is full
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        }
+    }
+
+    /**
+     * @return A key pair which has not been handed out before, generated now if none is ready
+     */
+    public KeyPair take() {
+        KeyPair keyPair = pool.poll();
+        synchronized (this) {
+            taken++;
+        }
+        if (keyPair != null) return keyPair;
+        long start = System.nanoTime();
+        keyPair = generator.get();
+        waits.recordSince(start);
+        if (keyPair == null) throw new IllegalStateException("Could not generate RSA key pair");
+        return keyPair;
+    }
+
+    /**
+     * @return How many key pairs are ready
+     */
+    public int getDepth() {
+        return pool.size();
+    }
+
+    public int getTargetSize() {
+        return targetSize;
+    }
+
+    public synchronized long getTaken() {
+        return taken;
+    }
+
+    /**
+     * @return How often a key pair had to be generated on the start path, because the pool was empty
+     */
+    public long getWaits() {
+        return waits.getCount();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (refillThread != null) refillThread.interrupt();
+        refillThread = null;
+        pool.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("depth=%d/%d, taken=%d, generated in background=%d, waited=%d (avg=%.1fms, max=%.1fms)",
+                getDepth(), targetSize, taken, generated, waits.getCount(), waits.getAverageMillis(), waits.getMaxMillis());
+    }
+
+}
@@ -43,7 +43,7 @@ public class RSAKeyPairRetriever {
         return keyPair;
     }
 
-    private void saveKeyPair(KeyPair keyPair) throws IOException {
+    public void saveKeyPair(KeyPair keyPair) throws IOException {
         directory.mkdirs();
         if (publicKeyFile.exists()) publicKeyFile.delete();
         if (privateKeyFile.exists()) privateKeyFile.delete();
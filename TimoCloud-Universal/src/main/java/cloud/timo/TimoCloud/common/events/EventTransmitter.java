@@ -7,7 +7,6 @@ import cloud.timo.TimoCloud.api.internal.TimoCloudInternalAPI;
 import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class EventTransmitter {
 
@@ -16,7 +15,7 @@ public class EventTransmitter {
             TimoCloudInternalAPI.getInternalMessageAPI().sendMessageToCore(Message.create()
                     .setType(MessageType.FIRE_EVENT)
                     .set("eT", event.getType().name())
-                    .setData(getObjectMapper().writeValueAsString(event))
+                    .setData(getUniversalAPI().writeValueAsMap(event))
                     .toString());
         } catch (Exception e) {
             TimoCloudLogger.getLogger().severe("Error while sending event: ");
@@ -24,7 +23,7 @@ public class EventTransmitter {
         }
     }
 
-    private static ObjectMapper getObjectMapper() {
-        return ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper();
+    private static TimoCloudUniversalAPIBasicImplementation getUniversalAPI() {
+        return (TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI();
     }
 }
@@ -0,0 +1,257 @@
+package cloud.timo.TimoCloud.common.protocol;
+
+import cloud.timo.TimoCloud.common.json.GsonFactory;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.CharsetUtil;
+
+import java.util.*;
+
+/**
+ * Binary wire format. A frame starts with the {@link MessageType} id as varint (0 if the message has no type),
+ * followed by the number of remaining entries and the entries themselves, each as a key string and a typed value.
+ * Values keep their Java type (ints stay ints, nested maps stay maps), so no JSON needs to be embedded in a message.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+
+    private static final String TYPE_KEY = "t";
+
+    private static final int MAX_DEPTH = 64;
+
+    static final byte NULL = 0;
+    static final byte FALSE = 1;
+    static final byte TRUE = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte DOUBLE = 5;
+    static final byte FLOAT = 6;
+    static final byte STRING = 7;
+    static final byte LIST = 8;
+    static final byte MAP = 9;
+    static final byte BYTES = 10;
+
+    @Override
+    public void encode(Message message, ByteBuf out) {
+        Object type = message.get(TYPE_KEY);
+        writeVarInt(out, type == null ? 0 : ((Number) type).intValue());
+        writeVarInt(out, type == null ? message.size() : message.size() - 1);
+        for (Map.Entry<String, Object> entry : message.entrySet()) {
+            if (TYPE_KEY.equals(entry.getKey())) continue;
+            writeString(out, entry.getKey());
+            writeValue(out, entry.getValue(), 0);
+        }
+    }
+
+    @Override
+    public Message decode(ByteBuf in) {
+        Message message = Message.create();
+        int type = readVarInt(in);
+        if (type != 0) message.set(TYPE_KEY, type);
+        int size = readLength(in);
+        for (int i = 0; i < size; i++) {
+            message.put(readString(in), readValue(in, 0));
+        }
+        if (in.isReadable()) throw new CorruptedFrameException(in.readableBytes() + " unexpected trailing bytes in message");
+        return message;
+    }
+
+    private static void writeValue(ByteBuf out, Object value, int depth) {
+        if (depth > MAX_DEPTH) throw new IllegalArgumentException("Message is nested too deeply");
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(INT);
+            writeVarInt(out, zigZag(((Number) value).intValue()));
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, zigZag((Long) value));
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Number) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(MAP);
+            writeVarInt(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue(), depth + 1);
+            }
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            out.writeByte(LIST);
+            writeVarInt(out, collection.size());
+            for (Object element : collection) {
+                writeValue(out, element, depth + 1);
+            }
+        } else if (value instanceof Object[]) {
+            writeValue(out, Arrays.asList((Object[]) value), depth);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(BYTES);
+            writeVarInt(out, bytes.length);
+            out.writeBytes(bytes);
+        } else if (value instanceof Character || value instanceof Enum) {
+            out.writeByte(STRING);
+            writeString(out, value instanceof Enum ? ((Enum) value).name() : value.toString());
+        } else if (value instanceof JsonElement) {
+            writeValue(out, fromJsonElement((JsonElement) value), depth);
+        } else { // Any other object is sent the way Gson would have serialized it
+            writeValue(out, fromJsonElement(GsonFactory.getGson().toJsonTree(value)), depth);
+        }
+    }
+
+    private static Object readValue(ByteBuf in, int depth) {
+        if (depth > MAX_DEPTH) throw new CorruptedFrameException("Message is nested too deeply");
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case FALSE:
+                return false;
+            case TRUE:
+                return true;
+            case INT:
+                return unZigZag(readVarInt(in));
+            case LONG:
+                return unZigZag(readVarLong(in));
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return readString(in);
+            case LIST: {
+                int size = readLength(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in, depth + 1));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = readLength(in);
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(readString(in), readValue(in, depth + 1));
+                }
+                return map;
+            }
+            case BYTES: {
+                byte[] bytes = new byte[readLength(in)];
+                in.readBytes(bytes);
+                return bytes;
+            }
+            default:
+                throw new CorruptedFrameException("Unknown value type " + tag);
+        }
+    }
+
+    private static Object fromJsonElement(JsonElement element) {
+        if (element == null || element.isJsonNull()) return null;
+        if (element.isJsonObject()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<String, JsonElement> entry : ((JsonObject) element).entrySet()) {
+                map.put(entry.getKey(), fromJsonElement(entry.getValue()));
+            }
+            return map;
+        }
+        if (element.isJsonArray()) {
+            List<Object> list = new ArrayList<>();
+            for (JsonElement child : (JsonArray) element) {
+                list.add(fromJsonElement(child));
+            }
+            return list;
+        }
+        JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (primitive.isBoolean()) return primitive.getAsBoolean();
+        if (primitive.isNumber()) return primitive.getAsDouble();
+        return primitive.getAsString();
+    }
+
+    private static void writeString(ByteBuf out, String string) {
+        writeVarInt(out, ByteBufUtil.utf8Bytes(string));
+        ByteBufUtil.writeUtf8(out, string);
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = readLength(in);
+        String string = in.toString(in.readerIndex(), length, CharsetUtil.UTF_8);
+        in.skipBytes(length);
+        return string;
+    }
+
+    /**
+     * Reads a length and makes sure the frame can actually contain that many elements, so that a corrupt frame cannot make us allocate huge collections
+     */
+    private static int readLength(ByteBuf in) {
+        int length = readVarInt(in);
+        if (length < 0 || length > in.readableBytes()) throw new CorruptedFrameException("Invalid length " + length + " (" + in.readableBytes() + " bytes left)");
+        return length;
+    }
+
+    static void writeVarInt(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(ByteBuf in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new CorruptedFrameException("VarInt is too long");
+    }
+
+    private static void writeVarLong(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuf in) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new CorruptedFrameException("VarLong is too long");
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
@@ -0,0 +1,32 @@
+package cloud.timo.TimoCloud.common.protocol;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public enum CompressionType {
+    NONE    (0),
+    DEFLATE (1);
+
+    private static final Map<Integer, CompressionType> BY_ID;
+
+    static {
+        BY_ID = new HashMap<>();
+        for (CompressionType compressionType : values()) {
+            BY_ID.put(compressionType.getId(), compressionType);
+        }
+    }
+
+    private final int id;
+
+    CompressionType(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public static CompressionType fromId(int id) {
+        return BY_ID.get(id);
+    }
+}
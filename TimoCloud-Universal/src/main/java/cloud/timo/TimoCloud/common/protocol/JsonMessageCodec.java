@@ -0,0 +1,22 @@
+package cloud.timo.TimoCloud.common.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.CharsetUtil;
+
+/**
+ * The original wire format: every frame is a UTF-8 encoded JSON object. Kept for peers which do not support {@link BinaryMessageCodec}
+ */
+public class JsonMessageCodec implements MessageCodec {
+
+    @Override
+    public void encode(Message message, ByteBuf out) {
+        ByteBufUtil.writeUtf8(out, message.toJson());
+    }
+
+    @Override
+    public Message decode(ByteBuf in) {
+        return Message.createFromJsonString(in.toString(CharsetUtil.UTF_8));
+    }
+
+}
@@ -1,6 +1,6 @@
 package cloud.timo.TimoCloud.common.protocol;
 
-import com.google.gson.GsonBuilder;
+import cloud.timo.TimoCloud.common.json.GsonFactory;
 import com.google.gson.JsonObject;
 
 import java.util.LinkedHashMap;
@@ -12,8 +12,6 @@ public class Message extends LinkedHashMap<String, Object> {
     private static final String TARGET_KEY = "@";
     private static final String DATA_KEY = "d";
 
-    private static final GsonBuilder GSON_BUILDER = new GsonBuilder();
-
     private Message() {
     }
 
@@ -30,9 +28,7 @@ public class Message extends LinkedHashMap<String, Object> {
     }
 
     public static Message createFromJsonString(String json) {
-        return new GsonBuilder()
-                .create()
-                .fromJson(json, Message.class);
+        return GsonFactory.getGson().fromJson(json, Message.class);
     }
 
     public Message set(String key, Object value) {
@@ -86,15 +82,11 @@ public class Message extends LinkedHashMap<String, Object> {
     }
 
     public JsonObject toJsonObject() {
-        return GSON_BUILDER
-                .create()
-                .toJsonTree(this).getAsJsonObject();
+        return GsonFactory.getGson().toJsonTree(this).getAsJsonObject();
     }
 
     public String toJson() {
-        return GSON_BUILDER
-                .create()
-                .toJson(this);
+        return GsonFactory.getGson().toJson(this);
     }
 
     @Override
@@ -0,0 +1,14 @@
+package cloud.timo.TimoCloud.common.protocol;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Converts {@link Message}s to the bytes of a single frame and back. The codec used on a connection is negotiated during the RSA handshake, see {@link MessageCodecType}
+ */
+public interface MessageCodec {
+
+    void encode(Message message, ByteBuf out) throws Exception;
+
+    Message decode(ByteBuf in) throws Exception;
+
+}
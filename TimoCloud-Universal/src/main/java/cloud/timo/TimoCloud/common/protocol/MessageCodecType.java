@@ -0,0 +1,44 @@
+package cloud.timo.TimoCloud.common.protocol;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public enum MessageCodecType {
+    JSON    (0, new JsonMessageCodec()),
+    BINARY  (1, new BinaryMessageCodec());
+
+    /**
+     * A handshake packet starting with this byte carries a list of codec ids the client supports, followed by its public key.
+     * An X.509 encoded key always starts with 0x30 (ASN.1 SEQUENCE), so clients which do not offer any codec can still be told apart.
+     */
+    public static final byte OFFER_MARKER = 0x43;
+
+    private static final Map<Integer, MessageCodecType> BY_ID;
+
+    static {
+        BY_ID = new HashMap<>();
+        for (MessageCodecType codecType : values()) {
+            BY_ID.put(codecType.getId(), codecType);
+        }
+    }
+
+    private final int id;
+    private final MessageCodec codec;
+
+    MessageCodecType(int id, MessageCodec codec) {
+        this.id = id;
+        this.codec = codec;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public MessageCodec getCodec() {
+        return codec;
+    }
+
+    public static MessageCodecType fromId(int id) {
+        return BY_ID.get(id);
+    }
+}
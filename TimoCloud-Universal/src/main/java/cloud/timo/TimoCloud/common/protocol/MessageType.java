@@ -3,7 +3,7 @@ package cloud.timo.TimoCloud.common.protocol;
 import java.util.HashMap;
 import java.util.Map;
 
-// NEXT FREE ID: 49
+// NEXT FREE ID: 55
 
 public enum MessageType {
     CORE_PARSE_COMMAND                          (1),
@@ -63,7 +63,15 @@ public enum MessageType {
     EVENT_FIRED                                 (48),
 
     ENCRYPTION_PUBLIC_KEY                       (49), // Client sends public key to Core, Core returns ENCRYPTION_AES_KEY
-    ENCRYPTION_AES_KEY                          (50)
+    ENCRYPTION_AES_KEY                          (50),
+
+    TEMPLATE_TRANSFER_START                     (51), // Core announces the files of a template transfer, Base answers with TEMPLATE_TRANSFER_READY
+    TEMPLATE_TRANSFER_READY                     (52), // Contains the offsets the Base already has, so that interrupted transfers can be resumed
+    TEMPLATE_TRANSFER_CHUNK                     (53),
+    TEMPLATE_TRANSFER_ACK                       (54),
+
+    BASE_TEMPLATE_HASHES_REQUEST                (55), // Base sends the roots of its directories of templates whose root differs from the one in the start message
+    TEMPLATE_HASHES                             (56)  // Contains the hash trees of these templates, subtrees the Base already has are replaced by their root
     ;
 
     private static final Map<Integer, MessageType> BY_ID;
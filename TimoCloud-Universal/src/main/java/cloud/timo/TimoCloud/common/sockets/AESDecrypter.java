@@ -1,27 +1,57 @@
 package cloud.timo.TimoCloud.common.sockets;
 
-import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
+import cloud.timo.TimoCloud.common.encryption.AESCipherMode;
+import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
 
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
 import java.util.List;
 
+/**
+ * Decrypts frames produced by {@link AESEncrypter}. With {@link AESCipherMode#GCM}, frames which have been tampered with are rejected and the connection is closed.
+ */
 public class AESDecrypter extends ByteToMessageDecoder {
 
-    private SecretKey aesKey;
+    private final SecretKey aesKey;
+    private final AESCipherMode mode;
+    private final Cipher cipher;
+    private final byte[] iv;
 
-    public AESDecrypter(SecretKey aesKey) {
+    public AESDecrypter(SecretKey aesKey, AESCipherMode mode) throws Exception {
         this.aesKey = aesKey;
+        this.mode = mode;
+        this.cipher = Cipher.getInstance(mode.getTransformation());
+        this.iv = new byte[mode.getIvLength()];
     }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf byteBuf, List<Object> out) throws Exception {
-        byte[] bytes = new byte[byteBuf.readableBytes()];
-        byteBuf.readBytes(bytes);
-        out.add(Unpooled.wrappedBuffer(AESEncryptionUtil.decrypt(aesKey, bytes)));
+        int length = byteBuf.readableBytes() - iv.length;
+        if (length < 0) throw new CorruptedFrameException("Encrypted frame is shorter than its IV");
+        byteBuf.readBytes(iv);
+        cipher.init(Cipher.DECRYPT_MODE, aesKey, mode.getParameterSpec(iv));
+        ByteBuf decrypted = ctx.alloc().ioBuffer(cipher.getOutputSize(length));
+        try {
+            ByteBuffer input = byteBuf.nioBuffer(byteBuf.readerIndex(), length);
+            int written = cipher.doFinal(input, decrypted.nioBuffer(0, decrypted.capacity()));
+            byteBuf.skipBytes(length);
+            decrypted.writerIndex(written);
+            out.add(decrypted);
+        } catch (AEADBadTagException e) {
+            decrypted.release();
+            byteBuf.skipBytes(byteBuf.readableBytes());
+            TimoCloudLogger.getLogger().severe("Received a message which failed the integrity check from " + ctx.channel().remoteAddress() + ". Closing connection.");
+            ctx.close();
+        } catch (Exception e) {
+            decrypted.release();
+            throw e;
+        }
     }
 
 }
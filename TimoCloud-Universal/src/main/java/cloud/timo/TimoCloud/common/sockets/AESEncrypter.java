@@ -1,25 +1,52 @@
 package cloud.timo.TimoCloud.common.sockets;
 
-import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
+import cloud.timo.TimoCloud.common.encryption.AESCipherMode;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
+import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
 
+/**
+ * Encrypts every frame with a fresh random IV, which is written in front of the cipher text.
+ * The cipher is created once per channel and the frame is encrypted directly from the input into the (direct) output buffer.
+ */
 public class AESEncrypter extends MessageToByteEncoder<ByteBuf> {
 
     private final SecretKey aesKey;
+    private final AESCipherMode mode;
+    private final Cipher cipher;
+    private final SecureRandom random;
+    private final byte[] iv;
 
-    public AESEncrypter(SecretKey aesKey) {
+    public AESEncrypter(SecretKey aesKey, AESCipherMode mode) throws Exception {
         this.aesKey = aesKey;
+        this.mode = mode;
+        this.cipher = Cipher.getInstance(mode.getTransformation());
+        this.random = new SecureRandom();
+        this.iv = new byte[mode.getIvLength()];
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) {
+        return ctx.alloc().ioBuffer(mode.getMaxFrameLength(msg.readableBytes()));
     }
 
     @Override
     protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
-        byte[] inBytes = new byte[in.readableBytes()];
-        in.readBytes(inBytes);
-        out.writeBytes(AESEncryptionUtil.encrypt(aesKey, inBytes));
+        random.nextBytes(iv);
+        cipher.init(Cipher.ENCRYPT_MODE, aesKey, mode.getParameterSpec(iv));
+        int length = in.readableBytes();
+        out.ensureWritable(iv.length + cipher.getOutputSize(length));
+        out.writeBytes(iv);
+        ByteBuffer input = in.nioBuffer(in.readerIndex(), length);
+        ByteBuffer output = out.nioBuffer(out.writerIndex(), out.writableBytes());
+        int written = cipher.doFinal(input, output);
+        in.skipBytes(length);
+        out.writerIndex(out.writerIndex() + written);
     }
 
 }
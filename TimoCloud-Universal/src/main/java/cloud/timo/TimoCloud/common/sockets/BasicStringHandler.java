@@ -6,19 +6,22 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 
-public abstract class BasicStringHandler extends SimpleChannelInboundHandler<String> {
+public abstract class BasicStringHandler extends SimpleChannelInboundHandler<Message> {
 
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, String message) throws Exception {
+    protected void channelRead0(ChannelHandlerContext ctx, Message message) throws Exception {
         Channel channel = ctx.channel();
         try {
-            handleMessage(Message.createFromJsonString(message), message, channel);
+            handleMessage(message, null, channel);
         } catch (Throwable e) {
-            TimoCloudLogger.getLogger().severe("Error while parsing JSON message: " + message);
+            TimoCloudLogger.getLogger().severe("Error while handling message: " + message);
             TimoCloudLogger.getLogger().severe(e);
         }
     }
 
+    /**
+     * @param originalMessage The JSON string the message has been parsed from, or null if it has been received as a decoded {@link Message}
+     */
     public abstract void handleMessage(Message message, String originalMessage, Channel channel);
 
     public void closeChannel(Channel channel) {
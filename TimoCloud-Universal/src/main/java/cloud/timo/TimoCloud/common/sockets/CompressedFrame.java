@@ -0,0 +1,16 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+
+/**
+ * A frame which has already been written by a {@link FrameCompressor} with the same settings as the one of the channel it is sent to.
+ * The channel's compressor passes it on unchanged, so a broadcast is only compressed once for all channels sharing these settings.
+ */
+public class CompressedFrame extends DefaultByteBufHolder {
+
+    public CompressedFrame(ByteBuf frame) {
+        super(frame);
+    }
+
+}
@@ -0,0 +1,106 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import cloud.timo.TimoCloud.common.utils.statistics.BatchStatistics;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delays flushes so that frames written shortly after each other reach the socket with a single syscall.
+ * Pending frames are flushed when the window has passed since the first delayed flush, when {@code maxBatch} frames are pending
+ * or when the channel becomes unwritable. A window of 0 flushes as soon as the event loop has run all queued writes.
+ * Has to be placed right in front of the {@link PacketLengthPrepender}, so that it sees one write per frame.
+ */
+public class FlushCoalescer extends ChannelDuplexHandler {
+
+    public static final long DEFAULT_WINDOW_MICROS = 1000;
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BatchStatistics statistics;
+
+    private ChannelHandlerContext ctx;
+    private int pendingWrites;
+    private boolean flushPending;
+    private ScheduledFuture<?> scheduledFlush;
+
+    public FlushCoalescer(long windowMicros, int maxBatch, BatchStatistics statistics) {
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, windowMicros));
+        this.maxBatch = Math.max(1, maxBatch);
+        this.statistics = statistics;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        flushNow();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        pendingWrites++;
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (pendingWrites == 0) {
+            ctx.flush();
+            return;
+        }
+        if (pendingWrites >= maxBatch) {
+            flushNow();
+            return;
+        }
+        if (flushPending) return;
+        flushPending = true;
+        if (windowNanos == 0) {
+            ctx.executor().execute(this::flushNow);
+        } else {
+            scheduledFlush = ctx.executor().schedule(this::flushNow, windowNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (! ctx.channel().isWritable()) flushNow();
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushNow();
+        ctx.close(promise);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushNow();
+        ctx.disconnect(promise);
+    }
+
+    private void flushNow() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        flushPending = false;
+        if (pendingWrites == 0) return;
+        statistics.record(pendingWrites);
+        pendingWrites = 0;
+        ctx.flush();
+    }
+
+    public BatchStatistics getStatistics() {
+        return statistics;
+    }
+
+}
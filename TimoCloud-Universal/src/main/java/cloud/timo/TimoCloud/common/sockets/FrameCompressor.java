@@ -0,0 +1,146 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import cloud.timo.TimoCloud.common.encryption.AESCipherMode;
+import cloud.timo.TimoCloud.common.utils.statistics.CompressionStatistics;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+import java.util.zip.Deflater;
+
+/**
+ * Deflates every outgoing frame which is at least {@link #getThreshold()} bytes long. Each frame starts with a flag telling whether it is compressed,
+ * compressed frames additionally carry their original length. Frames which do not get smaller are sent as they are.
+ * Frames longer than the maximum frame size are not sent at all, since the other side would reject them after inflating them.
+ * {@link CompressedFrame}s have been compressed with the same settings already and are passed on unchanged.
+ */
+public class FrameCompressor extends MessageToByteEncoder<ByteBuf> {
+
+    public static final int DEFAULT_THRESHOLD = 256;
+    public static final int DEFAULT_LEVEL = 6;
+
+    static final byte RAW = 0;
+    static final byte DEFLATED = 1;
+
+    private final int level;
+    private final int threshold;
+    private final int maxLength;
+    private final Deflater deflater;
+    private final CompressionStatistics statistics;
+    private byte[] input = new byte[0];
+    private byte[] output = new byte[0];
+
+    /**
+     * @param maxLength The maximum length of an uncompressed frame, see {@link #getMaxLength(int, AESCipherMode)}
+     */
+    public FrameCompressor(int level, int threshold, int maxLength) {
+        this.level = level;
+        this.threshold = threshold;
+        this.maxLength = maxLength;
+        this.deflater = new Deflater(level);
+        this.statistics = new CompressionStatistics();
+    }
+
+    /**
+     * A frame grows by at most its flag byte, since compressed frames are only sent if they get smaller. It is encrypted afterwards.
+     *
+     * @return The maximum length of an uncompressed frame, so that it still fits into the maximum frame size on the wire
+     */
+    public static int getMaxLength(int maxFrameLength, AESCipherMode cipherMode) {
+        return cipherMode.getMaxPlaintextLength(maxFrameLength) - 1;
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) {
+        return ctx.alloc().ioBuffer(msg.readableBytes() + 5);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof CompressedFrame) {
+            ctx.write(((CompressedFrame) msg).content(), promise);
+            return;
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) {
+        compress(in, out);
+    }
+
+    /**
+     * Writes the frame for the readable bytes of in to out, the same way it is done for outgoing frames
+     */
+    public synchronized void compress(ByteBuf in, ByteBuf out) {
+        int length = in.readableBytes();
+        if (length > maxLength) throw new EncoderException("Frame of " + length + " bytes exceeds the maximum frame size of " + maxLength + " bytes");
+        if (length >= threshold) {
+            int compressedLength = deflate(in, length);
+            if (compressedLength + 4 < length) {
+                in.skipBytes(length);
+                out.writeByte(DEFLATED);
+                out.writeInt(length);
+                out.writeBytes(output, 0, compressedLength);
+                statistics.record(length, compressedLength + 5, true);
+                return;
+            }
+        }
+        out.writeByte(RAW);
+        out.writeBytes(in);
+        statistics.record(length, length + 1, false);
+    }
+
+    /**
+     * Deflates the readable bytes into {@link #output} without consuming them
+     *
+     * @return The compressed length, or the input length if compression does not save anything
+     */
+    private int deflate(ByteBuf in, int length) {
+        byte[] array;
+        int offset;
+        if (in.hasArray()) {
+            array = in.array();
+            offset = in.arrayOffset() + in.readerIndex();
+        } else {
+            if (input.length < length) input = new byte[length];
+            in.getBytes(in.readerIndex(), input, 0, length);
+            array = input;
+            offset = 0;
+        }
+        if (output.length < length) output = new byte[length];
+        deflater.reset();
+        deflater.setInput(array, offset, length);
+        deflater.finish();
+        int compressedLength = 0;
+        while (! deflater.finished() && compressedLength < output.length) {
+            compressedLength += deflater.deflate(output, compressedLength, output.length - compressedLength);
+        }
+        return deflater.finished() ? compressedLength : length;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        super.handlerRemoved(ctx);
+        deflater.end();
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public CompressionStatistics getStatistics() {
+        return statistics;
+    }
+
+}
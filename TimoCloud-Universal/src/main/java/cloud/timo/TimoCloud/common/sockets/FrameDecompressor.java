@@ -0,0 +1,66 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Inflates frames written by {@link FrameCompressor}. Inflated frames are subject to the same maximum frame size as frames on the wire,
+ * which protects against frames which claim a huge original size.
+ */
+public class FrameDecompressor extends ByteToMessageDecoder {
+
+    private final int maxLength;
+    private final Inflater inflater = new Inflater();
+    private byte[] input = new byte[0];
+
+    public FrameDecompressor(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        byte flag = in.readByte();
+        if (flag == FrameCompressor.RAW) {
+            out.add(in.readRetainedSlice(in.readableBytes()));
+            return;
+        }
+        if (flag != FrameCompressor.DEFLATED) throw new CorruptedFrameException("Unknown compression flag " + flag);
+        int length = in.readInt();
+        if (length < 0 || length > maxLength) throw new CorruptedFrameException("Invalid decompressed length " + length);
+        int compressedLength = in.readableBytes();
+        if (input.length < compressedLength) input = new byte[compressedLength];
+        in.readBytes(input, 0, compressedLength);
+        ByteBuf inflated = ctx.alloc().heapBuffer(length, length);
+        boolean success = false;
+        try {
+            inflater.reset();
+            inflater.setInput(input, 0, compressedLength);
+            int written = 0;
+            while (written < length && ! inflater.finished()) {
+                int inflatedBytes = inflater.inflate(inflated.array(), inflated.arrayOffset() + written, length - written);
+                if (inflatedBytes == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                written += inflatedBytes;
+            }
+            if (written != length || ! inflater.finished()) throw new CorruptedFrameException("Compressed frame does not match its length");
+            inflated.writerIndex(length);
+            out.add(inflated);
+            success = true;
+        } catch (DataFormatException e) {
+            throw new CorruptedFrameException(e);
+        } finally {
+            if (! success) inflated.release();
+        }
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) {
+        inflater.end();
+    }
+
+}
@@ -0,0 +1,85 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import cloud.timo.TimoCloud.common.encryption.AESCipherMode;
+import io.netty.channel.ChannelPipeline;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Settings of the Core which its clients have to use as well, so that both sides accept the same frames.
+ * They are appended to the Core's handshake reply if the client has offered {@link #VERSION}.
+ */
+public class HandshakeParameters {
+
+    public static final byte VERSION = 1;
+    private static final int LENGTH = 9;
+
+    private final int maxFrameLength;
+    private final int compressionLevel;
+    private final int compressionThreshold;
+
+    public HandshakeParameters(int maxFrameLength, int compressionLevel, int compressionThreshold) {
+        this.maxFrameLength = maxFrameLength;
+        this.compressionLevel = compressionLevel;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public byte[] appendTo(byte[] bytes) {
+        byte[] result = Arrays.copyOf(bytes, bytes.length + LENGTH);
+        ByteBuffer.wrap(result, bytes.length, LENGTH).putInt(maxFrameLength).put((byte) compressionLevel).putInt(compressionThreshold);
+        return result;
+    }
+
+    /**
+     * Reads the parameters from the end of a handshake reply
+     */
+    public static HandshakeParameters read(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, bytes.length - LENGTH, LENGTH);
+        return new HandshakeParameters(buffer.getInt(), buffer.get(), buffer.getInt());
+    }
+
+    /**
+     * @return The bytes of a handshake reply before the parameters
+     */
+    public static byte[] strip(byte[] bytes) {
+        return Arrays.copyOf(bytes, bytes.length - LENGTH);
+    }
+
+    /**
+     * Makes the frame splitter and prepender of a pipeline use the Core's maximum frame size
+     */
+    public void applyTo(ChannelPipeline pipeline) {
+        PacketLengthSplitter splitter = pipeline.get(PacketLengthSplitter.class);
+        if (splitter != null) splitter.setMaxFrameLength(maxFrameLength);
+        PacketLengthPrepender prepender = pipeline.get(PacketLengthPrepender.class);
+        if (prepender != null) prepender.setMaxFrameLength(maxFrameLength);
+    }
+
+    /**
+     * @return A compressor using the Core's compression level and threshold
+     */
+    public FrameCompressor createCompressor(AESCipherMode cipherMode) {
+        return new FrameCompressor(compressionLevel, compressionThreshold, getMaxUncompressedLength(cipherMode));
+    }
+
+    /**
+     * @return The maximum length of a frame before it is compressed and encrypted, which also bounds the length of inflated frames
+     */
+    public int getMaxUncompressedLength(AESCipherMode cipherMode) {
+        return FrameCompressor.getMaxLength(maxFrameLength, cipherMode);
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+}
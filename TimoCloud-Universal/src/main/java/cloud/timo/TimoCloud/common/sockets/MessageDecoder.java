@@ -0,0 +1,27 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import cloud.timo.TimoCloud.common.protocol.MessageCodecType;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+
+import java.util.List;
+
+public class MessageDecoder extends MessageToMessageDecoder<ByteBuf> {
+
+    private final MessageCodecType codecType;
+
+    public MessageDecoder(MessageCodecType codecType) {
+        this.codecType = codecType;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        out.add(codecType.getCodec().decode(in));
+    }
+
+    public MessageCodecType getCodecType() {
+        return codecType;
+    }
+
+}
@@ -0,0 +1,42 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageCodecType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+/**
+ * Encodes outgoing {@link Message}s with the codec negotiated for this connection.
+ * JSON strings are accepted as well since the internal message API still hands over serialized messages.
+ */
+public class MessageEncoder extends MessageToByteEncoder<Object> {
+
+    private final MessageCodecType codecType;
+
+    public MessageEncoder(MessageCodecType codecType) {
+        this.codecType = codecType;
+    }
+
+    @Override
+    public boolean acceptOutboundMessage(Object msg) {
+        return msg instanceof Message || msg instanceof String;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Object in, ByteBuf out) throws Exception {
+        if (in instanceof Message) {
+            codecType.getCodec().encode((Message) in, out);
+        } else if (codecType == MessageCodecType.JSON) {
+            ByteBufUtil.writeUtf8(out, (String) in);
+        } else {
+            codecType.getCodec().encode(Message.createFromJsonString((String) in), out);
+        }
+    }
+
+    public MessageCodecType getCodecType() {
+        return codecType;
+    }
+
+}
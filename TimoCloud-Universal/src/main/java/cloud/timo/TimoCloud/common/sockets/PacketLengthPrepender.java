@@ -1,24 +1,56 @@
 package cloud.timo.TimoCloud.common.sockets;
 
+import cloud.timo.TimoCloud.common.utils.statistics.FrameStatistics;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToMessageEncoder;
 
-public class PacketLengthPrepender extends MessageToByteEncoder {
+import java.util.List;
+
+/**
+ * Writes the length of every frame in front of it. Only the length is written into a new (pooled) buffer, the frame itself is passed on unchanged.
+ * Frames the other side would reject because of their size are not sent at all.
+ */
+public class PacketLengthPrepender extends MessageToMessageEncoder<Object> {
+
+    private int maxFrameLength;
+    private final FrameStatistics statistics;
+
+    public PacketLengthPrepender(int maxFrameLength, FrameStatistics statistics) {
+        this.maxFrameLength = maxFrameLength;
+        this.statistics = statistics;
+    }
 
     @Override
-    protected void encode(ChannelHandlerContext ctx, Object in, ByteBuf out) throws Exception {
-        if (in instanceof byte[]) {
-            byte[] bytes = (byte[]) in;
-            out.writeInt(bytes.length);
-            out.writeBytes(bytes);
-        } else if (in instanceof ByteBuf) {
-            ByteBuf byteBuf = (ByteBuf) in;
-            out.writeInt(byteBuf.readableBytes());
-            out.writeBytes(byteBuf);
-        } else {
-            throw new IllegalArgumentException("Unknown packet type: " + in.getClass().getName());
+    public boolean acceptOutboundMessage(Object msg) {
+        return msg instanceof ByteBuf || msg instanceof byte[];
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Object in, List<Object> out) {
+        ByteBuf byteBuf = in instanceof byte[] ? Unpooled.wrappedBuffer((byte[]) in) : ((ByteBuf) in).retain();
+        int length = byteBuf.readableBytes();
+        if (length > maxFrameLength) {
+            byteBuf.release();
+            statistics.recordOversize();
+            throw new EncoderException("Frame of " + length + " bytes exceeds the maximum frame size of " + maxFrameLength + " bytes");
         }
+        statistics.recordSent(length);
+        out.add(ctx.alloc().ioBuffer(4).writeInt(length));
+        out.add(byteBuf);
+    }
+
+    /**
+     * Only called on the channel's event loop
+     */
+    public void setMaxFrameLength(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    public FrameStatistics getStatistics() {
+        return statistics;
     }
 
 }
@@ -1,25 +1,58 @@
 package cloud.timo.TimoCloud.common.sockets;
 
+import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
+import cloud.timo.TimoCloud.common.utils.statistics.FrameStatistics;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 
 import java.util.List;
 
+/**
+ * Splits the stream into frames, each prefixed with its length as int. Frames are passed on as retained slices of the received data, so nothing is copied.
+ * A frame longer than {@link #getMaxFrameLength()} closes the connection before anything of it is buffered.
+ */
 public class PacketLengthSplitter extends ByteToMessageDecoder {
 
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private int maxFrameLength;
+    private final FrameStatistics statistics;
+
+    public PacketLengthSplitter(int maxFrameLength, FrameStatistics statistics) {
+        this.maxFrameLength = maxFrameLength;
+        this.statistics = statistics;
+    }
+
     @Override
-    protected void decode(ChannelHandlerContext ctx, ByteBuf byteBuf, List<Object> out) throws Exception {
-        while (byteBuf.readableBytes() > 0) {
-            byteBuf.markReaderIndex();
-            if (byteBuf.readableBytes() < 4) return;
-            int length = byteBuf.readInt();
-            if (byteBuf.readableBytes() < length) { // Not all bytes received yet
-                byteBuf.resetReaderIndex();
-                return;
-            }
-            out.add(byteBuf.copy(byteBuf.readerIndex(), length));
-            byteBuf.skipBytes(length);
+    protected void decode(ChannelHandlerContext ctx, ByteBuf byteBuf, List<Object> out) {
+        if (byteBuf.readableBytes() < 4) return;
+        int length = byteBuf.getInt(byteBuf.readerIndex());
+        if (length < 0 || length > maxFrameLength) {
+            statistics.recordOversize();
+            byteBuf.skipBytes(byteBuf.readableBytes());
+            TimoCloudLogger.getLogger().severe("Received frame of " + length + " bytes from " + ctx.channel().remoteAddress() + " (maximum is " + maxFrameLength + " bytes). Closing connection.");
+            ctx.close();
+            return;
         }
+        if (byteBuf.readableBytes() < 4 + length) return; // Not all bytes received yet
+        byteBuf.skipBytes(4);
+        statistics.recordReceived(length);
+        out.add(byteBuf.readRetainedSlice(length));
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    /**
+     * Clients use the limit of the Core once it has been told to them. Only called on the channel's event loop.
+     */
+    public void setMaxFrameLength(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    public FrameStatistics getStatistics() {
+        return statistics;
     }
 }
@@ -1,6 +1,9 @@
 package cloud.timo.TimoCloud.common.sockets;
 
+import cloud.timo.TimoCloud.common.encryption.AESCipherMode;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyUtil;
+import cloud.timo.TimoCloud.common.protocol.CompressionType;
+import cloud.timo.TimoCloud.common.protocol.MessageCodecType;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
@@ -9,9 +12,30 @@ import io.netty.channel.SimpleChannelInboundHandler;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import java.security.KeyPair;
+import java.util.Arrays;
 
 public class RSAHandshakeHandler extends SimpleChannelInboundHandler<ByteBuf> {
 
+    /**
+     * Codecs offered to the Core, in order of preference
+     */
+    private static final MessageCodecType[] OFFERED_CODECS = {MessageCodecType.BINARY, MessageCodecType.JSON};
+
+    /**
+     * Cipher modes offered to the Core, in order of preference
+     */
+    private static final AESCipherMode[] OFFERED_CIPHER_MODES = {AESCipherMode.GCM, AESCipherMode.CBC};
+
+    /**
+     * Compression types offered to the Core, in order of preference
+     */
+    private static final CompressionType[] OFFERED_COMPRESSION_TYPES = {CompressionType.DEFLATE, CompressionType.NONE};
+
+    /**
+     * Versions of the handshake parameters we understand
+     */
+    private static final byte[] OFFERED_PARAMETER_VERSIONS = {HandshakeParameters.VERSION};
+
     private Channel channel;
     private KeyPair keyPair;
     private RSAHandshakeFuture future;
@@ -25,7 +49,28 @@ public class RSAHandshakeHandler extends SimpleChannelInboundHandler<ByteBuf> {
     }
 
     public RSAHandshakeHandler startHandshake() {
-        channel.writeAndFlush(keyPair.getPublic().getEncoded());
+        byte[] publicKey = keyPair.getPublic().getEncoded();
+        byte[] bytes = new byte[5 + OFFERED_CODECS.length + OFFERED_CIPHER_MODES.length + OFFERED_COMPRESSION_TYPES.length + OFFERED_PARAMETER_VERSIONS.length + publicKey.length];
+        int index = 0;
+        bytes[index++] = MessageCodecType.OFFER_MARKER;
+        bytes[index++] = (byte) OFFERED_CODECS.length;
+        for (MessageCodecType codecType : OFFERED_CODECS) {
+            bytes[index++] = (byte) codecType.getId();
+        }
+        bytes[index++] = (byte) OFFERED_CIPHER_MODES.length;
+        for (AESCipherMode cipherMode : OFFERED_CIPHER_MODES) {
+            bytes[index++] = (byte) cipherMode.getId();
+        }
+        bytes[index++] = (byte) OFFERED_COMPRESSION_TYPES.length;
+        for (CompressionType compressionType : OFFERED_COMPRESSION_TYPES) {
+            bytes[index++] = (byte) compressionType.getId();
+        }
+        bytes[index++] = (byte) OFFERED_PARAMETER_VERSIONS.length;
+        for (byte version : OFFERED_PARAMETER_VERSIONS) {
+            bytes[index++] = version;
+        }
+        System.arraycopy(publicKey, 0, bytes, index, publicKey.length);
+        channel.writeAndFlush(bytes);
         return this;
     }
 
@@ -34,9 +79,20 @@ public class RSAHandshakeHandler extends SimpleChannelInboundHandler<ByteBuf> {
         try {
             byte[] bytes = new byte[byteBuf.readableBytes()];
             byteBuf.readBytes(bytes);
-            SecretKey secretKey = new SecretKeySpec(RSAKeyUtil.decrypt(keyPair.getPrivate(), bytes), "AES");
+            byte[] reply = RSAKeyUtil.decrypt(keyPair.getPrivate(), bytes);
+            // Since we offered codecs, cipher modes and compression types, the Core appends the ids of the ones it has chosen to the AES key, followed by its parameters
+            HandshakeParameters parameters = HandshakeParameters.read(reply);
+            byte[] decrypted = HandshakeParameters.strip(reply);
+            MessageCodecType codecType = MessageCodecType.fromId(decrypted[decrypted.length - 3]);
+            if (codecType == null) throw new IllegalStateException("Core selected an unknown codec");
+            AESCipherMode cipherMode = AESCipherMode.fromId(decrypted[decrypted.length - 2]);
+            if (cipherMode == null) throw new IllegalStateException("Core selected an unknown cipher mode");
+            CompressionType compressionType = CompressionType.fromId(decrypted[decrypted.length - 1]);
+            if (compressionType == null) throw new IllegalStateException("Core selected an unknown compression type");
+            SecretKey secretKey = new SecretKeySpec(Arrays.copyOf(decrypted, decrypted.length - 3), "AES");
             channel.pipeline().remove(this);
-            future.onCompletion(secretKey);
+            parameters.applyTo(channel.pipeline());
+            future.onCompletion(secretKey, codecType, cipherMode, compressionType, parameters);
         } catch (Exception e) {
 
         }
@@ -44,7 +100,7 @@ public class RSAHandshakeHandler extends SimpleChannelInboundHandler<ByteBuf> {
 
     public interface RSAHandshakeFuture {
 
-        void onCompletion(SecretKey aesKey);
+        void onCompletion(SecretKey aesKey, MessageCodecType codecType, AESCipherMode cipherMode, CompressionType compressionType, HandshakeParameters parameters) throws Exception;
 
     }
 }
@@ -4,14 +4,19 @@ import org.apache.commons.io.FileDeleteStrategy;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 public class HashUtil {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private static final Set<String> IGNORE_NAMES = new HashSet<>(Arrays.asList(".DS_Store"));
 
     public static List<String> getDifferentFiles(String prefix, Map<String, Object> a, Map<String, Object> b) {
@@ -65,19 +70,124 @@ public class HashUtil {
         if (! (file.exists() && file.isDirectory())) return new HashMap<>();
         Map<String, Object> layer = new HashMap<>();
         for (File file1 : file.listFiles()) {
-            if (!file1.isDirectory() && IGNORE_NAMES.contains(file1.getName())) continue;
+            if (!file1.isDirectory() && isIgnored(file1.getName())) continue;
             layer.put(file1.getName() + (file1.isDirectory() ? "/" : ""), file1.isDirectory() ? getHashes(file1) : getFileHash(file1));
         }
         return layer;
     }
 
-    private static String getFileHash(File file) throws IOException {
+    public static boolean isIgnored(String fileName) {
+        return IGNORE_NAMES.contains(fileName);
+    }
+
+    /**
+     * Computes the CRC32 checksum of a file without loading it into memory at once
+     */
+    public static String getFileHash(File file) throws IOException {
         CRC32 crc = new CRC32();
-        Path path = file.toPath();
-        crc.update(Files.readAllBytes(path));
+        try (InputStream inputStream = new CheckedInputStream(Files.newInputStream(file.toPath()), crc)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (inputStream.read(buffer) != -1) ;
+        }
         return crc.getValue() + "";
     }
 
+    /**
+     * @return The Merkle root of a hash tree returned by {@link #getHashes(File)}. Two directories have the same root if and only if they contain the same files.
+     */
+    public static String getRootHash(Map<String, Object> hashes) {
+        return getDirectoryRoots(hashes).get("");
+    }
+
+    /**
+     * @return The root of every directory of a hash tree, keyed by its path relative to the tree ("" for the tree itself, e.g. "plugins/" for a subdirectory)
+     */
+    public static Map<String, String> getDirectoryRoots(Map<String, Object> hashes) {
+        Map<String, String> roots = new HashMap<>();
+        computeRoot("", hashes, roots);
+        return roots;
+    }
+
+    private static String computeRoot(String path, Map<?, ?> hashes, Map<String, String> roots) {
+        Map<String, String> entries = new HashMap<>();
+        for (Map.Entry<?, ?> entry : hashes.entrySet()) {
+            String name = String.valueOf(entry.getKey());
+            entries.put(name, entry.getValue() instanceof Map
+                    ? computeRoot(path + name, (Map<?, ?>) entry.getValue(), roots)
+                    : String.valueOf(entry.getValue()));
+        }
+        String root = combineHashes(entries);
+        roots.put(path, root);
+        return root;
+    }
+
+    /**
+     * @param entries The hashes of a directory's files and the roots of its subdirectories (whose names end with "/")
+     * @return The root of the directory
+     */
+    public static String combineHashes(Map<String, String> entries) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every Java platform has to support SHA-256
+        }
+        for (Map.Entry<String, String> entry : new TreeMap<>(entries).entrySet()) {
+            if (isIgnored(entry.getKey())) continue;
+            digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(entry.getValue().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        StringBuilder root = new StringBuilder();
+        for (byte b : digest.digest()) root.append(String.format("%02x", b));
+        return root.toString();
+    }
+
+    /**
+     * Replaces every subtree of which the other side already has a directory with the same root at the same path by that root, so that only differing subtrees have to be sent
+     *
+     * @param knownRoots Roots of the other side's directories, see {@link #getDirectoryRoots(Map)}, as decoded from a message
+     */
+    public static Map<String, Object> pruneHashes(Map<String, Object> hashes, Map<?, ?> knownRoots) {
+        return prune("", hashes, getDirectoryRoots(hashes), knownRoots);
+    }
+
+    private static Map<String, Object> prune(String path, Map<?, ?> hashes, Map<String, String> roots, Map<?, ?> knownRoots) {
+        Map<String, Object> pruned = new HashMap<>();
+        for (Map.Entry<?, ?> entry : hashes.entrySet()) {
+            String name = String.valueOf(entry.getKey());
+            if (! (entry.getValue() instanceof Map)) {
+                pruned.put(name, entry.getValue());
+                continue;
+            }
+            String subPath = path + name;
+            String root = roots.get(subPath);
+            pruned.put(name, root.equals(knownRoots.get(subPath)) ? root : prune(subPath, (Map<?, ?>) entry.getValue(), roots, knownRoots));
+        }
+        return pruned;
+    }
+
+    /**
+     * Reverses {@link #pruneHashes(Map, Map)}: pruned subtrees are replaced by the subtrees of the local hash tree the known roots have been computed of
+     */
+    public static Map<String, Object> inflateHashes(Map<?, ?> pruned, Map<?, ?> local) {
+        Map<String, Object> inflated = new HashMap<>();
+        for (Map.Entry<?, ?> entry : pruned.entrySet()) {
+            String name = String.valueOf(entry.getKey());
+            Object localValue = local == null ? null : local.get(name);
+            Map<?, ?> localSubtree = localValue instanceof Map ? (Map<?, ?>) localValue : Collections.emptyMap();
+            if (entry.getValue() instanceof Map) {
+                inflated.put(name, inflateHashes((Map<?, ?>) entry.getValue(), localSubtree));
+            } else if (name.endsWith("/")) {
+                inflated.put(name, localSubtree);
+            } else {
+                inflated.put(name, entry.getValue());
+            }
+        }
+        return inflated;
+    }
+
     private static String bytesToString(byte[] b) {
         return new String(b, StandardCharsets.UTF_8);
     }
@@ -0,0 +1,531 @@
+package cloud.timo.TimoCloud.common.utils.files;
+
+import cloud.timo.TimoCloud.common.utils.HashUtil;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Caches the hash trees of {@link HashUtil#getHashes(File)} per directory.
+ * Every directory of a cached tree is registered at a {@link WatchService}; as long as no event has been reported for a directory or one of its subdirectories,
+ * its cached hashes are returned without touching the file system. Changed directories are listed again, but only files whose size or modification time changed are hashed again.
+ * If no WatchService is available, every directory is listed again on each request, which still avoids reading unchanged files.
+ * The Merkle root of every directory is kept along with its hashes, so that roots of unchanged subdirectories do not have to be computed again.
+ * If an index directory is given, the hashes of every cached tree are persisted there, keyed by relative path, size, modification time and inode,
+ * so that files which have not changed while the process was not running are not read again either. Changed files are hashed in parallel.
+ */
+public class DirectoryHashCache implements Closeable {
+
+    /**
+     * Files modified this shortly before they have been hashed might be modified again without changing their modification time, so their hash is not trusted
+     */
+    private static final long MODIFICATION_TIME_GRANULARITY = 2000;
+    private static final int INDEX_VERSION = 1;
+    public static final int DEFAULT_HASH_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private final Map<Path, DirectoryNode> roots;
+    private final Map<WatchKey, DirectoryNode> watchedDirectories;
+    private WatchService watchService;
+    private final File indexDirectory;
+    private final ExecutorService hashPool;
+    private long hits;
+    private long misses;
+    private long filesHashed;
+    private long filesReused;
+    private long bytesHashed;
+    private long indexLoads;
+    private long indexSaves;
+
+    /**
+     * @param watch Whether directories shall be watched for changes. If false, directories are checked for changed files on every request.
+     */
+    public DirectoryHashCache(boolean watch) {
+        this(watch, null, 1);
+    }
+
+    /**
+     * @param indexDirectory Directory the hashes are persisted in, null if they shall only be kept in memory
+     * @param hashThreads    How many files may be hashed at the same time
+     */
+    public DirectoryHashCache(boolean watch, File indexDirectory, int hashThreads) {
+        this.indexDirectory = indexDirectory;
+        if (indexDirectory != null) indexDirectory.mkdirs();
+        this.hashPool = hashThreads > 1 ? Executors.newFixedThreadPool(hashThreads, runnable -> {
+            Thread thread = new Thread(runnable, "TimoCloud-Hashing");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        this.roots = new HashMap<>();
+        this.watchedDirectories = new HashMap<>();
+        if (watch) {
+            try {
+                this.watchService = FileSystems.getDefault().newWatchService();
+            } catch (IOException | UnsupportedOperationException e) {
+                this.watchService = null;
+            }
+        }
+    }
+
+    /**
+     * @return The same structure as {@link HashUtil#getHashes(File)}. The returned map is shared between callers and must not be modified.
+     */
+    public Map<String, Object> getHashes(File directory) throws IOException {
+        return getHashes(directory, null);
+    }
+
+    /**
+     * @param statistics Counts the files checked and hashed by this call, may be null
+     */
+    public synchronized Map<String, Object> getHashes(File directory, Statistics statistics) throws IOException {
+        if (! (directory.exists() && directory.isDirectory())) return Collections.emptyMap();
+        long start = System.nanoTime();
+        processEvents();
+        Path path = directory.toPath().toAbsolutePath().normalize();
+        DirectoryNode root = roots.get(path);
+        if (root != null && ! root.dirty) {
+            hits++;
+            if (statistics != null) statistics.nanos += System.nanoTime() - start;
+            return root.hashes;
+        }
+        misses++;
+        if (root == null) {
+            root = new DirectoryNode(path, null);
+            root.index = loadIndex(path);
+            roots.put(path, root);
+        }
+        update(root, statistics == null ? new Statistics() : statistics);
+        if (statistics != null) statistics.nanos += System.nanoTime() - start;
+        return root.hashes;
+    }
+
+    /**
+     * @return The Merkle root of a directory, see {@link HashUtil#getRootHash(Map)}
+     */
+    public synchronized String getRootHash(File directory) throws IOException {
+        Map<String, Object> hashes = getHashes(directory);
+        DirectoryNode node = roots.get(directory.toPath().toAbsolutePath().normalize());
+        return node == null ? HashUtil.getRootHash(hashes) : node.root;
+    }
+
+    /**
+     * Makes the next request list the given directory and all of its subdirectories again. Needed after own changes, since a WatchService reports changes asynchronously.
+     */
+    public synchronized void invalidate(File directory) {
+        Path path = directory.toPath().toAbsolutePath().normalize();
+        for (DirectoryNode root : roots.values()) {
+            if (root.path.startsWith(path)) {
+                root.markTreeDirty();
+            } else if (path.startsWith(root.path)) {
+                DirectoryNode node = root.find(root.path.relativize(path));
+                if (node == null) node = root;
+                node.markTreeDirty();
+                node.markDirty();
+            }
+        }
+    }
+
+    /**
+     * @return The hash of a single file, which is only computed if the file has changed since it has been hashed the last time
+     */
+    public synchronized String getFileHash(File file) throws IOException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        DirectoryNode parent = roots.get(path.getParent());
+        if (parent == null) {
+            for (DirectoryNode root : roots.values()) {
+                if (path.startsWith(root.path)) parent = root.find(root.path.relativize(path.getParent()));
+                if (parent != null) break;
+            }
+        }
+        FileEntry cached = parent == null ? null : parent.files.get(path.getFileName().toString());
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (cached != null && cached.isValid(attributes)) {
+            filesReused++;
+            return cached.hash;
+        }
+        FileEntry entry = hash(path, attributes);
+        filesHashed++;
+        bytesHashed += entry.size;
+        return entry.hash;
+    }
+
+    /**
+     * Lists all dirty directories of a tree, hashes all changed files in parallel and computes the hash trees of the listed directories afterwards
+     */
+    private void update(DirectoryNode root, Statistics statistics) throws IOException {
+        List<DirectoryNode> listed = new ArrayList<>();
+        List<PendingFile> pending = new ArrayList<>();
+        boolean removed = list(root, root, "", listed, pending, statistics);
+        hashAll(pending, statistics);
+        for (int i = listed.size() - 1; i >= 0; i--) combine(listed.get(i)); // Subdirectories have been listed after their parents
+        if (indexDirectory != null && (removed || ! pending.isEmpty() || root.index != null)) saveIndex(root);
+        root.index = null; // The tree is complete now
+    }
+
+    /**
+     * @return Whether files or directories have been removed since the directory has been listed the last time
+     */
+    private boolean list(DirectoryNode node, DirectoryNode root, String prefix, List<DirectoryNode> listed, List<PendingFile> pending, Statistics statistics) throws IOException {
+        node.dirty = false; // Set before listing, so that changes during the update mark the node dirty again
+        watch(node);
+        listed.add(node);
+        boolean removed = false;
+        File[] files = node.path.toFile().listFiles();
+        Map<String, DirectoryNode> directories = new HashMap<>();
+        Map<String, FileEntry> entries = new HashMap<>();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (file.isDirectory()) {
+                    DirectoryNode child = node.directories.remove(name);
+                    if (child == null) child = new DirectoryNode(file.toPath(), node);
+                    if (child.dirty || child.hashes == null) removed |= list(child, root, prefix + name + "/", listed, pending, statistics);
+                    directories.put(name, child);
+                } else {
+                    if (HashUtil.isIgnored(name)) continue;
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                    } catch (NoSuchFileException e) {
+                        continue; // Deleted while listing, the directory has been marked dirty again
+                    }
+                    statistics.filesChecked++;
+                    FileEntry entry = node.files.get(name);
+                    if (entry == null && root.index != null) entry = root.index.get(prefix + name);
+                    if (entry != null && entry.isValid(attributes)) {
+                        filesReused++;
+                        entries.put(name, entry);
+                    } else {
+                        pending.add(new PendingFile(node, name, file.toPath(), attributes));
+                    }
+                }
+            }
+        }
+        if (! node.directories.isEmpty()) removed = true;
+        for (DirectoryNode directory : node.directories.values()) directory.unwatch();
+        for (String name : node.files.keySet()) {
+            if (! entries.containsKey(name)) {
+                removed = true;
+                break;
+            }
+        }
+        node.directories = directories;
+        node.files = entries;
+        return removed;
+    }
+
+    private void hashAll(List<PendingFile> pending, Statistics statistics) throws IOException {
+        if (hashPool == null || pending.size() < 2) {
+            for (PendingFile file : pending) file.entry = hash(file.path, file.attributes);
+        } else {
+            List<Future<FileEntry>> futures = new ArrayList<>();
+            for (PendingFile file : pending) futures.add(hashPool.submit(() -> hash(file.path, file.attributes)));
+            for (int i = 0; i < pending.size(); i++) {
+                try {
+                    pending.get(i).entry = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    for (Future<FileEntry> future : futures) future.cancel(false);
+                    if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                    throw new IOException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while hashing files");
+                }
+            }
+        }
+        for (PendingFile file : pending) {
+            file.node.files.put(file.name, file.entry);
+            filesHashed++;
+            bytesHashed += file.entry.size;
+            statistics.filesHashed++;
+            statistics.bytesHashed += file.entry.size;
+        }
+    }
+
+    private static void combine(DirectoryNode node) {
+        Map<String, Object> hashes = new HashMap<>();
+        Map<String, String> entries = new HashMap<>();
+        for (Map.Entry<String, DirectoryNode> directory : node.directories.entrySet()) {
+            hashes.put(directory.getKey() + "/", directory.getValue().hashes);
+            entries.put(directory.getKey() + "/", directory.getValue().root);
+        }
+        for (Map.Entry<String, FileEntry> file : node.files.entrySet()) {
+            hashes.put(file.getKey(), file.getValue().hash);
+            entries.put(file.getKey(), file.getValue().hash);
+        }
+        node.hashes = Collections.unmodifiableMap(hashes);
+        node.root = HashUtil.combineHashes(entries);
+    }
+
+    /**
+     * Reads the file with a stream, so that big files are never held in memory. Safe to be called from the hash pool.
+     */
+    private static FileEntry hash(Path path, BasicFileAttributes attributes) throws IOException {
+        long hashed = System.currentTimeMillis();
+        String hash = HashUtil.getFileHash(path.toFile());
+        return new FileEntry(attributes.size(), attributes.lastModifiedTime().toMillis(), getInode(attributes), hashed, hash);
+    }
+
+    private static String getInode(BasicFileAttributes attributes) {
+        return attributes.fileKey() == null ? "" : attributes.fileKey().toString();
+    }
+
+    private File getIndexFile(Path root) {
+        return new File(indexDirectory, UUID.nameUUIDFromBytes(root.toString().getBytes(StandardCharsets.UTF_8)) + ".index");
+    }
+
+    /**
+     * @return The persisted entries of a tree, keyed by their path relative to the tree, or null if there are none
+     */
+    private Map<String, FileEntry> loadIndex(Path root) {
+        if (indexDirectory == null) return null;
+        File file = getIndexFile(root);
+        if (! file.exists()) return null;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != INDEX_VERSION || ! input.readUTF().equals(root.toString())) return null;
+            int size = input.readInt();
+            Map<String, FileEntry> index = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                String path = input.readUTF();
+                index.put(path, new FileEntry(input.readLong(), input.readLong(), input.readUTF(), input.readLong(), input.readUTF()));
+            }
+            indexLoads++;
+            return index;
+        } catch (IOException e) {
+            return null; // Corrupt indices are written again after the tree has been hashed
+        }
+    }
+
+    private void saveIndex(DirectoryNode root) throws IOException {
+        List<Map.Entry<String, FileEntry>> entries = new ArrayList<>();
+        collect(root, "", entries);
+        File file = getIndexFile(root.path);
+        File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            output.writeInt(INDEX_VERSION);
+            output.writeUTF(root.path.toString());
+            output.writeInt(entries.size());
+            for (Map.Entry<String, FileEntry> entry : entries) {
+                FileEntry fileEntry = entry.getValue();
+                output.writeUTF(entry.getKey());
+                output.writeLong(fileEntry.size);
+                output.writeLong(fileEntry.lastModified);
+                output.writeUTF(fileEntry.inode);
+                output.writeLong(fileEntry.hashed);
+                output.writeUTF(fileEntry.hash);
+            }
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        indexSaves++;
+    }
+
+    private static void collect(DirectoryNode node, String prefix, List<Map.Entry<String, FileEntry>> entries) {
+        for (Map.Entry<String, FileEntry> file : node.files.entrySet()) entries.add(new AbstractMap.SimpleEntry<>(prefix + file.getKey(), file.getValue()));
+        for (Map.Entry<String, DirectoryNode> directory : node.directories.entrySet()) collect(directory.getValue(), prefix + directory.getKey() + "/", entries);
+    }
+
+    private void watch(DirectoryNode node) {
+        if (watchService == null || (node.key != null && node.key.isValid())) return;
+        try {
+            node.key = node.path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirectories.put(node.key, node);
+        } catch (IOException e) {
+            node.key = null;
+        }
+    }
+
+    /**
+     * Marks all directories dirty for which changes have been reported
+     */
+    private void processEvents() {
+        if (watchService == null) {
+            for (DirectoryNode root : roots.values()) root.markTreeDirty();
+            return;
+        }
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            boolean overflow = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) overflow = true;
+            }
+            DirectoryNode node = watchedDirectories.get(key);
+            if (! key.reset()) {
+                watchedDirectories.remove(key);
+                if (node != null) {
+                    node.key = null;
+                    if (node.parent != null) node.parent.markDirty();
+                }
+            }
+            if (overflow) {
+                for (DirectoryNode root : roots.values()) root.markTreeDirty();
+            } else if (node != null) {
+                node.markDirty();
+            }
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getFilesHashed() {
+        return filesHashed;
+    }
+
+    public synchronized long getFilesReused() {
+        return filesReused;
+    }
+
+    public boolean isWatching() {
+        return watchService != null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (hashPool != null) hashPool.shutdownNow();
+        if (watchService != null) watchService.close();
+        watchedDirectories.clear();
+        roots.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("hits=%d, misses=%d, files hashed=%d (%.1fMB), files reused=%d, watching=%b, index loads=%d, index saves=%d",
+                hits, misses, filesHashed, bytesHashed / 1024.0 / 1024.0, filesReused, isWatching(), indexLoads, indexSaves);
+    }
+
+    private class DirectoryNode {
+
+        private final Path path;
+        private final DirectoryNode parent;
+        private Map<String, DirectoryNode> directories;
+        private Map<String, FileEntry> files;
+        private Map<String, Object> hashes;
+        private String root;
+        private WatchKey key;
+        private boolean dirty;
+        private Map<String, FileEntry> index;
+
+        private DirectoryNode(Path path, DirectoryNode parent) {
+            this.path = path;
+            this.parent = parent;
+            this.directories = new HashMap<>();
+            this.files = new HashMap<>();
+            this.dirty = true;
+        }
+
+        /**
+         * Marks this directory and all of its parents dirty, since their hash trees contain this one
+         */
+        private void markDirty() {
+            for (DirectoryNode node = this; node != null; node = node.parent) node.dirty = true;
+        }
+
+        /**
+         * Marks this directory and all of its subdirectories dirty, used if changes may have been missed
+         */
+        private void markTreeDirty() {
+            dirty = true;
+            for (DirectoryNode child : directories.values()) child.markTreeDirty();
+        }
+
+        private DirectoryNode find(Path relative) {
+            DirectoryNode node = this;
+            for (Path name : relative) {
+                if (name.toString().isEmpty()) continue;
+                node = node.directories.get(name.toString());
+                if (node == null) return null;
+            }
+            return node;
+        }
+
+        private void unwatch() {
+            if (key != null) {
+                key.cancel();
+                watchedDirectories.remove(key);
+                key = null;
+            }
+            for (DirectoryNode child : directories.values()) child.unwatch();
+        }
+    }
+
+    private static class FileEntry {
+
+        private final long size;
+        private final long lastModified;
+        private final String inode;
+        private final long hashed;
+        private final String hash;
+
+        private FileEntry(long size, long lastModified, String inode, long hashed, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.inode = inode;
+            this.hashed = hashed;
+            this.hash = hash;
+        }
+
+        private boolean isValid(BasicFileAttributes attributes) {
+            return attributes.size() == size
+                    && attributes.lastModifiedTime().toMillis() == lastModified
+                    && getInode(attributes).equals(inode)
+                    && lastModified < hashed - MODIFICATION_TIME_GRANULARITY;
+        }
+    }
+
+    private static class PendingFile {
+
+        private final DirectoryNode node;
+        private final String name;
+        private final Path path;
+        private final BasicFileAttributes attributes;
+        private FileEntry entry;
+
+        private PendingFile(DirectoryNode node, String name, Path path, BasicFileAttributes attributes) {
+            this.node = node;
+            this.name = name;
+            this.path = path;
+            this.attributes = attributes;
+        }
+    }
+
+    /**
+     * What has been done by one call of {@link #getHashes(File, Statistics)}, may be passed to several calls to sum them up
+     */
+    public static class Statistics {
+
+        private long filesChecked;
+        private long filesHashed;
+        private long bytesHashed;
+        private long nanos;
+
+        public long getFilesChecked() {
+            return filesChecked;
+        }
+
+        public long getFilesHashed() {
+            return filesHashed;
+        }
+
+        public long getBytesHashed() {
+            return bytesHashed;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d files checked, %d hashed (%.1fMB) in %dms", filesChecked, filesHashed, bytesHashed / 1024.0 / 1024.0, nanos / 1000000);
+        }
+    }
+
+}
@@ -0,0 +1,312 @@
+package cloud.timo.TimoCloud.common.utils.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the directory of an instance out of its templates. Later templates overwrite files of earlier ones.
+ * In {@link Mode#COPY}, the default, every file is copied. In the other modes only files matching one of the link patterns are hard linked,
+ * all other files are copied or, in {@link Mode#REFLINK}, cloned by the file system. A hard linked file shares its content with the template,
+ * so the patterns must only match files which are never written in place - note that Bukkit replaces plugins with the jars in plugins/update in place.
+ * If linking or cloning is not possible (e.g. the directories are on different file systems), files are copied and the mode is not tried again for that pair of directories.
+ * Existing files of the target are always deleted before they are replaced, so that a linked file is never written through to a template.
+ */
+public class DirectoryMaterializer {
+
+    public enum Mode {
+        COPY, LINK, REFLINK
+    }
+
+    public static final Mode DEFAULT_MODE = Mode.COPY;
+    public static final List<String> DEFAULT_LINKED = Collections.singletonList("*.jar");
+
+    private static final int REFLINK_BATCH_SIZE = 200;
+    private static final long REFLINK_TIMEOUT_SECONDS = 120;
+
+    private final Mode mode;
+    private final List<PathMatcher> fileNameMatchers;
+    private final List<PathMatcher> pathMatchers;
+    private final Set<String> unsupported;
+    private long linked;
+    private long reflinked;
+    private long copied;
+    private long bytesLinked;
+    private long bytesReflinked;
+    private long bytesCopied;
+    private long fallbacks;
+
+    /**
+     * @param linked Glob patterns of files which are only read by instances and may be hard linked. Patterns containing a '/' are matched against the path relative to the template, all others against the file name.
+     */
+    public DirectoryMaterializer(Mode mode, Collection<String> linked) {
+        this.mode = mode;
+        this.fileNameMatchers = new ArrayList<>();
+        this.pathMatchers = new ArrayList<>();
+        this.unsupported = new HashSet<>();
+        FileSystem fileSystem = FileSystems.getDefault();
+        for (String pattern : linked) {
+            if (pattern.contains("/")) pathMatchers.add(fileSystem.getPathMatcher("glob:" + pattern));
+            else fileNameMatchers.add(fileSystem.getPathMatcher("glob:" + pattern));
+        }
+    }
+
+    public static Mode parseMode(String mode) {
+        try {
+            return Mode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return DEFAULT_MODE;
+        }
+    }
+
+    /**
+     * Adds all files of a template to a directory, existing files are replaced
+     *
+     * @return What has been done for this template
+     */
+    public Result materialize(File template, File target) throws IOException {
+        Result result = new Result();
+        long start = System.nanoTime();
+        Path source = template.toPath();
+        Path destination = target.toPath();
+        Files.createDirectories(destination);
+        List<Path> cloned = new ArrayList<>();
+        Files.walkFileTree(source, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 25, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                Path targetDirectory = destination.resolve(source.relativize(directory).toString());
+                if (Files.isRegularFile(targetDirectory, LinkOption.NOFOLLOW_LINKS)) Files.delete(targetDirectory);
+                Files.createDirectories(targetDirectory);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                if (!attributes.isRegularFile()) return FileVisitResult.CONTINUE;
+                Path relative = source.relativize(file);
+                if (mode != Mode.COPY && isLinked(relative)) {
+                    link(file, destination.resolve(relative.toString()), attributes.size(), result);
+                } else if (mode == Mode.REFLINK) {
+                    cloned.add(relative);
+                } else {
+                    copy(file, destination.resolve(relative.toString()), attributes.size(), result);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        for (int i = 0; i < cloned.size(); i += REFLINK_BATCH_SIZE) {
+            reflink(source, destination, cloned.subList(i, Math.min(cloned.size(), i + REFLINK_BATCH_SIZE)), result);
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Adds a single file from outside of the templates (e.g. the TimoCloud plugin) to a directory. It is never hard linked, since it is not known who writes to it.
+     */
+    public Result materializeFile(File file, File target) throws IOException {
+        Result result = new Result();
+        long start = System.nanoTime();
+        Files.createDirectories(target.toPath().getParent());
+        if (mode == Mode.REFLINK) reflinkFile(file.toPath(), target.toPath(), file.length(), result);
+        else copy(file.toPath(), target.toPath(), file.length(), result);
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    public boolean isLinked(Path relative) {
+        Path fileName = relative.getFileName();
+        for (PathMatcher matcher : fileNameMatchers) if (matcher.matches(fileName)) return true;
+        for (PathMatcher matcher : pathMatchers) if (matcher.matches(relative)) return true;
+        return false;
+    }
+
+    private void link(Path file, Path target, long size, Result result) throws IOException {
+        String key = getKey(Mode.LINK, file, target.getParent());
+        if (!isUnsupported(key)) {
+            Files.deleteIfExists(target);
+            try {
+                Files.createLink(target, file);
+                result.linked++;
+                result.bytesLinked += size;
+                synchronized (this) {
+                    linked++;
+                    bytesLinked += size;
+                }
+                return;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                setUnsupported(key);
+            }
+        }
+        copy(file, target, size, result);
+    }
+
+    /**
+     * Clones files with cp, which uses the FICLONE ioctl on file systems supporting it (btrfs, xfs, ...). Files which could not be cloned are copied.
+     */
+    private void reflink(Path source, Path destination, List<Path> files, Result result) throws IOException {
+        String key = getKey(Mode.REFLINK, source, destination);
+        if (!isUnsupported(key)) {
+            for (Path relative : files) Files.deleteIfExists(destination.resolve(relative.toString()));
+            List<String> paths = new ArrayList<>();
+            for (Path relative : files) paths.add(relative.toString());
+            paths.add(destination.toAbsolutePath().toString());
+            boolean success = clone(source.toFile(), Collections.singletonList("--parents"), paths);
+            if (!success) setUnsupported(key);
+            for (Path relative : files) {
+                Path target = destination.resolve(relative.toString());
+                long size = Files.size(source.resolve(relative.toString()));
+                if (success && Files.isRegularFile(target)) {
+                    result.reflinked++;
+                    result.bytesReflinked += size;
+                    synchronized (this) {
+                        reflinked++;
+                        bytesReflinked += size;
+                    }
+                } else {
+                    copy(source.resolve(relative.toString()), target, size, result);
+                }
+            }
+            return;
+        }
+        for (Path relative : files) {
+            Path file = source.resolve(relative.toString());
+            copy(file, destination.resolve(relative.toString()), Files.size(file), result);
+        }
+    }
+
+    private void reflinkFile(Path file, Path target, long size, Result result) throws IOException {
+        String key = getKey(Mode.REFLINK, file, target.getParent());
+        if (!isUnsupported(key)) {
+            Files.deleteIfExists(target);
+            if (clone(null, Collections.emptyList(), Arrays.asList(file.toAbsolutePath().toString(), target.toAbsolutePath().toString())) && Files.isRegularFile(target)) {
+                result.reflinked++;
+                result.bytesReflinked += size;
+                synchronized (this) {
+                    reflinked++;
+                    bytesReflinked += size;
+                }
+                return;
+            }
+            setUnsupported(key);
+        }
+        copy(file, target, size, result);
+    }
+
+    /**
+     * @param paths The files to clone followed by the target
+     * @return Whether cp has cloned all given files
+     */
+    private static boolean clone(File directory, List<String> options, List<String> paths) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList("cp", "--reflink=always", "--preserve=timestamps"));
+        command.addAll(options);
+        command.add("--");
+        command.addAll(paths);
+        try {
+            Process process = new ProcessBuilder(command).directory(directory).redirectErrorStream(true).redirectOutput(new File("/dev/null")).start();
+            boolean success = process.waitFor(REFLINK_TIMEOUT_SECONDS, TimeUnit.SECONDS) && process.exitValue() == 0;
+            if (process.isAlive()) process.destroyForcibly();
+            return success;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while cloning files", e);
+        }
+    }
+
+    private void copy(Path file, Path target, long size, Result result) throws IOException {
+        Files.deleteIfExists(target);
+        Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+        result.copied++;
+        result.bytesCopied += size;
+        synchronized (this) {
+            copied++;
+            bytesCopied += size;
+        }
+    }
+
+    private static String getKey(Mode mode, Path source, Path destination) throws IOException {
+        return mode + ":" + Files.getFileStore(source).name() + ":" + Files.getFileStore(destination).name();
+    }
+
+    private synchronized boolean isUnsupported(String key) {
+        return unsupported.contains(key);
+    }
+
+    private synchronized void setUnsupported(String key) {
+        if (unsupported.add(key)) fallbacks++;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public synchronized long getBytesCopied() {
+        return bytesCopied;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("mode=%s, linked=%d (%d MB), reflinked=%d (%d MB), copied=%d (%d MB), fallbacks=%d",
+                mode, linked, bytesLinked >> 20, reflinked, bytesReflinked >> 20, copied, bytesCopied >> 20, fallbacks);
+    }
+
+    /**
+     * What has been done for one call, the bytes written are the bytes copied, linked and cloned files do not write their content
+     */
+    public static class Result {
+
+        private int linked;
+        private int reflinked;
+        private int copied;
+        private long bytesLinked;
+        private long bytesReflinked;
+        private long bytesCopied;
+        private long nanos;
+
+        public void add(Result result) {
+            linked += result.linked;
+            reflinked += result.reflinked;
+            copied += result.copied;
+            bytesLinked += result.bytesLinked;
+            bytesReflinked += result.bytesReflinked;
+            bytesCopied += result.bytesCopied;
+            nanos += result.nanos;
+        }
+
+        public int getLinked() {
+            return linked;
+        }
+
+        public int getReflinked() {
+            return reflinked;
+        }
+
+        public int getCopied() {
+            return copied;
+        }
+
+        public long getBytesWritten() {
+            return bytesCopied;
+        }
+
+        public long getBytesShared() {
+            return bytesLinked + bytesReflinked;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d linked, %d reflinked, %d copied, %.1f MB written, %.1f MB shared",
+                    linked, reflinked, copied, bytesCopied / 1048576.0, getBytesShared() / 1048576.0);
+        }
+    }
+
+}
@@ -0,0 +1,299 @@
+package cloud.timo.TimoCloud.common.utils.files.tailer;
+
+import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tails any number of files with a single thread. The directories of tailed files are registered at a {@link WatchService}, so new lines are read as soon as they are written;
+ * all files are checked every {@link #sweepMillis} in addition, which is the only way of noticing changes if no WatchService is available.
+ * New bytes are read with one reusable buffer and dispatched line by line to the listener of their file.
+ * A file which has been truncated is read from its start again, a file which has been replaced (rotated) is read to its end before the new file is opened.
+ * The tailer thread is never interrupted while it is reading, since that would close the channel of the file being read.
+ */
+public class FileTailerService implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+    private final long sweepMillis;
+    private final ByteBuffer buffer;
+    private final Map<Path, List<TailedFile>> files;
+    private final Map<Path, WatchKey> watchedDirectories;
+    private final Thread thread;
+    private WatchService watchService;
+    private volatile boolean running;
+    private long linesRead;
+    private long bytesRead;
+    private long truncations;
+    private long rotations;
+    private long events;
+    private long sweeps;
+
+    /**
+     * @param watch       Whether a WatchService shall be used if it is available
+     * @param sweepMillis How often all files are checked for new lines
+     */
+    public FileTailerService(boolean watch, long sweepMillis) {
+        this.sweepMillis = sweepMillis;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.files = new HashMap<>();
+        this.watchedDirectories = new HashMap<>();
+        if (watch) {
+            try {
+                this.watchService = FileSystems.getDefault().newWatchService();
+            } catch (IOException | UnsupportedOperationException e) {
+                this.watchService = null;
+            }
+        }
+        this.thread = new Thread(this::run, "TimoCloud-FileTailer");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Starts tailing a file from its beginning. The listener is called from the tailer thread.
+     */
+    public synchronized TailedFile tail(File file, FileTailerListener listener) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        TailedFile tailedFile = new TailedFile(path, listener);
+        files.computeIfAbsent(path, key -> new ArrayList<>()).add(tailedFile);
+        watch(path.getParent()); // Lines written before the directory has been watched are read by the next sweep
+        return tailedFile;
+    }
+
+    private void watch(Path directory) {
+        if (watchService == null || directory == null || watchedDirectories.containsKey(directory)) return;
+        try {
+            watchedDirectories.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+        } catch (IOException e) {
+            TimoCloudLogger.getLogger().severe("Could not watch directory " + directory + ", its files are checked every " + sweepMillis + "ms: " + e.getMessage());
+        }
+    }
+
+    private synchronized void remove(TailedFile tailedFile) {
+        List<TailedFile> tailed = files.get(tailedFile.path);
+        if (tailed == null) return;
+        tailed.remove(tailedFile);
+        if (tailed.isEmpty()) files.remove(tailedFile.path);
+        Path directory = tailedFile.path.getParent();
+        for (Path path : files.keySet()) {
+            if (Objects.equals(path.getParent(), directory)) return;
+        }
+        WatchKey key = watchedDirectories.remove(directory);
+        if (key != null) key.cancel();
+    }
+
+    private void run() {
+        long lastSweep = 0;
+        while (running) {
+            try {
+                Set<Path> changed = new HashSet<>();
+                boolean sweep = waitForChanges(changed, Math.max(0, lastSweep + sweepMillis - System.currentTimeMillis()));
+                if (sweep || System.currentTimeMillis() - lastSweep >= sweepMillis) {
+                    lastSweep = System.currentTimeMillis();
+                    sweeps++;
+                    for (TailedFile tailedFile : getFiles(null)) read(tailedFile);
+                } else {
+                    for (Path path : changed) for (TailedFile tailedFile : getFiles(path)) read(tailedFile);
+                }
+            } catch (Exception e) {
+                TimoCloudLogger.getLogger().severe("Error while tailing files: ");
+                TimoCloudLogger.getLogger().severe(e);
+            }
+        }
+        for (TailedFile tailedFile : getFiles(null)) tailedFile.close();
+    }
+
+    /**
+     * @return Whether all files shall be checked
+     */
+    private boolean waitForChanges(Set<Path> changed, long timeout) {
+        try {
+            if (watchService == null) {
+                Thread.sleep(timeout);
+                return true;
+            }
+            WatchKey key = watchService.poll(timeout, TimeUnit.MILLISECONDS);
+            while (key != null) {
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) return true;
+                    events++;
+                    changed.add(directory.resolve((Path) event.context()));
+                }
+                key.reset();
+                key = watchService.poll();
+            }
+            return false;
+        } catch (InterruptedException e) {
+            return true; // The service has been closed
+        } catch (ClosedWatchServiceException e) {
+            watchService = null;
+            return true;
+        }
+    }
+
+    private synchronized List<TailedFile> getFiles(Path path) {
+        List<TailedFile> result = new ArrayList<>();
+        if (path == null) for (List<TailedFile> tailed : files.values()) result.addAll(tailed);
+        else result.addAll(files.getOrDefault(path, Collections.emptyList()));
+        return result;
+    }
+
+    private void read(TailedFile tailedFile) {
+        try {
+            if (tailedFile.stopped) {
+                tailedFile.readAvailable(); // Lines written before the instance has stopped
+                tailedFile.close();
+                remove(tailedFile);
+                return;
+            }
+            tailedFile.read();
+        } catch (IOException e) {
+            tailedFile.listener.handleException(e);
+            tailedFile.close(); // Opened again on the next check
+            if (tailedFile.stopped) remove(tailedFile);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            if (watchService != null) watchService.close();
+        } catch (IOException e) {
+            TimoCloudLogger.getLogger().severe(e);
+        }
+    }
+
+    public synchronized int getTailedFiles() {
+        int amount = 0;
+        for (List<TailedFile> tailed : files.values()) amount += tailed.size();
+        return amount;
+    }
+
+    public boolean isWatching() {
+        return watchService != null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("files=%d, lines=%d (%.1fMB), events=%d, sweeps=%d, truncations=%d, rotations=%d, watching=%b",
+                getTailedFiles(), linesRead, bytesRead / 1024.0 / 1024.0, events, sweeps, truncations, rotations, isWatching());
+    }
+
+    /**
+     * A file tailed by the service. Its state is only accessed by the tailer thread, except for {@link #stop()}.
+     */
+    public class TailedFile {
+
+        private final Path path;
+        private final FileTailerListener listener;
+        private FileChannel channel;
+        private Object fileKey;
+        private byte[] line;
+        private int lineLength;
+        private volatile boolean stopped;
+
+        private TailedFile(Path path, FileTailerListener listener) {
+            this.path = path;
+            this.listener = listener;
+            this.line = new byte[256];
+        }
+
+        /**
+         * Stops tailing the file after the lines which have already been written have been read
+         */
+        public void stop() {
+            stopped = true;
+        }
+
+        private void read() throws IOException {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                if (channel != null) readAvailable(); // Rotated, the new file has not been created yet
+                return;
+            }
+            if (channel != null && attributes.fileKey() != null && !attributes.fileKey().equals(fileKey)) {
+                readAvailable(); // Rotated, finish the old file first
+                if (lineLength > 0) flushLine();
+                close();
+                rotations++;
+            }
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+                fileKey = attributes.fileKey();
+            }
+            if (channel.size() < channel.position()) {
+                channel.position(0);
+                lineLength = 0;
+                truncations++;
+            }
+            readAvailable();
+        }
+
+        private void readAvailable() throws IOException {
+            if (channel == null) return;
+            while (true) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                if (read <= 0) return;
+                bytesRead += read;
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b == '\n') flushLine();
+                    else append(b);
+                }
+            }
+        }
+
+        private void append(byte b) {
+            if (lineLength == line.length) {
+                if (lineLength >= MAX_LINE_LENGTH) flushLine();
+                else line = Arrays.copyOf(line, Math.min(MAX_LINE_LENGTH, line.length * 2));
+            }
+            line[lineLength++] = b;
+        }
+
+        private void flushLine() {
+            int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+            String text = new String(line, 0, length, StandardCharsets.UTF_8);
+            lineLength = 0;
+            linesRead++;
+            try {
+                listener.readLine(text);
+            } catch (Exception e) {
+                TimoCloudLogger.getLogger().severe("Error while processing read line: ");
+                TimoCloudLogger.getLogger().severe(e);
+            }
+        }
+
+        private void close() {
+            if (channel == null) return;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package cloud.timo.TimoCloud.common.utils.statistics;
+
+/**
+ * Thread-safe histogram of batch sizes. Bucket i counts the batches with a size between 2^i and 2^(i+1)-1, the last bucket counts all bigger batches.
+ */
+public class BatchStatistics {
+
+    private static final int BUCKETS = 11;
+
+    private final long[] buckets = new long[BUCKETS];
+    private long count;
+    private long total;
+    private int max;
+
+    public synchronized void record(int size) {
+        if (size <= 0) return;
+        buckets[Math.min(31 - Integer.numberOfLeadingZeros(size), BUCKETS - 1)]++;
+        count++;
+        total += size;
+        max = Math.max(max, size);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    public synchronized int getMax() {
+        return max;
+    }
+
+    public synchronized double getAverage() {
+        return count == 0 ? 0 : total / (double) count;
+    }
+
+    /**
+     * @return A copy of the bucket counters, see the class description for the bucket bounds
+     */
+    public synchronized long[] getBuckets() {
+        return buckets.clone();
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder histogram = new StringBuilder();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (buckets[i] == 0) continue;
+            if (histogram.length() > 0) histogram.append(", ");
+            int lower = 1 << i;
+            histogram.append(i == BUCKETS - 1 ? lower + "+" : lower == (lower << 1) - 1 ? String.valueOf(lower) : lower + "-" + ((lower << 1) - 1)).append(": ").append(buckets[i]);
+        }
+        return String.format("count=%d, avg=%.2f, max=%d, histogram=[%s]", getCount(), getAverage(), getMax(), histogram);
+    }
+}
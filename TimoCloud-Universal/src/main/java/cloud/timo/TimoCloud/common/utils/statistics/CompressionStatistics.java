@@ -0,0 +1,47 @@
+package cloud.timo.TimoCloud.common.utils.statistics;
+
+/**
+ * Thread-safe summary of the frames passed through a compressor (frames, compressed frames, bytes before and after compression)
+ */
+public class CompressionStatistics {
+
+    private long frames;
+    private long compressedFrames;
+    private long uncompressedBytes;
+    private long compressedBytes;
+
+    public synchronized void record(int uncompressedLength, int compressedLength, boolean compressed) {
+        frames++;
+        if (compressed) compressedFrames++;
+        uncompressedBytes += uncompressedLength;
+        compressedBytes += compressedLength;
+    }
+
+    public synchronized long getFrames() {
+        return frames;
+    }
+
+    public synchronized long getCompressedFrames() {
+        return compressedFrames;
+    }
+
+    public synchronized long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    public synchronized long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * @return Sent bytes divided by the bytes which would have been sent without compression
+     */
+    public synchronized double getRatio() {
+        return uncompressedBytes == 0 ? 1 : compressedBytes / (double) uncompressedBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("frames=%d (%d compressed), %d -> %d bytes, ratio=%.3f", getFrames(), getCompressedFrames(), getUncompressedBytes(), getCompressedBytes(), getRatio());
+    }
+}
@@ -0,0 +1,52 @@
+package cloud.timo.TimoCloud.common.utils.statistics;
+
+/**
+ * Thread-safe counters of the frames a connection has received and sent
+ */
+public class FrameStatistics {
+
+    private long framesReceived;
+    private long bytesReceived;
+    private long framesSent;
+    private long bytesSent;
+    private long oversizeFrames;
+
+    public synchronized void recordReceived(int length) {
+        framesReceived++;
+        bytesReceived += length;
+    }
+
+    public synchronized void recordSent(int length) {
+        framesSent++;
+        bytesSent += length;
+    }
+
+    public synchronized void recordOversize() {
+        oversizeFrames++;
+    }
+
+    public synchronized long getFramesReceived() {
+        return framesReceived;
+    }
+
+    public synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public synchronized long getFramesSent() {
+        return framesSent;
+    }
+
+    public synchronized long getBytesSent() {
+        return bytesSent;
+    }
+
+    public synchronized long getOversizeFrames() {
+        return oversizeFrames;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("in=%d frames/%d bytes, out=%d frames/%d bytes, oversize=%d", getFramesReceived(), getBytesReceived(), getFramesSent(), getBytesSent(), getOversizeFrames());
+    }
+}
@@ -0,0 +1,57 @@
+package cloud.timo.TimoCloud.common.utils.statistics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe summary of recorded durations (count, average, maximum and most recent value)
+ */
+public class LatencyStatistics {
+
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+    private long lastNanos;
+
+    public synchronized void record(long nanos) {
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        lastNanos = nanos;
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getAverageMillis() {
+        return count == 0 ? 0 : toMillis(totalNanos) / count;
+    }
+
+    public synchronized double getMaxMillis() {
+        return toMillis(maxNanos);
+    }
+
+    public synchronized double getLastMillis() {
+        return toMillis(lastNanos);
+    }
+
+    public synchronized void reset() {
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+        lastNanos = 0;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("count=%d, avg=%.3fms, max=%.3fms, last=%.3fms", getCount(), getAverageMillis(), getMaxMillis(), getLastMillis());
+    }
+}
@@ -1,6 +1,7 @@
 package cloud.timo.TimoCloud.cord;
 
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
+import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.implementations.internal.TimoCloudInternalImplementationAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.implementations.managers.APIResponseManager;
 import cloud.timo.TimoCloud.api.implementations.managers.EventManager;
@@ -163,7 +164,7 @@ public class TimoCloudCord implements TimoCloudModule {
     }
 
     public void onHandshakeSuccess() {
-        getSocketMessageManager().sendMessage(Message.create().setType(MessageType.GET_API_DATA));
+        getSocketMessageManager().sendMessage(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getStateTracker().createDataRequest());
     }
 
     private void initSocketServer() {
@@ -1,23 +1,25 @@
 package cloud.timo.TimoCloud.cord.sockets;
 
+import cloud.timo.TimoCloud.common.protocol.MessageCodecType;
+import cloud.timo.TimoCloud.common.sockets.MessageDecoder;
+import cloud.timo.TimoCloud.common.sockets.MessageEncoder;
 import cloud.timo.TimoCloud.common.sockets.PacketLengthPrepender;
 import cloud.timo.TimoCloud.common.sockets.PacketLengthSplitter;
+import cloud.timo.TimoCloud.common.utils.statistics.FrameStatistics;
 import cloud.timo.TimoCloud.cord.TimoCloudCord;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
-import io.netty.util.CharsetUtil;
 
 public class CordPipeline extends ChannelInitializer<Channel> {
 
     @Override
     protected void initChannel(Channel ch) {
+        FrameStatistics statistics = new FrameStatistics(); // The default limit is replaced by the Core's one during the handshake
         ch.pipeline().addLast(TimoCloudCord.getInstance().getSocketClientHandler());
-        ch.pipeline().addLast("prepender", new PacketLengthPrepender());
-        ch.pipeline().addLast("splitter", new PacketLengthSplitter());
-        ch.pipeline().addLast("decoder", new StringDecoder(CharsetUtil.UTF_8));
-        ch.pipeline().addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
+        ch.pipeline().addLast("prepender", new PacketLengthPrepender(PacketLengthSplitter.DEFAULT_MAX_FRAME_LENGTH, statistics));
+        ch.pipeline().addLast("splitter", new PacketLengthSplitter(PacketLengthSplitter.DEFAULT_MAX_FRAME_LENGTH, statistics));
+        ch.pipeline().addLast("decoder", new MessageDecoder(MessageCodecType.JSON));
+        ch.pipeline().addLast("encoder", new MessageEncoder(MessageCodecType.JSON));
         ch.pipeline().addLast("handler", TimoCloudCord.getInstance().getStringHandler());
     }
 
@@ -1,6 +1,7 @@
 package cloud.timo.TimoCloud.cord.sockets;
 
 import cloud.timo.TimoCloud.cord.TimoCloudCord;
+import cloud.timo.TimoCloud.common.protocol.Message;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -23,6 +24,10 @@ public class CordSocketClientHandler extends ChannelInboundHandlerAdapter {
         TimoCloudCord.getInstance().onSocketDisconnect();
     }
 
+    public void sendMessage(Message message) {
+        if (channel != null && channel.isActive()) channel.writeAndFlush(message);
+    }
+
     public void sendMessage(String message) {
         if (channel != null && channel.isActive()) channel.writeAndFlush(message);
     }
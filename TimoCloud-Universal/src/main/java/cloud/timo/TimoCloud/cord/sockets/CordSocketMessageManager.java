@@ -6,7 +6,7 @@ import cloud.timo.TimoCloud.cord.TimoCloudCord;
 public class CordSocketMessageManager {
 
     public void sendMessage(Message message) {
-        TimoCloudCord.getInstance().getSocketClientHandler().sendMessage(message.toJson());
+        TimoCloudCord.getInstance().getSocketClientHandler().sendMessage(message);
     }
 
 }
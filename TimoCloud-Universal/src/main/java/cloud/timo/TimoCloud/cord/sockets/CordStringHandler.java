@@ -9,6 +9,8 @@ import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
 import cloud.timo.TimoCloud.api.utils.EventUtil;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.sockets.BasicStringHandler;
+import cloud.timo.TimoCloud.common.sockets.FrameCompressor;
+import cloud.timo.TimoCloud.common.sockets.HandshakeParameters;
 import cloud.timo.TimoCloud.common.utils.EnumUtil;
 import cloud.timo.TimoCloud.common.utils.PluginMessageSerializer;
 import cloud.timo.TimoCloud.cord.TimoCloudCord;
@@ -27,16 +29,21 @@ public class CordStringHandler extends BasicStringHandler {
         Object data = message.get("data");
         switch (type) {
             case "HANDSHAKE_SUCCESS":
+            case "CORD_HANDSHAKE_SUCCESS":
+                if (message.get("maxFrameSize") instanceof Number) { // Use the Core's limit, otherwise large frames of the Core would close the connection
+                    new HandshakeParameters(((Number) message.get("maxFrameSize")).intValue(), FrameCompressor.DEFAULT_LEVEL, FrameCompressor.DEFAULT_THRESHOLD).applyTo(channel.pipeline());
+                }
                 TimoCloudCord.getInstance().onHandshakeSuccess();
                 break;
             case "API_DATA": {
-                ((TimoCloudUniversalAPICordImplementation) TimoCloudAPI.getUniversalAPI()).setData((Map<String, Object>) data);
+                ((TimoCloudUniversalAPICordImplementation) TimoCloudAPI.getUniversalAPI()).onData(message);
                 break;
             }
             case "EVENT_FIRED":
                 try {
+                    if (! ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getStateTracker().onEvent(message, TimoCloudCord.getInstance().getSocketMessageManager()::sendMessage)) break;
                     EventType eventType = EnumUtil.valueOf(EventType.class, (String) message.get("eT"));
-                    ((EventManager) TimoCloudAPI.getEventAPI()).callEvent(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper().readValue((String) data, EventUtil.getClassByEventType(eventType)));
+                    ((EventManager) TimoCloudAPI.getEventAPI()).callEvent(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).readValue(data, EventUtil.getClassByEventType(eventType)));
                 } catch (Exception e) {
                     System.err.println("Error while parsing event from json: ");
                     TimoCloudCord.getInstance().severe(e);
@@ -48,7 +55,7 @@ public class CordStringHandler extends BasicStringHandler {
                 break;
             }
             default:
-                TimoCloudCord.getInstance().severe("Could not categorize json message: " + originalMessage);
+                TimoCloudCord.getInstance().severe("Could not categorize message: " + message);
         }
     }
 }
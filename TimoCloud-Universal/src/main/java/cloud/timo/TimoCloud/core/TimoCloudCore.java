@@ -14,6 +14,8 @@ import cloud.timo.TimoCloud.core.api.TimoCloudInternalMessageAPICoreImplementati
 import cloud.timo.TimoCloud.core.api.TimoCloudMessageAPICoreImplementation;
 import cloud.timo.TimoCloud.core.api.TimoCloudUniversalAPICoreImplementation;
 import cloud.timo.TimoCloud.core.managers.*;
+import cloud.timo.TimoCloud.core.placement.AdmissionQueue;
+import cloud.timo.TimoCloud.core.placement.PlacementEngine;
 import cloud.timo.TimoCloud.core.plugins.PluginManager;
 import cloud.timo.TimoCloud.core.sockets.CoreSocketServer;
 import cloud.timo.TimoCloud.core.sockets.CoreSocketServerHandler;
@@ -31,9 +33,10 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Collections;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.*;
 
 import static org.jline.builtins.Completers.TreeCompleter.node;
@@ -53,17 +56,26 @@ public class TimoCloudCore implements TimoCloudModule {
     private Channel channel;
     private TemplateManager templateManager;
     private CommandManager commandManager;
+    private CoreSequencer sequencer;
+    private ExecutorService ioExecutor;
     private CoreEventManager eventManager;
     private CloudFlareManager cloudFlareManager;
     private PluginManager pluginManager;
     private PluginMessageManager pluginMessageManager;
     private APIRequestManager apiRequestManager;
+    private APIStateManager apiStateManager;
+    private PlacementEngine placementEngine;
+    private ForecastManager forecastManager;
+    private ScaleDownPolicy scaleDownPolicy;
+    private AdmissionQueue admissionQueue;
+    private DemandScheduler demandScheduler;
     private CorePublicKeyManager corePublicKeyManager;
 
     private boolean running;
     private boolean waitingForCommand = false;
     private LineReader reader;
 
+    private static final int DEFAULT_IO_THREADS = 2;
     private static final String ANSI_RESET = "\u001B[0m";
     private static final String ANSI_RED = "\u001B[31m";
 
@@ -136,6 +148,7 @@ public class TimoCloudCore implements TimoCloudModule {
 
     @Override
     public void unload() {
+        if (getForecastManager() != null) getForecastManager().save();
         getCloudFlareManager().unload();
         for (TimoCloudPlugin plugin : getPluginManager().getPlugins()) {
             plugin.onUnload();
@@ -189,7 +202,8 @@ public class TimoCloudCore implements TimoCloudModule {
             waitingForCommand = false;
             line = line.trim();
             if (line.isEmpty()) continue;
-            getCommandManager().onCommand(line);
+            String command = line;
+            getSequencer().execute(() -> getCommandManager().onCommand(command));
         }
     }
 
@@ -204,6 +218,11 @@ public class TimoCloudCore implements TimoCloudModule {
             System.exit(1);
         }
         fileManager.load();
+        this.sequencer = new CoreSequencer();
+        this.ioExecutor = createIoExecutor(((Number) getFileManager().getConfig().getOrDefault("io-threads", DEFAULT_IO_THREADS)).intValue());
+        this.demandScheduler = new DemandScheduler(
+                ((Number) getFileManager().getConfig().getOrDefault("demand-debounce-millis", DemandScheduler.DEFAULT_DEBOUNCE_MILLIS)).longValue(),
+                ((Number) getFileManager().getConfig().getOrDefault("demand-safety-interval-millis", DemandScheduler.DEFAULT_SAFETY_INTERVAL_MILLIS)).longValue());
         this.socketServerHandler = new CoreSocketServerHandler();
         this.socketServer = new CoreSocketServer();
         this.stringHandler = new CoreStringHandler();
@@ -215,7 +234,25 @@ public class TimoCloudCore implements TimoCloudModule {
         this.pluginManager = new PluginManager();
         this.pluginMessageManager = new PluginMessageManager();
         this.apiRequestManager = new APIRequestManager();
+        this.apiStateManager = new APIStateManager(((Number) getFileManager().getConfig().getOrDefault("api-state-log-size", APIStateManager.DEFAULT_CAPACITY)).intValue());
         this.corePublicKeyManager = new CorePublicKeyManager();
+        this.placementEngine = new PlacementEngine();
+        String placementStrategy = (String) getFileManager().getConfig().getOrDefault("placement-strategy", PlacementEngine.DEFAULT_STRATEGY);
+        if (! placementEngine.setStrategy(placementStrategy)) severe("Unknown placement strategy '" + placementStrategy + "', using '" + PlacementEngine.DEFAULT_STRATEGY + "' instead.");
+        placementEngine.setMaxStartsPerBase(((Number) getFileManager().getConfig().getOrDefault("placement-max-starts-per-base", PlacementEngine.DEFAULT_MAX_STARTS_PER_BASE)).intValue());
+        this.admissionQueue = new AdmissionQueue(
+                ((Number) getFileManager().getConfig().getOrDefault("base-max-starts-in-flight", AdmissionQueue.DEFAULT_MAX_STARTS_IN_FLIGHT)).intValue(),
+                ((Number) getFileManager().getConfig().getOrDefault("starts-per-second", AdmissionQueue.DEFAULT_STARTS_PER_SECOND)).doubleValue());
+        this.forecastManager = new ForecastManager(
+                ((Number) getFileManager().getConfig().getOrDefault("forecast-sample-seconds", ForecastManager.DEFAULT_SAMPLE_SECONDS)).intValue(),
+                ((Number) getFileManager().getConfig().getOrDefault("forecast-history-days", ForecastManager.DEFAULT_HISTORY_DAYS)).intValue(),
+                ((Number) getFileManager().getConfig().getOrDefault("forecast-horizon-minutes", ForecastManager.DEFAULT_HORIZON_MINUTES)).intValue(),
+                (Boolean) getFileManager().getConfig().getOrDefault("forecast-scaling", true),
+                getFileManager().getForecastDirectory());
+        this.scaleDownPolicy = new ScaleDownPolicy(
+                ((Number) getFileManager().getConfig().getOrDefault("scale-down-cooldown-seconds", ScaleDownPolicy.DEFAULT_COOLDOWN_SECONDS)).intValue(),
+                ((Number) getFileManager().getConfig().getOrDefault("scale-down-min-idle-seconds", ScaleDownPolicy.DEFAULT_MIN_IDLE_SECONDS)).intValue(),
+                ((Number) getFileManager().getConfig().getOrDefault("scale-down-min-lifetime-seconds", ScaleDownPolicy.DEFAULT_MIN_LIFETIME_SECONDS)).intValue());
 
         APIInstanceUtil.setEventInstance(new EventManager());
         APIInstanceUtil.setUniversalInstance(new TimoCloudUniversalAPICoreImplementation());
@@ -229,6 +266,19 @@ public class TimoCloudCore implements TimoCloudModule {
         TimoCloudAPI.getMessageAPI().registerMessageListener(new APIResponseManager(), "TIMOCLOUD_API_RESPONSE");
     }
 
+    /**
+     * Blocking disk IO (hashing and reading template files, encoding snapshots) is done by this pool, so it does not hold up the {@link CoreSequencer}.
+     * Tasks which change the Core's state afterwards have to be posted back to the sequencer.
+     */
+    private static ExecutorService createIoExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "TimoCloudCore-IO-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     private void createLogger() throws IOException {
         logger = Logger.getLogger("TimoCloudCore");
         logger.setUseParentHandlers(false);
@@ -241,8 +291,7 @@ public class TimoCloudCore implements TimoCloudModule {
     }
 
     private void registerTasks() {
-        ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
-        executor.scheduleAtFixedRate(this::everySecond, 1, 1, TimeUnit.SECONDS);
+        getSequencer().scheduleAtFixedRate(this::everySecond, 1, 1, TimeUnit.SECONDS);
     }
 
     private void everySecond() {
@@ -273,6 +322,14 @@ public class TimoCloudCore implements TimoCloudModule {
         return instance;
     }
 
+    public CoreSequencer getSequencer() {
+        return sequencer;
+    }
+
+    public ExecutorService getIoExecutor() {
+        return ioExecutor;
+    }
+
     public boolean isWaitingForCommand() {
         return waitingForCommand;
     }
@@ -325,6 +382,30 @@ public class TimoCloudCore implements TimoCloudModule {
         return apiRequestManager;
     }
 
+    public APIStateManager getApiStateManager() {
+        return apiStateManager;
+    }
+
+    public DemandScheduler getDemandScheduler() {
+        return demandScheduler;
+    }
+
+    public PlacementEngine getPlacementEngine() {
+        return placementEngine;
+    }
+
+    public AdmissionQueue getAdmissionQueue() {
+        return admissionQueue;
+    }
+
+    public ForecastManager getForecastManager() {
+        return forecastManager;
+    }
+
+    public ScaleDownPolicy getScaleDownPolicy() {
+        return scaleDownPolicy;
+    }
+
     public CorePublicKeyManager getCorePublicKeyManager() {
         return corePublicKeyManager;
     }
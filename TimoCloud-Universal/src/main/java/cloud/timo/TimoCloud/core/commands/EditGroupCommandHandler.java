@@ -14,7 +14,7 @@ public class EditGroupCommandHandler extends CommandFormatUtil implements Comman
     @Override
     public void onCommand(String command, CommandSender sender, String... args) {
         if (args.length < 3) {
-            notEnoughArgs(sender, "editgroup <name> <onlineAmount (int) | maxAmount (int) | base (String) | ram (int) | static (boolean) | priority (int)> <value>");
+            notEnoughArgs(sender, "editgroup <name> <onlineAmount (int) | maxAmount (int) | standbyAmount (int) | base (String) | ram (int) | static (boolean) | priority (int)> <value>");
             notEnoughArgs(sender, "editgroup <name> <playersPerProxy (int) | maxPlayers (int) | keepFreeSlots (int) | minAmount (int) | maxAmount (int) | base (String) | ram (int) | static (boolean) | priority (int)> <value>");
             return;
         }
@@ -42,6 +42,9 @@ public class EditGroupCommandHandler extends CommandFormatUtil implements Comman
                 case "maxamount":
                     serverGroup.setMaxAmount(Integer.parseInt(value));
                     break;
+                case "standbyamount":
+                    serverGroup.setStandbyAmount(Integer.parseInt(value));
+                    break;
                 case "base":
                     String baseIdentifier = value;
                     if (baseIdentifier.equalsIgnoreCase("none") || baseIdentifier.equalsIgnoreCase("dynamic"))
@@ -66,7 +69,7 @@ public class EditGroupCommandHandler extends CommandFormatUtil implements Comman
                     serverGroup.setPriority(priority);
                     break;
                 default:
-                    invalidArgs(sender, "editgroup <name> <onlineAmount (int) | maxAmount (int) | base (String) | ram (int) | static (boolean) | priority (int)> <value>");
+                    invalidArgs(sender, "editgroup <name> <onlineAmount (int) | maxAmount (int) | standbyAmount (int) | base (String) | ram (int) | static (boolean) | priority (int)> <value>");
                     return;
             }
             TimoCloudCore.getInstance().getInstanceManager().saveServerGroups();
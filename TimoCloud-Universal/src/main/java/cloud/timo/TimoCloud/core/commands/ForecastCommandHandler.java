@@ -0,0 +1,54 @@
+package cloud.timo.TimoCloud.core.commands;
+
+import cloud.timo.TimoCloud.api.core.commands.CommandHandler;
+import cloud.timo.TimoCloud.api.core.commands.CommandSender;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.commands.utils.CommandFormatUtil;
+import cloud.timo.TimoCloud.core.forecast.GroupHistory;
+import cloud.timo.TimoCloud.core.managers.ForecastManager;
+import cloud.timo.TimoCloud.core.objects.Group;
+
+import java.util.Collection;
+import java.util.Collections;
+
+public class ForecastCommandHandler extends CommandFormatUtil implements CommandHandler {
+
+    @Override
+    public void onCommand(String command, CommandSender sender, String... args) {
+        ForecastManager forecastManager = TimoCloudCore.getInstance().getForecastManager();
+        if (args.length > 0 && args[0].equalsIgnoreCase("save")) {
+            forecastManager.save();
+            sender.sendMessage("&2Saved the player count history of all groups.");
+            return;
+        }
+        Collection<? extends Group> groups = TimoCloudCore.getInstance().getInstanceManager().getGroups();
+        if (args.length > 0) {
+            Group group = TimoCloudCore.getInstance().getInstanceManager().getGroupByName(args[0]);
+            if (group == null) {
+                sender.sendError("Group " + args[0] + " not found. Get a list of all groups with 'listgroups'");
+                return;
+            }
+            groups = Collections.singleton(group);
+        }
+        sender.sendMessage("&6Forecast horizon&7: &2" + forecastManager.getHorizonMinutes() + " minutes&7, used for scaling: &2" + forecastManager.isScaling());
+        for (Group group : groups) {
+            GroupHistory history = forecastManager.getHistory(group.getId());
+            if (history == null) {
+                sender.sendMessage("  &e" + group.getName() + "&7: no samples yet");
+                continue;
+            }
+            long slot = history.getPlayers().getLastSlot();
+            sender.sendMessage("  &e" + group.getName() + "&7: players &2" + history.getPlayers().get(slot) + " &7-> &2" + format(history.getForecastPlayers())
+                    + "&7, used instances &2" + history.getInstances().get(slot) + " &7-> &2" + format(history.getForecastInstances())
+                    + "&7, predicted extra instances: &2" + TimoCloudCore.getInstance().getInstanceManager().getPredictedExtraInstances(group));
+            sender.sendMessage("      &6Players&7: &2" + history.getPlayerAccuracy());
+            sender.sendMessage("      &6Instances&7: &2" + history.getInstanceAccuracy());
+            sender.sendMessage("      &6History&7: &2" + history.getPlayers().getKnown() + "&7/&2" + history.getPlayers().getCapacity() + " samples");
+        }
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "?" : String.format("%.1f", value);
+    }
+
+}
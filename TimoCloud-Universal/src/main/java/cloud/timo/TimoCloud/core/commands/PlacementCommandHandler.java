@@ -0,0 +1,77 @@
+package cloud.timo.TimoCloud.core.commands;
+
+import cloud.timo.TimoCloud.api.core.commands.CommandHandler;
+import cloud.timo.TimoCloud.api.core.commands.CommandSender;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.commands.utils.CommandFormatUtil;
+import cloud.timo.TimoCloud.core.placement.ClusterState;
+import cloud.timo.TimoCloud.core.placement.PlacementEngine;
+import cloud.timo.TimoCloud.core.placement.PlacementSimulator;
+import cloud.timo.TimoCloud.core.placement.PlacementStrategy;
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.stream.Collectors;
+
+public class PlacementCommandHandler extends CommandFormatUtil implements CommandHandler {
+
+    private static final String DEFAULT_STATE_FILE = "placement-state.json";
+
+    @Override
+    public void onCommand(String command, CommandSender sender, String... args) {
+        PlacementEngine placementEngine = TimoCloudCore.getInstance().getPlacementEngine();
+        if (args.length < 1) {
+            sender.sendMessage("&6Placement strategy&7: &2" + placementEngine.getStrategy().getName() + " &7(available: &2" + placementEngine.getStrategies().stream().map(PlacementStrategy::getName).collect(Collectors.joining("&7, &2")) + "&7)");
+            sender.sendMessage("&6Max starts per base&7: &2" + placementEngine.getMaxStartsPerBase());
+            sender.sendMessage("&6Statistics&7: &2" + placementEngine);
+            return;
+        }
+        switch (args[0].toLowerCase()) {
+            case "strategy":
+                if (args.length < 2) {
+                    notEnoughArgs(sender, "placement strategy <name>");
+                    return;
+                }
+                if (! placementEngine.setStrategy(args[1])) {
+                    sender.sendError("Unknown placement strategy '" + args[1] + "'. Type 'placement' for a list of all strategies.");
+                    return;
+                }
+                sender.sendMessage("&2Placement strategy has been set to &e" + placementEngine.getStrategy().getName() + "&2. Set 'placement-strategy' in your config.yml to keep it after a restart.");
+                break;
+            case "record":
+                ClusterState state = placementEngine.getLastState();
+                if (state == null) {
+                    sender.sendError("Nothing has been placed yet.");
+                    return;
+                }
+                File file = getStateFile(args);
+                try {
+                    TimoCloudCore.getInstance().getFileManager().saveJson(new Gson().toJsonTree(state), file);
+                    sender.sendMessage("&2Saved the state of the last placement to &e" + file.getPath());
+                } catch (Exception e) {
+                    sender.sendError("Error while saving placement state. See console for more information.");
+                    TimoCloudCore.getInstance().severe(e);
+                }
+                break;
+            case "simulate":
+                try (Reader reader = new FileReader(getStateFile(args))) {
+                    ClusterState recorded = PlacementSimulator.read(reader);
+                    for (PlacementSimulator.Result result : PlacementSimulator.simulate(recorded, placementEngine.getStrategies(), placementEngine.getMaxStartsPerBase())) {
+                        sender.sendMessage("  &7- &e" + result);
+                    }
+                } catch (Exception e) {
+                    sender.sendError("Error while simulating placement: " + e.getMessage());
+                }
+                break;
+            default:
+                notEnoughArgs(sender, "placement [strategy <name> | record [file] | simulate [file]]");
+        }
+    }
+
+    private static File getStateFile(String[] args) {
+        return args.length > 1 ? new File(args[1]) : new File(TimoCloudCore.getInstance().getFileManager().getDebugDirectory(), DEFAULT_STATE_FILE);
+    }
+
+}
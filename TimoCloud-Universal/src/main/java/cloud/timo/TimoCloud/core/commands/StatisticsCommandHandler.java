@@ -0,0 +1,44 @@
+package cloud.timo.TimoCloud.core.commands;
+
+import cloud.timo.TimoCloud.api.core.commands.CommandHandler;
+import cloud.timo.TimoCloud.api.core.commands.CommandSender;
+import cloud.timo.TimoCloud.common.sockets.FrameCompressor;
+import cloud.timo.TimoCloud.common.sockets.PacketLengthSplitter;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.managers.CoreSequencer;
+import io.netty.channel.Channel;
+
+public class StatisticsCommandHandler implements CommandHandler {
+
+    @Override
+    public void onCommand(String command, CommandSender sender, String... args) {
+        sender.sendMessage("&6Statistics of &bTimo&fCloud&7:");
+        CoreSequencer sequencer = TimoCloudCore.getInstance().getSequencer();
+        sender.sendMessage("  &6Sequencer queue&7: &2" + sequencer.getQueueDepth() + " &7(max &2" + sequencer.getMaxQueueDepth() + "&7)");
+        sender.sendMessage("  &6Sequencer wait&7: &2" + sequencer.getWaitStatistics());
+        sender.sendMessage("  &6Sequencer tasks&7: &2" + sequencer.getTaskStatistics());
+        sender.sendMessage("  &6Broadcast fan-out&7: &2" + TimoCloudCore.getInstance().getSocketServerHandler().getBroadcastStatistics());
+        sender.sendMessage("  &6Frames per flush&7: &2" + TimoCloudCore.getInstance().getSocketServerHandler().getFlushStatistics());
+        sender.sendMessage("  &6API state&7: &2" + TimoCloudCore.getInstance().getApiStateManager());
+        sender.sendMessage("  &6Connections&7:");
+        for (Channel channel : TimoCloudCore.getInstance().getSocketServerHandler().getChannels()) {
+            PacketLengthSplitter splitter = channel.pipeline().get(PacketLengthSplitter.class);
+            FrameCompressor compressor = channel.pipeline().get(FrameCompressor.class);
+            sender.sendMessage("    &7- &e" + channel.remoteAddress() + "&7:");
+            if (splitter != null) sender.sendMessage("      &6Frames&7: &2" + splitter.getStatistics());
+            if (compressor != null) sender.sendMessage("      &6Compression&7: &2" + compressor.getStatistics());
+        }
+        sender.sendMessage("  &6Demand counter checks&7: &2" + TimoCloudCore.getInstance().getInstanceManager().getCounterChecks() + " &7(&c" + TimoCloudCore.getInstance().getInstanceManager().getCounterMismatches() + " mismatches&7)");
+        sender.sendMessage("  &6Demand scheduling&7: &2" + TimoCloudCore.getInstance().getDemandScheduler());
+        sender.sendMessage("  &6Scale-down&7: &2" + TimoCloudCore.getInstance().getScaleDownPolicy());
+        sender.sendMessage("  &6Standby servers&7: &2" + TimoCloudCore.getInstance().getInstanceManager().getStandbyStatistics());
+        sender.sendMessage("  &6Placement&7: &2" + TimoCloudCore.getInstance().getPlacementEngine());
+        sender.sendMessage("  &6Admission&7: &2" + TimoCloudCore.getInstance().getAdmissionQueue());
+        sender.sendMessage("  &6Template hash cache&7: &2" + TimoCloudCore.getInstance().getTemplateManager().getHashCache());
+        sender.sendMessage("  &6Template transfers&7: &2" + TimoCloudCore.getInstance().getTemplateManager().getTransferProgress().size() + " running");
+        for (String transfer : TimoCloudCore.getInstance().getTemplateManager().getTransferProgress()) {
+            sender.sendMessage("    &7- &e" + transfer);
+        }
+    }
+
+}
@@ -51,6 +51,7 @@ public class CommandFormatUtil {
                 "&7, &6CPU load&7: &2" + (int) base.getCpuLoad() + "%" +
                 "&7, &6IP Address&7: &2" + formatIp(base.getPublicAddress()) +
                 "&7, &6Ready&7: &2" + formatBoolean(base.isReady()) +
+                "&7, &6Starting&7: &2" + base.getStartsInFlight() +
                 "&7, &6Connected&7: &2" + formatBoolean(base.isConnected()) +
                 "&7)");
     }
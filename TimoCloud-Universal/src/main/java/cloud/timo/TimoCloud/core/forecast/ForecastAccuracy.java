@@ -0,0 +1,59 @@
+package cloud.timo.TimoCloud.core.forecast;
+
+/**
+ * Compares forecasts with the values which have actually been sampled, and with the naive forecast that the value at the time of the forecast stays the same
+ */
+public class ForecastAccuracy {
+
+    private long count;
+    private double absoluteError;
+    private double naiveAbsoluteError;
+    private double bias;
+    private long actualSum;
+
+    public void add(double forecast, int actual, int naive) {
+        count++;
+        absoluteError += Math.abs(forecast - actual);
+        naiveAbsoluteError += Math.abs(naive - actual);
+        bias += forecast - actual;
+        actualSum += actual;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Mean absolute error
+     */
+    public double getMeanAbsoluteError() {
+        return count == 0 ? 0 : absoluteError / count;
+    }
+
+    /**
+     * @return Mean absolute error of the naive forecast
+     */
+    public double getNaiveMeanAbsoluteError() {
+        return count == 0 ? 0 : naiveAbsoluteError / count;
+    }
+
+    /**
+     * @return Mean error, positive if the forecast has been too high
+     */
+    public double getBias() {
+        return count == 0 ? 0 : bias / count;
+    }
+
+    /**
+     * @return Sum of absolute errors relative to the sum of actual values, in percent
+     */
+    public double getWeightedPercentageError() {
+        return actualSum == 0 ? 0 : absoluteError * 100 / actualSum;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MAE=%.2f (naive %.2f), bias=%.2f, WAPE=%.1f%%, n=%d", getMeanAbsoluteError(), getNaiveMeanAbsoluteError(), getBias(), getWeightedPercentageError(), getCount());
+    }
+
+}
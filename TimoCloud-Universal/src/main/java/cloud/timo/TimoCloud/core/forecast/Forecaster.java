@@ -0,0 +1,95 @@
+package cloud.timo.TimoCloud.core.forecast;
+
+/**
+ * Forecasts a {@link SampleSeries} from its daily and weekly seasonality.
+ * The seasonal value of a slot is the mean of the same time of day over the last days and the mean of the same time of week over the last weeks.
+ * It is corrected by the difference between the actual and the seasonal values of the recent samples, including the trend of this difference.
+ */
+public class Forecaster {
+
+    private static final int DAYS = 7;
+    private static final int WEEKS = 4;
+
+    private final long daySlots;
+    private final long weekSlots;
+    private final int recentSlots;
+
+    /**
+     * @param sampleMillis The time between two slots
+     * @param recentMillis The time of recent samples the seasonal values are corrected with
+     */
+    public Forecaster(long sampleMillis, long recentMillis) {
+        this.daySlots = Math.max(1, 24L * 60 * 60 * 1000 / sampleMillis);
+        this.weekSlots = daySlots * 7;
+        this.recentSlots = (int) Math.max(2, recentMillis / sampleMillis);
+    }
+
+    /**
+     * @param now    The last slot which may be used
+     * @param target The slot a value shall be forecast for
+     * @return The forecast value, or the last known value if there is no seasonal data yet, {@link Double#NaN} if nothing is known at all
+     */
+    public double forecast(SampleSeries series, long now, long target) {
+        double seasonal = seasonal(series, now, target);
+        if (Double.isNaN(seasonal)) return lastKnown(series, now);
+
+        // Least squares fit of the recent residuals, extrapolated at most as far as the fitted window reaches
+        int n = 0;
+        double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+        for (int i = 0; i < recentSlots; i++) {
+            long slot = now - i;
+            int actual = series.get(slot);
+            if (actual == SampleSeries.UNKNOWN) continue;
+            double expected = seasonal(series, now, slot);
+            if (Double.isNaN(expected)) continue;
+            double x = -i;
+            double y = actual - expected;
+            n++;
+            sumX += x;
+            sumY += y;
+            sumXX += x * x;
+            sumXY += x * y;
+        }
+        if (n == 0) return Math.max(0, seasonal);
+        double meanX = sumX / n;
+        double meanY = sumY / n;
+        double variance = sumXX / n - meanX * meanX;
+        double slope = n > 2 && variance > 0 ? (sumXY / n - meanX * meanY) / variance : 0;
+        double distance = Math.min(target - now, recentSlots) - meanX;
+        return Math.max(0, seasonal + meanY + slope * distance);
+    }
+
+    /**
+     * @return The seasonal value of a slot using only slots up to {@code now}, {@link Double#NaN} if no day or week before is known
+     */
+    public double seasonal(SampleSeries series, long now, long slot) {
+        double daily = mean(series, now, slot, daySlots, DAYS);
+        double weekly = mean(series, now, slot, weekSlots, WEEKS);
+        if (Double.isNaN(daily)) return weekly;
+        if (Double.isNaN(weekly)) return daily;
+        return (daily + weekly) / 2;
+    }
+
+    private static double mean(SampleSeries series, long now, long slot, long period, int periods) {
+        long sum = 0;
+        int known = 0;
+        for (int k = 1; k <= periods; k++) {
+            long previous = slot - k * period;
+            if (previous > now) continue;
+            int value = series.get(previous);
+            if (value == SampleSeries.UNKNOWN) continue;
+            sum += value;
+            known++;
+        }
+        return known == 0 ? Double.NaN : (double) sum / known;
+    }
+
+    private double lastKnown(SampleSeries series, long now) {
+        for (int i = 0; i < recentSlots; i++) {
+            int value = series.get(now - i);
+            if (value != SampleSeries.UNKNOWN) return value;
+        }
+        return Double.NaN;
+    }
+
+}
@@ -0,0 +1,135 @@
+package cloud.timo.TimoCloud.core.forecast;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Player counts and instance counts of one group, one sample per slot, and the forecasts made from them.
+ * Every forecast is remembered until the slot it has been made for is sampled, so that its accuracy can be measured.
+ */
+public class GroupHistory {
+
+    private static final int FILE_VERSION = 1;
+
+    private final long sampleMillis;
+    private final int horizonSlots;
+    private final SampleSeries players;
+    private final SampleSeries instances;
+    private final long[] pendingSlots;
+    private final double[] pendingPlayers;
+    private final double[] pendingInstances;
+    private final ForecastAccuracy playerAccuracy;
+    private final ForecastAccuracy instanceAccuracy;
+    private double forecastPlayers = Double.NaN;
+    private double forecastInstances = Double.NaN;
+
+    public GroupHistory(long sampleMillis, int capacity, int horizonSlots) {
+        this(sampleMillis, horizonSlots, new SampleSeries(capacity), new SampleSeries(capacity));
+    }
+
+    private GroupHistory(long sampleMillis, int horizonSlots, SampleSeries players, SampleSeries instances) {
+        this.sampleMillis = sampleMillis;
+        this.horizonSlots = Math.max(1, horizonSlots);
+        this.players = players;
+        this.instances = instances;
+        this.pendingSlots = new long[this.horizonSlots + 1];
+        Arrays.fill(pendingSlots, -1);
+        this.pendingPlayers = new double[pendingSlots.length];
+        this.pendingInstances = new double[pendingSlots.length];
+        this.playerAccuracy = new ForecastAccuracy();
+        this.instanceAccuracy = new ForecastAccuracy();
+    }
+
+    /**
+     * Records a sample and forecasts the values {@code horizonSlots} ahead
+     */
+    public void record(long slot, int playerCount, int instanceCount, Forecaster forecaster) {
+        int index = (int) (slot % pendingSlots.length);
+        if (pendingSlots[index] == slot) {
+            addAccuracy(playerAccuracy, pendingPlayers[index], playerCount, players.get(slot - horizonSlots));
+            addAccuracy(instanceAccuracy, pendingInstances[index], instanceCount, instances.get(slot - horizonSlots));
+            pendingSlots[index] = -1;
+        }
+        players.record(slot, playerCount);
+        instances.record(slot, instanceCount);
+
+        long target = slot + horizonSlots;
+        forecastPlayers = forecaster.forecast(players, slot, target);
+        forecastInstances = forecaster.forecast(instances, slot, target);
+        int targetIndex = (int) (target % pendingSlots.length);
+        pendingSlots[targetIndex] = target;
+        pendingPlayers[targetIndex] = forecastPlayers;
+        pendingInstances[targetIndex] = forecastInstances;
+    }
+
+    private static void addAccuracy(ForecastAccuracy accuracy, double forecast, int actual, int naive) {
+        if (Double.isNaN(forecast) || naive == SampleSeries.UNKNOWN) return;
+        accuracy.add(forecast, actual, naive);
+    }
+
+    /**
+     * @return The forecast player count {@code horizonSlots} after the last sample, {@link Double#NaN} if nothing is known
+     */
+    public double getForecastPlayers() {
+        return forecastPlayers;
+    }
+
+    /**
+     * @return The forecast instance count {@code horizonSlots} after the last sample, {@link Double#NaN} if nothing is known
+     */
+    public double getForecastInstances() {
+        return forecastInstances;
+    }
+
+    public SampleSeries getPlayers() {
+        return players;
+    }
+
+    public SampleSeries getInstances() {
+        return instances;
+    }
+
+    public ForecastAccuracy getPlayerAccuracy() {
+        return playerAccuracy;
+    }
+
+    public ForecastAccuracy getInstanceAccuracy() {
+        return instanceAccuracy;
+    }
+
+    /**
+     * @return A copy of the samples, which can be saved by another thread while new samples are recorded. Forecasts and their accuracy are not copied.
+     */
+    public GroupHistory copySamples() {
+        return new GroupHistory(sampleMillis, horizonSlots, players.copy(), instances.copy());
+    }
+
+    public void save(File file) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeLong(sampleMillis);
+            players.write(out);
+            instances.write(out);
+        }
+        if (! temporary.renameTo(file)) {
+            file.delete();
+            if (! temporary.renameTo(file)) throw new IOException("Could not rename " + temporary + " to " + file);
+        }
+    }
+
+    /**
+     * Loads the samples saved in a file. If the capacity has changed, as many samples as possible are kept.
+     *
+     * @return False if the file has been written with another sample interval or version, then nothing is loaded
+     */
+    public boolean load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION || in.readLong() != sampleMillis) return false;
+            players.copyFrom(SampleSeries.read(in));
+            instances.copyFrom(SampleSeries.read(in));
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package cloud.timo.TimoCloud.core.forecast;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Ring buffer of one value per sample slot. A slot is the sample time divided by the sample interval, the last {@code capacity} slots are kept.
+ * Slots which have not been sampled (e.g. while the Core was not running) are {@link #UNKNOWN}.
+ */
+public class SampleSeries {
+
+    public static final int UNKNOWN = -1;
+
+    private final int[] values;
+    private long lastSlot;
+
+    public SampleSeries(int capacity) {
+        this.values = new int[Math.max(1, capacity)];
+        Arrays.fill(values, UNKNOWN);
+        this.lastSlot = -1;
+    }
+
+    /**
+     * Stores the value of a slot. Slots between the last recorded one and this one become unknown, older slots are ignored.
+     */
+    public void record(long slot, int value) {
+        if (slot < 0 || (lastSlot >= 0 && slot <= lastSlot - values.length)) return;
+        if (lastSlot >= 0 && slot > lastSlot) {
+            long skipped = Math.min(slot - lastSlot - 1, values.length);
+            for (long i = 1; i <= skipped; i++) values[index(lastSlot + i)] = UNKNOWN;
+        }
+        values[index(slot)] = Math.max(UNKNOWN, value);
+        if (slot > lastSlot) lastSlot = slot;
+    }
+
+    /**
+     * @return The value of a slot, {@link #UNKNOWN} if it has not been sampled or is not kept anymore
+     */
+    public int get(long slot) {
+        if (slot < 0 || slot > lastSlot || slot <= lastSlot - values.length) return UNKNOWN;
+        return values[index(slot)];
+    }
+
+    /**
+     * @return The last recorded slot, -1 if nothing has been recorded yet
+     */
+    public long getLastSlot() {
+        return lastSlot;
+    }
+
+    public int getCapacity() {
+        return values.length;
+    }
+
+    /**
+     * @return Amount of kept slots which are not unknown
+     */
+    public int getKnown() {
+        if (lastSlot < 0) return 0;
+        int known = 0;
+        for (int value : values) if (value != UNKNOWN) known++;
+        return known;
+    }
+
+    /**
+     * Copies all known slots of another series which are still in the range of this one
+     */
+    public void copyFrom(SampleSeries other) {
+        long last = other.getLastSlot();
+        if (last < 0) return;
+        for (long slot = Math.max(0, last - Math.min(values.length, other.getCapacity()) + 1); slot <= last; slot++) {
+            int value = other.get(slot);
+            if (value != UNKNOWN) record(slot, value);
+        }
+    }
+
+    public SampleSeries copy() {
+        SampleSeries copy = new SampleSeries(values.length);
+        System.arraycopy(values, 0, copy.values, 0, values.length);
+        copy.lastSlot = lastSlot;
+        return copy;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(values.length);
+        out.writeLong(lastSlot);
+        for (int value : values) out.writeInt(value);
+    }
+
+    public static SampleSeries read(DataInputStream in) throws IOException {
+        SampleSeries series = new SampleSeries(in.readInt());
+        series.lastSlot = in.readLong();
+        for (int i = 0; i < series.values.length; i++) series.values[i] = in.readInt();
+        return series;
+    }
+
+    private int index(long slot) {
+        return (int) (slot % values.length);
+    }
+
+}
@@ -0,0 +1,188 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.api.TimoCloudAPI;
+import cloud.timo.TimoCloud.api.implementations.APIStateTracker;
+import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
+import cloud.timo.TimoCloud.api.objects.*;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageCodecType;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.sockets.CoreRSAHandshakeHandler;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+
+import java.util.*;
+
+/**
+ * Versioned log of the API state. Every fired event gets the next version number ("v"), the last {@code capacity} events are kept,
+ * so that a client which sends the epoch ("e") and version it has already seen only gets the events it missed.
+ * Other clients get a snapshot of the whole state, which is built once per version and encoded once per codec.
+ * Snapshots and missed events are written on the sequencer, like events are broadcast, so a client never gets an event before the snapshot it belongs to.
+ * The epoch changes with every start of the Core, hence versions of a previous run are never mistaken for current ones.
+ */
+public class APIStateManager {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Not every field of the API objects (e.g. free RAM) changes with an event, so the snapshot is rebuilt after this time even if no event has been fired
+     */
+    private static final long SNAPSHOT_MAX_AGE = 1000;
+
+    private final String epoch;
+    private final int capacity;
+    private final Deque<Message> log;
+    private final Map<MessageCodecType, ByteBuf> encodedSnapshots;
+    private long version;
+    private Message snapshot;
+    private long snapshotCreated;
+    private long snapshotsSent;
+    private long snapshotsBuilt;
+    private long resumes;
+
+    public APIStateManager(int capacity) {
+        this.epoch = Long.toHexString(new Random().nextLong());
+        this.capacity = Math.max(0, capacity);
+        this.log = new ArrayDeque<>();
+        this.encodedSnapshots = new EnumMap<>(MessageCodecType.class);
+    }
+
+    /**
+     * Assigns the next version to an EVENT_FIRED message and keeps it in the log
+     */
+    public synchronized Message record(Message event) {
+        event.set(APIStateTracker.VERSION_KEY, ++version);
+        log.addLast(event);
+        while (log.size() > capacity) log.removeFirst();
+        invalidateSnapshot();
+        return event;
+    }
+
+    /**
+     * @return The events the client has missed since the given version, or null if they are not in the log anymore
+     */
+    public synchronized List<Message> getEventsSince(String epoch, long version) {
+        if (! this.epoch.equals(epoch) || version < 0 || version > this.version) return null;
+        if (version == this.version) return Collections.emptyList();
+        if (log.isEmpty() || ((Number) log.getFirst().get(APIStateTracker.VERSION_KEY)).longValue() > version + 1) return null;
+        List<Message> events = new ArrayList<>();
+        for (Message event : log) {
+            if (((Number) event.get(APIStateTracker.VERSION_KEY)).longValue() > version) events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * Answers GET_API_DATA. Clients which have already seen a version of this epoch only get the events they missed, all other clients get a snapshot.
+     * Has to be called on the sequencer.
+     */
+    public synchronized void sendState(Channel channel, Message request) {
+        Object requestedVersion = request.get(APIStateTracker.VERSION_KEY);
+        List<Message> events = requestedVersion instanceof Number ? getEventsSince((String) request.get(APIStateTracker.EPOCH_KEY), ((Number) requestedVersion).longValue()) : null;
+        if (events != null) {
+            resumes++;
+            for (Message event : events) TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, event);
+            return;
+        }
+        if (snapshot == null || System.currentTimeMillis() - snapshotCreated > SNAPSHOT_MAX_AGE) {
+            invalidateSnapshot();
+            snapshot = buildSnapshot();
+            snapshotCreated = System.currentTimeMillis();
+            snapshotsBuilt++;
+        }
+        if (snapshot == null || channel == null || ! channel.isActive()) return;
+        snapshotsSent++;
+        MessageCodecType codecType = channel.attr(CoreRSAHandshakeHandler.CODEC_ATTRIBUTE_KEY).get();
+        if (codecType == null) {
+            channel.writeAndFlush(snapshot);
+            return;
+        }
+        ByteBuf encoded = encodedSnapshots.get(codecType);
+        if (encoded == null) { // The encoding is kept as long as the snapshot is current
+            encoded = channel.alloc().buffer();
+            try {
+                codecType.getCodec().encode(snapshot, encoded);
+            } catch (Exception e) {
+                encoded.release();
+                TimoCloudCore.getInstance().severe("Error while encoding API data: ");
+                TimoCloudCore.getInstance().severe(e);
+                return;
+            }
+            encodedSnapshots.put(codecType, encoded);
+        }
+        channel.writeAndFlush(encoded.retainedDuplicate());
+    }
+
+    private Message buildSnapshot() {
+        List<Map<String, Object>> serverGroups = new ArrayList<>();
+        List<Map<String, Object>> proxyGroups = new ArrayList<>();
+        List<Map<String, Object>> servers = new ArrayList<>();
+        List<Map<String, Object>> proxies = new ArrayList<>();
+        List<Map<String, Object>> bases = new ArrayList<>();
+        List<Map<String, Object>> players = new ArrayList<>();
+        List<Map<String, Object>> cords = new ArrayList<>();
+        TimoCloudUniversalAPIBasicImplementation universalAPI = (TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI();
+        try {
+            for (ServerGroupObject serverGroupObject : TimoCloudAPI.getUniversalAPI().getServerGroups()) {
+                serverGroups.add(universalAPI.writeValueAsMap(serverGroupObject));
+            }
+            for (ProxyGroupObject proxyGroupObject : TimoCloudAPI.getUniversalAPI().getProxyGroups()) {
+                proxyGroups.add(universalAPI.writeValueAsMap(proxyGroupObject));
+            }
+            for (ServerObject serverObject : TimoCloudAPI.getUniversalAPI().getServers()) {
+                servers.add(universalAPI.writeValueAsMap(serverObject));
+            }
+            for (ProxyObject proxyObject : TimoCloudAPI.getUniversalAPI().getProxies()) {
+                proxies.add(universalAPI.writeValueAsMap(proxyObject));
+            }
+            for (PlayerObject playerObject : TimoCloudAPI.getUniversalAPI().getPlayers()) {
+                players.add(universalAPI.writeValueAsMap(playerObject));
+            }
+            for (BaseObject baseObject : TimoCloudAPI.getUniversalAPI().getBases()) {
+                bases.add(universalAPI.writeValueAsMap(baseObject));
+            }
+            for (CordObject cordObject : TimoCloudAPI.getUniversalAPI().getCords()) {
+                cords.add(universalAPI.writeValueAsMap(cordObject));
+            }
+            return Message.create()
+                    .setType(MessageType.API_DATA)
+                    .set(APIStateTracker.EPOCH_KEY, epoch)
+                    .set(APIStateTracker.VERSION_KEY, version)
+                    .setData(
+                            Message.create()
+                                    .set("serverGroups", serverGroups)
+                                    .set("proxyGroups", proxyGroups)
+                                    .set("servers", servers)
+                                    .set("proxies", proxies)
+                                    .set("players", players)
+                                    .set("bases", bases)
+                                    .set("cords", cords)
+                    );
+        } catch (Exception e) {
+            TimoCloudCore.getInstance().severe("Error while building API data: ");
+            TimoCloudCore.getInstance().severe(e);
+            return null;
+        }
+    }
+
+    private void invalidateSnapshot() {
+        snapshot = null;
+        for (ByteBuf encoded : encodedSnapshots.values()) encoded.release();
+        encodedSnapshots.clear();
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("version=%d, logged=%d, snapshots=%d sent/%d built, resumes=%d", version, log.size(), snapshotsSent, snapshotsBuilt, resumes);
+    }
+
+}
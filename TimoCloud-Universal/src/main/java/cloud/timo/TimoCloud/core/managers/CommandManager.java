@@ -43,15 +43,18 @@ public class CommandManager {
         registerCommand(new DebugCommandHandler(), "debug");
         registerCommand(new DeleteGroupCommand(), "deletegroup", "removegroup");
         registerCommand(new EditGroupCommandHandler(), "editgroup");
+        registerCommand(new ForecastCommandHandler(), "forecast");
         registerCommand(new GroupInfoCommandHandler(), "groupinfo", "group");
         registerCommand(new HelpCommandHandler(), "help", "?");
         registerCommand(new ListBasesCommand(), "listbases", "bases", "showbases");
         registerCommand(new ListGroupsCommandHandler(), "listgroups", "groups", "showgroups");
+        registerCommand(new PlacementCommandHandler(), "placement");
         registerCommand(new ReloadCommandHandler(), "reload");
         registerCommand(new ReloadPluginsCommandHandler(), "reloadPlugins");
         registerCommand(new RestartCommandHandler(), "stop", "restart", "restartgroup");
         registerCommand(new SendCommandCommandHandler(), "sendcommand", "executecommand", "send");
         registerCommand(new ShutdownCommandHandler(), "shutdown", "end", "quit", "exit");
+        registerCommand(new StatisticsCommandHandler(), "statistics", "stats");
         registerCommand(new VersionCommandHandler(), "version", "info");
         registerCommand(new AddBaseCommandHandler(), "addbase");
     }
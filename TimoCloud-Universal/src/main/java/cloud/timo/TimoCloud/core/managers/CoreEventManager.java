@@ -18,27 +18,33 @@ import cloud.timo.TimoCloud.core.TimoCloudCore;
 import cloud.timo.TimoCloud.core.objects.Base;
 import cloud.timo.TimoCloud.core.objects.Proxy;
 import cloud.timo.TimoCloud.core.objects.Server;
-import cloud.timo.TimoCloud.core.sockets.Communicatable;
+import io.netty.channel.Channel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public class CoreEventManager implements Listener {
 
     public void fireEvent(Event event) {
-        Message message = Message.create()
+        Message message = TimoCloudCore.getInstance().getApiStateManager().record(Message.create()
                 .setType(MessageType.EVENT_FIRED)
                 .set("eT", event.getType().name())
-                .setData(eventToJSON(event));
-        for (Communicatable communicatable : TimoCloudCore.getInstance().getInstanceManager().getAllCommunicatableInstances()) {
-            if (communicatable instanceof Base) continue; // Bases do not support events
-            communicatable.sendMessage(message);
+                .setData(eventToMap(event)));
+        List<Channel> channels = new ArrayList<>();
+        for (Channel channel : TimoCloudCore.getInstance().getSocketServerHandler().getChannels()) {
+            if (TimoCloudCore.getInstance().getSocketServerHandler().getCommunicatable(channel) instanceof Base) continue; // Bases do not support events
+            channels.add(channel);
         }
+        TimoCloudCore.getInstance().getSocketServerHandler().broadcastMessage(channels, message);
         ((EventManager) TimoCloudAPI.getEventAPI()).callEvent(event);
     }
 
-    private static String eventToJSON(Event event) {
+    private static Map<String, Object> eventToMap(Event event) {
         try {
-            return ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper().writeValueAsString(event);
+            return ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).writeValueAsMap(event);
         } catch (Exception e) {
-            TimoCloudCore.getInstance().severe("Error while converting Event to JSON: ");
+            TimoCloudCore.getInstance().severe("Error while converting Event to map: ");
             TimoCloudCore.getInstance().severe(e);
             return null;
         }
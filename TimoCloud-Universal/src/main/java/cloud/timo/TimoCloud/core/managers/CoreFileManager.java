@@ -28,6 +28,8 @@ public class CoreFileManager {
     private File temporaryDirectory;
     private File logsDirectory;
     private File debugDirectory;
+    private File forecastDirectory;
+    private File hashIndexDirectory;
     private File pluginsDirectory;
 
     private File configFile;
@@ -68,6 +70,10 @@ public class CoreFileManager {
             logsDirectory.mkdirs();
             debugDirectory = new File(baseDirectory, "debug/");
             debugDirectory.mkdirs();
+            forecastDirectory = new File(baseDirectory, "forecast/");
+            forecastDirectory.mkdirs();
+            hashIndexDirectory = new File(baseDirectory, "hashes/");
+            hashIndexDirectory.mkdirs();
 
             pluginsDirectory = new File(baseDirectory, "plugins/");
             pluginsDirectory.mkdirs();
@@ -181,6 +187,14 @@ public class CoreFileManager {
         return debugDirectory;
     }
 
+    public File getForecastDirectory() {
+        return forecastDirectory;
+    }
+
+    public File getHashIndexDirectory() {
+        return hashIndexDirectory;
+    }
+
     public File getPluginsDirectory() {
         return pluginsDirectory;
     }
@@ -189,7 +203,7 @@ public class CoreFileManager {
         return configFile;
     }
 
-    public Map getConfig() {
+    public Map<String, Object> getConfig() {
         return config;
     }
 
@@ -11,6 +11,11 @@ import cloud.timo.TimoCloud.common.utils.RandomIdGenerator;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import cloud.timo.TimoCloud.core.objects.*;
 import cloud.timo.TimoCloud.core.objects.storage.IdentifiableStorage;
+import cloud.timo.TimoCloud.core.placement.AdmissionQueue;
+import cloud.timo.TimoCloud.core.placement.BaseCandidate;
+import cloud.timo.TimoCloud.core.placement.Placement;
+import cloud.timo.TimoCloud.core.placement.PlacementEngine;
+import cloud.timo.TimoCloud.core.placement.PlacementRequest;
 import cloud.timo.TimoCloud.core.sockets.Communicatable;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
@@ -22,6 +27,7 @@ import java.io.File;
 import java.net.InetAddress;
 import java.security.PublicKey;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -39,6 +45,13 @@ public class CoreInstanceManager {
     private static final int MAX_PROXIES = 500;
     private static final int MAX_BASES = 500;
 
+    private long counterChecks;
+    private long counterMismatches;
+    private long standbysStarted;
+    private long standbysPromoted;
+    private long standbysRecycled;
+    private final Set<Server> checkingTemplateVersions = new HashSet<>(); // Standby servers whose template roots are being hashed on the IO executor
+
     public void init() {
         makeInstances();
         loadEverything();
@@ -143,9 +156,10 @@ public class CoreInstanceManager {
     }
 
     /**
-     * Saves server group configurations to config file
+     * Saves server group configurations to config file. Groups are saved after every edit, so demands are processed again.
      */
     public void saveServerGroups() {
+        TimoCloudCore.getInstance().getDemandScheduler().trigger();
         JsonArray serverGroups = new JsonArray();
         getServerGroups().stream().map(ServerGroup::getProperties).map(map -> new Gson().toJsonTree(map)).forEach(serverGroups::add);
         try {
@@ -157,9 +171,10 @@ public class CoreInstanceManager {
     }
 
     /**
-     * Saves proxy group configurations to config file
+     * Saves proxy group configurations to config file. Groups are saved after every edit, so demands are processed again.
      */
     public void saveProxyGroups() {
+        TimoCloudCore.getInstance().getDemandScheduler().trigger();
         JsonArray proxyGroups = new JsonArray();
         getProxyGroups().stream().map(ProxyGroup::getProperties).map(map -> new Gson().toJsonTree(map)).forEach(proxyGroups::add);
         try {
@@ -188,7 +203,8 @@ public class CoreInstanceManager {
      * Tasks which should be performed every second
      */
     public void everySecond() {
-        processInstanceDemands();
+        TimoCloudCore.getInstance().getForecastManager().onTick();
+        TimoCloudCore.getInstance().getDemandScheduler().onTick(); // Demands are processed when they change, this is only a safety net
     }
 
     /**
@@ -311,25 +327,25 @@ public class CoreInstanceManager {
     }
 
     /**
-     * Looks for a free base and starts an instance if a free base is found
+     * Starts a server OR proxy, depending on the group type
      *
      * @param group The group of which an instance shall be started
+     * @param base  The base the server/proxy shall be started on
      */
-    private void startInstance(Group group) {
-        Base base = getFreeBase(group);
-        if (base == null) return;
-        startInstance(group, base);
+    private void startInstance(Group group, Base base) {
+        startInstance(group, base, false);
     }
 
     /**
      * Starts a server OR proxy, depending on the group type
      *
-     * @param group The group of which an instance shall be started
-     * @param base  The base the server/proxy shall be started on
+     * @param group   The group of which an instance shall be started
+     * @param base    The base the server/proxy shall be started on
+     * @param standby Whether a server shall be kept as standby server until it is needed
      */
-    private void startInstance(Group group, Base base) {
+    private void startInstance(Group group, Base base, boolean standby) {
         if (group instanceof ServerGroup) {
-            startServer((ServerGroup) group, base);
+            startServer((ServerGroup) group, base, standby);
         } else if (group instanceof ProxyGroup) {
             startProxy((ProxyGroup) group, base);
         }
@@ -339,10 +355,11 @@ public class CoreInstanceManager {
      * Starts a new server instance of a server group
      *
      * @param group The group of which an instance shall be started
-     * @param base  The base an the server shall be started on
+     * @param base    The base an the server shall be started on
+     * @param standby Whether the server shall be kept as standby server until it is needed
      * @return The started server
      */
-    private Server startServer(ServerGroup group, Base base) {
+    private Server startServer(ServerGroup group, Base base, boolean standby) {
         String name = getNotExistingName(group);
         String token = RandomIdGenerator.generateId();
         String id = name + "_" + token;
@@ -369,6 +386,12 @@ public class CoreInstanceManager {
         }
 
         Server server = new Server(name, id, base, map, group);
+        if (standby) {
+            server.setStandby(true);
+            standbysStarted++;
+        } else {
+            TimoCloudCore.getInstance().getScaleDownPolicy().onStarted(group, System.currentTimeMillis());
+        }
         server.start();
         return server;
     }
@@ -411,6 +434,7 @@ public class CoreInstanceManager {
         String id = name + "_" + token;
 
         Proxy proxy = new Proxy(name, id, base, group);
+        TimoCloudCore.getInstance().getScaleDownPolicy().onStarted(group, System.currentTimeMillis());
         proxy.start();
         return proxy;
     }
@@ -422,24 +446,35 @@ public class CoreInstanceManager {
     public Base getFreeBase(Group group) {
         if (group.isStatic() && group.getBase() == null)
             return null; // A static group has to have a base specified statically
-        return getBases().stream()
-                .filter(Base::isConnected)
-                .filter(Base::isReady)
-                .filter(base -> group.getBase() == null || group.getBase().equals(base))
-                .filter(base -> base.getAvailableRam() >= group.getRam())
-                .min(Comparator.comparingInt(Base::getAvailableRam)).orElse(null);
+        List<Placement> placements = TimoCloudCore.getInstance().getPlacementEngine().place(
+                Collections.singletonList(new PlacementRequest(group)),
+                getBaseCandidates());
+        return placements.isEmpty() ? null : placements.get(0).getCandidate().getBase();
+    }
+
+    /**
+     * @return The current state of all bases, used for one placement pass
+     */
+    private List<BaseCandidate> getBaseCandidates() {
+        int maxStartsInFlight = TimoCloudCore.getInstance().getAdmissionQueue().getMaxStartsInFlight();
+        return getBases().stream().map(base -> new BaseCandidate(base, maxStartsInFlight)).collect(Collectors.toList());
     }
 
     /**
      * This is TimoCloud's core method.
      * It stops unneeded servers/proxies, checks how many instances of server- & proxy groups are needed, looks for free bases and starts the instances
      * First, demands of static groups will be processed, then the demands of dynamic groups follow
+     * All demands are placed on bases in one pass by the {@link PlacementEngine}, the {@link AdmissionQueue} limits how many of them are started at once
      */
     public void processInstanceDemands() {
         if (TimoCloudCore.getInstance().isShuttingDown()) return;
 
+        if ((Boolean) TimoCloudCore.getInstance().getFileManager().getConfig().getOrDefault("demand-self-check", false)) verifyCounters();
+
         stopUnneededServers();
         stopUnneededProxies();
+        TimoCloudCore.getInstance().getScaleDownPolicy().onRunFinished();
+        recycleStandbyServers();
 
         Queue<GroupInstanceDemand> demands = new PriorityQueue<>();
         Queue<GroupInstanceDemand> staticDemands = new PriorityQueue<>();
@@ -447,21 +482,37 @@ public class CoreInstanceManager {
         for (Group group : getGroups()) {
             int amount = needed(group);
             if (amount <= 0) continue;
+            if (group instanceof ServerGroup && !group.isStatic()) amount -= promoteStandbyServers((ServerGroup) group, amount);
+            if (amount <= 0) continue;
             if (group.isStatic()) staticDemands.add(new GroupInstanceDemand(group, 1));
             else demands.add(new GroupInstanceDemand(group, amount));
         }
 
+        List<PlacementRequest> requests = new ArrayList<>();
         while (!staticDemands.isEmpty()) { // Start static instances first
             GroupInstanceDemand demand = staticDemands.poll();
-            startInstance(demand.getGroup());
+            if (demand.getGroup().getBase() == null) continue; // A static group has to have a base specified statically
+            requests.add(new PlacementRequest(demand.getGroup()));
         }
 
         while (!demands.isEmpty()) { // Start non-static instances
             GroupInstanceDemand demand = demands.poll();
-            startInstance(demand.getGroup());
+            requests.add(new PlacementRequest(demand.getGroup()));
             demand.changeAmount(-1);
             if (demand.getAmount() > 0) demands.add(demand);
         }
+
+        for (ServerGroup group : getServerGroups()) { // Standby servers are only started if all demands could be served
+            for (int i = standbyServersNeeded(group); i > 0; i--) requests.add(new PlacementRequest(group, true));
+        }
+
+        AdmissionQueue admissionQueue = TimoCloudCore.getInstance().getAdmissionQueue();
+        for (Placement placement : admissionQueue.admit(requests, getBaseCandidates(), TimoCloudCore.getInstance().getPlacementEngine(), System.currentTimeMillis())) {
+            startInstance(placement.getRequest().getSource(), placement.getCandidate().getBase(), placement.getRequest().isStandby());
+            TimoCloudCore.getInstance().getDemandScheduler().onDispatch();
+        }
+        long retryDelay = admissionQueue.getRetryDelay();
+        if (retryDelay >= 0) TimoCloudCore.getInstance().getSequencer().schedule(TimoCloudCore.getInstance().getDemandScheduler()::trigger, retryDelay, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -469,39 +520,124 @@ public class CoreInstanceManager {
      */
     private void stopUnneededServers() {
         for (ServerGroup group : getServerGroups()) {
-            int amount = serversNeeded(group);
-            int stopAmount = -amount;
-            for (int i = 0; i < stopAmount; i++) {
-                for (Server server : group.getServers()) {
-                    if (server.getOnlinePlayerCount() == 0 && isStateActive(server.getState(), server.getGroup())) {
-                        TimoCloudCore.getInstance().info("Stopping server " + server.getName() + " because no players are online and it is no longer needed.");
-                        server.stop();
-                        break;
+            int stopAmount = -serversNeeded(group);
+            if (stopAmount <= 0) continue;
+            for (Server server : TimoCloudCore.getInstance().getScaleDownPolicy().select(group, group.getCounters(), stopAmount, System.currentTimeMillis())) {
+                TimoCloudCore.getInstance().info("Stopping server " + server.getName() + " because no players are online and it is no longer needed.");
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * Promotes standby servers of a group instead of starting new servers
+     *
+     * @param group  The group servers are needed for
+     * @param amount How many servers are needed
+     * @return How many standby servers have been promoted
+     */
+    private int promoteStandbyServers(ServerGroup group, int amount) {
+        int promoted = 0;
+        for (Server server : group.getStandbyServers()) {
+            if (promoted >= amount) break;
+            server.promote();
+            promoted++;
+            standbysPromoted++;
+        }
+        return promoted;
+    }
+
+    /**
+     * Stops standby servers which are not needed anymore or whose templates have changed since they have been started.
+     * Templates are hashed on the IO executor, outdated servers are stopped once their roots have been computed.
+     */
+    private void recycleStandbyServers() {
+        for (ServerGroup group : getServerGroups()) {
+            List<Server> standbys = group.getStandbyServers();
+            int excess = standbys.size() - (group.isStatic() ? 0 : group.getStandbyAmount());
+            for (int i = standbys.size() - 1; i >= 0 && excess > 0; i--, excess--) { // Stop servers which are still starting first, they get the stop once they have registered
+                Server server = standbys.remove(i);
+                TimoCloudCore.getInstance().info("Stopping standby server " + server.getName() + " because it is no longer needed.");
+                server.stop();
+            }
+            for (Server server : standbys) {
+                if (!server.isStandbyReady() || !checkingTemplateVersions.add(server)) continue; // Outdated servers which are still starting are recycled once they have loaded
+                TimoCloudCore.getInstance().getTemplateManager().getRootHashes(server.getTemplateDirectories(), (roots, exception) -> {
+                    checkingTemplateVersions.remove(server);
+                    if (exception != null) {
+                        TimoCloudCore.getInstance().severe("Error while hashing templates of standby server " + server.getName() + ": ");
+                        TimoCloudCore.getInstance().severe(exception);
+                        return;
                     }
-                }
+                    if (!server.isStandby() || server.isStopping() || Objects.equals(server.getTemplateVersion(), server.getTemplateVersion(roots))) return;
+                    TimoCloudCore.getInstance().info("Stopping standby server " + server.getName() + " because its templates have changed.");
+                    server.stop();
+                    standbysRecycled++;
+                });
             }
         }
     }
 
+    /**
+     * @return How many standby servers have to be started for a group
+     */
+    private int standbyServersNeeded(ServerGroup group) {
+        if (group.isStatic() || group.getStandbyAmount() <= 0) return 0;
+        int standbys = group.getStandbyServers().size();
+        int amount = group.getStandbyAmount() - standbys;
+        if (group.getMaxAmount() > 0) amount = Math.min(amount, group.getMaxAmount() - group.getServerAmount() - standbys);
+        return amount;
+    }
+
     /**
      * If there are empty, unneeded proxies, they will be stopped
      */
     private void stopUnneededProxies() {
         for (ProxyGroup group : getProxyGroups()) {
-            int amount = proxiesNeeded(group);
-            int stopAmount = -amount;
-            for (int i = 0; i < stopAmount; i++) {
-                for (Proxy proxy : group.getProxies()) {
-                    if (proxy.getOnlinePlayerCount() == 0) {
-                        TimoCloudCore.getInstance().info("Stopping proxy " + proxy.getName() + " because no players are online and it is no longer needed.");
-                        proxy.stop();
-                        break;
-                    }
-                }
+            int stopAmount = -proxiesNeeded(group);
+            if (stopAmount <= 0) continue;
+            for (Proxy proxy : TimoCloudCore.getInstance().getScaleDownPolicy().select(group, group.getCounters(), stopAmount, System.currentTimeMillis())) {
+                TimoCloudCore.getInstance().info("Stopping proxy " + proxy.getName() + " because no players are online and it is no longer needed.");
+                proxy.stop();
             }
         }
     }
 
+    /**
+     * Compares the incrementally updated counters of all groups with a full recount, enabled by 'demand-self-check' in the config
+     */
+    private void verifyCounters() {
+        for (ServerGroup group : getServerGroups()) {
+            counterChecks++;
+            if (! group.verifyCounters()) counterMismatches++;
+        }
+        for (ProxyGroup group : getProxyGroups()) {
+            counterChecks++;
+            if (! group.verifyCounters()) counterMismatches++;
+        }
+    }
+
+    public long getCounterChecks() {
+        return counterChecks;
+    }
+
+    public long getCounterMismatches() {
+        return counterMismatches;
+    }
+
+    /**
+     * @return How many instances of a group are needed additionally because of the forecast
+     */
+    public int getPredictedExtraInstances(Group group) {
+        if (group instanceof ServerGroup) return predictedExtraServers((ServerGroup) group);
+        if (group instanceof ProxyGroup) return Math.max(0, proxiesNeeded((ProxyGroup) group) - proxiesNeeded((ProxyGroup) group, ((ProxyGroup) group).getOnlinePlayerCount()));
+        return 0;
+    }
+
+    public String getStandbyStatistics() {
+        return String.format("started=%d, promoted=%d, recycled=%d", standbysStarted, standbysPromoted, standbysRecycled);
+    }
+
     /**
      * Generates a name for a new server instance
      *
@@ -587,9 +723,19 @@ public class CoreInstanceManager {
      * @return How many additional instances of the given group are needed. Negative if more servers are online than needed
      */
     private int serversNeeded(ServerGroup group) {
-        int running = (int) group.getServers().stream().filter((server) -> isStateActive(server.getState(), group) || server.isStarting()).count();
-        int needed = group.getOnlineAmount() - running;
-        return group.getMaxAmount() > 0 ? Math.min(needed, group.getMaxAmount() - group.getServers().size()) : needed;
+        int running = group.getCounters().getRunning();
+        int needed = group.getOnlineAmount() - running + predictedExtraServers(group);
+        return group.getMaxAmount() > 0 ? Math.min(needed, group.getMaxAmount() - group.getServerAmount()) : needed;
+    }
+
+    /**
+     * @param group A server group
+     * @return How many servers are expected to be sorted out within the forecast horizon, each of them needs a free server to replace it
+     */
+    private int predictedExtraServers(ServerGroup group) {
+        if (group.isStatic()) return 0;
+        int predicted = TimoCloudCore.getInstance().getForecastManager().getPredictedInstances(group);
+        return Math.max(0, predicted - group.getCounters().getSortedOut());
     }
 
     /**
@@ -597,8 +743,16 @@ public class CoreInstanceManager {
      * @return How many additional instances of the given group are needed. Negative if more proxies are online than needed
      */
     private int proxiesNeeded(ProxyGroup group) {
-        int running = group.getProxies().size();
-        int playersOnline = group.getOnlinePlayerCount();
+        return proxiesNeeded(group, Math.max(group.getOnlinePlayerCount(), group.isStatic() ? 0 : TimoCloudCore.getInstance().getForecastManager().getPredictedPlayers(group)));
+    }
+
+    /**
+     * @param group         A proxy group
+     * @param playersOnline The player count slots are needed for
+     * @return How many additional instances of the given group are needed. Negative if more proxies are online than needed
+     */
+    private int proxiesNeeded(ProxyGroup group, int playersOnline) {
+        int running = group.getProxyAmount();
         int slotsWanted = playersOnline + group.getKeepFreeSlots();
         int slotsLimit = divideRoundUp(group.getMaxPlayerCount(), group.getMaxPlayerCountPerProxy()); // We don't need more slots than maxPlayerCount
         int wanted = Math.min(
@@ -610,15 +764,6 @@ public class CoreInstanceManager {
         return wanted - running;
     }
 
-    /**
-     * @param state A server state (e.g. ONLINE)
-     * @param group A server group
-     * @return Whether a server with the given state is considered as active (free) or as used
-     */
-    private boolean isStateActive(String state, ServerGroup group) {
-        return !(state.equals("OFFLINE") || group.getSortOutStates().contains(state));
-    }
-
     /**
      * @param name The base's name
      * @return Whether a base with this name exists and is connected
@@ -0,0 +1,111 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.common.utils.statistics.LatencyStatistics;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single writer of the Core's state. Every change of instances, groups and bases (incoming messages, the every-second task, console commands,
+ * disconnects) is executed one after another on the sequencer thread, so no locking is needed inside the managers and objects.
+ * Tasks submitted from the sequencer thread itself are executed right away to keep nested calls synchronous.
+ */
+public class CoreSequencer {
+
+    private static final String THREAD_NAME = "TimoCloudCore-Sequencer";
+
+    private final ScheduledExecutorService executor;
+    private final AtomicInteger queueDepth;
+    private final AtomicInteger maxQueueDepth;
+    private final LatencyStatistics waitStatistics;
+    private final LatencyStatistics taskStatistics;
+    private volatile Thread thread;
+
+    public CoreSequencer() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            this.thread = thread;
+            return thread;
+        });
+        this.queueDepth = new AtomicInteger();
+        this.maxQueueDepth = new AtomicInteger();
+        this.waitStatistics = new LatencyStatistics();
+        this.taskStatistics = new LatencyStatistics();
+    }
+
+    public void execute(Runnable task) {
+        if (isSequencerThread()) {
+            run(task);
+            return;
+        }
+        long submitted = System.nanoTime();
+        maxQueueDepth.accumulateAndGet(queueDepth.incrementAndGet(), Math::max);
+        try {
+            executor.execute(() -> {
+                queueDepth.decrementAndGet();
+                waitStatistics.recordSince(submitted);
+                run(task);
+            });
+        } catch (RejectedExecutionException e) {
+            queueDepth.decrementAndGet();
+            TimoCloudCore.getInstance().severe("Sequencer has been shut down, dropping task.");
+        }
+    }
+
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        try {
+            executor.schedule(() -> run(task), delay, unit);
+        } catch (RejectedExecutionException e) {
+            TimoCloudCore.getInstance().severe("Sequencer has been shut down, dropping task.");
+        }
+    }
+
+    public void scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        executor.scheduleAtFixedRate(() -> run(task), initialDelay, period, unit);
+    }
+
+    private void run(Runnable task) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } catch (Throwable e) {
+            TimoCloudCore.getInstance().severe("Error while executing task on sequencer: ");
+            TimoCloudCore.getInstance().severe(e);
+        } finally {
+            taskStatistics.recordSince(start);
+        }
+    }
+
+    public boolean isSequencerThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * Time tasks spent in the queue before they were executed
+     */
+    public LatencyStatistics getWaitStatistics() {
+        return waitStatistics;
+    }
+
+    /**
+     * Time tasks took to execute
+     */
+    public LatencyStatistics getTaskStatistics() {
+        return taskStatistics;
+    }
+
+}
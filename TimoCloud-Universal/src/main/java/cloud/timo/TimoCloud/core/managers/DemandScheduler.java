@@ -0,0 +1,124 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.common.utils.statistics.LatencyStatistics;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when instance demands are processed. State changes which may change a demand (player counts, server states, bases becoming ready, group edits)
+ * trigger a run after a short debounce delay, all triggers within this delay are coalesced into one run.
+ * The every-second task only processes demands if there has not been a run for {@link #safetyIntervalMillis}, in case a change has not been triggered.
+ * Changes made by a run itself (e.g. started or stopped instances) do not trigger another run.
+ */
+public class DemandScheduler {
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 20;
+    public static final long DEFAULT_SAFETY_INTERVAL_MILLIS = 5000;
+
+    private final long debounceMillis;
+    private final long safetyIntervalMillis;
+    private boolean scheduled;
+    private boolean running;
+    private long firstTrigger;
+    private long dispatchTrigger;
+    private long lastRun;
+    private long triggers;
+    private long coalesced;
+    private long triggeredRuns;
+    private long safetyRuns;
+    private final LatencyStatistics dispatchLatency;
+    private final LatencyStatistics runStatistics;
+
+    public DemandScheduler(long debounceMillis, long safetyIntervalMillis) {
+        this.debounceMillis = Math.max(0, debounceMillis);
+        this.safetyIntervalMillis = Math.max(1000, safetyIntervalMillis);
+        this.dispatchLatency = new LatencyStatistics();
+        this.runStatistics = new LatencyStatistics();
+    }
+
+    /**
+     * Has to be called whenever something changes which may change the demand of a group or where instances can be started
+     */
+    public void trigger() {
+        synchronized (this) {
+            if (running) return;
+            triggers++;
+            if (scheduled) {
+                coalesced++;
+                return;
+            }
+            scheduled = true;
+            firstTrigger = System.nanoTime();
+        }
+        TimoCloudCore.getInstance().getSequencer().schedule(this::runTriggered, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called every second
+     */
+    public void onTick() {
+        synchronized (this) {
+            if (scheduled || System.currentTimeMillis() - lastRun < safetyIntervalMillis) return;
+            safetyRuns++;
+        }
+        run(0);
+    }
+
+    private void runTriggered() {
+        long trigger;
+        synchronized (this) {
+            scheduled = false;
+            trigger = firstTrigger;
+            triggeredRuns++;
+        }
+        run(trigger);
+    }
+
+    private void run(long trigger) {
+        long start = System.nanoTime();
+        synchronized (this) {
+            running = true;
+            dispatchTrigger = trigger;
+        }
+        try {
+            TimoCloudCore.getInstance().getInstanceManager().processInstanceDemands();
+        } finally {
+            synchronized (this) {
+                running = false;
+                dispatchTrigger = 0;
+                lastRun = System.currentTimeMillis();
+            }
+            runStatistics.recordSince(start);
+        }
+    }
+
+    /**
+     * Called when the start of an instance has been dispatched to a base. Only the first start of a triggered run is recorded.
+     */
+    public void onDispatch() {
+        long trigger;
+        synchronized (this) {
+            trigger = dispatchTrigger;
+            dispatchTrigger = 0;
+        }
+        if (trigger != 0) dispatchLatency.recordSince(trigger);
+    }
+
+    /**
+     * Time from the first trigger of a run to the first start it has dispatched
+     */
+    public LatencyStatistics getDispatchLatency() {
+        return dispatchLatency;
+    }
+
+    public LatencyStatistics getRunStatistics() {
+        return runStatistics;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("triggers=%d (%d coalesced), runs=%d triggered/%d safety, trigger-to-dispatch: %s", triggers, coalesced, triggeredRuns, safetyRuns, dispatchLatency);
+    }
+
+}
@@ -0,0 +1,193 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.forecast.Forecaster;
+import cloud.timo.TimoCloud.core.forecast.GroupHistory;
+import cloud.timo.TimoCloud.core.objects.Group;
+import cloud.timo.TimoCloud.core.objects.ProxyGroup;
+import cloud.timo.TimoCloud.core.objects.ServerGroup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Samples the player counts and used instances of every group and forecasts them, so that instances can be started before the players arrive.
+ * Used instances are the servers in one of the group's sort-out states, since each of them needs a free server to replace it, or the running proxies of a proxy group.
+ * The samples are saved to the forecast directory periodically and when the Core stops. Periodic saves write copies of the samples on the IO executor,
+ * so that the every-second task on the sequencer does not wait for the disk.
+ */
+public class ForecastManager {
+
+    public static final int DEFAULT_SAMPLE_SECONDS = 10;
+    public static final int DEFAULT_HISTORY_DAYS = 28;
+    public static final int DEFAULT_HORIZON_MINUTES = 5;
+
+    private static final long SAVE_INTERVAL = 10 * 60 * 1000;
+    private static final long RECENT_MILLIS = 30 * 60 * 1000;
+
+    private final long sampleMillis;
+    private final int capacity;
+    private final int horizonSlots;
+    private final boolean scaling;
+    private final Forecaster forecaster;
+    private final File directory;
+    private final Map<String, GroupHistory> histories;
+    private final Map<String, List<Long>> predictions;
+    private final Object saveLock = new Object();
+    private long copies;
+    private long written;
+    private long lastSlot = -1;
+    private long lastSave;
+
+    /**
+     * @param scaling Whether forecasts are used to calculate the demand of groups, otherwise they are only recorded
+     */
+    public ForecastManager(int sampleSeconds, int historyDays, int horizonMinutes, boolean scaling, File directory) {
+        this.sampleMillis = Math.max(1, sampleSeconds) * 1000L;
+        this.capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(1, historyDays) * 24L * 60 * 60 * 1000 / sampleMillis);
+        this.horizonSlots = (int) Math.max(1, horizonMinutes * 60 * 1000L / sampleMillis);
+        this.scaling = scaling;
+        this.forecaster = new Forecaster(sampleMillis, RECENT_MILLIS);
+        this.directory = directory;
+        this.histories = new HashMap<>();
+        this.predictions = new HashMap<>();
+        this.lastSave = System.currentTimeMillis();
+    }
+
+    /**
+     * Called every second, takes a sample of all groups once per sample interval
+     */
+    public synchronized void onTick() {
+        long slot = System.currentTimeMillis() / sampleMillis;
+        if (slot == lastSlot) return;
+        lastSlot = slot;
+        Set<String> groups = new HashSet<>();
+        boolean changed = false;
+        for (ServerGroup group : TimoCloudCore.getInstance().getInstanceManager().getServerGroups()) {
+            groups.add(group.getId());
+            changed |= record(group, slot, group.getCounters().getPlayers(), group.getCounters().getSortedOut());
+        }
+        for (ProxyGroup group : TimoCloudCore.getInstance().getInstanceManager().getProxyGroups()) {
+            groups.add(group.getId());
+            changed |= record(group, slot, group.getOnlinePlayerCount(), group.getProxyAmount());
+        }
+        histories.keySet().retainAll(groups);
+        predictions.keySet().retainAll(groups);
+        if (changed && scaling) TimoCloudCore.getInstance().getDemandScheduler().trigger();
+        if (System.currentTimeMillis() - lastSave > SAVE_INTERVAL) {
+            Map<String, GroupHistory> copies = copyHistories();
+            long copy = this.copies;
+            TimoCloudCore.getInstance().getIoExecutor().execute(() -> write(copies, copy));
+        }
+    }
+
+    /**
+     * @return Whether the rounded forecast has changed
+     */
+    private boolean record(Group group, long slot, int players, int instances) {
+        GroupHistory history = getHistory(group);
+        history.record(slot, players, instances, forecaster);
+        List<Long> prediction = Arrays.asList(Math.round(history.getForecastPlayers()), Math.round(history.getForecastInstances()));
+        return ! prediction.equals(predictions.put(group.getId(), prediction));
+    }
+
+    private GroupHistory getHistory(Group group) {
+        return histories.computeIfAbsent(group.getId(), id -> {
+            GroupHistory history = new GroupHistory(sampleMillis, capacity, horizonSlots);
+            File file = getFile(id);
+            if (! file.exists()) return history;
+            try {
+                if (! history.load(file)) TimoCloudCore.getInstance().info("Ignoring player count history of group " + group.getName() + " because it has been recorded with another sample interval.");
+            } catch (IOException e) {
+                TimoCloudCore.getInstance().severe("Error while loading player count history of group " + group.getName() + ": ");
+                TimoCloudCore.getInstance().severe(e);
+            }
+            return history;
+        });
+    }
+
+    /**
+     * Saves the samples of all groups and waits until they have been written
+     */
+    public void save() {
+        Map<String, GroupHistory> copies;
+        long copy;
+        synchronized (this) {
+            copies = copyHistories();
+            copy = this.copies;
+        }
+        write(copies, copy);
+    }
+
+    private Map<String, GroupHistory> copyHistories() {
+        lastSave = System.currentTimeMillis();
+        this.copies++;
+        Map<String, GroupHistory> copies = new HashMap<>();
+        if (directory == null) return copies;
+        for (Map.Entry<String, GroupHistory> entry : histories.entrySet()) copies.put(entry.getKey(), entry.getValue().copySamples());
+        return copies;
+    }
+
+    /**
+     * @param copy The number of the copy, a copy is not written if a newer one has already been written
+     */
+    private void write(Map<String, GroupHistory> copies, long copy) {
+        if (copies.isEmpty()) return;
+        synchronized (saveLock) {
+            if (copy <= written) return;
+            written = copy;
+            directory.mkdirs();
+            for (Map.Entry<String, GroupHistory> entry : copies.entrySet()) {
+                try {
+                    entry.getValue().save(getFile(entry.getKey()));
+                } catch (IOException e) {
+                    TimoCloudCore.getInstance().severe("Error while saving player count history of group " + entry.getKey() + ": ");
+                    TimoCloudCore.getInstance().severe(e);
+                }
+            }
+        }
+    }
+
+    private File getFile(String groupId) {
+        return new File(directory, groupId + ".bin");
+    }
+
+    /**
+     * @return The history of a group, null if it has not been sampled yet
+     */
+    public synchronized GroupHistory getHistory(String groupId) {
+        return histories.get(groupId);
+    }
+
+    /**
+     * @return The forecast player count of a group, -1 if forecasts are not used for scaling or nothing is known yet
+     */
+    public synchronized int getPredictedPlayers(Group group) {
+        GroupHistory history = histories.get(group.getId());
+        if (! scaling || history == null || Double.isNaN(history.getForecastPlayers())) return -1;
+        return (int) Math.round(history.getForecastPlayers());
+    }
+
+    /**
+     * @return The forecast amount of used instances of a group, -1 if forecasts are not used for scaling or nothing is known yet
+     */
+    public synchronized int getPredictedInstances(Group group) {
+        GroupHistory history = histories.get(group.getId());
+        if (! scaling || history == null || Double.isNaN(history.getForecastInstances())) return -1;
+        return (int) Math.round(history.getForecastInstances());
+    }
+
+    public boolean isScaling() {
+        return scaling;
+    }
+
+    public long getSampleMillis() {
+        return sampleMillis;
+    }
+
+    public int getHorizonMinutes() {
+        return (int) (horizonSlots * sampleMillis / 60000);
+    }
+
+}
@@ -0,0 +1,116 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.core.objects.Group;
+import cloud.timo.TimoCloud.core.objects.GroupCounters;
+import cloud.timo.TimoCloud.core.objects.Instance;
+
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Decides which unneeded instances are stopped, so that fluctuating player counts do not stop an instance just to start another one a few seconds later.
+ * Idle instances are drained in the order they became idle. An instance is only stopped if it has been idle for {@link #minIdleMillis},
+ * has been running for {@link #minLifetimeMillis} and its group has not started an instance within {@link #cooldownMillis}.
+ * Instances which would have been stopped otherwise are held. If a held instance is needed again before it is stopped, a stop and a start have been avoided.
+ */
+public class ScaleDownPolicy {
+
+    public static final int DEFAULT_COOLDOWN_SECONDS = 30;
+    public static final int DEFAULT_MIN_IDLE_SECONDS = 30;
+    public static final int DEFAULT_MIN_LIFETIME_SECONDS = 60;
+
+    private final long cooldownMillis;
+    private final long minIdleMillis;
+    private final long minLifetimeMillis;
+    private final Map<String, Long> lastStarts;
+    private Map<String, BooleanSupplier> held;
+    private Map<String, BooleanSupplier> heldThisRun;
+    private final Set<String> selectedThisRun;
+    private long stopped;
+    private long deferred;
+    private long avoided;
+
+    public ScaleDownPolicy(int cooldownSeconds, int minIdleSeconds, int minLifetimeSeconds) {
+        this.cooldownMillis = Math.max(0, cooldownSeconds) * 1000L;
+        this.minIdleMillis = Math.max(0, minIdleSeconds) * 1000L;
+        this.minLifetimeMillis = Math.max(0, minLifetimeSeconds) * 1000L;
+        this.lastStarts = new HashMap<>();
+        this.held = new HashMap<>();
+        this.heldThisRun = new HashMap<>();
+        this.selectedThisRun = new HashSet<>();
+    }
+
+    /**
+     * Has to be called whenever an instance of a group is started
+     */
+    public void onStarted(Group group, long now) {
+        lastStarts.put(group.getId(), now);
+    }
+
+    /**
+     * @param stopAmount How many instances of the group are not needed
+     * @return The idle instances which shall be stopped now, the ones which have been idle the longest first
+     */
+    public <T extends Instance> List<T> select(Group group, GroupCounters<T> counters, int stopAmount, long now) {
+        if (stopAmount <= 0) return Collections.emptyList();
+        boolean coolingDown = now - lastStarts.getOrDefault(group.getId(), 0L) < cooldownMillis;
+        List<T> idle = counters.getIdle();
+        List<T> selected = new ArrayList<>();
+        for (int i = 0; i < idle.size() && selected.size() < stopAmount; i++) {
+            T instance = idle.get(i);
+            if (!coolingDown
+                    && now - counters.getIdleSince(instance) >= minIdleMillis
+                    && now - instance.getStartTime() >= minLifetimeMillis) {
+                selected.add(instance);
+                selectedThisRun.add(instance.getId());
+            } else if (i < stopAmount) { // Would have been stopped without hysteresis
+                heldThisRun.put(instance.getId(), () -> group.getCounters().contains(instance));
+                if (! held.containsKey(instance.getId())) deferred++;
+            }
+        }
+        stopped += selected.size();
+        return selected;
+    }
+
+    /**
+     * Has to be called after {@link #select(Group, GroupCounters, int, long)} has been called for all groups of a run.
+     * Instances which have been held in the last run, but are neither held nor stopped anymore, have been needed again.
+     */
+    public void onRunFinished() {
+        for (Map.Entry<String, BooleanSupplier> entry : held.entrySet()) {
+            if (heldThisRun.containsKey(entry.getKey()) || selectedThisRun.contains(entry.getKey())) continue;
+            if (entry.getValue().getAsBoolean()) avoided++; // Still running
+        }
+        held = heldThisRun;
+        heldThisRun = new HashMap<>();
+        selectedThisRun.clear();
+    }
+
+    public long getStopped() {
+        return stopped;
+    }
+
+    /**
+     * @return Amount of instances whose stop has been deferred at least once
+     */
+    public long getDeferred() {
+        return deferred;
+    }
+
+    /**
+     * @return Amount of deferred instances which have been needed again, each of them avoided a stop and a start
+     */
+    public long getAvoided() {
+        return avoided;
+    }
+
+    public int getHeld() {
+        return held.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("stopped=%d, held=%d, deferred=%d, avoided stops/starts=%d", stopped, getHeld(), deferred, avoided);
+    }
+
+}
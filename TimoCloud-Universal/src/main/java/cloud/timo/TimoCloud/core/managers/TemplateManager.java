@@ -1,41 +1,325 @@
 package cloud.timo.TimoCloud.core.managers;
 
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageCodecType;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import cloud.timo.TimoCloud.common.utils.HashUtil;
+import cloud.timo.TimoCloud.common.utils.files.DirectoryHashCache;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.sockets.CoreRSAHandshakeHandler;
+import io.netty.channel.Channel;
+
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.util.Collection;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
 
+/**
+ * Streams template files to bases. Files are sent as raw chunks of {@link #CHUNK_SIZE} bytes, at most {@link #WINDOW_SIZE}
+ * chunks may be unacknowledged at once, so a big template neither has to be held in memory nor blocks the channel for other messages.
+ * The transfer id is derived from the transferred files, so a base which already received a part of a transfer before a disconnect can resume it.
+ * Files are hashed and read on the Core's IO executor, so a big transfer does not hold up the {@link CoreSequencer}.
+ */
 public class TemplateManager {
 
-    public void zipFiles(Collection<File> files, File base, OutputStream output) throws IOException {
-        ZipOutputStream zos = new ZipOutputStream(output);
-        for (File file : files) addFile(file, base, zos);
-        zos.close();
-        output.flush();
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int WINDOW_SIZE = 16;
+
+    private final Map<String, TemplateTransfer> transfers;
+    private final DirectoryHashCache hashCache;
+
+    public TemplateManager() {
+        transfers = new ConcurrentHashMap<>();
+        Map<String, Object> config = TimoCloudCore.getInstance().getFileManager().getConfig();
+        hashCache = new DirectoryHashCache(
+                (Boolean) config.getOrDefault("template-hash-watch", true),
+                (Boolean) config.getOrDefault("template-hash-index", true) ? TimoCloudCore.getInstance().getFileManager().getHashIndexDirectory() : null,
+                ((Number) config.getOrDefault("template-hash-threads", DirectoryHashCache.DEFAULT_HASH_THREADS)).intValue());
     }
 
-    private static void addFile(File file, File base, ZipOutputStream zos) throws IOException {
-        if (file.isDirectory() && file.listFiles().length > 0) {
-            for (File file1 : file.listFiles()) addFile(file1, base, zos);
-            return;
-        }
+    /**
+     * @return The hash tree of a template directory, only changed files are hashed again
+     */
+    public Map<String, Object> getHashes(File directory) throws IOException {
+        return hashCache.getHashes(directory);
+    }
+
+    /**
+     * @return The Merkle root of a template directory, which is sent to bases instead of the whole hash tree
+     */
+    public String getRootHash(File directory) throws IOException {
+        return hashCache.getRootHash(directory);
+    }
+
+    /**
+     * Computes the Merkle roots of template directories on the IO executor and passes them to the callback on the sequencer.
+     * Missing directories are created. If hashing fails, the callback is called with the exception and no roots instead.
+     */
+    public void getRootHashes(Collection<File> directories, BiConsumer<Map<File, String>, Exception> callback) {
+        List<File> toHash = new ArrayList<>(directories);
+        TimoCloudCore.getInstance().getIoExecutor().execute(() -> {
+            Map<File, String> roots = new HashMap<>();
+            try {
+                for (File directory : toHash) {
+                    directory.mkdirs();
+                    roots.put(directory, getRootHash(directory));
+                }
+            } catch (Exception e) {
+                TimoCloudCore.getInstance().getSequencer().execute(() -> callback.accept(null, e));
+                return;
+            }
+            TimoCloudCore.getInstance().getSequencer().execute(() -> callback.accept(roots, null));
+        });
+    }
+
+    /**
+     * Answers BASE_TEMPLATE_HASHES_REQUEST with the hash trees of the requested templates. Subtrees the base already has are replaced by their root.
+     * The templates are hashed on the IO executor, the answer is sent from the sequencer.
+     *
+     * @param roots       The base's directory roots per template ("template", "map", "global")
+     * @param directories The Core's directory per template
+     */
+    public void sendTemplateHashes(Channel channel, String target, Map<?, ?> roots, Map<String, File> directories) {
+        TimoCloudCore.getInstance().getIoExecutor().execute(() -> {
+            Message message = Message.create()
+                    .setType(MessageType.TEMPLATE_HASHES)
+                    .setTarget(target);
+            try {
+                for (Map.Entry<String, File> directory : directories.entrySet()) {
+                    Object knownRoots = roots.get(directory.getKey());
+                    if (! (knownRoots instanceof Map) || directory.getValue() == null) continue;
+                    message.set(directory.getKey() + "Hash", HashUtil.pruneHashes(getHashes(directory.getValue()), (Map<?, ?>) knownRoots));
+                }
+            } catch (Exception e) {
+                TimoCloudCore.getInstance().severe("Error while sending template hashes: ");
+                TimoCloudCore.getInstance().severe(e);
+                return;
+            }
+            TimoCloudCore.getInstance().getSequencer().execute(() -> channel.writeAndFlush(message));
+        });
+    }
+
+    public DirectoryHashCache getHashCache() {
+        return hashCache;
+    }
+
+    /**
+     * @param transferType One of SERVER_TEMPLATE, SERVER_GLOBAL_TEMPLATE, PROXY_TEMPLATE, PROXY_GLOBAL_TEMPLATE
+     * @param template     The name of the template directory on the base, null for global templates
+     * @param directory    The directory the files are read from
+     * @param fileNames    Names of the files which have to be transferred, relative to the given directory. Directories are sent recursively.
+     * @param target       The id of the server/proxy the transfer is done for
+     */
+    public void startTransfer(Channel channel, String transferType, String template, File directory, Collection<String> fileNames, String target) {
+        TimoCloudCore.getInstance().getIoExecutor().execute(() -> {
+            List<File> files = new ArrayList<>();
+            List<Map<String, Object>> manifest = new ArrayList<>();
+            CRC32 idHash = new CRC32();
+            try {
+                for (String fileName : fileNames) collectFiles(new File(directory, fileName), files);
+                idHash.update((transferType + template).getBytes());
+                for (File file : files) {
+                    String path = directory.toURI().relativize(file.toURI()).getPath();
+                    Map<String, Object> entry = new LinkedHashMap<>();
+                    entry.put("path", path);
+                    if (file.isDirectory()) {
+                        entry.put("directory", true);
+                    } else {
+                        String hash = hashCache.getFileHash(file);
+                        entry.put("size", file.length());
+                        entry.put("hash", hash);
+                        entry.put("modified", file.lastModified());
+                        idHash.update((path + hash).getBytes());
+                    }
+                    manifest.add(entry);
+                }
+            } catch (Exception e) {
+                TimoCloudCore.getInstance().severe("Error while sending template files: ");
+                TimoCloudCore.getInstance().severe(e);
+                return;
+            }
+            String id = transferType + "-" + Long.toHexString(idHash.getValue());
+            TimoCloudCore.getInstance().getSequencer().execute(() -> {
+                TemplateTransfer transfer = new TemplateTransfer(id, channel, template == null ? transferType : template, files, target);
+                String key = getKey(channel, id);
+                transfers.put(key, transfer);
+                channel.closeFuture().addListener(future -> transfers.remove(key, transfer));
+                channel.writeAndFlush(Message.create()
+                        .setType(MessageType.TEMPLATE_TRANSFER_START)
+                        .setTarget(target)
+                        .set("id", id)
+                        .set("transferType", transferType)
+                        .setIfNotNull("template", template)
+                        .set("files", manifest));
+            });
+        });
+    }
+
+    /**
+     * Called when the base has answered to TEMPLATE_TRANSFER_START with the amount of bytes it already has of every file
+     */
+    public void onTransferReady(Channel channel, Message message) {
+        TemplateTransfer transfer = transfers.get(getKey(channel, (String) message.get("id")));
+        if (transfer == null) return;
+        List<?> offsets = (List<?>) message.get("offsets");
+        TimoCloudCore.getInstance().getIoExecutor().execute(() -> {
+            synchronized (transfer) {
+                for (int i = 0; i < transfer.offsets.length && i < offsets.size(); i++) {
+                    transfer.offsets[i] = Math.min(((Number) offsets.get(i)).longValue(), transfer.sizes[i]);
+                    transfer.bytesSent += transfer.offsets[i];
+                }
+                if (transfer.bytesSent > 0) {
+                    TimoCloudCore.getInstance().info("Resuming transfer of template " + transfer.name + " at " + formatProgress(transfer.bytesSent, transfer.totalBytes) + ".");
+                }
+                transfer.offset = transfer.offsets.length == 0 ? 0 : transfer.offsets[0];
+                pump(transfer);
+            }
+        });
+    }
+
+    public void onChunkAcknowledged(Channel channel, Message message) {
+        TemplateTransfer transfer = transfers.get(getKey(channel, (String) message.get("id")));
+        if (transfer == null) return;
+        boolean cancel = Boolean.TRUE.equals(message.get("cancel"));
+        TimoCloudCore.getInstance().getIoExecutor().execute(() -> {
+            synchronized (transfer) {
+                if (cancel) {
+                    transfer.closeFile();
+                    transfers.remove(getKey(channel, transfer.id));
+                    TimoCloudCore.getInstance().severe("Base aborted transfer of template " + transfer.name + ".");
+                    return;
+                }
+                transfer.inFlight--;
+                pump(transfer);
+            }
+        });
+    }
+
+    /**
+     * Reads and sends chunks until the window is full. Only called on the IO executor while holding the transfer's lock.
+     */
+    private void pump(TemplateTransfer transfer) {
         try {
-            if (! file.exists()) return;
-            String relative = base.toURI().relativize(file.toURI()).getPath();
-            if (file.isDirectory() && ! relative.endsWith("/")) relative += "/";
-            ZipEntry zipEntry = new ZipEntry(relative);
-            zos.putNextEntry(zipEntry);
-            if (! file.isDirectory()) {
-                Files.copy(file.toPath(), zos);
-            }
-            zipEntry.setTime(file.lastModified());
-            zos.closeEntry();
+            while (transfer.inFlight < WINDOW_SIZE && transfer.fileIndex < transfer.files.size()) {
+                if (transfer.offset >= transfer.sizes[transfer.fileIndex]) {
+                    transfer.closeFile();
+                    transfer.fileIndex++;
+                    if (transfer.fileIndex < transfer.files.size()) transfer.offset = transfer.offsets[transfer.fileIndex];
+                    continue;
+                }
+                if (transfer.fileChannel == null) {
+                    transfer.fileChannel = FileChannel.open(transfer.files.get(transfer.fileIndex).toPath(), StandardOpenOption.READ);
+                }
+                int length = (int) Math.min(CHUNK_SIZE, transfer.sizes[transfer.fileIndex] - transfer.offset);
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                while (buffer.hasRemaining()) {
+                    if (transfer.fileChannel.read(buffer, transfer.offset + buffer.position()) == -1) {
+                        throw new EOFException("File " + transfer.files.get(transfer.fileIndex).getName() + " has been shortened during the transfer");
+                    }
+                }
+                transfer.channel.writeAndFlush(Message.create()
+                        .setType(MessageType.TEMPLATE_TRANSFER_CHUNK)
+                        .set("id", transfer.id)
+                        .set("f", transfer.fileIndex)
+                        .set("o", transfer.offset)
+                        .setData(transfer.binary ? buffer.array() : Base64.getEncoder().encodeToString(buffer.array())));
+                transfer.offset += length;
+                transfer.bytesSent += length;
+                transfer.inFlight++;
+            }
+            if (transfer.fileIndex >= transfer.files.size() && transfer.inFlight <= 0) {
+                transfers.remove(getKey(transfer.channel, transfer.id));
+                TimoCloudCore.getInstance().info("Successfully transferred template " + transfer.name + " (" + formatBytes(transfer.totalBytes) + ").");
+            }
         } catch (Exception e) {
-            e.printStackTrace();
+            transfer.closeFile();
+            transfers.remove(getKey(transfer.channel, transfer.id));
+            TimoCloudCore.getInstance().severe("Error while transferring template " + transfer.name + ": ");
+            TimoCloudCore.getInstance().severe(e);
+        }
+    }
+
+    /**
+     * Transfer ids only depend on the transferred files, hence the same transfer may run to several bases at once
+     */
+    private static String getKey(Channel channel, String id) {
+        return channel.id().asLongText() + "/" + id;
+    }
+
+    private static void collectFiles(File file, List<File> files) {
+        if (! file.exists()) return;
+        File[] children = file.listFiles();
+        if (file.isDirectory() && children != null && children.length > 0) {
+            for (File child : children) collectFiles(child, files);
             return;
         }
+        files.add(file);
+    }
+
+    public Collection<String> getTransferProgress() {
+        List<String> progress = new ArrayList<>();
+        for (TemplateTransfer transfer : transfers.values()) {
+            progress.add(transfer.name + " -> " + transfer.target + ": " + formatProgress(transfer.bytesSent, transfer.totalBytes));
+        }
+        return progress;
+    }
+
+    private static String formatProgress(long bytes, long total) {
+        return (total == 0 ? 100 : bytes * 100 / total) + "% (" + formatBytes(bytes) + "/" + formatBytes(total) + ")";
+    }
+
+    private static String formatBytes(long bytes) {
+        return String.format("%.1fMB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static class TemplateTransfer {
+
+        private final String id;
+        private final Channel channel;
+        private final String name;
+        private final List<File> files;
+        private final String target;
+        private final boolean binary;
+        private final long[] sizes;
+        private final long[] offsets;
+        private final long totalBytes;
+
+        private int fileIndex;
+        private long offset;
+        private int inFlight;
+        private long bytesSent;
+        private FileChannel fileChannel;
+
+        private TemplateTransfer(String id, Channel channel, String name, List<File> files, String target) {
+            this.id = id;
+            this.channel = channel;
+            this.name = name;
+            this.files = files;
+            this.target = target;
+            this.binary = channel.attr(CoreRSAHandshakeHandler.CODEC_ATTRIBUTE_KEY).get() == MessageCodecType.BINARY;
+            this.sizes = new long[files.size()];
+            this.offsets = new long[files.size()];
+            long totalBytes = 0;
+            for (int i = 0; i < files.size(); i++) {
+                sizes[i] = files.get(i).isDirectory() ? 0 : files.get(i).length();
+                totalBytes += sizes[i];
+            }
+            this.totalBytes = totalBytes;
+        }
+
+        private void closeFile() {
+            if (fileChannel == null) return;
+            try {
+                fileChannel.close();
+            } catch (IOException ignored) {
+            }
+            fileChannel = null;
+        }
     }
 }
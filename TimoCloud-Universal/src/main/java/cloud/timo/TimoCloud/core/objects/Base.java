@@ -35,6 +35,7 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
     private boolean ready;
     private Set<Server> servers;
     private Set<Proxy> proxies;
+    private Set<String> startsInFlight;
 
     public Base(BaseProperties properties) {
         construct(properties);
@@ -61,6 +62,7 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
         this.publicKey = publicKey;
         this.servers = new HashSet<>();
         this.proxies = new HashSet<>();
+        this.startsInFlight = new HashSet<>();
     }
 
     public void construct(Map<String, Object> properties) throws Exception {
@@ -124,6 +126,7 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
         setReady(false);
         setCpuLoad(0);
         setAvailableRam(0);
+        startsInFlight.clear();
         TimoCloudCore.getInstance().info("Base " + getName() + " disconnected.");
     }
 
@@ -137,7 +140,7 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
                 int usedRam = servers.stream().mapToInt((server) -> server.getGroup().getRam()).sum() + proxies.stream().mapToInt((proxy) -> proxy.getGroup().getRam()).sum();
                 int availableRam = Math.max(0, ((Number) map.get("freeRam")).intValue() - getKeepFreeRam());
                 setAvailableRam(Math.max(0, Math.min(availableRam, maxRam - usedRam)));
-                double cpuLoad = (Double) map.get("cpuLoad");
+                double cpuLoad = ((Number) map.get("cpuLoad")).doubleValue();
                 setCpuLoad(cpuLoad);
                 boolean ready = (boolean) map.get("ready") && cpuLoad <= getMaxCpuLoad();
                 setReady(ready);
@@ -149,7 +152,7 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
 
     @Override
     public void sendMessage(Message message) {
-        if (getChannel() != null) getChannel().writeAndFlush(message.toJson());
+        if (getChannel() != null) getChannel().writeAndFlush(message);
     }
 
     @Override
@@ -270,6 +273,7 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
         if (oldValue != connected) {
             if (connected) EventTransmitter.sendEvent(new BaseConnectEventBasicImplementation(toBaseObject()));
             else EventTransmitter.sendEvent(new BaseDisconnectEventBasicImplementation(toBaseObject()));
+            TimoCloudCore.getInstance().getDemandScheduler().trigger();
         }
     }
 
@@ -283,6 +287,7 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
         if (oldValue != ready) {
             if (ready) EventTransmitter.sendEvent(new BaseReadyEventBasicImplementation(toBaseObject()));
             else EventTransmitter.sendEvent(new BaseNotReadyEventBasicImplementation(toBaseObject()));
+            if (ready) TimoCloudCore.getInstance().getDemandScheduler().trigger();
         }
     }
 
@@ -297,21 +302,39 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
     public void addServer(Server server) {
         if (getServers().contains(server)) return;
         getServers().add(server);
+        if (server.isStarting()) startsInFlight.add(server.getId());
     }
 
     public void removeServer(Server server) {
         if (!getServers().contains(server)) return;
         getServers().remove(server);
+        onStartFinished(server);
     }
 
     public void addProxy(Proxy proxy) {
         if (getProxies().contains(proxy)) return;
         getProxies().add(proxy);
+        if (proxy.isStarting()) startsInFlight.add(proxy.getId());
     }
 
     public void removeProxy(Proxy proxy) {
         if (!getProxies().contains(proxy)) return;
         getProxies().remove(proxy);
+        onStartFinished(proxy);
+    }
+
+    /**
+     * Called when an instance of this base has completely loaded or has stopped, so that another start may be admitted
+     */
+    public void onStartFinished(Instance instance) {
+        if (startsInFlight.remove(instance.getId())) TimoCloudCore.getInstance().getDemandScheduler().trigger();
+    }
+
+    /**
+     * @return Amount of instances which have been started on this base, but have not completely loaded yet
+     */
+    public int getStartsInFlight() {
+        return startsInFlight.size();
     }
 
     public BaseObject toBaseObject() {
@@ -6,6 +6,7 @@ import cloud.timo.TimoCloud.api.internal.links.CordObjectLink;
 import cloud.timo.TimoCloud.api.objects.CordObject;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
+import cloud.timo.TimoCloud.common.sockets.PacketLengthSplitter;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import cloud.timo.TimoCloud.core.api.CordObjectCoreImplementation;
 import cloud.timo.TimoCloud.core.sockets.Communicatable;
@@ -64,12 +65,15 @@ public class Cord implements Communicatable, Identifiable {
 
     @Override
     public void sendMessage(Message message) {
-        if (getChannel() != null) getChannel().writeAndFlush(message.toJson());
+        if (getChannel() != null) getChannel().writeAndFlush(message);
     }
 
     @Override
     public void onHandshakeSuccess() {
-        sendMessage(Message.create().setType(MessageType.CORD_HANDSHAKE_SUCCESS));
+        if (getChannel() == null) return;
+        sendMessage(Message.create()
+                .setType(MessageType.CORD_HANDSHAKE_SUCCESS)
+                .set("maxFrameSize", getChannel().pipeline().get(PacketLengthSplitter.class).getMaxFrameLength()));
     }
 
     @Override
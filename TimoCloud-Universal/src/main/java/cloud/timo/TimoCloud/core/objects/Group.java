@@ -14,4 +14,6 @@ public interface Group extends Identifiable {
 
     Base getBase();
 
+    GroupCounters<? extends Instance> getCounters();
+
 }
@@ -0,0 +1,158 @@
+package cloud.timo.TimoCloud.core.objects;
+
+import java.util.*;
+
+/**
+ * Counters of a group's instances which are kept up to date whenever an instance's state or player count changes,
+ * so that the demand of a group can be calculated without iterating over its instances.
+ * Every instance's last counted values are remembered, hence an update only has to subtract the old and add the new values.
+ * Instances without players which could be stopped are kept in the order they became idle, along with the time they became idle.
+ */
+public class GroupCounters<T extends Identifiable> {
+
+    private final Map<String, Entry> entries;
+    private final Map<String, T> idle;
+    private final Map<String, Long> idleSince;
+    private int active;
+    private int starting;
+    private int sortedOut;
+    private int running;
+    private int players;
+
+    public GroupCounters() {
+        this.entries = new HashMap<>();
+        this.idle = new LinkedHashMap<>();
+        this.idleSince = new HashMap<>();
+    }
+
+    /**
+     * @param active    Whether the instance is considered as free (e.g. not OFFLINE and not in a sort-out state)
+     * @param starting  Whether the instance has been started but not registered yet
+     * @param sortedOut Whether the instance is in one of the group's sort-out states
+     * @param players   The instance's online player count
+     * @param stoppable Whether the instance may be stopped if it is not needed anymore (usually active and no players online)
+     */
+    public void update(T instance, boolean active, boolean starting, boolean sortedOut, int players, boolean stoppable) {
+        Entry entry = new Entry(active, starting, sortedOut, players);
+        Entry oldEntry = entries.put(instance.getId(), entry);
+        if (oldEntry != null) add(oldEntry, -1);
+        add(entry, 1);
+        if (stoppable) {
+            if (idle.putIfAbsent(instance.getId(), instance) == null) idleSince.put(instance.getId(), System.currentTimeMillis()); // Keep the position if it already was idle
+        } else {
+            idle.remove(instance.getId());
+            idleSince.remove(instance.getId());
+        }
+    }
+
+    public void remove(T instance) {
+        Entry entry = entries.remove(instance.getId());
+        if (entry != null) add(entry, -1);
+        idle.remove(instance.getId());
+        idleSince.remove(instance.getId());
+    }
+
+    private void add(Entry entry, int sign) {
+        if (entry.active) active += sign;
+        if (entry.starting) starting += sign;
+        if (entry.sortedOut) sortedOut += sign;
+        if (entry.active || entry.starting) running += sign;
+        players += sign * entry.players;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getStarting() {
+        return starting;
+    }
+
+    public int getSortedOut() {
+        return sortedOut;
+    }
+
+    /**
+     * @return Amount of instances which are either active or starting
+     */
+    public int getRunning() {
+        return running;
+    }
+
+    public int getPlayers() {
+        return players;
+    }
+
+    public int getInstances() {
+        return entries.size();
+    }
+
+    /**
+     * @return Stoppable instances, the ones which have been idle the longest first
+     */
+    public List<T> getIdle() {
+        return new ArrayList<>(idle.values());
+    }
+
+    /**
+     * @return The time the instance has become idle, 0 if it is not idle
+     */
+    public long getIdleSince(T instance) {
+        return idleSince.getOrDefault(instance.getId(), 0L);
+    }
+
+    /**
+     * Takes over the idle order and times of the instances which were idle in the given counters as well, so that a recount does not reset them.
+     * Instances which have only become idle in these counters are ordered after them.
+     */
+    public void keepIdleOrder(GroupCounters<T> previous) {
+        Map<String, T> ordered = new LinkedHashMap<>();
+        for (String id : previous.idle.keySet()) {
+            T instance = idle.get(id);
+            if (instance == null) continue;
+            ordered.put(id, instance);
+            idleSince.put(id, previous.idleSince.get(id));
+        }
+        ordered.putAll(idle);
+        idle.clear();
+        idle.putAll(ordered);
+    }
+
+    public boolean contains(Identifiable instance) {
+        return entries.containsKey(instance.getId());
+    }
+
+    /**
+     * @return Whether both counters have counted the same values
+     */
+    public boolean matches(GroupCounters<T> other) {
+        return active == other.active
+                && starting == other.starting
+                && sortedOut == other.sortedOut
+                && running == other.running
+                && players == other.players
+                && entries.keySet().equals(other.entries.keySet())
+                && idle.keySet().equals(other.idle.keySet());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("instances=%d, active=%d, starting=%d, sortedOut=%d, players=%d, idle=%d", getInstances(), getActive(), getStarting(), getSortedOut(), getPlayers(), idle.size());
+    }
+
+    private static class Entry {
+
+        private final boolean active;
+        private final boolean starting;
+        private final boolean sortedOut;
+        private final int players;
+
+        private Entry(boolean active, boolean starting, boolean sortedOut, int players) {
+            this.active = active;
+            this.starting = starting;
+            this.sortedOut = sortedOut;
+            this.players = players;
+        }
+    }
+
+}
@@ -8,4 +8,9 @@ public interface Instance extends PublicKeyIdentifiable {
     void stop();
     void register();
     void unregister();
+
+    /**
+     * @return The time the instance has been started at
+     */
+    long getStartTime();
 }
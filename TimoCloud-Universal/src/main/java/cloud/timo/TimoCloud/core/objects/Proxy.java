@@ -15,7 +15,6 @@ import cloud.timo.TimoCloud.common.log.LogStorage;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.utils.DoAfterAmount;
-import cloud.timo.TimoCloud.common.utils.HashUtil;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import cloud.timo.TimoCloud.core.api.ProxyObjectCoreImplementation;
 import cloud.timo.TimoCloud.core.cloudflare.DnsRecord;
@@ -25,9 +24,7 @@ import io.netty.channel.Channel;
 import java.io.File;
 import java.net.InetSocketAddress;
 import java.security.PublicKey;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
 public class Proxy implements Instance, Communicatable {
@@ -42,6 +39,7 @@ public class Proxy implements Instance, Communicatable {
     private final Set<PlayerObject> onlinePlayers;
     private Channel channel;
     private boolean starting;
+    private long startTime;
     private boolean registered;
     private boolean connected;
     private DnsRecord dnsRecord;
@@ -68,6 +66,8 @@ public class Proxy implements Instance, Communicatable {
         getGroup().onProxyConnect(this);
         this.starting = false;
         this.registered = true;
+        getBase().onStartFinished(this);
+        getGroup().updateCounters(this);
         for (Server server : getGroup().getRegisteredServers()) registerServer(server);
         TimoCloudCore.getInstance().getEventManager().fireEvent(new ProxyRegisterEventBasicImplementation(toProxyObject()));
     }
@@ -76,6 +76,7 @@ public class Proxy implements Instance, Communicatable {
     public void unregister() {
         if (!isRegistered()) return;
         this.registered = false;
+        getGroup().updateCounters(this);
         TimoCloudCore.getInstance().getEventManager().fireEvent(new ProxyUnregisterEventBasicImplementation(toProxyObject()));
     }
 
@@ -86,10 +87,33 @@ public class Proxy implements Instance, Communicatable {
         getBase().sendMessage(Message.create().setType(MessageType.BASE_PROXY_STOPPED).setData(getId()));
     }
 
+    public File getTemplateDirectory() {
+        return new File(TimoCloudCore.getInstance().getFileManager().getProxyTemplatesDirectory(), getGroup().getName());
+    }
+
+    /**
+     * The proxy is counted as starting right away, its templates are hashed on the IO executor and the start is sent to the base afterwards
+     */
     @Override
     public void start() {
-        try {
-            starting = true;
+        starting = true;
+        startTime = System.currentTimeMillis();
+        getBase().setReady(false);
+        getBase().setAvailableRam(getBase().getAvailableRam() - getGroup().getRam());
+        getBase().addProxy(this);
+        getGroup().addProxy(this);
+        File globalDirectory = TimoCloudCore.getInstance().getFileManager().getProxyGlobalDirectory();
+        List<File> directories = new ArrayList<>();
+        directories.add(globalDirectory);
+        if (!getGroup().isStatic()) directories.add(getTemplateDirectory());
+        TimoCloudCore.getInstance().getTemplateManager().getRootHashes(directories, (roots, exception) -> {
+            if (exception != null) {
+                TimoCloudCore.getInstance().severe("Error while hashing files while starting proxy " + getName() + ": ");
+                TimoCloudCore.getInstance().severe(exception);
+                cancelStart();
+                return;
+            }
+            if (!getBase().getProxies().contains(this)) return; // Removed before the base has been told to start it
             Message message = Message.create()
                     .setType(MessageType.BASE_START_PROXY)
                     .set("name", getName())
@@ -100,29 +124,18 @@ public class Proxy implements Instance, Communicatable {
                     .set("motd", getGroup().getMotd())
                     .set("maxplayers", getGroup().getMaxPlayerCount())
                     .set("maxplayersperproxy", getGroup().getMaxPlayerCountPerProxy())
-                    .set("globalHash", HashUtil.getHashes(TimoCloudCore.getInstance().getFileManager().getProxyGlobalDirectory()));
-            if (!getGroup().isStatic()) {
-                File templateDirectory = new File(TimoCloudCore.getInstance().getFileManager().getProxyTemplatesDirectory(), getGroup().getName());
-                try {
-                    templateDirectory.mkdirs();
-                    message.set("templateHash", HashUtil.getHashes(templateDirectory));
-                } catch (Exception e) {
-                    TimoCloudCore.getInstance().severe("Error while hashing files while starting proxy " + getName() + ": ");
-                    e.printStackTrace();
-                    return;
-                }
-            }
+                    .set("globalRoot", roots.get(globalDirectory));
+            if (!getGroup().isStatic()) message.set("templateRoot", roots.get(getTemplateDirectory()));
             getBase().sendMessage(message);
-            getBase().setReady(false);
-            getBase().setAvailableRam(getBase().getAvailableRam() - getGroup().getRam());
             TimoCloudCore.getInstance().info("Told base " + getBase().getName() + " to start proxy " + getName() + ".");
-        } catch (Exception e) {
-            TimoCloudCore.getInstance().severe("Error while starting proxy " + getName() + ": ");
-            TimoCloudCore.getInstance().severe(e);
-            return;
-        }
-        getBase().addProxy(this);
-        getGroup().addProxy(this);
+        });
+    }
+
+    private void cancelStart() {
+        starting = false;
+        getBase().setAvailableRam(getBase().getAvailableRam() + getGroup().getRam());
+        getGroup().removeProxy(this);
+        getBase().removeProxy(this);
     }
 
     @Override
@@ -201,7 +214,7 @@ public class Proxy implements Instance, Communicatable {
 
     @Override
     public void sendMessage(Message message) {
-        if (getChannel() != null) getChannel().writeAndFlush(message.toJson());
+        if (getChannel() != null) getChannel().writeAndFlush(message);
     }
 
     @Override
@@ -286,6 +299,11 @@ public class Proxy implements Instance, Communicatable {
         return starting;
     }
 
+    @Override
+    public long getStartTime() {
+        return startTime;
+    }
+
     public boolean isRegistered() {
         return registered;
     }
@@ -316,6 +334,7 @@ public class Proxy implements Instance, Communicatable {
         int oldValue = getOnlinePlayerCount();
         this.onlinePlayerCount = onlinePlayerCount;
         if (onlinePlayerCount != oldValue) {
+            getGroup().updateCounters(this);
             EventTransmitter.sendEvent(new ProxyOnlinePlayerCountChangeEventBasicImplementation(toProxyObject(), oldValue, onlinePlayerCount));
         }
     }
@@ -33,6 +33,7 @@ public class ProxyGroup implements Group {
     private Set<String> hostNames;
     private ProxyChooseStrategy proxyChooseStrategy;
     private Map<String, Proxy> proxies = new HashMap<>();
+    private GroupCounters<Proxy> counters = new GroupCounters<>();
 
     public ProxyGroup(ProxyGroupProperties properties) {
         construct(properties);
@@ -127,12 +128,48 @@ public class ProxyGroup implements Group {
             return;
         }
         proxies.put(proxy.getId(), proxy);
+        updateCounters(proxy);
         TimoCloudCore.getInstance().getInstanceManager().addProxy(proxy);
     }
 
     public void removeProxy(Proxy proxy) {
         proxies.remove(proxy.getId());
+        counters.remove(proxy);
         TimoCloudCore.getInstance().getInstanceManager().removeProxy(proxy);
+        TimoCloudCore.getInstance().getDemandScheduler().trigger();
+    }
+
+    /**
+     * Has to be called whenever the registration, the starting flag or the player count of one of the group's proxies changes
+     */
+    public void updateCounters(Proxy proxy) {
+        if (! proxies.containsKey(proxy.getId())) return;
+        updateCounters(counters, proxy);
+        TimoCloudCore.getInstance().getDemandScheduler().trigger();
+    }
+
+    private static void updateCounters(GroupCounters<Proxy> counters, Proxy proxy) {
+        counters.update(proxy, proxy.isRegistered(), proxy.isStarting(), false, proxy.getOnlinePlayerCount(), (proxy.isRegistered() || proxy.isStarting()) && proxy.getOnlinePlayerCount() == 0);
+    }
+
+    /**
+     * Compares the counters with a full recount and repairs them if they differ
+     *
+     * @return Whether the counters were correct
+     */
+    public boolean verifyCounters() {
+        GroupCounters<Proxy> recounted = new GroupCounters<>();
+        for (Proxy proxy : proxies.values()) updateCounters(recounted, proxy);
+        recounted.keepIdleOrder(counters);
+        if (recounted.matches(counters)) return true;
+        TimoCloudCore.getInstance().severe("Counters of proxy group " + getName() + " were wrong (" + counters + ", recounted " + recounted + "). Please report this!");
+        counters = recounted;
+        return false;
+    }
+
+    @Override
+    public GroupCounters<Proxy> getCounters() {
+        return counters;
     }
 
     public void onProxyConnect(Proxy proxy) {
@@ -182,7 +219,7 @@ public class ProxyGroup implements Group {
     }
 
     public int getOnlinePlayerCount() {
-        return getProxies().stream().mapToInt(Proxy::getOnlinePlayerCount).sum();
+        return counters.getPlayers();
     }
 
     public int getMaxPlayerCountPerProxy() {
@@ -353,6 +390,10 @@ public class ProxyGroup implements Group {
         return proxies.get(id);
     }
 
+    public int getProxyAmount() {
+        return proxies.size();
+    }
+
     public ProxyGroupObject toGroupObject() {
         return new ProxyGroupObjectCoreImplementation(
                 getId(),
@@ -13,19 +13,15 @@ import cloud.timo.TimoCloud.common.log.LogStorage;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.utils.DoAfterAmount;
-import cloud.timo.TimoCloud.common.utils.HashUtil;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import cloud.timo.TimoCloud.core.api.ServerObjectCoreImplementation;
 import cloud.timo.TimoCloud.core.sockets.Communicatable;
 import io.netty.channel.Channel;
 
 import java.io.File;
-import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.security.PublicKey;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
 public class Server implements Instance, Communicatable {
@@ -45,8 +41,13 @@ public class Server implements Instance, Communicatable {
     private int maxPlayers = 0;
     private String map;
     private boolean starting;
+    private long startTime;
     private boolean registered;
     private boolean connected;
+    private boolean standby;
+    private boolean standbyReady;
+    private boolean stopping;
+    private String templateVersion;
     private LogStorage logStorage;
     private PublicKey publicKey;
 
@@ -68,10 +69,37 @@ public class Server implements Instance, Communicatable {
         return getGroup().isStatic();
     }
 
+    public File getTemplateDirectory() {
+        return new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), getGroup().getName());
+    }
+
+    public File getMapDirectory() {
+        return new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), getGroup().getName() + "_" + getMap());
+    }
+
+    /**
+     * The server is counted as starting right away, its templates are hashed on the IO executor and the start is sent to the base afterwards
+     */
     @Override
     public void start() {
-        try {
-            this.starting = true;
+        this.starting = true;
+        this.startTime = System.currentTimeMillis();
+        getBase().setReady(false);
+        getBase().setAvailableRam(getBase().getAvailableRam() - getGroup().getRam());
+        getGroup().addServer(this);
+        getBase().addServer(this);
+        TimoCloudCore.getInstance().getTemplateManager().getRootHashes(getTemplateDirectories(), (roots, exception) -> {
+            if (exception != null) {
+                TimoCloudCore.getInstance().severe("Error while hashing files while starting server " + getName() + ": ");
+                TimoCloudCore.getInstance().severe(exception);
+                cancelStart();
+                return;
+            }
+            if (isStopping()) { // Stopped before the base has been told to start it
+                TimoCloudCore.getInstance().info("Server " + getName() + " has been stopped before it has been started.");
+                cancelStart();
+                return;
+            }
             Message message = Message.create()
                     .setType(MessageType.BASE_START_SERVER)
                     .set("name", getName())
@@ -80,36 +108,30 @@ public class Server implements Instance, Communicatable {
                     .set("ram", getGroup().getRam())
                     .set("static", getGroup().isStatic())
                     .setIfNotNull("map", getMap())
-                    .set("globalHash", HashUtil.getHashes(TimoCloudCore.getInstance().getFileManager().getServerGlobalDirectory()));
+                    .set("globalRoot", roots.get(TimoCloudCore.getInstance().getFileManager().getServerGlobalDirectory()));
             if (!getGroup().isStatic()) {
-                File templateDirectory = new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), getGroup().getName());
-                File mapDirectory = new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), getGroup().getName() + "_" + getMap());
-                try {
-                    templateDirectory.mkdirs();
-                    if (hasMap()) mapDirectory.mkdirs();
-                    message.set("templateHash", HashUtil.getHashes(templateDirectory));
-                    if (hasMap()) message.set("mapHash", HashUtil.getHashes(mapDirectory));
-                } catch (IOException e) {
-                    TimoCloudCore.getInstance().severe("Error while hashing files while starting server " + getName() + ": ");
-                    e.printStackTrace();
-                    return;
-                }
+                message.set("templateRoot", roots.get(getTemplateDirectory()));
+                if (hasMap()) message.set("mapRoot", roots.get(getMapDirectory()));
             }
+            if (isStandby()) this.templateVersion = getTemplateVersion(roots);
             getBase().sendMessage(message);
-            getBase().setReady(false);
-            getBase().setAvailableRam(getBase().getAvailableRam() - getGroup().getRam());
             TimoCloudCore.getInstance().info("Told base " + getBase().getName() + " to start server " + getName() + ".");
-        } catch (Exception e) {
-            TimoCloudCore.getInstance().severe("Error while starting server " + getName() + ": ");
-            TimoCloudCore.getInstance().severe(e);
-            return;
-        }
-        getGroup().addServer(this);
-        getBase().addServer(this);
+        });
     }
 
+    private void cancelStart() {
+        this.starting = false;
+        getBase().setAvailableRam(getBase().getAvailableRam() + getGroup().getRam());
+        getGroup().removeServer(this);
+        getBase().removeServer(this);
+    }
+
+    /**
+     * A server which is still starting has no channel yet, the stop is sent as soon as it registers
+     */
     @Override
     public void stop() {
+        this.stopping = true;
         unregister();
         sendMessage(Message.create().setType(MessageType.SERVER_STOP));
     }
@@ -137,6 +159,21 @@ public class Server implements Instance, Communicatable {
     @Override
     public void register() {
         if (isRegistered()) return;
+        if (isStopping()) { // Stopped while it was starting, the stop could not be sent then
+            this.starting = false;
+            getBase().onStartFinished(this);
+            TimoCloudCore.getInstance().info("Server " + getName() + " has been stopped while starting. Stopping it now.");
+            sendMessage(Message.create().setType(MessageType.SERVER_STOP));
+            return;
+        }
+        if (isStandby()) { // Standby servers are not registered to proxies until they are promoted
+            this.starting = false;
+            this.standbyReady = true;
+            getBase().onStartFinished(this);
+            getGroup().updateCounters(this);
+            TimoCloudCore.getInstance().info("Server " + getName() + " is ready as standby.");
+            return;
+        }
         getGroup().onServerConnect(this);
         setState("ONLINE");
         for (ProxyGroup proxyGroup : TimoCloudCore.getInstance().getInstanceManager().getProxyGroups()) {
@@ -145,6 +182,8 @@ public class Server implements Instance, Communicatable {
         }
         this.starting = false;
         this.registered = true;
+        getBase().onStartFinished(this);
+        getGroup().updateCounters(this);
         TimoCloudCore.getInstance().info("Server " + getName() + " registered.");
         TimoCloudCore.getInstance().getEventManager().fireEvent(new ServerRegisterEventBasicImplementation(toServerObject()));
     }
@@ -240,7 +279,7 @@ public class Server implements Instance, Communicatable {
 
     @Override
     public void sendMessage(Message message) {
-        if (getChannel() != null) getChannel().writeAndFlush(message.toJson());
+        if (getChannel() != null) getChannel().writeAndFlush(message);
     }
 
     @Override
@@ -300,6 +339,7 @@ public class Server implements Instance, Communicatable {
     public void setState(String state) {
         String oldValue = getState();
         this.state = state;
+        getGroup().updateCounters(this);
         if (this.isRegistered()) EventTransmitter.sendEvent(new ServerStateChangeEventBasicImplementation(toServerObject(), oldValue, state));
     }
 
@@ -346,6 +386,7 @@ public class Server implements Instance, Communicatable {
         int oldValue = getOnlinePlayerCount();
         this.onlinePlayerCount = onlinePlayerCount;
         if (onlinePlayerCount != oldValue) {
+            getGroup().updateCounters(this);
             EventTransmitter.sendEvent(new ServerOnlinePlayerCountChangeEventBasicImplementation(toServerObject(), oldValue, onlinePlayerCount));
         }
     }
@@ -380,6 +421,83 @@ public class Server implements Instance, Communicatable {
         return starting;
     }
 
+    @Override
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return Whether the server has been told to stop
+     */
+    public boolean isStopping() {
+        return stopping;
+    }
+
+    /**
+     * Standby servers are started in advance and are only registered to proxies when they are promoted
+     */
+    public boolean isStandby() {
+        return standby;
+    }
+
+    /**
+     * Has to be called before the server is started
+     */
+    public void setStandby(boolean standby) {
+        this.standby = standby;
+    }
+
+    /**
+     * @return Whether the standby server has completely loaded and can be registered right away
+     */
+    public boolean isStandbyReady() {
+        return standbyReady;
+    }
+
+    /**
+     * Turns a standby server into a normal one. A standby which is still starting will be registered as soon as it has loaded.
+     */
+    public void promote() {
+        if (!isStandby()) return;
+        this.standby = false;
+        TimoCloudCore.getInstance().info("Promoting standby server " + getName() + ".");
+        if (isStandbyReady()) register();
+        else getGroup().updateCounters(this);
+    }
+
+    /**
+     * @return The template version the standby server has been started with, null if it is not a standby server
+     */
+    public String getTemplateVersion() {
+        return templateVersion;
+    }
+
+    /**
+     * @return All template directories the server is started from
+     */
+    public List<File> getTemplateDirectories() {
+        List<File> directories = new ArrayList<>();
+        directories.add(TimoCloudCore.getInstance().getFileManager().getServerGlobalDirectory());
+        if (!getGroup().isStatic()) {
+            directories.add(getTemplateDirectory());
+            if (hasMap()) directories.add(getMapDirectory());
+        }
+        return directories;
+    }
+
+    /**
+     * @param roots The roots of the directories of {@link #getTemplateDirectories()}
+     * @return The roots of all templates the server is started from
+     */
+    public String getTemplateVersion(Map<File, String> roots) {
+        StringBuilder version = new StringBuilder();
+        for (File directory : getTemplateDirectories()) {
+            if (version.length() > 0) version.append(':');
+            version.append(roots.get(directory));
+        }
+        return version.toString();
+    }
+
     public LogStorage getLogStorage() {
         return logStorage;
     }
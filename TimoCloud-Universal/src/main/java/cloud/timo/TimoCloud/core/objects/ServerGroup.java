@@ -23,8 +23,11 @@ public class ServerGroup implements Group {
     private int priority;
     private Base base;
     private Set<String> sortOutStates;
+    private int standbyAmount;
 
     private Map<String, Server> servers = new HashMap<>();
+    private GroupCounters<Server> counters = new GroupCounters<>();
+    private Map<String, Server> standbyServers = new LinkedHashMap<>();
 
     public ServerGroup(ServerGroupProperties properties) {
         construct(properties);
@@ -52,6 +55,7 @@ public class ServerGroup implements Group {
                     ((Number) properties.getOrDefault("priority", defaultProperties.getPriority())).intValue(),
                     (String) properties.getOrDefault("base", defaultProperties.getBaseIdentifier()),
                     (Collection<String>) properties.getOrDefault("sort-out-states", defaultProperties.getSortOutStates()));
+            this.standbyAmount = ((Number) properties.getOrDefault("standby-amount", 0)).intValue();
         } catch (Exception e) {
             TimoCloudCore.getInstance().severe("Error while loading server group '" + properties.get("name") + "':");
             e.printStackTrace();
@@ -68,6 +72,7 @@ public class ServerGroup implements Group {
         properties.put("priority", getPriority());
         if (getBase() != null) properties.put("base", getBase().getId());
         properties.put("sort-out-states", getSortOutStates());
+        properties.put("standby-amount", getStandbyAmount());
         return properties;
     }
 
@@ -89,6 +94,7 @@ public class ServerGroup implements Group {
         this.priority = priority;
         if (baseIdentifier != null) this.base = TimoCloudCore.getInstance().getInstanceManager().getBaseByIdentifier(baseIdentifier);
         this.sortOutStates = new HashSet<>(sortOutStates);
+        this.counters = countServers();
         if (isStatic() && getBase() == null) {
             TimoCloudCore.getInstance().severe("Static server group " + getName() + " has no base specified. Please specify a base name in order to enable starting of servers.");
         }
@@ -130,12 +136,69 @@ public class ServerGroup implements Group {
             return;
         }
         servers.put(server.getId(), server);
+        updateCounters(server);
         TimoCloudCore.getInstance().getInstanceManager().addServer(server);
     }
 
     public void removeServer(Server server) {
         servers.remove(server.getId());
+        counters.remove(server);
+        standbyServers.remove(server.getId());
         TimoCloudCore.getInstance().getInstanceManager().removeServer(server);
+        TimoCloudCore.getInstance().getDemandScheduler().trigger();
+    }
+
+    /**
+     * Has to be called whenever the state, the starting flag or the player count of one of the group's servers changes
+     */
+    public void updateCounters(Server server) {
+        if (! servers.containsKey(server.getId())) return;
+        if (server.isStandby()) standbyServers.put(server.getId(), server);
+        else standbyServers.remove(server.getId());
+        updateCounters(counters, server);
+        TimoCloudCore.getInstance().getDemandScheduler().trigger();
+    }
+
+    private void updateCounters(GroupCounters<Server> counters, Server server) {
+        if (server.isStandby()) { // Standby servers do not count until they are promoted
+            counters.update(server, false, false, false, 0, false);
+            return;
+        }
+        boolean active = isStateActive(server.getState());
+        counters.update(server, active, server.isStarting(), getSortOutStates().contains(server.getState()), server.getOnlinePlayerCount(), active && server.getOnlinePlayerCount() == 0);
+    }
+
+    private GroupCounters<Server> countServers() {
+        GroupCounters<Server> counters = new GroupCounters<>();
+        for (Server server : servers.values()) updateCounters(counters, server);
+        counters.keepIdleOrder(this.counters);
+        return counters;
+    }
+
+    /**
+     * Compares the counters with a full recount and repairs them if they differ
+     *
+     * @return Whether the counters were correct
+     */
+    public boolean verifyCounters() {
+        GroupCounters<Server> recounted = countServers();
+        if (recounted.matches(counters)) return true;
+        TimoCloudCore.getInstance().severe("Counters of server group " + getName() + " were wrong (" + counters + ", recounted " + recounted + "). Please report this!");
+        counters = recounted;
+        return false;
+    }
+
+    @Override
+    public GroupCounters<Server> getCounters() {
+        return counters;
+    }
+
+    /**
+     * @param state A server state (e.g. ONLINE)
+     * @return Whether a server with the given state is considered as active (free) or as used
+     */
+    public boolean isStateActive(String state) {
+        return ! (state.equals("OFFLINE") || getSortOutStates().contains(state));
     }
 
     public Collection<Server> getServers() {
@@ -146,6 +209,34 @@ public class ServerGroup implements Group {
         return servers.get(id);
     }
 
+    /**
+     * @return Amount of servers of this group, not including standby servers
+     */
+    public int getServerAmount() {
+        return servers.size() - standbyServers.size();
+    }
+
+    /**
+     * @return Standby servers which are not stopping, the ones which have completely loaded first
+     */
+    public List<Server> getStandbyServers() {
+        return standbyServers.values().stream()
+                .filter(server -> !server.isStopping())
+                .sorted(Comparator.comparing(server -> !server.isStandbyReady()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return How many standby servers shall be kept ready for this group
+     */
+    public int getStandbyAmount() {
+        return standbyAmount;
+    }
+
+    public void setStandbyAmount(int standbyAmount) {
+        this.standbyAmount = Math.max(0, standbyAmount);
+    }
+
     public void setOnlineAmount(int onlineAmount) {
         int oldValue = getOnlineAmount();
         this.onlineAmount = onlineAmount;
@@ -213,6 +304,7 @@ public class ServerGroup implements Group {
 
     public void setSortOutStates(Collection<String> sortOutStates) {
         this.sortOutStates = new HashSet<>(sortOutStates);
+        this.counters = countServers();
         //TODO Work for Timo?
     }
 
@@ -4,21 +4,26 @@ import cloud.timo.TimoCloud.core.objects.Identifiable;
 import cloud.timo.TimoCloud.core.objects.PublicKeyIdentifiable;
 
 import java.security.PublicKey;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedHashSet;
-import java.util.Map;
-
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Only written by the Core's sequencer. Lookups are lock-free, {@link #values()} returns an immutable snapshot which is replaced on every change,
+ * so threads like the console completer or API callers can iterate it while the sequencer keeps changing the storage.
+ */
 public class IdentifiableStorage <T extends Identifiable> {
 
     private Map<String, Collection<T>> byName;
     private Map<String, T> byId;
     private Map<PublicKey, T> byPublicKey;
+    private volatile Collection<T> snapshot;
 
     public IdentifiableStorage() {
-        byName = new HashMap<>();
-        byId = new HashMap<>();
-        byPublicKey = new HashMap<>();
+        byName = new ConcurrentHashMap<>();
+        byId = new ConcurrentHashMap<>();
+        byPublicKey = new ConcurrentHashMap<>();
+        snapshot = Collections.emptyList();
     }
 
     public T getById(String id) {
@@ -52,17 +57,20 @@ public class IdentifiableStorage <T extends Identifiable> {
     public void add(T identifiable) {
         remove(identifiable);
         byId.put(identifiable.getId(), identifiable);
-        if (identifiable instanceof PublicKeyIdentifiable) byPublicKey.put(((PublicKeyIdentifiable) identifiable).getPublicKey(), identifiable);
-        byName.putIfAbsent(identifiable.getName().toLowerCase(), new LinkedHashSet<>());
-        byName.get(identifiable.getName().toLowerCase()).add(identifiable);
+        PublicKey publicKey = getPublicKey(identifiable);
+        if (publicKey != null) byPublicKey.put(publicKey, identifiable);
+        byName.computeIfAbsent(identifiable.getName().toLowerCase(), name -> new CopyOnWriteArraySet<>()).add(identifiable);
+        updateSnapshot();
     }
 
     public void remove(T identifiable) {
         byId.remove(identifiable.getId());
-        if (identifiable instanceof PublicKeyIdentifiable) byPublicKey.remove(((PublicKeyIdentifiable) identifiable).getPublicKey());
+        PublicKey publicKey = getPublicKey(identifiable);
+        if (publicKey != null) byPublicKey.remove(publicKey, identifiable);
         if (byName.containsKey(identifiable.getName().toLowerCase())) {
             byName.get(identifiable.getName().toLowerCase()).remove(identifiable);
         }
+        updateSnapshot();
     }
 
     public void update(T identifiable) { // Called when keys like name or pulic key changed
@@ -75,13 +83,22 @@ public class IdentifiableStorage <T extends Identifiable> {
     }
 
     public Collection<T> values() {
-        return byId.values();
+        return snapshot;
     }
 
     public void clear() {
         byName.clear();
         byId.clear();
         byPublicKey.clear();
+        updateSnapshot();
+    }
+
+    private static PublicKey getPublicKey(Identifiable identifiable) {
+        return identifiable instanceof PublicKeyIdentifiable ? ((PublicKeyIdentifiable) identifiable).getPublicKey() : null;
+    }
+
+    private void updateSnapshot() {
+        snapshot = Collections.unmodifiableList(new ArrayList<>(byId.values()));
     }
 
 }
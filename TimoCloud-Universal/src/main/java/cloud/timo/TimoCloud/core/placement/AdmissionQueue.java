@@ -0,0 +1,131 @@
+package cloud.timo.TimoCloud.core.placement;
+
+import java.util.*;
+
+/**
+ * Decides which of the requested starts are sent to the bases. The requests of a demand run are passed in priority order
+ * (static groups first, then dynamic groups by demand and priority, standby servers last) and placed on bases which have fewer than
+ * {@link #maxStartsInFlight} instances starting. Placed requests are admitted as long as the global start rate allows it.
+ * Requests which have not been admitted stay pending until the next run, where they are placed again on the bases as they are then,
+ * so a pending start moves to another base if its previous target has become busy or has disconnected.
+ */
+public class AdmissionQueue {
+
+    public static final int DEFAULT_MAX_STARTS_IN_FLIGHT = 2;
+    public static final double DEFAULT_STARTS_PER_SECOND = 5;
+
+    private final int maxStartsInFlight;
+    private final double startsPerSecond;
+    private double tokens;
+    private long lastRefill;
+    private Map<String, List<String>> targets;
+    private int pending;
+    private long admitted;
+    private long rateLimited;
+    private long unplaced;
+    private long retargeted;
+
+    /**
+     * @param maxStartsInFlight How many instances may be starting on one base at the same time, 0 for no limit
+     * @param startsPerSecond   How many instances may be started per second on all bases together, 0 for no limit
+     */
+    public AdmissionQueue(int maxStartsInFlight, double startsPerSecond) {
+        this.maxStartsInFlight = Math.max(0, maxStartsInFlight);
+        this.startsPerSecond = Math.max(0, startsPerSecond);
+        this.tokens = getBurst();
+        this.targets = new HashMap<>();
+    }
+
+    /**
+     * Places the requests of a demand run and returns the ones which may be started now
+     *
+     * @param requests   All instances which are needed, in priority order
+     * @param candidates The current state of all bases, created with {@link #getMaxStartsInFlight()}
+     */
+    public synchronized List<Placement> admit(List<PlacementRequest> requests, List<BaseCandidate> candidates, PlacementEngine engine, long now) {
+        refill(now);
+        Map<PlacementRequest, Placement> placements = new IdentityHashMap<>();
+        for (Placement placement : engine.place(requests, candidates)) placements.put(placement.getRequest(), placement);
+
+        List<Placement> admittedPlacements = new ArrayList<>();
+        Map<String, List<String>> newTargets = new HashMap<>();
+        Map<String, Integer> ordinals = new HashMap<>();
+        int newPending = 0;
+        for (PlacementRequest request : requests) {
+            String group = request.isStandby() ? request.getGroup() + "/standby" : request.getGroup();
+            // The pending starts of a group are the first requests of the group in the next run
+            List<String> previousTargets = targets.getOrDefault(group, Collections.emptyList());
+            int ordinal = ordinals.merge(group, 1, Integer::sum) - 1;
+            String previousTarget = ordinal < previousTargets.size() ? previousTargets.get(ordinal) : null;
+            Placement placement = placements.get(request);
+            if (placement == null) {
+                unplaced++;
+                newPending++;
+                newTargets.computeIfAbsent(group, key -> new ArrayList<>()).add(previousTarget);
+                continue;
+            }
+            String target = placement.getCandidate().getId();
+            if (startsPerSecond > 0 && tokens < 1) {
+                rateLimited++;
+                newPending++;
+                newTargets.computeIfAbsent(group, key -> new ArrayList<>()).add(target);
+                continue;
+            }
+            if (startsPerSecond > 0) tokens--;
+            if (previousTarget != null && ! previousTarget.equals(target)) retargeted++;
+            admitted++;
+            admittedPlacements.add(placement);
+        }
+        targets = newTargets;
+        pending = newPending;
+        return admittedPlacements;
+    }
+
+    private void refill(long now) {
+        if (startsPerSecond <= 0) return;
+        if (lastRefill > 0) tokens = Math.min(getBurst(), tokens + (now - lastRefill) * startsPerSecond / 1000);
+        lastRefill = now;
+    }
+
+    private double getBurst() {
+        return Math.max(1, startsPerSecond);
+    }
+
+    /**
+     * @return Milliseconds until the next pending start may be admitted by the rate limit, -1 if no start is waiting for it
+     */
+    public synchronized long getRetryDelay() {
+        if (startsPerSecond <= 0 || tokens >= 1 || pending == 0) return -1;
+        return (long) Math.ceil((1 - tokens) * 1000 / startsPerSecond);
+    }
+
+    public int getMaxStartsInFlight() {
+        return maxStartsInFlight;
+    }
+
+    /**
+     * @return Amount of starts which have not been admitted in the last run
+     */
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    public synchronized long getAdmitted() {
+        return admitted;
+    }
+
+    /**
+     * @return How often a pending start has been admitted on another base than the one it had been placed on before
+     */
+    public synchronized long getRetargeted() {
+        return retargeted;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("pending=%d, admitted=%d, rate limited=%d, unplaced=%d, retargeted=%d, max in flight per base=%s, starts per second=%s",
+                pending, admitted, rateLimited, unplaced, retargeted,
+                maxStartsInFlight > 0 ? maxStartsInFlight : "unlimited", startsPerSecond > 0 ? startsPerSecond : "unlimited");
+    }
+
+}
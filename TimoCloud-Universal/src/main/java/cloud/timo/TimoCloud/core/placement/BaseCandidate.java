@@ -0,0 +1,150 @@
+package cloud.timo.TimoCloud.core.placement;
+
+import cloud.timo.TimoCloud.core.objects.Base;
+import cloud.timo.TimoCloud.core.objects.Proxy;
+import cloud.timo.TimoCloud.core.objects.Server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The state of a base during a placement pass. Placements are applied to the candidate, not to the base,
+ * so that a whole batch can be placed without waiting for the base to report its resources again.
+ */
+public class BaseCandidate {
+
+    private String id;
+    private String name;
+    private int availableRam;
+    private int maxRam;
+    private double cpuLoad;
+    private double maxCpuLoad;
+    private boolean ready;
+    private Map<String, Integer> groupInstances;
+    private int starts;
+    private int startsInFlight;
+    private int maxStartsInFlight;
+    private transient Base base;
+
+    public BaseCandidate(String id, String name, int availableRam, int maxRam, double cpuLoad, double maxCpuLoad, boolean ready, Map<String, Integer> groupInstances) {
+        this.id = id;
+        this.name = name;
+        this.availableRam = availableRam;
+        this.maxRam = maxRam;
+        this.cpuLoad = cpuLoad;
+        this.maxCpuLoad = maxCpuLoad;
+        this.ready = ready;
+        this.groupInstances = new HashMap<>(groupInstances);
+    }
+
+    /**
+     * @param maxStartsInFlight How many instances may be starting on the base at the same time, 0 for no limit
+     */
+    public BaseCandidate(Base base, int maxStartsInFlight) {
+        this(base.getId(), base.getName(), base.getAvailableRam(), base.getMaxRam(), base.getCpuLoad(), base.getMaxCpuLoad(), base.isConnected() && base.isReady(), countGroupInstances(base));
+        this.startsInFlight = base.getStartsInFlight();
+        this.maxStartsInFlight = maxStartsInFlight;
+        this.base = base;
+    }
+
+    private static Map<String, Integer> countGroupInstances(Base base) {
+        Map<String, Integer> groupInstances = new HashMap<>();
+        for (Server server : base.getServers()) groupInstances.merge(server.getGroup().getId(), 1, Integer::sum);
+        for (Proxy proxy : base.getProxies()) groupInstances.merge(proxy.getGroup().getId(), 1, Integer::sum);
+        return groupInstances;
+    }
+
+    /**
+     * @return A copy with the same values, used to simulate several strategies on the same state
+     */
+    public BaseCandidate copy() {
+        BaseCandidate copy = new BaseCandidate(id, name, availableRam, maxRam, cpuLoad, maxCpuLoad, ready, groupInstances);
+        copy.starts = starts;
+        copy.startsInFlight = startsInFlight;
+        copy.maxStartsInFlight = maxStartsInFlight;
+        copy.base = base;
+        return copy;
+    }
+
+    /**
+     * @param maxStarts How many instances may be placed on one base in a single pass
+     */
+    public boolean canRun(PlacementRequest request, int maxStarts) {
+        return ready
+                && starts < maxStarts
+                && (maxStartsInFlight <= 0 || startsInFlight + starts < maxStartsInFlight)
+                && availableRam >= request.getRam()
+                && (request.getBase() == null || request.getBase().equals(id));
+    }
+
+    void place(PlacementRequest request) {
+        availableRam -= request.getRam();
+        groupInstances.merge(request.getGroup(), 1, Integer::sum);
+        starts++;
+    }
+
+    /**
+     * Called when a new pass starts on the same candidate
+     */
+    void resetStarts() {
+        starts = 0;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAvailableRam() {
+        return availableRam;
+    }
+
+    public int getMaxRam() {
+        return maxRam;
+    }
+
+    public double getCpuLoad() {
+        return cpuLoad;
+    }
+
+    public double getMaxCpuLoad() {
+        return maxCpuLoad;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int getGroupInstances(String group) {
+        return groupInstances.getOrDefault(group, 0);
+    }
+
+    public Map<String, Integer> getGroupInstances() {
+        return groupInstances;
+    }
+
+    /**
+     * @return Amount of instances placed on this base in the current pass
+     */
+    public int getStarts() {
+        return starts;
+    }
+
+    /**
+     * @return Amount of instances which have been starting on the base before the current pass
+     */
+    public int getStartsInFlight() {
+        return startsInFlight;
+    }
+
+    /**
+     * @return The base this candidate has been created for, null for recorded candidates
+     */
+    public Base getBase() {
+        return base;
+    }
+
+}
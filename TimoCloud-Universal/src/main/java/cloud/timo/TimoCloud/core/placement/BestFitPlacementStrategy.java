@@ -0,0 +1,18 @@
+package cloud.timo.TimoCloud.core.placement;
+
+/**
+ * Bin packing: chooses the base with the least RAM left after the placement, so that big gaps stay free for big instances
+ */
+public class BestFitPlacementStrategy implements PlacementStrategy {
+
+    @Override
+    public String getName() {
+        return "best-fit";
+    }
+
+    @Override
+    public double score(PlacementRequest request, BaseCandidate candidate) {
+        return candidate.getAvailableRam() - request.getRam();
+    }
+
+}
@@ -0,0 +1,31 @@
+package cloud.timo.TimoCloud.core.placement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The bases and requests of a placement pass, recorded as JSON so that strategies can be compared offline
+ */
+public class ClusterState {
+
+    private List<BaseCandidate> candidates;
+    private List<PlacementRequest> requests;
+
+    public ClusterState(List<BaseCandidate> candidates, List<PlacementRequest> requests) {
+        this.candidates = candidates.stream().map(BaseCandidate::copy).collect(Collectors.toList());
+        this.requests = new ArrayList<>(requests);
+    }
+
+    /**
+     * @return Copies of the recorded candidates, which can be placed on without changing this state
+     */
+    public List<BaseCandidate> getCandidates() {
+        return candidates.stream().map(BaseCandidate::copy).collect(Collectors.toList());
+    }
+
+    public List<PlacementRequest> getRequests() {
+        return requests;
+    }
+
+}
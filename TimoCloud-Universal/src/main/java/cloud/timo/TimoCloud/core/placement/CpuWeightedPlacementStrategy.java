@@ -0,0 +1,26 @@
+package cloud.timo.TimoCloud.core.placement;
+
+/**
+ * Chooses the base with the lowest combination of CPU load (relative to the base's maximum CPU load) and RAM usage after the placement.
+ * The CPU load counts twice as much as the RAM usage since a busy CPU slows down every instance on the base.
+ * Instances placed in the same pass are not part of the reported CPU load yet, so each of them adds an estimated load.
+ */
+public class CpuWeightedPlacementStrategy implements PlacementStrategy {
+
+    private static final double CPU_WEIGHT = 2;
+    private static final double RAM_WEIGHT = 1;
+    private static final double STARTING_INSTANCE_LOAD = 0.1;
+
+    @Override
+    public String getName() {
+        return "cpu";
+    }
+
+    @Override
+    public double score(PlacementRequest request, BaseCandidate candidate) {
+        double cpuShare = (candidate.getMaxCpuLoad() <= 0 ? 0 : candidate.getCpuLoad() / candidate.getMaxCpuLoad()) + STARTING_INSTANCE_LOAD * candidate.getStarts();
+        double ramShare = candidate.getMaxRam() <= 0 ? 1 : 1 - (candidate.getAvailableRam() - request.getRam()) / (double) candidate.getMaxRam();
+        return CPU_WEIGHT * cpuShare + RAM_WEIGHT * ramShare;
+    }
+
+}
@@ -0,0 +1,24 @@
+package cloud.timo.TimoCloud.core.placement;
+
+/**
+ * A request and the base it has been placed on
+ */
+public class Placement {
+
+    private final PlacementRequest request;
+    private final BaseCandidate candidate;
+
+    public Placement(PlacementRequest request, BaseCandidate candidate) {
+        this.request = request;
+        this.candidate = candidate;
+    }
+
+    public PlacementRequest getRequest() {
+        return request;
+    }
+
+    public BaseCandidate getCandidate() {
+        return candidate;
+    }
+
+}
@@ -0,0 +1,136 @@
+package cloud.timo.TimoCloud.core.placement;
+
+import cloud.timo.TimoCloud.common.utils.statistics.LatencyStatistics;
+
+import java.util.*;
+
+/**
+ * Places a whole batch of instances on bases in one pass. The bases are looked at once per pass and every placement is applied to its candidate,
+ * so later requests of the same pass see the RAM and instances already placed.
+ * Placement is deterministic: requests are placed in the given order, candidates are compared in order of their ids and ties go to the lower id.
+ */
+public class PlacementEngine {
+
+    public static final String DEFAULT_STRATEGY = "best-fit";
+    /**
+     * A base is not ready anymore as soon as an instance is being started on it, hence only one instance is placed on it per pass by default
+     */
+    public static final int DEFAULT_MAX_STARTS_PER_BASE = 1;
+
+    private final Map<String, PlacementStrategy> strategies;
+    private PlacementStrategy strategy;
+    private int maxStartsPerBase;
+    private final LatencyStatistics passStatistics;
+    private long placed;
+    private long unplaced;
+    private ClusterState lastState;
+
+    public PlacementEngine() {
+        this.strategies = new LinkedHashMap<>();
+        this.passStatistics = new LatencyStatistics();
+        this.maxStartsPerBase = DEFAULT_MAX_STARTS_PER_BASE;
+        registerStrategy(new BestFitPlacementStrategy());
+        registerStrategy(new SpreadPlacementStrategy());
+        registerStrategy(new CpuWeightedPlacementStrategy());
+        setStrategy(DEFAULT_STRATEGY);
+    }
+
+    public synchronized void registerStrategy(PlacementStrategy strategy) {
+        strategies.put(strategy.getName().toLowerCase(), strategy);
+    }
+
+    /**
+     * @return Whether a strategy with the given name exists
+     */
+    public synchronized boolean setStrategy(String name) {
+        PlacementStrategy strategy = getStrategy(name);
+        if (strategy == null) return false;
+        this.strategy = strategy;
+        return true;
+    }
+
+    public synchronized PlacementStrategy getStrategy(String name) {
+        return name == null ? null : strategies.get(name.toLowerCase());
+    }
+
+    public synchronized PlacementStrategy getStrategy() {
+        return strategy;
+    }
+
+    public synchronized Collection<PlacementStrategy> getStrategies() {
+        return new ArrayList<>(strategies.values());
+    }
+
+    public synchronized void setMaxStartsPerBase(int maxStartsPerBase) {
+        this.maxStartsPerBase = Math.max(1, maxStartsPerBase);
+    }
+
+    public synchronized int getMaxStartsPerBase() {
+        return maxStartsPerBase;
+    }
+
+    /**
+     * Places the requests with the current strategy and remembers the state, so that it can be recorded
+     *
+     * @return The requests which could be placed
+     */
+    public List<Placement> place(List<PlacementRequest> requests, List<BaseCandidate> candidates) {
+        long start = System.nanoTime();
+        PlacementStrategy strategy;
+        int maxStartsPerBase;
+        synchronized (this) {
+            strategy = this.strategy;
+            maxStartsPerBase = this.maxStartsPerBase;
+            if (! requests.isEmpty()) lastState = new ClusterState(candidates, requests);
+        }
+        List<Placement> placements = place(requests, candidates, strategy, maxStartsPerBase);
+        passStatistics.recordSince(start);
+        synchronized (this) {
+            placed += placements.size();
+            unplaced += requests.size() - placements.size();
+        }
+        return placements;
+    }
+
+    /**
+     * Places the requests on the given candidates, which are changed accordingly
+     */
+    public static List<Placement> place(List<PlacementRequest> requests, List<BaseCandidate> candidates, PlacementStrategy strategy, int maxStartsPerBase) {
+        List<BaseCandidate> sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparing(BaseCandidate::getId));
+        List<Placement> placements = new ArrayList<>();
+        for (PlacementRequest request : requests) {
+            BaseCandidate best = null;
+            double bestScore = 0;
+            for (BaseCandidate candidate : sorted) {
+                if (! candidate.canRun(request, maxStartsPerBase)) continue;
+                double score = strategy.score(request, candidate);
+                if (best == null || score < bestScore) {
+                    best = candidate;
+                    bestScore = score;
+                }
+            }
+            if (best == null) continue;
+            best.place(request);
+            placements.add(new Placement(request, best));
+        }
+        return placements;
+    }
+
+    public LatencyStatistics getPassStatistics() {
+        return passStatistics;
+    }
+
+    /**
+     * @return The state of the last pass which had something to place, null if there has been none
+     */
+    public synchronized ClusterState getLastState() {
+        return lastState;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("strategy=%s, placed=%d, unplaced=%d, passes: %s", strategy.getName(), placed, unplaced, passStatistics);
+    }
+
+}
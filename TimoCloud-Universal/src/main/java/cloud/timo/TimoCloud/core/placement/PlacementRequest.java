@@ -0,0 +1,64 @@
+package cloud.timo.TimoCloud.core.placement;
+
+import cloud.timo.TimoCloud.core.objects.Group;
+
+/**
+ * A single instance of a group which has to be placed on a base. Only plain values are serialized, so that recorded requests can be simulated without a running Core.
+ */
+public class PlacementRequest {
+
+    private String group;
+    private int ram;
+    private String base;
+    private boolean standby;
+    private transient Group source;
+
+    public PlacementRequest(String group, int ram, String base) {
+        this.group = group;
+        this.ram = ram;
+        this.base = base;
+    }
+
+    public PlacementRequest(Group group) {
+        this(group.getId(), group.getRam(), group.getBase() == null ? null : group.getBase().getId());
+        this.source = group;
+    }
+
+    public PlacementRequest(Group group, boolean standby) {
+        this(group);
+        this.standby = standby;
+    }
+
+    /**
+     * @return The id of the group
+     */
+    public String getGroup() {
+        return group;
+    }
+
+    public int getRam() {
+        return ram;
+    }
+
+    /**
+     * @return The id of the base the group is bound to, null if it may run on any base
+     */
+    public String getBase() {
+        return base;
+    }
+
+    /**
+     * @return Whether the instance shall be started as a standby server
+     */
+    public boolean isStandby() {
+        return standby;
+    }
+
+    /**
+     * @return The group this request has been created for, null for recorded requests
+     */
+    public Group getSource() {
+        return source;
+    }
+
+}
@@ -0,0 +1,131 @@
+package cloud.timo.TimoCloud.core.placement;
+
+import com.google.gson.Gson;
+
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Places a recorded {@link ClusterState} with several strategies, so that they can be compared without a running cluster.
+ * Passes are repeated (as the Core would do every second) until no more requests can be placed. Bases do not report new resources between the passes,
+ * hence the results only depend on the recorded state and the strategy.
+ */
+public class PlacementSimulator {
+
+    public static List<Result> simulate(ClusterState state, Collection<PlacementStrategy> strategies, int maxStartsPerBase) {
+        List<Result> results = new ArrayList<>();
+        for (PlacementStrategy strategy : strategies) results.add(simulate(state, strategy, maxStartsPerBase));
+        return results;
+    }
+
+    public static Result simulate(ClusterState state, PlacementStrategy strategy, int maxStartsPerBase) {
+        List<BaseCandidate> candidates = state.getCandidates();
+        List<PlacementRequest> remaining = new ArrayList<>(state.getRequests());
+        Set<String> basesUsed = new HashSet<>();
+        int passes = 0;
+        while (! remaining.isEmpty()) {
+            candidates.forEach(BaseCandidate::resetStarts);
+            List<Placement> placements = PlacementEngine.place(remaining, candidates, strategy, maxStartsPerBase);
+            if (placements.isEmpty()) break;
+            passes++;
+            for (Placement placement : placements) {
+                remaining.remove(placement.getRequest());
+                basesUsed.add(placement.getCandidate().getId());
+            }
+        }
+        int maxGroupInstances = 0;
+        int minFreeRam = Integer.MAX_VALUE;
+        int maxFreeRam = 0;
+        for (BaseCandidate candidate : candidates) {
+            for (int amount : candidate.getGroupInstances().values()) maxGroupInstances = Math.max(maxGroupInstances, amount);
+            if (! candidate.isReady()) continue;
+            minFreeRam = Math.min(minFreeRam, candidate.getAvailableRam());
+            maxFreeRam = Math.max(maxFreeRam, candidate.getAvailableRam());
+        }
+        int placed = state.getRequests().size() - remaining.size();
+        return new Result(strategy.getName(), placed, remaining.size(), passes, basesUsed.size(), maxGroupInstances, minFreeRam == Integer.MAX_VALUE ? 0 : maxFreeRam - minFreeRam);
+    }
+
+    public static ClusterState read(Reader reader) {
+        return new Gson().fromJson(reader, ClusterState.class);
+    }
+
+    /**
+     * Usage: PlacementSimulator &lt;state.json&gt; [maxStartsPerBase]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: PlacementSimulator <state.json> [maxStartsPerBase]");
+            return;
+        }
+        ClusterState state;
+        try (Reader reader = new FileReader(args[0])) {
+            state = read(reader);
+        }
+        int maxStartsPerBase = args.length > 1 ? Integer.parseInt(args[1]) : PlacementEngine.DEFAULT_MAX_STARTS_PER_BASE;
+        for (Result result : simulate(state, new PlacementEngine().getStrategies(), maxStartsPerBase)) System.out.println(result);
+    }
+
+    public static class Result {
+
+        private final String strategy;
+        private final int placed;
+        private final int unplaced;
+        private final int passes;
+        private final int basesUsed;
+        private final int maxGroupInstancesPerBase;
+        private final int freeRamSpread;
+
+        public Result(String strategy, int placed, int unplaced, int passes, int basesUsed, int maxGroupInstancesPerBase, int freeRamSpread) {
+            this.strategy = strategy;
+            this.placed = placed;
+            this.unplaced = unplaced;
+            this.passes = passes;
+            this.basesUsed = basesUsed;
+            this.maxGroupInstancesPerBase = maxGroupInstancesPerBase;
+            this.freeRamSpread = freeRamSpread;
+        }
+
+        public String getStrategy() {
+            return strategy;
+        }
+
+        public int getPlaced() {
+            return placed;
+        }
+
+        public int getUnplaced() {
+            return unplaced;
+        }
+
+        public int getPasses() {
+            return passes;
+        }
+
+        public int getBasesUsed() {
+            return basesUsed;
+        }
+
+        /**
+         * @return The highest amount of instances of one group on one base, lower means the groups are spread better
+         */
+        public int getMaxGroupInstancesPerBase() {
+            return maxGroupInstancesPerBase;
+        }
+
+        /**
+         * @return Difference between the most and the least free RAM of the ready bases in MB
+         */
+        public int getFreeRamSpread() {
+            return freeRamSpread;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: placed=%d, unplaced=%d, passes=%d, basesUsed=%d, maxGroupInstancesPerBase=%d, freeRamSpread=%dMB",
+                    strategy, placed, unplaced, passes, basesUsed, maxGroupInstancesPerBase, freeRamSpread);
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+package cloud.timo.TimoCloud.core.placement;
+
+/**
+ * Decides on which base an instance is started. The {@link PlacementEngine} only asks a strategy to score bases
+ * which are able to run the instance (connected, ready, enough RAM, matching the group's base), the base with the lowest score is chosen.
+ * Strategies may be registered by plugins using {@link PlacementEngine#registerStrategy(PlacementStrategy)}.
+ */
+public interface PlacementStrategy {
+
+    /**
+     * @return The name the strategy is selected by, e.g. in the config ('placement-strategy')
+     */
+    String getName();
+
+    /**
+     * @return A score for placing the requested instance on the given base, lower is better
+     */
+    double score(PlacementRequest request, BaseCandidate candidate);
+
+}
@@ -0,0 +1,20 @@
+package cloud.timo.TimoCloud.core.placement;
+
+/**
+ * Anti-affinity: chooses the base with the fewest instances of the same group, so that a failing base only takes down a small part of a group.
+ * Between bases with the same amount, the one with the most free RAM wins.
+ */
+public class SpreadPlacementStrategy implements PlacementStrategy {
+
+    @Override
+    public String getName() {
+        return "spread";
+    }
+
+    @Override
+    public double score(PlacementRequest request, BaseCandidate candidate) {
+        double freeRamShare = candidate.getMaxRam() <= 0 ? 0 : (candidate.getAvailableRam() - request.getRam()) / (double) candidate.getMaxRam();
+        return candidate.getGroupInstances(request.getGroup()) - Math.max(0, Math.min(1, freeRamShare)) * 0.5;
+    }
+
+}
@@ -0,0 +1,110 @@
+package cloud.timo.TimoCloud.core.sockets;
+
+import cloud.timo.TimoCloud.core.objects.Identifiable;
+import cloud.timo.TimoCloud.core.objects.Instance;
+import cloud.timo.TimoCloud.core.objects.Proxy;
+import cloud.timo.TimoCloud.core.objects.Server;
+import io.netty.channel.Channel;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reverse index of connected {@link Communicatable}s by id, type, group and base. The index only stores channels, the communicatable itself is
+ * always read from the channel's {@link CoreSocketServerHandler#COMMUNICATABLE_ATTRIBUTE_KEY}. This way a channel which closes after its
+ * communicatable has already reconnected on a new channel cannot remove the new registration.
+ */
+public class CommunicatableIndex {
+
+    private final Set<Channel> channels = ConcurrentHashMap.newKeySet();
+    private final Map<String, Channel> byId = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Set<Channel>> byType = new ConcurrentHashMap<>();
+    private final Map<String, Set<Channel>> byGroup = new ConcurrentHashMap<>();
+    private final Map<String, Set<Channel>> byBase = new ConcurrentHashMap<>();
+
+    public void add(Channel channel, Communicatable communicatable) {
+        channels.add(channel);
+        String id = getId(communicatable);
+        if (id != null) byId.put(id, channel);
+        addTo(byType, communicatable.getClass(), channel);
+        addTo(byGroup, getGroup(communicatable), channel);
+        addTo(byBase, getBase(communicatable), channel);
+    }
+
+    public void remove(Channel channel, Communicatable communicatable) {
+        channels.remove(channel);
+        String id = getId(communicatable);
+        if (id != null) byId.remove(id, channel);
+        removeFrom(byType, communicatable.getClass(), channel);
+        removeFrom(byGroup, getGroup(communicatable), channel);
+        removeFrom(byBase, getBase(communicatable), channel);
+    }
+
+    public Communicatable getById(String id) {
+        Channel channel = id == null ? null : byId.get(id);
+        return channel == null ? null : channel.attr(CoreSocketServerHandler.COMMUNICATABLE_ATTRIBUTE_KEY).get();
+    }
+
+    public <T extends Communicatable> Collection<T> getByType(Class<T> type) {
+        List<T> communicatables = new ArrayList<>();
+        for (Communicatable communicatable : resolve(byType.get(type))) communicatables.add(type.cast(communicatable));
+        return communicatables;
+    }
+
+    public Collection<Communicatable> getByGroup(String group) {
+        return resolve(byGroup.get(group));
+    }
+
+    public Collection<Communicatable> getByBase(String base) {
+        return resolve(byBase.get(base));
+    }
+
+    public Collection<Channel> getChannels() {
+        return Collections.unmodifiableSet(channels);
+    }
+
+    private static Collection<Communicatable> resolve(Set<Channel> channels) {
+        if (channels == null) return Collections.emptyList();
+        List<Communicatable> communicatables = new ArrayList<>(channels.size());
+        for (Channel channel : channels) {
+            Communicatable communicatable = channel.attr(CoreSocketServerHandler.COMMUNICATABLE_ATTRIBUTE_KEY).get();
+            if (communicatable != null) communicatables.add(communicatable);
+        }
+        return communicatables;
+    }
+
+    /**
+     * Sets are only created and removed inside compute, so an empty set which is just being removed cannot swallow a new channel
+     */
+    private static <K> void addTo(Map<K, Set<Channel>> index, K key, Channel channel) {
+        if (key == null) return;
+        index.compute(key, (k, channels) -> {
+            if (channels == null) channels = ConcurrentHashMap.newKeySet();
+            channels.add(channel);
+            return channels;
+        });
+    }
+
+    private static <K> void removeFrom(Map<K, Set<Channel>> index, K key, Channel channel) {
+        if (key == null) return;
+        index.computeIfPresent(key, (k, channels) -> {
+            channels.remove(channel);
+            return channels.isEmpty() ? null : channels;
+        });
+    }
+
+    private static String getId(Communicatable communicatable) {
+        return communicatable instanceof Identifiable ? ((Identifiable) communicatable).getId() : null;
+    }
+
+    private static String getGroup(Communicatable communicatable) {
+        return communicatable instanceof Instance ? ((Instance) communicatable).getGroup().getName() : null;
+    }
+
+    private static String getBase(Communicatable communicatable) {
+        if (communicatable instanceof Server) return ((Server) communicatable).getBase().getName();
+        if (communicatable instanceof Proxy) return ((Proxy) communicatable).getBase().getName();
+        return null;
+    }
+
+}
@@ -1,19 +1,30 @@
 package cloud.timo.TimoCloud.core.sockets;
 
+import cloud.timo.TimoCloud.common.sockets.FlushCoalescer;
 import cloud.timo.TimoCloud.common.sockets.PacketLengthPrepender;
 import cloud.timo.TimoCloud.common.sockets.PacketLengthSplitter;
+import cloud.timo.TimoCloud.common.utils.statistics.FrameStatistics;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 
+import java.util.Map;
+
 public class CorePipeline extends ChannelInitializer<Channel> {
 
     @Override
     protected void initChannel(Channel ch) throws Exception {
-        ch.pipeline().addLast("splitter", new PacketLengthSplitter());
+        Map<String, Object> config = TimoCloudCore.getInstance().getFileManager().getConfig();
+        int maxFrameLength = ((Number) config.getOrDefault("max-frame-size", PacketLengthSplitter.DEFAULT_MAX_FRAME_LENGTH)).intValue();
+        FrameStatistics statistics = new FrameStatistics();
+        ch.pipeline().addLast("splitter", new PacketLengthSplitter(maxFrameLength, statistics));
         ch.pipeline().addLast(TimoCloudCore.getInstance().getSocketServerHandler());
         ch.pipeline().addLast("rsaHandshakeHandler", new CoreRSAHandshakeHandler());
-        ch.pipeline().addLast("prepender", new PacketLengthPrepender());
+        ch.pipeline().addLast("prepender", new PacketLengthPrepender(maxFrameLength, statistics));
+        ch.pipeline().addLast("coalescer", new FlushCoalescer(
+                ((Number) config.getOrDefault("flush-window-micros", FlushCoalescer.DEFAULT_WINDOW_MICROS)).longValue(),
+                ((Number) config.getOrDefault("flush-max-batch", FlushCoalescer.DEFAULT_MAX_BATCH)).intValue(),
+                TimoCloudCore.getInstance().getSocketServerHandler().getFlushStatistics()));
     }
 
 }
\ No newline at end of file
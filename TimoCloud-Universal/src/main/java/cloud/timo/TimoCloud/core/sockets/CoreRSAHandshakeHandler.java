@@ -1,23 +1,34 @@
 package cloud.timo.TimoCloud.core.sockets;
 
+import cloud.timo.TimoCloud.common.encryption.AESCipherMode;
 import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyUtil;
+import cloud.timo.TimoCloud.common.protocol.CompressionType;
+import cloud.timo.TimoCloud.common.protocol.MessageCodecType;
 import cloud.timo.TimoCloud.common.sockets.AESDecrypter;
 import cloud.timo.TimoCloud.common.sockets.AESEncrypter;
+import cloud.timo.TimoCloud.common.sockets.FrameCompressor;
+import cloud.timo.TimoCloud.common.sockets.FrameDecompressor;
+import cloud.timo.TimoCloud.common.sockets.HandshakeParameters;
+import cloud.timo.TimoCloud.common.sockets.PacketLengthSplitter;
+import cloud.timo.TimoCloud.common.sockets.MessageDecoder;
+import cloud.timo.TimoCloud.common.sockets.MessageEncoder;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.AttributeKey;
-import io.netty.util.CharsetUtil;
 
 import javax.crypto.SecretKey;
 import java.security.KeyFactory;
 import java.security.PublicKey;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -26,6 +37,13 @@ public class CoreRSAHandshakeHandler extends SimpleChannelInboundHandler<ByteBuf
     public static final AttributeKey<PublicKey> RSA_KEY_ATTRIBUTE_KEY = AttributeKey.valueOf("RSA_KEY");
     public static final AttributeKey<SecretKey> AES_KEY_ATTRIBUTE_KEY = AttributeKey.valueOf("AES_KEY");
     public static final AttributeKey<Boolean> HANDSHAKE_PERFORMED_ATTRIBUTE_KEY = AttributeKey.valueOf("HANDSHAKE_PERFORMED");
+    public static final AttributeKey<MessageCodecType> CODEC_ATTRIBUTE_KEY = AttributeKey.valueOf("CODEC");
+    public static final AttributeKey<AESCipherMode> CIPHER_MODE_ATTRIBUTE_KEY = AttributeKey.valueOf("CIPHER_MODE");
+
+    /**
+     * First byte of an X.509 encoded key. If it follows the offered codecs directly, the client does not offer any cipher mode.
+     */
+    private static final byte X509_SEQUENCE_TAG = 0x30;
 
     private final KeyFactory keyFactory;
 
@@ -40,7 +58,36 @@ public class CoreRSAHandshakeHandler extends SimpleChannelInboundHandler<ByteBuf
             if (TimoCloudCore.getInstance().getSocketServerHandler().getCommunicatable(channel) != null) return;
             byte[] bytes = new byte[byteBuf.readableBytes()];
             byteBuf.readBytes(bytes);
-            PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(bytes));
+            List<MessageCodecType> offeredCodecs = new ArrayList<>();
+            List<AESCipherMode> offeredCipherModes = new ArrayList<>();
+            List<CompressionType> offeredCompressionTypes = new ArrayList<>();
+            int keyOffset = 0;
+            List<Integer> offeredParameterVersions = new ArrayList<>();
+            if (bytes.length > 1 && bytes[0] == MessageCodecType.OFFER_MARKER) { // Client offers codecs, cipher modes, compression types and parameter versions before its public key
+                List<List<Integer>> offers = new ArrayList<>();
+                keyOffset = 1;
+                while (offers.size() < 4 && bytes[keyOffset] != X509_SEQUENCE_TAG) { // Older clients offer fewer lists
+                    int amount = bytes[keyOffset];
+                    List<Integer> ids = new ArrayList<>();
+                    for (int i = 0; i < amount; i++) ids.add((int) bytes[keyOffset + 1 + i]);
+                    offers.add(ids);
+                    keyOffset += 1 + amount;
+                }
+                for (int id : offers.get(0)) {
+                    MessageCodecType codecType = MessageCodecType.fromId(id);
+                    if (codecType != null) offeredCodecs.add(codecType);
+                }
+                for (int id : offers.size() > 1 ? offers.get(1) : Collections.<Integer>emptyList()) {
+                    AESCipherMode cipherMode = AESCipherMode.fromId(id);
+                    if (cipherMode != null) offeredCipherModes.add(cipherMode);
+                }
+                for (int id : offers.size() > 2 ? offers.get(2) : Collections.<Integer>emptyList()) {
+                    CompressionType compressionType = CompressionType.fromId(id);
+                    if (compressionType != null) offeredCompressionTypes.add(compressionType);
+                }
+                if (offers.size() > 3) offeredParameterVersions.addAll(offers.get(3));
+            }
+            PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(Arrays.copyOfRange(bytes, keyOffset, bytes.length)));
             if (! TimoCloudCore.getInstance().getCorePublicKeyManager().isKeyPermitted(publicKey)) {
                 channel.close();
                 return;
@@ -48,12 +95,36 @@ public class CoreRSAHandshakeHandler extends SimpleChannelInboundHandler<ByteBuf
             channel.attr(RSA_KEY_ATTRIBUTE_KEY).set(publicKey);
             SecretKey aesKey = AESEncryptionUtil.generateAESKey();
             channel.attr(AES_KEY_ATTRIBUTE_KEY).set(aesKey);
-            channel.writeAndFlush(RSAKeyUtil.encrypt(publicKey, aesKey.getEncoded())); // Send AES key encrypted with the received public key. If the client is really permitted (possesses the corresponding private key), it is able to decrypt the AES key and send protocol encrypted with it
-            channel.pipeline().addBefore("prepender", "decrypter", new AESDecrypter(aesKey));
-            channel.pipeline().addBefore("prepender", "decoder", new StringDecoder(CharsetUtil.UTF_8));
+            MessageCodecType codecType = selectCodec(offeredCodecs);
+            channel.attr(CODEC_ATTRIBUTE_KEY).set(codecType);
+            AESCipherMode cipherMode = selectCipherMode(offeredCipherModes);
+            channel.attr(CIPHER_MODE_ATTRIBUTE_KEY).set(cipherMode);
+            byte[] keyBytes = aesKey.getEncoded();
+            if (! offeredCodecs.isEmpty()) { // Tell the client which codec we have chosen
+                keyBytes = Arrays.copyOf(keyBytes, keyBytes.length + 1);
+                keyBytes[keyBytes.length - 1] = (byte) codecType.getId();
+            }
+            if (! offeredCipherModes.isEmpty()) {
+                keyBytes = Arrays.copyOf(keyBytes, keyBytes.length + 1);
+                keyBytes[keyBytes.length - 1] = (byte) cipherMode.getId();
+            }
+            CompressionType compressionType = selectCompressionType(offeredCompressionTypes);
+            if (! offeredCompressionTypes.isEmpty()) {
+                keyBytes = Arrays.copyOf(keyBytes, keyBytes.length + 1);
+                keyBytes[keyBytes.length - 1] = (byte) compressionType.getId();
+            }
+            int maxFrameLength = channel.pipeline().get(PacketLengthSplitter.class).getMaxFrameLength();
+            if (offeredParameterVersions.contains((int) HandshakeParameters.VERSION)) { // Clients have to use our limits, otherwise they may reject our frames
+                keyBytes = createParameters(maxFrameLength).appendTo(keyBytes);
+            }
+            channel.writeAndFlush(RSAKeyUtil.encrypt(publicKey, keyBytes)); // Send AES key encrypted with the received public key. If the client is really permitted (possesses the corresponding private key), it is able to decrypt the AES key and send protocol encrypted with it
+            channel.pipeline().addBefore("prepender", "decrypter", new AESDecrypter(aesKey, cipherMode));
+            if (compressionType == CompressionType.DEFLATE) channel.pipeline().addBefore("prepender", "decompressor", new FrameDecompressor(FrameCompressor.getMaxLength(maxFrameLength, cipherMode)));
+            channel.pipeline().addBefore("prepender", "decoder", new MessageDecoder(codecType));
             channel.pipeline().addBefore("prepender", "handler", TimoCloudCore.getInstance().getStringHandler());
-            channel.pipeline().addLast("encrypter", new AESEncrypter(aesKey));
-            channel.pipeline().addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
+            channel.pipeline().addLast("encrypter", new AESEncrypter(aesKey, cipherMode));
+            if (compressionType == CompressionType.DEFLATE) channel.pipeline().addLast("compressor", createCompressor(maxFrameLength, cipherMode));
+            channel.pipeline().addLast("encoder", new MessageEncoder(codecType));
 
             channel.pipeline().remove(this);
 
@@ -73,4 +144,52 @@ public class CoreRSAHandshakeHandler extends SimpleChannelInboundHandler<ByteBuf
         }
     }
 
+    /**
+     * Clients which do not offer any codec only understand JSON
+     */
+    private static MessageCodecType selectCodec(List<MessageCodecType> offeredCodecs) {
+        boolean binaryEnabled = (Boolean) TimoCloudCore.getInstance().getFileManager().getConfig().getOrDefault("binary-protocol", true);
+        for (MessageCodecType codecType : offeredCodecs) {
+            if (codecType == MessageCodecType.BINARY && ! binaryEnabled) continue;
+            return codecType;
+        }
+        return MessageCodecType.JSON;
+    }
+
+    private static CompressionType selectCompressionType(List<CompressionType> offeredCompressionTypes) {
+        boolean compressionEnabled = (Boolean) TimoCloudCore.getInstance().getFileManager().getConfig().getOrDefault("compression", true);
+        for (CompressionType compressionType : offeredCompressionTypes) {
+            if (compressionType == CompressionType.DEFLATE && ! compressionEnabled) continue;
+            return compressionType;
+        }
+        return CompressionType.NONE;
+    }
+
+    private static FrameCompressor createCompressor(int maxFrameLength, AESCipherMode cipherMode) {
+        return createParameters(maxFrameLength).createCompressor(cipherMode);
+    }
+
+    /**
+     * Clients compress with our level and threshold, so that the compression settings only have to be configured at the Core
+     */
+    private static HandshakeParameters createParameters(int maxFrameLength) {
+        Map<String, Object> config = TimoCloudCore.getInstance().getFileManager().getConfig();
+        return new HandshakeParameters(
+                maxFrameLength,
+                ((Number) config.getOrDefault("compression-level", FrameCompressor.DEFAULT_LEVEL)).intValue(),
+                ((Number) config.getOrDefault("compression-threshold", FrameCompressor.DEFAULT_THRESHOLD)).intValue());
+    }
+
+    /**
+     * Clients which do not offer any cipher mode only understand CBC
+     */
+    private static AESCipherMode selectCipherMode(List<AESCipherMode> offeredCipherModes) {
+        boolean gcmEnabled = (Boolean) TimoCloudCore.getInstance().getFileManager().getConfig().getOrDefault("aes-gcm", true);
+        for (AESCipherMode cipherMode : offeredCipherModes) {
+            if (cipherMode == AESCipherMode.GCM && ! gcmEnabled) continue;
+            return cipherMode;
+        }
+        return AESCipherMode.CBC;
+    }
+
 }
@@ -1,25 +1,107 @@
 package cloud.timo.TimoCloud.core.sockets;
 
 import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageCodecType;
+import cloud.timo.TimoCloud.common.sockets.CompressedFrame;
+import cloud.timo.TimoCloud.common.sockets.FrameCompressor;
+import cloud.timo.TimoCloud.common.utils.statistics.BatchStatistics;
+import cloud.timo.TimoCloud.common.utils.statistics.LatencyStatistics;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.AttributeKey;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @ChannelHandler.Sharable
 public class CoreSocketServerHandler extends ChannelInboundHandlerAdapter {
 
-    private Map<Channel, Communicatable> communicatables;
+    public static final AttributeKey<Communicatable> COMMUNICATABLE_ATTRIBUTE_KEY = AttributeKey.valueOf("COMMUNICATABLE");
+
+    private final CommunicatableIndex communicatableIndex;
+    private final LatencyStatistics broadcastStatistics;
+    private final BatchStatistics flushStatistics;
+    private final Map<String, FrameCompressor> broadcastCompressors;
 
     public CoreSocketServerHandler() {
-        communicatables = new HashMap<>();
+        communicatableIndex = new CommunicatableIndex();
+        broadcastStatistics = new LatencyStatistics();
+        flushStatistics = new BatchStatistics();
+        broadcastCompressors = new ConcurrentHashMap<>();
     }
 
     public void sendMessage(Channel channel, Message json) {
-        if (channel != null && channel.isActive()) channel.writeAndFlush(json.toJson());
+        if (channel != null && channel.isActive()) channel.writeAndFlush(json);
+    }
+
+    /**
+     * Sends the same message to many channels. The message is encoded only once per codec into a shared buffer and compressed only once
+     * per codec and compression settings, every channel then gets a retained duplicate of it, so only the encryption is done per channel.
+     * The time until the last channel has written the message is recorded in {@link #getBroadcastStatistics()}.
+     */
+    public void broadcastMessage(Collection<Channel> channels, Message message) {
+        long start = System.nanoTime();
+        List<Channel> targets = new ArrayList<>();
+        for (Channel channel : channels) {
+            if (channel != null && channel.isActive()) targets.add(channel);
+        }
+        if (targets.isEmpty()) return;
+        AtomicInteger remaining = new AtomicInteger(targets.size());
+        Map<MessageCodecType, ByteBuf> encoded = new EnumMap<>(MessageCodecType.class);
+        Map<String, ByteBuf> compressed = new HashMap<>();
+        try {
+            for (Channel channel : targets) {
+                MessageCodecType codecType = channel.attr(CoreRSAHandshakeHandler.CODEC_ATTRIBUTE_KEY).get();
+                Object payload = message;
+                if (codecType != null) {
+                    ByteBuf byteBuf = encoded.get(codecType);
+                    if (byteBuf == null) {
+                        byteBuf = channel.alloc().buffer();
+                        encoded.put(codecType, byteBuf);
+                        codecType.getCodec().encode(message, byteBuf);
+                    }
+                    FrameCompressor compressor = channel.pipeline().get(FrameCompressor.class);
+                    if (compressor == null) {
+                        payload = byteBuf.retainedDuplicate();
+                    } else {
+                        String key = codecType + ":" + getSettingsKey(compressor);
+                        ByteBuf frame = compressed.get(key);
+                        if (frame == null) {
+                            frame = channel.alloc().buffer();
+                            compressed.put(key, frame);
+                            getBroadcastCompressor(compressor).compress(byteBuf.duplicate(), frame);
+                        }
+                        payload = new CompressedFrame(frame.retainedDuplicate());
+                    }
+                }
+                channel.writeAndFlush(payload).addListener(future -> {
+                    if (remaining.decrementAndGet() == 0) broadcastStatistics.recordSince(start);
+                });
+            }
+        } catch (Exception e) {
+            TimoCloudCore.getInstance().severe("Error while broadcasting message: ");
+            TimoCloudCore.getInstance().severe(e);
+        } finally {
+            for (ByteBuf byteBuf : encoded.values()) byteBuf.release();
+            for (ByteBuf byteBuf : compressed.values()) byteBuf.release();
+        }
+    }
+
+    private static String getSettingsKey(FrameCompressor compressor) {
+        return compressor.getLevel() + ":" + compressor.getThreshold() + ":" + compressor.getMaxLength();
+    }
+
+    /**
+     * @return A compressor with the same settings as the given one, which is only used for broadcasts, since a channel's compressor is used by its event loop
+     */
+    private FrameCompressor getBroadcastCompressor(FrameCompressor compressor) {
+        return broadcastCompressors.computeIfAbsent(getSettingsKey(compressor),
+                key -> new FrameCompressor(compressor.getLevel(), compressor.getThreshold(), compressor.getMaxLength()));
     }
 
     @Override
@@ -27,13 +109,19 @@ public class CoreSocketServerHandler extends ChannelInboundHandlerAdapter {
         ctx.flush();
     }
 
+    /**
+     * The channel is removed on the sequencer, after the messages it has received before, which still need its connection
+     */
     @Override
     public void channelUnregistered(ChannelHandlerContext ctx) {
         Channel channel = ctx.channel();
-        Communicatable communicatable = getCommunicatable(channel);
-        removeChannel(channel);
-        if (communicatable == null) return;
-        communicatable.onDisconnect();
+        TimoCloudCore.getInstance().getSequencer().execute(() -> {
+            Communicatable communicatable = getCommunicatable(channel);
+            removeChannel(channel);
+            if (communicatable == null) return;
+            if (communicatable.getChannel() != null && communicatable.getChannel() != channel) return; // Already reconnected on another channel
+            communicatable.onDisconnect();
+        });
     }
 
     @Override
@@ -42,15 +130,37 @@ public class CoreSocketServerHandler extends ChannelInboundHandlerAdapter {
     }
 
     public void removeChannel(Channel channel) {
-        if (communicatables.containsKey(channel)) communicatables.remove(channel);
+        Communicatable communicatable = channel.attr(COMMUNICATABLE_ATTRIBUTE_KEY).getAndSet(null);
+        if (communicatable != null) communicatableIndex.remove(channel, communicatable);
     }
 
     public Communicatable getCommunicatable(Channel channel) {
-        return communicatables.get(channel);
+        return channel == null ? null : channel.attr(COMMUNICATABLE_ATTRIBUTE_KEY).get();
     }
 
     public void setCommunicatable(Channel channel, Communicatable communicatable) {
-        communicatables.put(channel, communicatable);
+        Communicatable previous = channel.attr(COMMUNICATABLE_ATTRIBUTE_KEY).getAndSet(communicatable);
+        if (previous != null) communicatableIndex.remove(channel, previous);
+        communicatableIndex.add(channel, communicatable);
+    }
+
+    public Collection<Channel> getChannels() {
+        return communicatableIndex.getChannels();
+    }
+
+    public CommunicatableIndex getCommunicatableIndex() {
+        return communicatableIndex;
+    }
+
+    public LatencyStatistics getBroadcastStatistics() {
+        return broadcastStatistics;
+    }
+
+    /**
+     * @return Frames per flush of all connections, see {@link cloud.timo.TimoCloud.common.sockets.FlushCoalescer}
+     */
+    public BatchStatistics getFlushStatistics() {
+        return flushStatistics;
     }
 
 }
\ No newline at end of file
@@ -5,7 +5,6 @@ import cloud.timo.TimoCloud.api.core.commands.CommandSender;
 import cloud.timo.TimoCloud.api.events.EventType;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
-import cloud.timo.TimoCloud.api.objects.*;
 import cloud.timo.TimoCloud.api.utils.EventUtil;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
@@ -14,27 +13,40 @@ import cloud.timo.TimoCloud.common.utils.DoAfterAmount;
 import cloud.timo.TimoCloud.common.utils.EnumUtil;
 import cloud.timo.TimoCloud.common.utils.PluginMessageSerializer;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.managers.TemplateManager;
 import cloud.timo.TimoCloud.core.objects.Base;
 import cloud.timo.TimoCloud.core.objects.Cord;
 import cloud.timo.TimoCloud.core.objects.Proxy;
 import cloud.timo.TimoCloud.core.objects.Server;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.security.PublicKey;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @ChannelHandler.Sharable
 public class CoreStringHandler extends BasicStringHandler {
 
+    /**
+     * Messages change the Core's state, so they are handled on the {@link cloud.timo.TimoCloud.core.managers.CoreSequencer} in the order they were received.
+     * Handlers must not block it with disk IO, template files are hashed and read on {@link TimoCloudCore#getIoExecutor()}.
+     */
     @Override
     public void handleMessage(Message message, String originalMessage, Channel channel) {
+        TimoCloudCore.getInstance().getSequencer().execute(() -> {
+            try {
+                processMessage(message, channel);
+            } catch (Exception e) {
+                TimoCloudCore.getInstance().severe("Error while handling message: " + message);
+                TimoCloudCore.getInstance().severe(e);
+            }
+        });
+    }
+
+    private void processMessage(Message message, Channel channel) {
         Communicatable sender = TimoCloudCore.getInstance().getSocketServerHandler().getCommunicatable(channel);
         String targetId = message.getTarget();
         Server server = TimoCloudCore.getInstance().getInstanceManager().getServerByIdentifier(targetId);
@@ -140,58 +152,14 @@ public class CoreStringHandler extends BasicStringHandler {
 
         switch (type) {
             case GET_API_DATA: {
-                Set<String> serverGroups = new HashSet<>();
-                Set<String> proxyGroups = new HashSet<>();
-                Set<String> servers = new HashSet<>();
-                Set<String> proxies = new HashSet<>();
-                Set<String> bases = new HashSet<>();
-                Set<String> players = new HashSet<>();
-                Set<String> cords = new HashSet<>();
-                ObjectMapper objectMapper = ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper();
-                try {
-                    for (ServerGroupObject serverGroupObject : TimoCloudAPI.getUniversalAPI().getServerGroups()) {
-                        serverGroups.add(objectMapper.writeValueAsString(serverGroupObject));
-                    }
-                    for (ProxyGroupObject proxyGroupObject : TimoCloudAPI.getUniversalAPI().getProxyGroups()) {
-                        proxyGroups.add(objectMapper.writeValueAsString(proxyGroupObject));
-                    }
-                    for (ServerObject serverObject : TimoCloudAPI.getUniversalAPI().getServers()) {
-                        servers.add(objectMapper.writeValueAsString(serverObject));
-                    }
-                    for (ProxyObject proxyObject : TimoCloudAPI.getUniversalAPI().getProxies()) {
-                        proxies.add(objectMapper.writeValueAsString(proxyObject));
-                    }
-                    for (PlayerObject playerObject : TimoCloudAPI.getUniversalAPI().getPlayers()) {
-                        players.add(objectMapper.writeValueAsString(playerObject));
-                    }
-                    for (BaseObject baseObject : TimoCloudAPI.getUniversalAPI().getBases()) {
-                        bases.add(objectMapper.writeValueAsString(baseObject));
-                    }
-                    for (CordObject cordObject : TimoCloudAPI.getUniversalAPI().getCords()) {
-                        cords.add(objectMapper.writeValueAsString(cordObject));
-                    }
-                    TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create()
-                            .setType(MessageType.API_DATA)
-                            .setData(
-                                    Message.create()
-                                            .set("serverGroups", serverGroups)
-                                            .set("proxyGroups", proxyGroups)
-                                            .set("servers", servers)
-                                            .set("proxies", proxies)
-                                            .set("players", players)
-                                            .set("bases", bases)
-                                            .set("cords", cords)
-                            ));
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+                TimoCloudCore.getInstance().getApiStateManager().sendState(channel, message);
                 break;
             }
             case FIRE_EVENT: {
                 try {
                     TimoCloudCore.getInstance().getEventManager().fireEvent(
-                            ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper().readValue(
-                                    (String) data, EventUtil.getClassByEventType(
+                            ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).readValue(
+                                    data, EventUtil.getClassByEventType(
                                             EnumUtil.valueOf(EventType.class, (String) message.get("eT")))));
                 } catch (Exception e) {
                     TimoCloudCore.getInstance().severe("Error while firing event: ");
@@ -243,52 +211,19 @@ public class CoreStringHandler extends BasicStringHandler {
                 DoAfterAmount doAfterAmount = new DoAfterAmount(amount, server::start);
                 server.setTemplateUpdate(doAfterAmount);
                 try {
+                    TemplateManager templateManager = TimoCloudCore.getInstance().getTemplateManager();
                     if (templateDifferences != null) {
-                        File templateDirectory = new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), template);
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(
-                                templateDifferences.stream().map(fileName -> new File(templateDirectory, fileName)).collect(Collectors.toList()),
-                                templateDirectory,
-                                outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType(MessageType.TRANSFER_TEMPLATE)
-                                .set("transferType", "SERVER_TEMPLATE")
-                                .set("template", template)
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
+                        templateManager.startTransfer(channel, "SERVER_TEMPLATE", template,
+                                new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), template), templateDifferences, targetId);
                     }
                     if (mapDifferences != null) {
-                        File mapDirectory = new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), server.getGroup().getName() + "_" + map);
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(
-                                mapDifferences.stream().map(fileName -> new File(mapDirectory, fileName)).collect(Collectors.toList()),
-                                mapDirectory,
-                                outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType(MessageType.TRANSFER_TEMPLATE)
-                                .set("transferType", "SERVER_TEMPLATE")
-                                .set("template", server.getGroup().getName() + "_" + map)
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
+                        String mapTemplate = server.getGroup().getName() + "_" + map;
+                        templateManager.startTransfer(channel, "SERVER_TEMPLATE", mapTemplate,
+                                new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), mapTemplate), mapDifferences, targetId);
                     }
                     if (globalDifferences != null) {
-                        File templateDirectory = TimoCloudCore.getInstance().getFileManager().getServerGlobalDirectory();
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(
-                                globalDifferences.stream().map(fileName -> new File(templateDirectory, fileName)).collect(Collectors.toList()),
-                                templateDirectory,
-                                outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType(MessageType.TRANSFER_TEMPLATE)
-                                .set("transferType", "SERVER_GLOBAL_TEMPLATE")
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
+                        templateManager.startTransfer(channel, "SERVER_GLOBAL_TEMPLATE", null,
+                                TimoCloudCore.getInstance().getFileManager().getServerGlobalDirectory(), globalDifferences, targetId);
                     }
                     doAfterAmount.setAmount(amount);
                 } catch (Exception e) {
@@ -310,36 +245,14 @@ public class CoreStringHandler extends BasicStringHandler {
                 DoAfterAmount doAfterAmount = new DoAfterAmount(amount, proxy::start);
                 proxy.setTemplateUpdate(doAfterAmount);
                 try {
+                    TemplateManager templateManager = TimoCloudCore.getInstance().getTemplateManager();
                     if (templateDifferences != null) {
-                        File templateDirectory = new File(TimoCloudCore.getInstance().getFileManager().getProxyTemplatesDirectory(), template);
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(
-                                templateDifferences.stream().map(fileName -> new File(templateDirectory, fileName)).collect(Collectors.toList()),
-                                templateDirectory,
-                                outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType(MessageType.TRANSFER_TEMPLATE)
-                                .set("transferType", "PROXY_TEMPLATE")
-                                .set("template", template)
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
+                        templateManager.startTransfer(channel, "PROXY_TEMPLATE", template,
+                                new File(TimoCloudCore.getInstance().getFileManager().getProxyTemplatesDirectory(), template), templateDifferences, targetId);
                     }
                     if (globalDifferences != null) {
-                        File templateDirectory = TimoCloudCore.getInstance().getFileManager().getProxyGlobalDirectory();
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(
-                                globalDifferences.stream().map(fileName -> new File(templateDirectory, fileName)).collect(Collectors.toList()),
-                                templateDirectory,
-                                outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType(MessageType.TRANSFER_TEMPLATE)
-                                .set("transferType", "PROXY_GLOBAL_TEMPLATE")
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
+                        templateManager.startTransfer(channel, "PROXY_GLOBAL_TEMPLATE", null,
+                                TimoCloudCore.getInstance().getFileManager().getProxyGlobalDirectory(), globalDifferences, targetId);
                     }
                     doAfterAmount.setAmount(amount);
                 } catch (Exception e) {
@@ -348,6 +261,29 @@ public class CoreStringHandler extends BasicStringHandler {
                 }
                 break;
             }
+            case BASE_TEMPLATE_HASHES_REQUEST: {
+                Map<String, File> directories = new HashMap<>();
+                if (server != null) {
+                    directories.put("template", server.getTemplateDirectory());
+                    directories.put("map", server.getMapDirectory());
+                    directories.put("global", TimoCloudCore.getInstance().getFileManager().getServerGlobalDirectory());
+                } else if (proxy != null) {
+                    directories.put("template", proxy.getTemplateDirectory());
+                    directories.put("global", TimoCloudCore.getInstance().getFileManager().getProxyGlobalDirectory());
+                } else {
+                    break;
+                }
+                TimoCloudCore.getInstance().getTemplateManager().sendTemplateHashes(channel, targetId, (Map<?, ?>) message.get("roots"), directories);
+                break;
+            }
+            case TEMPLATE_TRANSFER_READY: {
+                TimoCloudCore.getInstance().getTemplateManager().onTransferReady(channel, message);
+                break;
+            }
+            case TEMPLATE_TRANSFER_ACK: {
+                TimoCloudCore.getInstance().getTemplateManager().onChunkAcknowledged(channel, message);
+                break;
+            }
             case SERVER_LOG_ENTRY: {
                 if (target instanceof Server) {
                     target.onMessage(message, sender);
@@ -365,8 +301,4 @@ public class CoreStringHandler extends BasicStringHandler {
         }
     }
 
-    private String byteArrayToString(byte[] bytes) throws Exception {
-        return Base64.getEncoder().encodeToString(bytes);
-    }
-
 }
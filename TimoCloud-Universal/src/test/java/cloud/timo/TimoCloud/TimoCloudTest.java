@@ -60,6 +60,11 @@ public class TimoCloudTest {
         when(TimoCloudBukkit.getInstance()).thenReturn(bukkit);
         when(TimoCloudBungee.getInstance()).thenReturn(bungee);
         when(TimoCloudCord.getInstance()).thenReturn(cord);
+
+        doAnswer(invocation -> { // Execute sequencer tasks right away so that tests can verify their results
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(core.getSequencer()).execute(any(Runnable.class));
     }
 
     public void expectCoreExeption() {
@@ -0,0 +1,52 @@
+package cloud.timo.TimoCloud.base.utils;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class PortAllocatorTest {
+
+    @Test
+    public void testTcpTableIsParsed() throws Exception {
+        String table = "  sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode\n"
+                + "   0: 00000000:9C40 00000000:0000 0A 00000000:00000000 00:00000000 00000000  1000        0 1 1 0000000000000000 100 0 0 10 0\n"
+                + "   1: 0100007F:A028 0100007F:1388 01 00000000:00000000 00:00000000 00000000  1000        0 2 1 0000000000000000 20 4 30 10 -1\n"
+                + "   2: 0100007F:9C41 0100007F:1388 06 00000000:00000000 03:00000D2F 00000000     0        0 0 3 0000000000000000\n";
+        BitSet ports = new BitSet();
+        PortAllocator.parseTcpTable(new BufferedReader(new StringReader(table)), ports);
+        assertTrue(ports.get(40000));
+        assertTrue(ports.get(41000));
+        assertFalse(ports.get(40001)); // TIME_WAIT
+        assertEquals(2, ports.cardinality());
+    }
+
+    @Test
+    public void testLeasesAreReleasedOnStopOrExpireWhenNoLongerUsed() {
+        BitSet used = new BitSet();
+        used.set(40000);
+        PortAllocator allocator = new PortAllocator(60000, () -> used);
+        assertEquals(Integer.valueOf(40001), allocator.allocate("a", 40000, 40002, 0));
+        assertEquals(Integer.valueOf(40002), allocator.allocate("b", 40000, 40002, 0));
+        assertNull(allocator.allocate("c", 40000, 40002, 0));
+
+        allocator.release("a");
+        assertEquals(Integer.valueOf(40001), allocator.allocate("c", 40000, 40002, 1000));
+
+        used.set(40002); // b is running, so its lease is renewed, c is still starting and has not bound its port yet
+        assertNull(allocator.allocate("d", 40000, 40002, 70000));
+        used.clear(40000);
+        used.clear(40002); // b has crashed without being reported as stopped
+        assertEquals(Integer.valueOf(40000), allocator.allocate("d", 40000, 40002, 100000));
+        assertNull(allocator.allocate("e", 40000, 40002, 100000));
+        assertEquals(Integer.valueOf(40002), allocator.allocate("e", 40000, 40002, 140000));
+        assertNull(allocator.allocate("f", 40000, 40002, 1000000)); // c's lease is kept until it is released
+
+        allocator.release("c");
+        assertEquals(Integer.valueOf(40001), allocator.allocate("f", 40000, 40002, 1000000));
+    }
+
+}
@@ -0,0 +1,35 @@
+package cloud.timo.TimoCloud.common.encryption;
+
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RSAKeyPairPoolTest {
+
+    @Test
+    public void testStartsOnlyWaitIfPoolIsEmpty() throws Exception {
+        AtomicInteger generated = new AtomicInteger();
+        RSAKeyPairPool pool = new RSAKeyPairPool(3, () -> {
+            generated.incrementAndGet();
+            return new KeyPair(null, null);
+        });
+        Set<KeyPair> keyPairs = new HashSet<>();
+        keyPairs.add(pool.take()); // Not started yet
+        assertEquals(1, pool.getWaits());
+
+        pool.start();
+        for (int i = 0; i < 100 && pool.getDepth() < 3; i++) Thread.sleep(10);
+        assertEquals(3, pool.getDepth());
+        for (int i = 0; i < 3; i++) keyPairs.add(pool.take());
+        assertEquals(1, pool.getWaits());
+        assertEquals(4, pool.getTaken());
+        assertEquals(4, keyPairs.size());
+        pool.close();
+    }
+
+}
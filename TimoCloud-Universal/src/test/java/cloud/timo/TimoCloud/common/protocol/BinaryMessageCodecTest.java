@@ -0,0 +1,84 @@
+package cloud.timo.TimoCloud.common.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BinaryMessageCodecTest {
+
+    private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    private Message roundTrip(Message message) throws Exception {
+        ByteBuf byteBuf = Unpooled.buffer();
+        codec.encode(message, byteBuf);
+        return codec.decode(byteBuf);
+    }
+
+    @Test
+    public void testTypedValuesSurvive() throws Exception {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("freeRam", 1024);
+        nested.put("cpuLoad", 12.5);
+        nested.put("ready", true);
+        nested.put("timestamp", Long.MAX_VALUE);
+        nested.put("negative", -42);
+        nested.put("nothing", null);
+        nested.put("list", Arrays.asList("a", "b", Collections.singletonMap("c", "\u00fc")));
+        Message message = Message.create()
+                .setType(MessageType.BASE_RESOURCES)
+                .setTarget("BASE-1")
+                .setData(nested);
+
+        Message decoded = roundTrip(message);
+
+        assertEquals(MessageType.BASE_RESOURCES, decoded.getType());
+        assertEquals("BASE-1", decoded.getTarget());
+        assertEquals(nested, decoded.getData());
+    }
+
+    @Test
+    public void testMessageWithoutType() throws Exception {
+        Message decoded = roundTrip(Message.create().set("key", "value"));
+        assertFalse(decoded.containsKey("t"));
+        assertEquals("value", decoded.get("key"));
+    }
+
+    @Test
+    public void testUnknownObjectsAreSerializedLikeGson() throws Exception {
+        Message decoded = roundTrip(Message.create().setData(new NamedObject("test")));
+        assertEquals("test", ((Map) decoded.getData()).get("name"));
+    }
+
+    @Test
+    public void testJsonCodecCompatibility() throws Exception {
+        Message message = Message.create().setType(MessageType.SERVER_SET_STATE).setData("INGAME");
+        ByteBuf byteBuf = Unpooled.buffer();
+        new JsonMessageCodec().encode(message, byteBuf);
+        Message decoded = new JsonMessageCodec().decode(byteBuf);
+        assertEquals(MessageType.SERVER_SET_STATE, decoded.getType());
+        assertEquals("INGAME", decoded.getData());
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void testCorruptLengthIsRejected() throws Exception {
+        ByteBuf byteBuf = Unpooled.buffer();
+        BinaryMessageCodec.writeVarInt(byteBuf, MessageType.SERVER_SET_STATE.getId());
+        BinaryMessageCodec.writeVarInt(byteBuf, Integer.MAX_VALUE);
+        codec.decode(byteBuf);
+    }
+
+    private static class NamedObject {
+
+        private String name;
+
+        private NamedObject(String name) {
+            this.name = name;
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import cloud.timo.TimoCloud.common.encryption.AESCipherMode;
+import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
+import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+public class AESCipherTest {
+
+    private final SecretKey key = AESEncryptionUtil.generateAESKey();
+
+    private ByteBuf encrypt(AESCipherMode mode, String text) throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new AESEncrypter(key, mode));
+        assertTrue(channel.writeOutbound(Unpooled.copiedBuffer(text, CharsetUtil.UTF_8)));
+        return channel.readOutbound();
+    }
+
+    private void testRoundTrip(AESCipherMode mode) throws Exception {
+        EmbeddedChannel decrypter = new EmbeddedChannel(new AESDecrypter(key, mode));
+        for (String text : new String[]{"", "Hello", "A message which is longer than a single AES block"}) {
+            decrypter.writeInbound(encrypt(mode, text));
+            ByteBuf decrypted = decrypter.readInbound();
+            assertEquals(text, decrypted.toString(CharsetUtil.UTF_8));
+            decrypted.release();
+        }
+    }
+
+    @Test
+    public void testCbcRoundTrip() throws Exception {
+        testRoundTrip(AESCipherMode.CBC);
+    }
+
+    @Test
+    public void testGcmRoundTrip() throws Exception {
+        testRoundTrip(AESCipherMode.GCM);
+    }
+
+    @Test
+    public void testIvIsNotReused() throws Exception {
+        ByteBuf first = encrypt(AESCipherMode.GCM, "Hello");
+        ByteBuf second = encrypt(AESCipherMode.GCM, "Hello");
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    public void testGcmRejectsTamperedFrames() throws Exception {
+        ByteBuf encrypted = encrypt(AESCipherMode.GCM, "Hello");
+        encrypted.setByte(encrypted.writerIndex() - 1, encrypted.getByte(encrypted.writerIndex() - 1) ^ 1);
+        TimoCloudLogger.setLogger(new SilentLogger());
+        EmbeddedChannel decrypter = new EmbeddedChannel(new AESDecrypter(key, AESCipherMode.GCM));
+        decrypter.writeInbound(encrypted);
+        assertNull(decrypter.readInbound());
+        assertFalse(decrypter.isOpen());
+    }
+
+    private static class SilentLogger implements TimoCloudLogger {
+
+        @Override
+        public void info(String message) {
+        }
+
+        @Override
+        public void warning(String message) {
+        }
+
+        @Override
+        public void severe(String message) {
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import cloud.timo.TimoCloud.common.encryption.AESCipherMode;
+import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.SecretKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old array based {@link AESEncryptionUtil} path with the channel handlers. Run with the main method after test-compile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AESEncryptionBenchmark {
+
+    @Param({"128", "2048", "65536"})
+    private int size;
+
+    private SecretKey key;
+    private byte[] data;
+    private ByteBuf input;
+    private ByteBuf encrypted;
+    private List<Object> decrypted;
+    private AESEncrypter cbcEncrypter;
+    private AESDecrypter cbcDecrypter;
+    private AESEncrypter gcmEncrypter;
+    private AESDecrypter gcmDecrypter;
+    private ChannelHandlerContext cbcContext;
+    private ChannelHandlerContext gcmContext;
+
+    @Setup
+    public void setup() throws Exception {
+        key = AESEncryptionUtil.generateAESKey();
+        data = new byte[size];
+        new Random(0).nextBytes(data);
+        input = PooledByteBufAllocator.DEFAULT.directBuffer(size);
+        input.writeBytes(data);
+        encrypted = PooledByteBufAllocator.DEFAULT.directBuffer(AESCipherMode.GCM.getMaxFrameLength(size));
+        decrypted = new ArrayList<>(1);
+        cbcEncrypter = new AESEncrypter(key, AESCipherMode.CBC);
+        cbcDecrypter = new AESDecrypter(key, AESCipherMode.CBC);
+        gcmEncrypter = new AESEncrypter(key, AESCipherMode.GCM);
+        gcmDecrypter = new AESDecrypter(key, AESCipherMode.GCM);
+        cbcContext = new EmbeddedChannel(cbcDecrypter).pipeline().firstContext();
+        gcmContext = new EmbeddedChannel(gcmDecrypter).pipeline().firstContext();
+    }
+
+    @TearDown
+    public void tearDown() {
+        input.release();
+        encrypted.release();
+    }
+
+    @Benchmark
+    public byte[] legacyCbc() {
+        return AESEncryptionUtil.decrypt(key, AESEncryptionUtil.encrypt(key, data));
+    }
+
+    @Benchmark
+    public int handlerCbc() throws Exception {
+        return roundTrip(cbcEncrypter, cbcDecrypter, cbcContext);
+    }
+
+    @Benchmark
+    public int handlerGcm() throws Exception {
+        return roundTrip(gcmEncrypter, gcmDecrypter, gcmContext);
+    }
+
+    private int roundTrip(AESEncrypter encrypter, AESDecrypter decrypter, ChannelHandlerContext context) throws Exception {
+        input.readerIndex(0);
+        encrypted.clear();
+        encrypter.encode(context, input, encrypted);
+        decrypter.decode(context, encrypted, decrypted);
+        ByteBuf result = (ByteBuf) decrypted.remove(0);
+        int length = result.readableBytes();
+        result.release();
+        return length;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(AESEncryptionBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,58 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import cloud.timo.TimoCloud.common.utils.statistics.BatchStatistics;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FlushCoalescerTest {
+
+    private final BatchStatistics statistics = new BatchStatistics();
+
+    @Test
+    public void testFlushesAreDelayedUntilWindowPassed() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescer(1000, 256, statistics));
+        for (int i = 0; i < 3; i++) channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{(byte) i}));
+        assertTrue(channel.outboundMessages().isEmpty());
+        Thread.sleep(5);
+        channel.runPendingTasks();
+        assertEquals(3, channel.outboundMessages().size());
+        assertEquals(1, statistics.getCount());
+        assertEquals(3, statistics.getMax());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testFullBatchIsFlushedImmediately() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescer(60_000_000, 2, statistics));
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[1]));
+        assertTrue(channel.outboundMessages().isEmpty());
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[1]));
+        assertEquals(2, channel.outboundMessages().size());
+        assertEquals(1, statistics.getBuckets()[1]);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testZeroWindowFlushesAfterQueuedTasks() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescer(0, 256, statistics));
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[1]));
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[1]));
+        channel.runPendingTasks();
+        assertEquals(2, channel.outboundMessages().size());
+        assertEquals(1, statistics.getCount());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testPendingFramesAreFlushedOnClose() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescer(60_000_000, 256, statistics));
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[1]));
+        channel.close();
+        assertEquals(1, channel.outboundMessages().size());
+        channel.finishAndReleaseAll();
+    }
+
+}
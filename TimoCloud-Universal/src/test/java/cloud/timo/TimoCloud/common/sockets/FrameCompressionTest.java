@@ -0,0 +1,113 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import cloud.timo.TimoCloud.common.encryption.AESCipherMode;
+import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.EncoderException;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FrameCompressionTest {
+
+    private static final int MAX_LENGTH = 16384;
+
+    private final FrameCompressor compressor = new FrameCompressor(FrameCompressor.DEFAULT_LEVEL, 64, MAX_LENGTH);
+    private final EmbeddedChannel sender = new EmbeddedChannel(compressor);
+    private final EmbeddedChannel receiver = new EmbeddedChannel(new FrameDecompressor(MAX_LENGTH));
+
+    /**
+     * @return The length of the frame on the wire
+     */
+    private int transfer(byte[] bytes) {
+        sender.writeOutbound(Unpooled.wrappedBuffer(bytes));
+        ByteBuf compressed = sender.readOutbound();
+        int length = compressed.readableBytes();
+        receiver.writeInbound(compressed);
+        ByteBuf received = receiver.readInbound();
+        assertArrayEquals(bytes, ByteBufUtil.getBytes(received));
+        received.release();
+        return length;
+    }
+
+    @Test
+    public void testSmallFramesAreNotCompressed() {
+        assertEquals(11, transfer("0123456789".getBytes()));
+        assertEquals(0, compressor.getStatistics().getCompressedFrames());
+    }
+
+    @Test
+    public void testLargeFramesAreCompressed() {
+        byte[] bytes = new byte[10000];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) ('a' + i % 7);
+        assertTrue(transfer(bytes) < 1000);
+        assertEquals(1, compressor.getStatistics().getCompressedFrames());
+        assertTrue(compressor.getStatistics().getRatio() < 0.1);
+    }
+
+    @Test
+    public void testIncompressibleFramesAreSentRaw() {
+        byte[] bytes = new byte[4096];
+        new Random(0).nextBytes(bytes);
+        assertEquals(bytes.length + 1, transfer(bytes));
+        assertEquals(0, compressor.getStatistics().getCompressedFrames());
+    }
+
+    @Test(expected = DecoderException.class)
+    public void testHugeDecompressedLengthIsRejected() {
+        receiver.writeInbound(Unpooled.buffer().writeByte(FrameCompressor.DEFLATED).writeInt(MAX_LENGTH + 1).writeByte(0));
+    }
+
+    @Test(expected = EncoderException.class)
+    public void testFramesExceedingTheMaximumFrameSizeAreNotSent() {
+        sender.writeOutbound(Unpooled.wrappedBuffer(new byte[MAX_LENGTH + 1]));
+    }
+
+    @Test
+    public void testLongestFramesFitIntoTheMaximumFrameSizeAfterEncryption() throws Exception {
+        for (AESCipherMode cipherMode : AESCipherMode.values()) {
+            int maxLength = FrameCompressor.getMaxLength(MAX_LENGTH, cipherMode);
+            EmbeddedChannel channel = new EmbeddedChannel(new AESEncrypter(AESEncryptionUtil.generateAESKey(), cipherMode), new FrameCompressor(FrameCompressor.DEFAULT_LEVEL, 64, maxLength));
+            byte[] bytes = new byte[maxLength];
+            new Random(0).nextBytes(bytes);
+            channel.writeOutbound(Unpooled.wrappedBuffer(bytes));
+            ByteBuf frame = channel.readOutbound();
+            assertTrue(frame.readableBytes() <= MAX_LENGTH);
+            frame.release();
+        }
+    }
+
+    @Test
+    public void testCompressedFramesArePassedOnUnchanged() {
+        byte[] bytes = new byte[10000];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) ('a' + i % 7);
+        ByteBuf frame = Unpooled.buffer();
+        new FrameCompressor(FrameCompressor.DEFAULT_LEVEL, 64, MAX_LENGTH).compress(Unpooled.wrappedBuffer(bytes), frame);
+        sender.writeOutbound(new CompressedFrame(frame.retainedDuplicate()));
+        ByteBuf sent = sender.readOutbound();
+        assertEquals(frame, sent);
+        assertEquals(0, compressor.getStatistics().getCompressedFrames());
+        receiver.writeInbound(sent);
+        ByteBuf received = receiver.readInbound();
+        assertArrayEquals(bytes, ByteBufUtil.getBytes(received));
+        received.release();
+        frame.release();
+    }
+
+    @Test
+    public void testHandshakeParametersAreAppendedToTheReply() {
+        byte[] reply = new HandshakeParameters(MAX_LENGTH, 9, 512).appendTo(new byte[]{1, 2, 3});
+        HandshakeParameters parameters = HandshakeParameters.read(reply);
+        assertEquals(MAX_LENGTH, parameters.getMaxFrameLength());
+        assertEquals(9, parameters.getCompressionLevel());
+        assertEquals(512, parameters.getCompressionThreshold());
+        assertArrayEquals(new byte[]{1, 2, 3}, HandshakeParameters.strip(reply));
+    }
+
+}
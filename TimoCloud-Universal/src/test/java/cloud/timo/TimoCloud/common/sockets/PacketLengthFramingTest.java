@@ -0,0 +1,74 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
+import cloud.timo.TimoCloud.common.utils.statistics.FrameStatistics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PacketLengthFramingTest {
+
+    private final FrameStatistics statistics = new FrameStatistics();
+
+    private ByteBuf frame(String content) {
+        EmbeddedChannel channel = new EmbeddedChannel(new PacketLengthPrepender(1024, statistics));
+        channel.writeOutbound(Unpooled.copiedBuffer(content, CharsetUtil.UTF_8));
+        ByteBuf header = channel.readOutbound();
+        ByteBuf body = channel.readOutbound();
+        return Unpooled.wrappedBuffer(header, body);
+    }
+
+    @Test
+    public void testFramesSplitAcrossReads() {
+        EmbeddedChannel channel = new EmbeddedChannel(new PacketLengthSplitter(1024, statistics));
+        ByteBuf stream = Unpooled.wrappedBuffer(frame("Hello"), frame("World"));
+        channel.writeInbound(stream.readRetainedSlice(7));
+        assertNull(channel.readInbound());
+        channel.writeInbound(stream);
+        for (String expected : new String[]{"Hello", "World"}) {
+            ByteBuf received = channel.readInbound();
+            assertEquals(expected, received.toString(CharsetUtil.UTF_8));
+            received.release();
+        }
+        assertEquals(2, statistics.getFramesReceived());
+        assertEquals(2, statistics.getFramesSent());
+        assertEquals(10, statistics.getBytesReceived());
+    }
+
+    @Test
+    public void testOversizeFrameClosesConnection() {
+        TimoCloudLogger.setLogger(new SilentLogger());
+        EmbeddedChannel channel = new EmbeddedChannel(new PacketLengthSplitter(1024, statistics));
+        channel.writeInbound(Unpooled.buffer().writeInt(Integer.MAX_VALUE).writeByte(1));
+        assertNull(channel.readInbound());
+        assertFalse(channel.isOpen());
+        assertEquals(1, statistics.getOversizeFrames());
+    }
+
+    @Test
+    public void testOversizeFrameIsNotSent() {
+        EmbeddedChannel channel = new EmbeddedChannel(new PacketLengthPrepender(4, statistics));
+        assertFalse(channel.writeOneOutbound(Unpooled.wrappedBuffer(new byte[5])).isSuccess());
+        assertEquals(1, statistics.getOversizeFrames());
+    }
+
+    private static class SilentLogger implements TimoCloudLogger {
+
+        @Override
+        public void info(String message) {
+        }
+
+        @Override
+        public void warning(String message) {
+        }
+
+        @Override
+        public void severe(String message) {
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package cloud.timo.TimoCloud.common.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class HashUtilTest {
+
+    private static Map<String, Object> tree(String pluginHash, String configHash) {
+        Map<String, Object> plugin = new HashMap<>();
+        plugin.put("config.yml", configHash);
+        Map<String, Object> plugins = new HashMap<>();
+        plugins.put("Plugin.jar", pluginHash);
+        plugins.put("Plugin/", plugin);
+        Map<String, Object> world = new HashMap<>();
+        world.put("level.dat", "3");
+        Map<String, Object> tree = new HashMap<>();
+        tree.put("spigot.jar", "1");
+        tree.put("plugins/", plugins);
+        tree.put("world/", world);
+        return tree;
+    }
+
+    @Test
+    public void testRootsOnlyChangeAlongChangedPath() {
+        Map<String, String> roots = HashUtil.getDirectoryRoots(tree("2", "4"));
+        Map<String, String> changedRoots = HashUtil.getDirectoryRoots(tree("2", "5"));
+        assertEquals(roots.get(""), HashUtil.getRootHash(tree("2", "4")));
+        assertNotEquals(roots.get(""), changedRoots.get(""));
+        assertNotEquals(roots.get("plugins/"), changedRoots.get("plugins/"));
+        assertNotEquals(roots.get("plugins/Plugin/"), changedRoots.get("plugins/Plugin/"));
+        assertEquals(roots.get("world/"), changedRoots.get("world/"));
+    }
+
+    @Test
+    public void testPrunedTreeIsInflatedWithLocalSubtrees() {
+        Map<String, Object> core = tree("2", "5");
+        Map<String, Object> local = tree("2", "4");
+        Map<String, Object> pruned = HashUtil.pruneHashes(core, HashUtil.getDirectoryRoots(local));
+        assertTrue(pruned.get("world/") instanceof String);
+        assertTrue(pruned.get("plugins/") instanceof Map);
+        assertEquals(core, HashUtil.inflateHashes(pruned, local));
+        assertEquals(1, HashUtil.getDifferentFiles("", HashUtil.inflateHashes(pruned, local), local).size());
+    }
+
+}
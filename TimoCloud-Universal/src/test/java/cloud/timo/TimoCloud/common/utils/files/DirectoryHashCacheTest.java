@@ -0,0 +1,104 @@
+package cloud.timo.TimoCloud.common.utils.files;
+
+import cloud.timo.TimoCloud.common.utils.HashUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class DirectoryHashCacheTest {
+
+    private static final long OLD = System.currentTimeMillis() - 60_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static File write(File directory, String name, String content, long lastModified) throws Exception {
+        File file = new File(directory, name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(lastModified);
+        return file;
+    }
+
+    @Test
+    public void testOnlyChangedFilesAreHashedAgain() throws Exception {
+        File template = folder.newFolder("template");
+        write(template, "server.properties", "motd=A", OLD);
+        File plugin = write(template, "plugins/plugin.yml", "name: Test", OLD);
+        write(template, ".DS_Store", "ignored", OLD);
+
+        DirectoryHashCache cache = new DirectoryHashCache(false);
+        assertEquals(HashUtil.getHashes(template), cache.getHashes(template));
+        assertEquals(2, cache.getFilesHashed());
+
+        assertEquals(HashUtil.getHashes(template), cache.getHashes(template));
+        assertEquals(2, cache.getFilesHashed());
+        assertEquals(2, cache.getFilesReused());
+
+        write(template, "plugins/plugin.yml", "name: Changed", OLD + 1000);
+        write(template, "plugins/config.yml", "enabled: true", OLD);
+        assertEquals(HashUtil.getHashes(template), cache.getHashes(template));
+        assertEquals(4, cache.getFilesHashed());
+        assertEquals(HashUtil.getFileHash(plugin), cache.getFileHash(plugin));
+        assertEquals(4, cache.getFilesHashed());
+        assertEquals(HashUtil.getRootHash(HashUtil.getHashes(template)), cache.getRootHash(template));
+    }
+
+    @Test
+    public void testRecentlyModifiedFilesAreNotTrusted() throws Exception {
+        File template = folder.newFolder("template");
+        write(template, "server.properties", "motd=A", System.currentTimeMillis());
+        DirectoryHashCache cache = new DirectoryHashCache(false);
+        cache.getHashes(template);
+        cache.getHashes(template);
+        assertEquals(2, cache.getFilesHashed());
+    }
+
+    @Test
+    public void testUnchangedWatchedDirectoryIsCached() throws Exception {
+        File template = folder.newFolder("template");
+        write(template, "server.properties", "motd=A", OLD);
+        DirectoryHashCache cache = new DirectoryHashCache(true);
+        try {
+            cache.getHashes(template);
+            if (! cache.isWatching()) return;
+            assertSame(cache.getHashes(template), cache.getHashes(template));
+            assertEquals(1, cache.getMisses());
+            assertEquals(2, cache.getHits());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testIndexIsPersistedAcrossInstances() throws Exception {
+        File template = folder.newFolder("template");
+        File index = folder.newFolder("index");
+        for (int i = 0; i < 8; i++) write(template, "plugins/Plugin" + i + ".jar", "plugin " + i, OLD);
+        File world = write(template, "world/level.dat", "level", OLD);
+
+        DirectoryHashCache cache = new DirectoryHashCache(false, index, 4);
+        DirectoryHashCache.Statistics statistics = new DirectoryHashCache.Statistics();
+        assertEquals(HashUtil.getHashes(template), cache.getHashes(template, statistics));
+        assertEquals(9, statistics.getFilesHashed());
+        cache.close();
+
+        write(template, "world/level.dat", "changed", OLD);
+        Files.delete(new File(template, "plugins/Plugin0.jar").toPath());
+        DirectoryHashCache restarted = new DirectoryHashCache(false, index, 4);
+        statistics = new DirectoryHashCache.Statistics();
+        assertEquals(HashUtil.getHashes(template), restarted.getHashes(template, statistics));
+        assertEquals(8, statistics.getFilesChecked());
+        assertEquals(1, statistics.getFilesHashed());
+        assertEquals(world.length(), statistics.getBytesHashed());
+        assertEquals(HashUtil.getRootHash(HashUtil.getHashes(template)), restarted.getRootHash(template));
+        restarted.close();
+    }
+
+}
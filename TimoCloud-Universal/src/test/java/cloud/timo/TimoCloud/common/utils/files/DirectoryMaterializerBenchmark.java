@@ -0,0 +1,93 @@
+package cloud.timo.TimoCloud.common.utils.files;
+
+import org.apache.commons.io.FileDeleteStrategy;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time needed to build an instance directory out of a global directory and a template, which consists of plugin jars and a world, in all materialization modes.
+ * The bytes written per start are printed by the main method after the benchmark. Run with the main method after test-compile,
+ * the directories are created in the directory given by the system property "materializer.directory" (default: the temporary directory), which should be on the file system of the base.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DirectoryMaterializerBenchmark {
+
+    @Param({"COPY", "LINK", "REFLINK"})
+    private String mode;
+
+    private File directory;
+    private File global;
+    private File template;
+    private File target;
+    private DirectoryMaterializer materializer;
+
+    @Setup
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory(new File(System.getProperty("materializer.directory", System.getProperty("java.io.tmpdir"))).toPath(), "materializer").toFile();
+        global = new File(directory, "global");
+        template = new File(directory, "template");
+        target = new File(directory, "target");
+        createTemplate(global, template);
+        materializer = new DirectoryMaterializer(DirectoryMaterializer.parseMode(mode), DirectoryMaterializer.DEFAULT_LINKED);
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileDeleteStrategy.FORCE.deleteQuietly(directory);
+    }
+
+    @Benchmark
+    public long materialize() throws IOException {
+        FileDeleteStrategy.FORCE.deleteQuietly(target);
+        DirectoryMaterializer.Result result = materializer.materialize(global, target);
+        result.add(materializer.materialize(template, target));
+        return result.getBytesWritten();
+    }
+
+    private static void createTemplate(File global, File template) throws IOException {
+        createFile(new File(global, "plugins/Essentials.jar"), 2 << 20);
+        createFile(new File(global, "plugins/WorldEdit.jar"), 8 << 20);
+        createFile(new File(global, "bukkit.yml"), 4 << 10);
+        createFile(new File(template, "spigot.jar"), 40 << 20);
+        createFile(new File(template, "server.properties"), 2 << 10);
+        for (int i = 0; i < 20; i++) createFile(new File(template, "plugins/Plugin" + i + ".jar"), 1 << 20);
+        for (int i = 0; i < 16; i++) createFile(new File(template, "world/region/r." + (i / 4) + "." + (i % 4) + ".mca"), 4 << 20);
+        createFile(new File(template, "world/level.dat"), 4 << 10);
+    }
+
+    private static void createFile(File file, long size) throws IOException {
+        file.getParentFile().mkdirs();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(size);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(DirectoryMaterializerBenchmark.class.getSimpleName()).build()).run();
+        for (String mode : new String[]{"COPY", "LINK", "REFLINK"}) {
+            DirectoryMaterializerBenchmark benchmark = new DirectoryMaterializerBenchmark();
+            benchmark.mode = mode;
+            benchmark.setup();
+            try {
+                DirectoryMaterializer.Result result = benchmark.materializer.materialize(benchmark.global, benchmark.target);
+                result.add(benchmark.materializer.materialize(benchmark.template, benchmark.target));
+                System.out.println(mode + ": " + result + " per start");
+            } finally {
+                benchmark.tearDown();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package cloud.timo.TimoCloud.common.utils.files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class DirectoryMaterializerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static File write(File directory, String name, String content) throws Exception {
+        File file = new File(directory, name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testOnlyLinkedPatternsAreLinked() throws Exception {
+        File global = folder.newFolder("global");
+        File template = folder.newFolder("template");
+        File target = folder.newFolder("target");
+        File globalJar = write(global, "plugins/Global.jar", "global");
+        write(global, "server.properties", "motd=Global");
+        write(template, "server.properties", "motd=Lobby");
+        File region = write(template, "world/region/r.0.0.mca", "region");
+        File script = write(template, "plugins/Skript/scripts/lobby.sk", "script");
+
+        DirectoryMaterializer materializer = new DirectoryMaterializer(DirectoryMaterializer.Mode.LINK, DirectoryMaterializer.DEFAULT_LINKED);
+        DirectoryMaterializer.Result result = materializer.materialize(global, target);
+        result.add(materializer.materialize(template, target));
+
+        assertEquals(1, result.getLinked());
+        assertEquals(4, result.getCopied());
+        assertEquals("motd=Lobby", read(new File(target, "server.properties")));
+        assertEquals(Files.getAttribute(globalJar.toPath(), "unix:ino"), Files.getAttribute(new File(target, "plugins/Global.jar").toPath(), "unix:ino"));
+
+        Files.write(new File(target, "world/region/r.0.0.mca").toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(target, "plugins/Skript/scripts/lobby.sk").toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+        assertEquals("region", read(region));
+        assertEquals("script", read(script));
+    }
+
+    @Test
+    public void testSingleFilesAreNeverLinked() throws Exception {
+        File jar = write(folder.newFolder("base"), "TimoCloud.jar", "timocloud");
+        File target = new File(folder.newFolder("target"), "plugins/TimoCloud.jar");
+
+        DirectoryMaterializer.Result result = new DirectoryMaterializer(DirectoryMaterializer.Mode.LINK, DirectoryMaterializer.DEFAULT_LINKED).materializeFile(jar, target);
+
+        assertEquals(0, result.getLinked());
+        assertEquals(1, result.getCopied());
+        assertNotEquals(Files.getAttribute(jar.toPath(), "unix:ino"), Files.getAttribute(target.toPath(), "unix:ino"));
+    }
+
+    @Test
+    public void testLinkedFilesAreReplacedInsteadOfWrittenThrough() throws Exception {
+        File global = folder.newFolder("global");
+        File template = folder.newFolder("template");
+        File target = folder.newFolder("target");
+        File globalJar = write(global, "plugins/Plugin.jar", "global");
+        write(template, "plugins/Plugin.jar", "template");
+
+        DirectoryMaterializer materializer = new DirectoryMaterializer(DirectoryMaterializer.Mode.LINK, DirectoryMaterializer.DEFAULT_LINKED);
+        materializer.materialize(global, target);
+        materializer.materialize(template, target);
+
+        assertEquals("template", read(new File(target, "plugins/Plugin.jar")));
+        assertEquals("global", read(globalJar));
+    }
+
+    @Test
+    public void testCopyModeCopiesEverything() throws Exception {
+        File template = folder.newFolder("template");
+        File target = folder.newFolder("target");
+        write(template, "spigot.jar", "spigot");
+
+        DirectoryMaterializer.Result result = new DirectoryMaterializer(DirectoryMaterializer.Mode.COPY, DirectoryMaterializer.DEFAULT_LINKED).materialize(template, target);
+        assertEquals(1, result.getCopied());
+        assertEquals(6, result.getBytesWritten());
+        assertEquals(0, result.getBytesShared());
+    }
+
+}
@@ -0,0 +1,95 @@
+package cloud.timo.TimoCloud.common.utils.files.tailer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class FileTailerServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void append(File file, String content) throws Exception {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void awaitLines(List<String> lines, int amount) throws Exception {
+        for (int i = 0; i < 300 && lines.size() < amount; i++) Thread.sleep(10);
+    }
+
+    private static FileTailerListener collect(List<String> lines) {
+        return new FileTailerListener() {
+            @Override
+            public void readLine(String line) {
+                lines.add(line);
+            }
+        };
+    }
+
+    @Test
+    public void testLinesOfAllFilesAreDispatched() throws Exception {
+        File first = folder.newFile("first.log");
+        File second = folder.newFile("second.log");
+        List<String> firstLines = new CopyOnWriteArrayList<>();
+        List<String> secondLines = new CopyOnWriteArrayList<>();
+        FileTailerService service = new FileTailerService(true, 100);
+        service.start();
+        try {
+            service.tail(first, collect(firstLines));
+            FileTailerService.TailedFile tailedSecond = service.tail(second, collect(secondLines));
+            append(first, "a\r\nb");
+            append(second, "x\n");
+            append(first, "c\n");
+            awaitLines(firstLines, 2);
+            awaitLines(secondLines, 1);
+            assertEquals(Arrays.asList("a", "bc"), firstLines);
+            assertEquals(Arrays.asList("x"), secondLines);
+
+            append(second, "y\n");
+            tailedSecond.stop();
+            awaitLines(secondLines, 2);
+            Thread.sleep(300);
+            assertEquals(1, service.getTailedFiles());
+            assertEquals(Arrays.asList("x", "y"), secondLines);
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    public void testTruncatedAndRotatedFilesAreReadFromTheirStart() throws Exception {
+        File log = folder.newFile("server.log");
+        List<String> lines = new CopyOnWriteArrayList<>();
+        FileTailerService service = new FileTailerService(false, 20);
+        service.start();
+        try {
+            service.tail(log, collect(lines));
+            append(log, "first line\n");
+            awaitLines(lines, 1);
+
+            Files.write(log.toPath(), new byte[0]); // Truncated
+            Thread.sleep(100);
+            append(log, "after truncation\n");
+            awaitLines(lines, 2);
+
+            append(log, "before rotation\n");
+            Files.move(log.toPath(), new File(folder.getRoot(), "server.log.1").toPath());
+            append(log, "after rotation\n");
+            awaitLines(lines, 4);
+            assertEquals(Arrays.asList("first line", "after truncation", "before rotation", "after rotation"), lines);
+        } finally {
+            service.close();
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package cloud.timo.TimoCloud.core.forecast;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class ForecasterTest {
+
+    private static final long SAMPLE_MILLIS = 10 * 60 * 1000;
+    private static final int DAY_SLOTS = 144;
+
+    private static int players(long slot) {
+        return (int) Math.round(100 + 80 * Math.sin(2 * Math.PI * slot / DAY_SLOTS));
+    }
+
+    @Test
+    public void testSeriesKeepsLastSlots() {
+        SampleSeries series = new SampleSeries(4);
+        series.record(10, 1);
+        series.record(11, 2);
+        series.record(13, 4);
+        assertEquals(2, series.get(11));
+        assertEquals(SampleSeries.UNKNOWN, series.get(12));
+        assertEquals(3, series.getKnown());
+        series.record(15, 6);
+        assertEquals(SampleSeries.UNKNOWN, series.get(11));
+        assertEquals(4, series.get(13));
+        series.record(9, 100); // Too old
+        assertEquals(6, series.get(15));
+        assertEquals(15, series.getLastSlot());
+    }
+
+    @Test
+    public void testSeasonalForecastBeatsNaiveForecast() {
+        GroupHistory history = new GroupHistory(SAMPLE_MILLIS, DAY_SLOTS * 14, 6);
+        Forecaster forecaster = new Forecaster(SAMPLE_MILLIS, 3 * 60 * 60 * 1000);
+        for (long slot = 0; slot < DAY_SLOTS * 9; slot++) history.record(slot, players(slot) + (slot >= DAY_SLOTS * 8 ? 20 : 0), 0, forecaster);
+        ForecastAccuracy accuracy = history.getPlayerAccuracy();
+        assertTrue(accuracy.getCount() > DAY_SLOTS * 8);
+        assertTrue(accuracy.toString(), accuracy.getMeanAbsoluteError() < accuracy.getNaiveMeanAbsoluteError() / 2);
+        long last = DAY_SLOTS * 9 - 1;
+        assertEquals(players(last + 6) + 20, history.getForecastPlayers(), 5);
+    }
+
+    @Test
+    public void testHistoryIsSavedAndLoaded() throws Exception {
+        Forecaster forecaster = new Forecaster(SAMPLE_MILLIS, SAMPLE_MILLIS * 6);
+        GroupHistory history = new GroupHistory(SAMPLE_MILLIS, 100, 3);
+        for (long slot = 1000; slot < 1150; slot++) history.record(slot, (int) slot, 2, forecaster);
+        File file = File.createTempFile("history", ".bin");
+        try {
+            history.save(file);
+            GroupHistory smaller = new GroupHistory(SAMPLE_MILLIS, 50, 3);
+            assertTrue(smaller.load(file));
+            assertEquals(1149, smaller.getPlayers().get(1149));
+            assertEquals(1100, smaller.getPlayers().get(1100));
+            assertEquals(SampleSeries.UNKNOWN, smaller.getPlayers().get(1099));
+            assertEquals(2, smaller.getInstances().get(1120));
+            assertFalse(new GroupHistory(SAMPLE_MILLIS * 2, 100, 3).load(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+}
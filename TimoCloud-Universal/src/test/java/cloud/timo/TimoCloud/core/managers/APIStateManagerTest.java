@@ -0,0 +1,75 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.api.implementations.APIStateTracker;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class APIStateManagerTest {
+
+    private static Message event() {
+        return Message.create().setType(MessageType.EVENT_FIRED).set("eT", "SERVER_REGISTER");
+    }
+
+    private static Message snapshot(APIStateManager stateManager) {
+        return Message.create()
+                .setType(MessageType.API_DATA)
+                .set(APIStateTracker.EPOCH_KEY, stateManager.getEpoch())
+                .set(APIStateTracker.VERSION_KEY, stateManager.getVersion());
+    }
+
+    @Test
+    public void testMissedEventsAreReturned() {
+        APIStateManager stateManager = new APIStateManager(3);
+        for (int i = 0; i < 4; i++) stateManager.record(event());
+        assertEquals(4, stateManager.getVersion());
+        List<Message> events = stateManager.getEventsSince(stateManager.getEpoch(), 2);
+        assertEquals(2, events.size());
+        assertEquals(3L, events.get(0).get(APIStateTracker.VERSION_KEY));
+        assertTrue(stateManager.getEventsSince(stateManager.getEpoch(), 4).isEmpty());
+    }
+
+    @Test
+    public void testSnapshotIsNeededIfEventsAreNotLoggedAnymore() {
+        APIStateManager stateManager = new APIStateManager(3);
+        for (int i = 0; i < 5; i++) stateManager.record(event());
+        assertNull(stateManager.getEventsSince(stateManager.getEpoch(), 1));
+        assertNotNull(stateManager.getEventsSince(stateManager.getEpoch(), 2));
+        assertNull(stateManager.getEventsSince("otherEpoch", 4));
+        assertNull(stateManager.getEventsSince(stateManager.getEpoch(), 6));
+    }
+
+    @Test
+    public void testTrackerResyncsAfterGap() {
+        APIStateManager stateManager = new APIStateManager(16);
+        APIStateTracker tracker = new APIStateTracker();
+        tracker.onData(snapshot(stateManager));
+        List<Message> requests = new ArrayList<>();
+
+        assertTrue(tracker.onEvent(stateManager.record(event()), requests::add));
+        stateManager.record(event()); // Lost
+        assertFalse(tracker.onEvent(stateManager.record(event()), requests::add));
+        assertFalse(tracker.onEvent(stateManager.record(event()), requests::add));
+        assertEquals(1, requests.size());
+        assertEquals(1L, requests.get(0).get(APIStateTracker.VERSION_KEY));
+
+        List<Message> missed = stateManager.getEventsSince((String) requests.get(0).get(APIStateTracker.EPOCH_KEY), 1);
+        for (Message event : missed) assertTrue(tracker.onEvent(event, requests::add));
+        assertFalse(tracker.onEvent(missed.get(0), requests::add)); // Duplicate
+        assertEquals(4, tracker.getVersion());
+        assertEquals(2, tracker.getGaps());
+    }
+
+    @Test
+    public void testUnversionedEventsAreApplied() {
+        APIStateTracker tracker = new APIStateTracker();
+        assertTrue(tracker.onEvent(event(), message -> fail()));
+        assertFalse(tracker.createDataRequest().containsKey(APIStateTracker.VERSION_KEY));
+    }
+
+}
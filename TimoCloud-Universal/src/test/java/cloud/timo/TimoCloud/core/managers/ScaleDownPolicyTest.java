@@ -0,0 +1,163 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.core.objects.*;
+import org.junit.Test;
+
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ScaleDownPolicyTest {
+
+    private GroupCounters<Instance> counters = new GroupCounters<>();
+
+    private final Group group = new Group() {
+        @Override
+        public String getName() {
+            return "Lobby";
+        }
+
+        @Override
+        public String getId() {
+            return "lobby";
+        }
+
+        @Override
+        public GroupType getType() {
+            return GroupType.SERVER;
+        }
+
+        @Override
+        public int getRam() {
+            return 1024;
+        }
+
+        @Override
+        public int getPriority() {
+            return 0;
+        }
+
+        @Override
+        public boolean isStatic() {
+            return false;
+        }
+
+        @Override
+        public Base getBase() {
+            return null;
+        }
+
+        @Override
+        public GroupCounters<Instance> getCounters() {
+            return counters;
+        }
+    };
+
+    private Instance instance(String id, long startTime) {
+        return new Instance() {
+            @Override
+            public Group getGroup() {
+                return group;
+            }
+
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public void register() {
+            }
+
+            @Override
+            public void unregister() {
+            }
+
+            @Override
+            public long getStartTime() {
+                return startTime;
+            }
+
+            @Override
+            public PublicKey getPublicKey() {
+                return null;
+            }
+
+            @Override
+            public String getName() {
+                return id;
+            }
+
+            @Override
+            public String getId() {
+                return id;
+            }
+        };
+    }
+
+    @Test
+    public void testLongestIdleInstancesAreStoppedAfterMinimumTimes() {
+        long now = System.currentTimeMillis();
+        ScaleDownPolicy policy = new ScaleDownPolicy(30, 10, 60);
+        Instance young = instance("young", now);
+        Instance old = instance("old", now - 120000);
+        counters.update(young, true, false, false, 0, true);
+        counters.update(old, true, false, false, 0, true);
+
+        assertTrue(policy.select(group, counters, 1, now).isEmpty()); // Not idle long enough
+        assertEquals(Collections.singletonList(old), policy.select(group, counters, 1, now + 20000)); // The young one is held because of its lifetime
+        assertEquals(Arrays.asList(young, old), policy.select(group, counters, 2, now + 70000)); // Idle the longest first
+
+        policy.onStarted(group, now + 70000);
+        assertTrue(policy.select(group, counters, 2, now + 90000).isEmpty()); // Cooling down
+        assertEquals(2, policy.select(group, counters, 2, now + 100000).size());
+    }
+
+    @Test
+    public void testHeldInstancesWhichAreNeededAgainAreCounted() {
+        long now = System.currentTimeMillis();
+        ScaleDownPolicy policy = new ScaleDownPolicy(0, 60, 0);
+        Instance a = instance("a", now);
+        Instance b = instance("b", now);
+        counters.update(a, true, false, false, 0, true);
+        counters.update(b, true, false, false, 0, true);
+
+        policy.select(group, counters, 2, now);
+        policy.onRunFinished();
+        assertEquals(2, policy.getHeld());
+        assertEquals(2, policy.getDeferred());
+
+        counters.update(a, true, false, false, 3, false); // Players joined
+        counters.remove(b); // Crashed
+        policy.select(group, counters, 1, now + 1000);
+        policy.onRunFinished();
+        assertEquals(1, policy.getAvoided());
+        assertEquals(0, policy.getHeld());
+    }
+
+    @Test
+    public void testHeldInstancesAreLookedUpInTheGroupsCurrentCounters() {
+        long now = System.currentTimeMillis();
+        ScaleDownPolicy policy = new ScaleDownPolicy(0, 60, 0);
+        Instance instance = instance("a", now);
+        counters.update(instance, true, false, false, 0, true);
+
+        policy.select(group, counters, 1, now);
+        policy.onRunFinished();
+
+        GroupCounters<Instance> recounted = new GroupCounters<>(); // The group's counters have been replaced by a recount
+        recounted.update(instance, true, false, false, 0, true);
+        recounted.keepIdleOrder(counters);
+        counters = recounted;
+        counters.remove(instance); // Crashed
+        policy.select(group, counters, 1, now + 1000);
+        policy.onRunFinished();
+        assertEquals(0, policy.getAvoided());
+    }
+
+}
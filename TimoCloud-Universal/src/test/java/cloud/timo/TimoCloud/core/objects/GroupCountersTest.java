@@ -0,0 +1,96 @@
+package cloud.timo.TimoCloud.core.objects;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class GroupCountersTest {
+
+    private static Identifiable instance(String id) {
+        return new Identifiable() {
+            @Override
+            public String getName() {
+                return id;
+            }
+
+            @Override
+            public String getId() {
+                return id;
+            }
+        };
+    }
+
+    @Test
+    public void testUpdatesReplacePreviousValues() {
+        GroupCounters<Identifiable> counters = new GroupCounters<>();
+        Identifiable a = instance("a");
+        Identifiable b = instance("b");
+        counters.update(a, true, true, false, 0, true);
+        counters.update(b, true, false, false, 5, false);
+        counters.update(a, true, false, false, 3, false);
+        assertEquals(2, counters.getActive());
+        assertEquals(0, counters.getStarting());
+        assertEquals(2, counters.getRunning());
+        assertEquals(8, counters.getPlayers());
+        assertTrue(counters.getIdle().isEmpty());
+
+        counters.update(b, false, false, true, 0, false);
+        assertEquals(1, counters.getRunning());
+        assertEquals(1, counters.getSortedOut());
+        counters.remove(a);
+        assertEquals(0, counters.getRunning());
+        assertEquals(0, counters.getPlayers());
+        assertEquals(1, counters.getInstances());
+    }
+
+    @Test
+    public void testIdleInstancesKeepTheirOrder() {
+        GroupCounters<Identifiable> counters = new GroupCounters<>();
+        Identifiable a = instance("a");
+        Identifiable b = instance("b");
+        counters.update(a, true, false, false, 0, true);
+        counters.update(b, true, false, false, 0, true);
+        counters.update(a, true, false, false, 0, true);
+        assertEquals(Arrays.asList(a, b), counters.getIdle());
+        counters.update(a, true, false, false, 1, false);
+        counters.update(a, true, false, false, 0, true);
+        assertEquals(Arrays.asList(b, a), counters.getIdle());
+    }
+
+    @Test
+    public void testRecountKeepsIdleOrderAndTimes() throws Exception {
+        GroupCounters<Identifiable> counters = new GroupCounters<>();
+        Identifiable a = instance("a");
+        Identifiable b = instance("b");
+        Identifiable c = instance("c");
+        counters.update(a, true, false, false, 0, true);
+        counters.update(b, true, false, false, 0, true);
+        long idleSince = counters.getIdleSince(a);
+        Thread.sleep(5);
+
+        GroupCounters<Identifiable> recounted = new GroupCounters<>();
+        recounted.update(c, true, false, false, 0, true);
+        recounted.update(b, true, false, false, 0, true);
+        recounted.update(a, true, false, false, 0, true);
+        recounted.keepIdleOrder(counters);
+        assertEquals(Arrays.asList(a, b, c), recounted.getIdle());
+        assertEquals(idleSince, recounted.getIdleSince(a));
+        assertTrue(recounted.getIdleSince(c) > idleSince);
+    }
+
+    @Test
+    public void testRecountMatches() {
+        GroupCounters<Identifiable> counters = new GroupCounters<>();
+        GroupCounters<Identifiable> recounted = new GroupCounters<>();
+        Identifiable a = instance("a");
+        counters.update(a, true, true, false, 0, true);
+        counters.update(a, true, false, false, 2, false);
+        recounted.update(a, true, false, false, 2, false);
+        assertTrue(counters.matches(recounted));
+        recounted.update(a, true, false, false, 1, false);
+        assertFalse(counters.matches(recounted));
+    }
+
+}
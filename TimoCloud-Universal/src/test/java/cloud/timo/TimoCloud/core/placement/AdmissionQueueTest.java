@@ -0,0 +1,55 @@
+package cloud.timo.TimoCloud.core.placement;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class AdmissionQueueTest {
+
+    private static BaseCandidate candidate(String id, int startsInFlight, int maxStartsInFlight) {
+        return new Gson().fromJson("{id: '" + id + "', name: '" + id + "', availableRam: 8192, maxRam: 8192, maxCpuLoad: 100, ready: true, groupInstances: {}, "
+                + "startsInFlight: " + startsInFlight + ", maxStartsInFlight: " + maxStartsInFlight + "}", BaseCandidate.class);
+    }
+
+    private static List<PlacementRequest> requests(int amount) {
+        List<PlacementRequest> requests = new ArrayList<>();
+        for (int i = 0; i < amount; i++) requests.add(new PlacementRequest("lobby", 1024, null));
+        return requests;
+    }
+
+    private static List<String> placedOn(List<Placement> placements) {
+        List<String> bases = new ArrayList<>();
+        for (Placement placement : placements) bases.add(placement.getCandidate().getId());
+        return bases;
+    }
+
+    @Test
+    public void testBasesWithTooManyStartsAreSkipped() {
+        AdmissionQueue admissionQueue = new AdmissionQueue(2, 0);
+        PlacementEngine engine = new PlacementEngine();
+        engine.setMaxStartsPerBase(5);
+        List<Placement> admitted = admissionQueue.admit(requests(4), Arrays.asList(candidate("a", 2, 2), candidate("b", 1, 2), candidate("c", 0, 2)), engine, 1000);
+        assertEquals(Arrays.asList("b", "c", "c"), placedOn(admitted));
+        assertEquals(1, admissionQueue.getPending());
+        assertEquals(-1, admissionQueue.getRetryDelay());
+    }
+
+    @Test
+    public void testRateLimitedStartsAreRetargeted() {
+        AdmissionQueue admissionQueue = new AdmissionQueue(0, 2);
+        PlacementEngine engine = new PlacementEngine();
+        assertEquals(Arrays.asList("a", "b"), placedOn(admissionQueue.admit(requests(3), Arrays.asList(candidate("a", 0, 0), candidate("b", 0, 0), candidate("c", 0, 0)), engine, 1000)));
+        assertEquals(1, admissionQueue.getPending());
+        assertEquals(500, admissionQueue.getRetryDelay());
+
+        // The pending start had been placed on c, which has disconnected in the meantime
+        assertEquals(Collections.singletonList("a"), placedOn(admissionQueue.admit(requests(1), Arrays.asList(candidate("a", 0, 0), candidate("b", 0, 0)), engine, 1500)));
+        assertEquals(0, admissionQueue.getPending());
+        assertEquals(1, admissionQueue.getRetargeted());
+        assertEquals(3, admissionQueue.getAdmitted());
+    }
+
+}
@@ -0,0 +1,76 @@
+package cloud.timo.TimoCloud.core.placement;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PlacementEngineTest {
+
+    private static BaseCandidate candidate(String id, int availableRam, double cpuLoad, String... instances) {
+        Map<String, Integer> groupInstances = new HashMap<>();
+        for (String group : instances) groupInstances.merge(group, 1, Integer::sum);
+        return new BaseCandidate(id, id, availableRam, 4096, cpuLoad, 100, true, groupInstances);
+    }
+
+    private static List<String> placedOn(List<Placement> placements) {
+        List<String> bases = new ArrayList<>();
+        for (Placement placement : placements) bases.add(placement.getCandidate().getId());
+        return bases;
+    }
+
+    @Test
+    public void testStrategiesChooseDifferentBases() {
+        List<PlacementRequest> requests = Collections.singletonList(new PlacementRequest("lobby", 1024, null));
+        assertEquals(Collections.singletonList("a"), placedOn(PlacementEngine.place(requests, Arrays.asList(candidate("b", 4096, 10), candidate("a", 1500, 90, "lobby")), new BestFitPlacementStrategy(), 3)));
+        assertEquals(Collections.singletonList("b"), placedOn(PlacementEngine.place(requests, Arrays.asList(candidate("b", 1500, 10), candidate("a", 4096, 10, "lobby")), new SpreadPlacementStrategy(), 1)));
+        assertEquals(Collections.singletonList("b"), placedOn(PlacementEngine.place(requests, Arrays.asList(candidate("b", 1500, 10), candidate("a", 1500, 90)), new CpuWeightedPlacementStrategy(), 1)));
+    }
+
+    @Test
+    public void testBatchSeesEarlierPlacements() {
+        List<PlacementRequest> requests = Arrays.asList(
+                new PlacementRequest("lobby", 1024, null),
+                new PlacementRequest("lobby", 1024, null),
+                new PlacementRequest("lobby", 1024, null),
+                new PlacementRequest("game", 512, "c"));
+        List<BaseCandidate> candidates = Arrays.asList(candidate("c", 2048, 0), candidate("a", 2048, 0), candidate("b", 2048, 0));
+        assertEquals(Arrays.asList("a", "a", "b", "c"), placedOn(PlacementEngine.place(requests, candidates, new BestFitPlacementStrategy(), 2)));
+        assertEquals(0, candidates.get(1).getAvailableRam());
+        assertEquals(2, candidates.get(1).getGroupInstances("lobby"));
+    }
+
+    @Test
+    public void testMaxStartsPerBase() {
+        PlacementEngine engine = new PlacementEngine();
+        List<PlacementRequest> requests = Arrays.asList(new PlacementRequest("lobby", 256, null), new PlacementRequest("lobby", 256, null));
+        assertEquals(1, engine.place(requests, Collections.singletonList(candidate("a", 4096, 0))).size());
+        assertNotNull(engine.getLastState());
+        assertFalse(engine.setStrategy("unknown"));
+        assertTrue(engine.setStrategy("Spread"));
+        assertEquals("spread", engine.getStrategy().getName());
+    }
+
+    @Test
+    public void testSimulationOfRecordedState() {
+        ClusterState state = new ClusterState(
+                Arrays.asList(candidate("a", 4096, 0), candidate("b", 4096, 0)),
+                Arrays.asList(new PlacementRequest("lobby", 1024, null), new PlacementRequest("lobby", 1024, null), new PlacementRequest("lobby", 1024, null)));
+        ClusterState recorded = PlacementSimulator.read(new StringReader(new Gson().toJson(state)));
+
+        PlacementSimulator.Result bestFit = PlacementSimulator.simulate(recorded, new BestFitPlacementStrategy(), 3);
+        PlacementSimulator.Result spread = PlacementSimulator.simulate(recorded, new SpreadPlacementStrategy(), 3);
+        assertEquals(3, bestFit.getPlaced());
+        assertEquals(1, bestFit.getBasesUsed());
+        assertEquals(3, bestFit.getMaxGroupInstancesPerBase());
+        assertEquals(3, spread.getPlaced());
+        assertEquals(2, spread.getBasesUsed());
+        assertEquals(2, spread.getMaxGroupInstancesPerBase());
+        assertEquals(bestFit.toString(), PlacementSimulator.simulate(recorded, new BestFitPlacementStrategy(), 3).toString());
+        assertEquals(4096, recorded.getCandidates().get(0).getAvailableRam());
+    }
+
+}
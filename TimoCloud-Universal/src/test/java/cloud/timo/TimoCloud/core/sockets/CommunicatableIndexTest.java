@@ -0,0 +1,95 @@
+package cloud.timo.TimoCloud.core.sockets;
+
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.core.objects.Identifiable;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CommunicatableIndexTest {
+
+    private final CoreSocketServerHandler handler = new CoreSocketServerHandler();
+
+    @Test
+    public void testLookups() {
+        TestCommunicatable communicatable = new TestCommunicatable("test");
+        Channel channel = new EmbeddedChannel();
+        handler.setCommunicatable(channel, communicatable);
+
+        assertSame(communicatable, handler.getCommunicatable(channel));
+        assertSame(communicatable, handler.getCommunicatableIndex().getById("test"));
+        assertTrue(handler.getCommunicatableIndex().getByType(TestCommunicatable.class).contains(communicatable));
+        assertTrue(handler.getChannels().contains(channel));
+
+        handler.removeChannel(channel);
+        assertNull(handler.getCommunicatable(channel));
+        assertNull(handler.getCommunicatableIndex().getById("test"));
+        assertTrue(handler.getCommunicatableIndex().getByType(TestCommunicatable.class).isEmpty());
+    }
+
+    @Test
+    public void testClosingOldChannelKeepsReconnectedRegistration() {
+        TestCommunicatable communicatable = new TestCommunicatable("test");
+        Channel oldChannel = new EmbeddedChannel();
+        Channel newChannel = new EmbeddedChannel();
+        handler.setCommunicatable(oldChannel, communicatable);
+        handler.setCommunicatable(newChannel, communicatable);
+
+        handler.removeChannel(oldChannel);
+
+        assertSame(communicatable, handler.getCommunicatableIndex().getById("test"));
+        assertEquals(1, handler.getCommunicatableIndex().getByType(TestCommunicatable.class).size());
+    }
+
+    private static class TestCommunicatable implements Communicatable, Identifiable {
+
+        private final String id;
+
+        private TestCommunicatable(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getName() {
+            return id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public void onConnect(Channel channel) {
+        }
+
+        @Override
+        public void onDisconnect() {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public Channel getChannel() {
+            return null;
+        }
+
+        @Override
+        public void onMessage(Message message, Communicatable sender) {
+        }
+
+        @Override
+        public void sendMessage(Message message) {
+        }
+
+        @Override
+        public void onHandshakeSuccess() {
+        }
+    }
+
+}